@@ -0,0 +1,137 @@
+package benchmarks;
+
+import dao.InventoryDAO;
+import migration.MigrationRunner;
+import util.ConnectionPool;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code BenchmarkDatabase} class is the database the benchmarks run against: an in-memory H2 database
+ * in MySQL mode with the schema of {@code Films.sql}, migrated with the application's own migrations and
+ * filled with generated films, users and copies, behind the application's {@link ConnectionPool}.
+ * <p>
+ * H2 runs in the benchmark process, so the numbers leave out the network round trip to a MySQL server;
+ * they measure the JDBC, pooling and mapping work done by the application, which is what a regression in
+ * our code changes. User {@code n} is named {@code user<n>} with password {@code pass<n>}, and IDs start at 1.
+ * </p>
+ */
+public final class BenchmarkDatabase implements AutoCloseable {
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private static final String[] SCHEMA = {
+            "create table user (id int auto_increment primary key, userName varchar(255), password varchar(255))",
+            "create table film (id int auto_increment primary key, title varchar(255), genre varchar(255),"
+                    + " year int, description varchar(255), director varchar(255))",
+            "create table copy (id int auto_increment primary key, `condition` enum ('New', 'Damaged'),"
+                    + " support enum ('DVD', 'Blu-ray'), film_id int, user_id int,"
+                    + " constraint fk_id_pelicula foreign key (film_id) references film (id),"
+                    + " constraint fp_id_usuario foreign key (user_id) references user (id))"
+    };
+
+    private static final String INSERT_FILMS_SQL = "insert into film(title, genre, year, description, director)"
+            + " select concat('Film ', n), concat('Genre ', mod(n, 20)), 1950 + mod(n, 75),"
+            + " concat('The story of film ', n, ', a journey across the country in search of a lost friend'),"
+            + " concat('Director ', mod(n, 500)) from system_range(1, ?) r(n)";
+    private static final String INSERT_USERS_SQL = "insert into user(userName, password)"
+            + " select concat('user', n), concat('pass', n) from system_range(1, ?) r(n)";
+    private static final String INSERT_COPIES_SQL = "insert into copy(`condition`, support, film_id, user_id)"
+            + " select case when mod(n, 2) = 0 then 'New' else 'Damaged' end,"
+            + " case when mod(n, 3) = 0 then 'DVD' else 'Blu-ray' end,"
+            + " 1 + mod(n * 7919, ?), 1 + mod(n, ?) from system_range(1, ?) r(n)";
+
+    private final ConnectionPool pool;
+    private final int films;
+    private final int users;
+
+    private BenchmarkDatabase(ConnectionPool pool, int films, int users) {
+        this.pool = pool;
+        this.films = films;
+        this.users = users;
+    }
+
+    /**
+     * Creates a new, independent database and fills it.
+     *
+     * @param films         the number of films
+     * @param users         the number of users
+     * @param copiesPerUser the number of copies owned by every user, of films spread over the whole catalog
+     * @return the populated database
+     */
+    public static BenchmarkDatabase create(int films, int users, int copiesPerUser) {
+        var url = "jdbc:h2:mem:bench" + NEXT_ID.incrementAndGet()
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,YEAR,VALUE;DB_CLOSE_DELAY=-1";
+        int cores = Runtime.getRuntime().availableProcessors();
+        var pool = new ConnectionPool(new ConnectionPool.Config(url, "sa", "", 1, Math.max(4, cores * 2),
+                5_000, 600_000, 2, 64));
+        try (var con = pool.getConnection()) {
+            try (var st = con.createStatement()) {
+                for (var sql : SCHEMA) {
+                    st.execute(sql);
+                }
+            }
+            new MigrationRunner(pool).migrate();
+            con.setAutoCommit(false);
+            try (var ps = con.prepareStatement(INSERT_FILMS_SQL)) {
+                ps.setInt(1, films);
+                ps.executeUpdate();
+            }
+            try (var ps = con.prepareStatement(INSERT_USERS_SQL)) {
+                ps.setInt(1, users);
+                ps.executeUpdate();
+            }
+            try (var ps = con.prepareStatement(INSERT_COPIES_SQL)) {
+                ps.setInt(1, films);
+                ps.setInt(2, users);
+                ps.setLong(3, (long) users * copiesPerUser);
+                ps.executeUpdate();
+            }
+            con.commit();
+            // The copies were inserted with plain SQL, which the inventory summary does not follow
+            new InventoryDAO(pool).rebuildSummary();
+        } catch (SQLException e) {
+            pool.close();
+            throw new RuntimeException(e);
+        }
+        return new BenchmarkDatabase(pool, films, users);
+    }
+
+    /**
+     * @return the pooled data source to build DAOs on
+     */
+    public DataSource getDataSource() {
+        return pool;
+    }
+
+    /**
+     * @return the number of films, whose IDs run from 1 to this number
+     */
+    public int getFilms() {
+        return films;
+    }
+
+    /**
+     * @return the number of users, whose IDs run from 1 to this number
+     */
+    public int getUsers() {
+        return users;
+    }
+
+    /**
+     * Drops the database and closes its connections.
+     */
+    @Override
+    public void close() {
+        try (var con = pool.getConnection();
+             var st = con.createStatement()) {
+            st.execute("shutdown");
+        } catch (SQLException ignored) {
+            // H2 closes the connection while shutting down
+        } finally {
+            pool.close();
+        }
+    }
+}
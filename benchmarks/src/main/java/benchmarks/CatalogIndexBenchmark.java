@@ -0,0 +1,186 @@
+package benchmarks;
+
+import catalog.Catalog;
+import model.CopyFilm;
+import model.Film;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Indexing the catalog in memory by ID, films by ID and copies grouped by user and by film, with the
+ * primitive-keyed maps of {@link Catalog} against the equivalent {@code HashMap<Integer, ...>} indexes.
+ * <p>
+ * Run with {@code -prof gc} to see the bytes allocated to build each index ({@code gc.alloc.rate.norm}).
+ * The heap retained by each index once built, without the entities themselves, is printed by running the
+ * class directly:
+ * </p>
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar benchmarks.CatalogIndexBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CatalogIndexBenchmark {
+
+    /**
+     * The {@code HashMap<Integer, ...>} indexes the catalog is compared with.
+     */
+    record BoxedIndex(Map<Integer, Film> films, Map<Integer, CopyFilm> copies,
+                      Map<Integer, List<CopyFilm>> copiesByUser, Map<Integer, List<CopyFilm>> copiesByFilm) {
+
+        static BoxedIndex of(List<Film> films, List<CopyFilm> copies) {
+            var filmsById = new HashMap<Integer, Film>();
+            for (var film : films) {
+                filmsById.put(film.getId(), film);
+            }
+            var copiesById = new HashMap<Integer, CopyFilm>();
+            var byUser = new HashMap<Integer, List<CopyFilm>>();
+            var byFilm = new HashMap<Integer, List<CopyFilm>>();
+            for (var copy : copies) {
+                copy.setFilm(filmsById.get(copy.getFilmId()));
+                copiesById.put(copy.getId(), copy);
+                byUser.computeIfAbsent(copy.getUserId(), k -> new ArrayList<>()).add(copy);
+                byFilm.computeIfAbsent(copy.getFilmId(), k -> new ArrayList<>()).add(copy);
+            }
+            return new BoxedIndex(filmsById, copiesById, byUser, byFilm);
+        }
+    }
+
+    @Param({"1000000"})
+    private int copies;
+
+    private int films;
+    private int users;
+    private List<Film> filmList;
+    private List<CopyFilm> copyList;
+    private Catalog catalog;
+    private BoxedIndex boxed;
+
+    @Setup
+    public void setUp() {
+        films = copies / 10;
+        users = copies / 20;
+        filmList = films(films);
+        copyList = copies(copies, films, users);
+        catalog = Catalog.of(filmList, copyList);
+        boxed = BoxedIndex.of(filmList, copyList);
+    }
+
+    @Benchmark
+    public Catalog buildPrimitive() {
+        return Catalog.of(filmList, copyList);
+    }
+
+    @Benchmark
+    public BoxedIndex buildBoxed() {
+        return BoxedIndex.of(filmList, copyList);
+    }
+
+    /**
+     * One library: the copies of a user, each with the film looked up by ID.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void libraryPrimitive(Blackhole bh) {
+        for (var copy : catalog.getCopiesOfUser(ThreadLocalRandom.current().nextInt(users) + 1)) {
+            bh.consume(catalog.getFilm(copy.getFilmId()));
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void libraryBoxed(Blackhole bh) {
+        for (var copy : boxed.copiesByUser().getOrDefault(ThreadLocalRandom.current().nextInt(users) + 1, List.of())) {
+            bh.consume(boxed.films().get(copy.getFilmId()));
+        }
+    }
+
+    /**
+     * Prints the heap retained by each index for a catalog of a million copies.
+     *
+     * @param args command-line arguments (unused)
+     */
+    public static void main(String[] args) {
+        var state = new CatalogIndexBenchmark();
+        state.copies = 1_000_000;
+        state.films = state.copies / 10;
+        state.users = state.copies / 20;
+        state.filmList = films(state.films);
+        state.copyList = copies(state.copies, state.films, state.users);
+        System.out.printf("%,d films, %,d copies, %,d users%n", state.films, state.copies, state.users);
+        long primitive = retained(() -> Catalog.of(state.filmList, state.copyList));
+        long boxedBytes = retained(() -> BoxedIndex.of(state.filmList, state.copyList));
+        System.out.printf("Catalog (primitive keys) %,15d bytes%n", primitive);
+        System.out.printf("HashMap<Integer, ...>    %,15d bytes  (%.1fx)%n", boxedBytes, (double) boxedBytes / primitive);
+    }
+
+    /**
+     * Measures the heap held by the object built by {@code builder} from the used heap after full collections.
+     */
+    private static long retained(Supplier<?> builder) {
+        var memory = ManagementFactory.getMemoryMXBean();
+        long before = usedAfterGc(memory);
+        var built = builder.get();
+        long after = usedAfterGc(memory);
+        Reference.reachabilityFence(built);
+        return after - before;
+    }
+
+    private static long usedAfterGc(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    static List<Film> films(int count) {
+        var films = new ArrayList<Film>(count);
+        for (int i = 1; i <= count; i++) {
+            var film = new Film();
+            film.setId(i);
+            film.setTitle("Film " + i);
+            film.setYear(1950 + i % 75);
+            films.add(film);
+        }
+        return films;
+    }
+
+    static List<CopyFilm> copies(int count, int films, int users) {
+        var copies = new ArrayList<CopyFilm>(count);
+        for (int i = 1; i <= count; i++) {
+            var copy = new CopyFilm();
+            copy.setId(i);
+            copy.setFilmId(1 + (int) ((long) i * 7919 % films));
+            copy.setUserId(1 + i % users);
+            copy.setCondition(i % 2 == 0 ? "New" : "Damaged");
+            copy.setSupport(i % 3 == 0 ? "DVD" : "Blu-ray");
+            copies.add(copy);
+        }
+        return copies;
+    }
+}
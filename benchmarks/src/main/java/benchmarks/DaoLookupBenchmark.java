@@ -0,0 +1,84 @@
+package benchmarks;
+
+import dao.CachingDAO;
+import dao.CopyFilmDAO;
+import dao.FilmDAO;
+import model.Film;
+import model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-row and per-user lookups: {@link FilmDAO#getById}, with and without the film cache in front of it,
+ * and the {@link CopyFilmDAO} queries behind the films list of the main view.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoLookupBenchmark {
+
+    private BenchmarkDatabase database;
+    private FilmDAO filmDao;
+    private CachingDAO<Film> cachedFilmDao;
+    private CopyFilmDAO copyDao;
+
+    @Setup
+    public void setUp() {
+        database = BenchmarkDatabase.create(10_000, 1_000, 10);
+        filmDao = new FilmDAO(database.getDataSource());
+        cachedFilmDao = new CachingDAO<>(filmDao, Film::getId, database.getFilms(), Duration.ZERO);
+        copyDao = new CopyFilmDAO(database.getDataSource());
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Film filmGetById() {
+        return filmDao.getById(randomFilmId());
+    }
+
+    @Benchmark
+    public Film filmGetByIdCached() {
+        return cachedFilmDao.getById(randomFilmId());
+    }
+
+    @Benchmark
+    public List<?> copyGetByUser() {
+        return copyDao.getByUser(randomUser());
+    }
+
+    @Benchmark
+    public List<?> copyLibraryPage() {
+        return copyDao.getLibraryPageByUser(randomUser(), 0, 100);
+    }
+
+    private int randomFilmId() {
+        return ThreadLocalRandom.current().nextInt(database.getFilms()) + 1;
+    }
+
+    private User randomUser() {
+        var user = new User();
+        user.setId(ThreadLocalRandom.current().nextInt(database.getUsers()) + 1);
+        return user;
+    }
+}
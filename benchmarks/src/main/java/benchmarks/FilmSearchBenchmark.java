@@ -0,0 +1,130 @@
+package benchmarks;
+
+import model.Film;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import search.FilmSearchIndex;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Searching a {@link FilmSearchIndex} over a synthetic catalog, built in memory without a database.
+ * <p>
+ * Every film gets a three-word title, a director, one of a few genres and a twenty-word description, with
+ * words drawn from a vocabulary of 50,000 made-up words, skewed so that a few of them are in most films
+ * and most of them in a handful. Queries are taken from the films themselves:
+ * </p>
+ * <ul>
+ *     <li>{@code selective}: two title words of a film, as a user looking for that film would type them;</li>
+ *     <li>{@code selectiveWithCommonTerm}: a title word of a film and one of the most frequent words;</li>
+ *     <li>{@code genre}: a genre alone, matching a tenth of the catalog, for comparison.</li>
+ * </ul>
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar FilmSearchBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FilmSearchBenchmark {
+
+    private static final int VOCABULARY = 50_000;
+    private static final int DIRECTORS = 20_000;
+    private static final int DESCRIPTION_WORDS = 20;
+    private static final int QUERIES = 1024;
+    private static final int LIMIT = 20;
+    private static final String[] GENRES = {
+            "Drama", "Comedy", "Thriller", "Horror", "Western",
+            "Animation", "Documentary", "Romance", "Musical", "Fantasy"};
+    private static final String[] SYLLABLES = {
+            "ka", "lo", "mi", "ra", "tu", "ven", "sol", "dar", "pe", "zu", "bri", "nox", "al", "or", "es", "qui"};
+
+    @Param({"100000", "1000000"})
+    private int films;
+
+    private FilmSearchIndex index;
+    private String[] selective;
+    private String[] selectiveWithCommonTerm;
+
+    @Setup
+    public void setUp() {
+        var random = new Random(42);
+        index = new FilmSearchIndex();
+        index.rebuild(IntStream.rangeClosed(1, films).mapToObj(id -> film(id, random)));
+
+        // Queries from other films drawn with the same skew, so they match what users would look for
+        selective = new String[QUERIES];
+        selectiveWithCommonTerm = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            var title = film(0, random).getTitle().split(" ");
+            selective[i] = title[0] + " " + title[2];
+            selectiveWithCommonTerm[i] = title[2] + " " + word(random.nextInt(10));
+        }
+    }
+
+    @Benchmark
+    public List<FilmSearchIndex.SearchResult> selective() {
+        return index.search(selective[ThreadLocalRandom.current().nextInt(QUERIES)], LIMIT);
+    }
+
+    @Benchmark
+    public List<FilmSearchIndex.SearchResult> selectiveWithCommonTerm() {
+        return index.search(selectiveWithCommonTerm[ThreadLocalRandom.current().nextInt(QUERIES)], LIMIT);
+    }
+
+    @Benchmark
+    public List<FilmSearchIndex.SearchResult> genre() {
+        return index.search(GENRES[ThreadLocalRandom.current().nextInt(GENRES.length)], LIMIT);
+    }
+
+    private static Film film(int id, Random random) {
+        var film = new Film();
+        film.setId(id);
+        film.setTitle(word(skewed(random)) + " " + word(skewed(random)) + " " + word(random.nextInt(VOCABULARY)));
+        film.setDirector(word(VOCABULARY + random.nextInt(DIRECTORS)));
+        film.setGenre(GENRES[random.nextInt(GENRES.length)]);
+        film.setYear(1920 + random.nextInt(105));
+        var description = new StringBuilder();
+        for (int i = 0; i < DESCRIPTION_WORDS; i++) {
+            description.append(word(skewed(random))).append(' ');
+        }
+        film.setDescription(description.toString());
+        return film;
+    }
+
+    /**
+     * Returns a word number from 0 to {@link #VOCABULARY}, the smallest being the most frequent.
+     */
+    private static int skewed(Random random) {
+        double r = random.nextDouble();
+        return (int) (VOCABULARY * r * r * r);
+    }
+
+    /**
+     * Returns the made-up word of a number, the same for the same number.
+     */
+    private static String word(int n) {
+        var word = new StringBuilder();
+        do {
+            word.append(SYLLABLES[n % SYLLABLES.length]);
+            n /= SYLLABLES.length;
+        } while (n > 0);
+        return word.toString();
+    }
+}
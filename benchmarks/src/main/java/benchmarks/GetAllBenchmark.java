@@ -0,0 +1,60 @@
+package benchmarks;
+
+import dao.FilmDAO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the whole film catalog, materialized with {@link FilmDAO#getAll()} and streamed with
+ * {@link FilmDAO#streamAll()}, at increasing catalog sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class GetAllBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int rows;
+
+    private BenchmarkDatabase database;
+    private FilmDAO filmDao;
+
+    @Setup
+    public void setUp() {
+        database = BenchmarkDatabase.create(rows, 1, 0);
+        filmDao = new FilmDAO(database.getDataSource());
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public List<?> getAll() {
+        return filmDao.getAll();
+    }
+
+    @Benchmark
+    public long streamAll() {
+        try (var films = filmDao.streamAll()) {
+            return films.count();
+        }
+    }
+}
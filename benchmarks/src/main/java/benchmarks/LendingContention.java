@@ -0,0 +1,217 @@
+package benchmarks;
+
+import dao.LoanConflictException;
+import dao.LoanDAO;
+import metrics.LatencyHistogram;
+import model.User;
+import server.JsonWriter;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code LendingContention} class measures {@link LoanDAO} when hundreds of users borrow the same few films at
+ * once, and checks that its compare-and-set updates never lend a copy twice.
+ * <p>
+ * It runs on a {@link BenchmarkDatabase} of 1,000 films and 1,000 users owning 10 copies each, about 10 copies
+ * per film. Every borrower runs on its own virtual thread, logged in as its own user, and in a loop borrows any
+ * copy of one of the first 5 films, keeps it for up to a millisecond and gives it back. Each number of borrowers
+ * is warmed up for 2 seconds, then measured. For each, it prints the loans per second, the borrows that found no
+ * free copy, those that gave up after {@code films.lending.maxAttempts} attempts, the compare-and-set updates that
+ * lost a race per loan, and the p50 and p99 latencies of a borrow. The results are also written as JSON to
+ * {@code target/lending-contention.json}.
+ * </p>
+ * Run it after packaging the benchmarks, optionally giving the numbers of borrowers and the measured seconds:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar benchmarks.LendingContention 100,200,400 5
+ * </pre>
+ * A copy handed out to two borrowers at once, or still lent once every borrower has stopped, makes it exit with
+ * status 1.
+ */
+public class LendingContention {
+
+    private static final int HOT_FILMS = 5;
+    private static final Duration WARMUP = Duration.ofSeconds(2);
+    private static final long MAX_HOLD_NANOS = Duration.ofMillis(1).toNanos();
+
+    private final LoanDAO loans;
+    private final int users;
+    /** The copies lent and not yet given back, to catch a copy lent twice. */
+    private final Set<Integer> held = ConcurrentHashMap.newKeySet();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder borrowed = new LongAdder();
+    private final LongAdder unavailable = new LongAdder();
+    private final LongAdder gaveUp = new LongAdder();
+    private final LongAdder lentTwice = new LongAdder();
+    private volatile boolean measuring;
+    private volatile boolean stopped;
+
+    private LendingContention(LoanDAO loans, int users) {
+        this.loans = loans;
+        this.users = users;
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the comma-separated numbers of borrowers (100,200,400 by default) and the measured seconds of
+     *             each (5 by default)
+     * @throws Exception if the database cannot be read or the results cannot be written
+     */
+    public static void main(String[] args) throws Exception {
+        var borrowerCounts = Arrays.stream((args.length > 0 ? args[0] : "100,200,400").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        var duration = Duration.ofSeconds(args.length > 1 ? Long.parseLong(args[1]) : 5);
+
+        boolean failed = false;
+        var results = new ArrayList<double[]>();
+        try (var database = BenchmarkDatabase.create(1_000, 1_000, 10)) {
+            System.out.printf("%9s %10s %12s %8s %16s %10s %10s%n", "borrowers", "loans/s", "unavailable",
+                    "gave up", "conflicts/loan", "p50 ms", "p99 ms");
+            for (int borrowers : borrowerCounts) {
+                var run = new LendingContention(new LoanDAO(database.getDataSource()), database.getUsers());
+                var result = run.run(borrowers, duration);
+                results.add(result);
+                System.out.printf("%9d %10.0f %12.0f %8.0f %16.2f %10.2f %10.2f%n", borrowers, result[0],
+                        result[1], result[2], result[3], result[4], result[5]);
+                long stillLent = countLent(database);
+                if (run.lentTwice.sum() > 0 || stillLent > 0) {
+                    System.out.printf("  %d copies lent twice, %d still lent after the run%n",
+                            run.lentTwice.sum(), stillLent);
+                    failed = true;
+                }
+            }
+        }
+        write(borrowerCounts, duration, results);
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the given number of borrowers and returns the loans per second, the borrows that found no free copy,
+     * those that gave up, the conflicts per loan, and the p50 and p99 latencies in milliseconds.
+     */
+    private double[] run(int borrowers, Duration duration) throws InterruptedException {
+        var threads = new ArrayList<Thread>();
+        for (int i = 0; i < borrowers; i++) {
+            var user = new User();
+            user.setId(i % users + 1);
+            threads.add(Thread.ofVirtual().name("borrower-" + i).start(() -> borrower(user)));
+        }
+        Thread.sleep(WARMUP);
+        long conflictsBefore = loans.getConflictCount();
+        measuring = true;
+        long start = System.nanoTime();
+        Thread.sleep(duration);
+        measuring = false;
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long conflicts = loans.getConflictCount() - conflictsBefore;
+        stopped = true;
+        for (var thread : threads) {
+            thread.join();
+        }
+        long loansMade = borrowed.sum();
+        return new double[]{loansMade / seconds, unavailable.sum(), gaveUp.sum(),
+                loansMade == 0 ? 0 : (double) conflicts / loansMade,
+                latencies.getPercentile(50) / 1e6, latencies.getPercentile(99) / 1e6};
+    }
+
+    private void borrower(User user) {
+        var random = ThreadLocalRandom.current();
+        while (!stopped) {
+            long begin = System.nanoTime();
+            try {
+                var loan = loans.borrow(random.nextInt(HOT_FILMS) + 1, user);
+                long elapsed = System.nanoTime() - begin;
+                if (loan == null) {
+                    count(unavailable);
+                    Thread.sleep(Duration.ofNanos(random.nextLong(MAX_HOLD_NANOS) + 1));
+                    continue;
+                }
+                if (measuring) {
+                    latencies.record(elapsed);
+                    borrowed.increment();
+                }
+                if (!held.add(loan.getCopyId())) {
+                    lentTwice.increment();
+                }
+                Thread.sleep(Duration.ofNanos(random.nextLong(MAX_HOLD_NANOS) + 1));
+                // Released before the copy is given back, since another borrower may get it right after
+                held.remove(loan.getCopyId());
+                if (!giveBack(loan.getCopyId(), user)) {
+                    lentTwice.increment();
+                }
+            } catch (LoanConflictException e) {
+                count(gaveUp);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gives a copy back, however long it takes: a copy left lent would be missing from the next borrows.
+     */
+    private boolean giveBack(int copyId, User user) {
+        while (true) {
+            try {
+                return loans.giveBack(copyId, user);
+            } catch (LoanConflictException e) {
+                count(gaveUp);
+            }
+        }
+    }
+
+    private void count(LongAdder counter) {
+        if (measuring) {
+            counter.increment();
+        }
+    }
+
+    private static long countLent(BenchmarkDatabase database) throws SQLException {
+        try (var con = database.getDataSource().getConnection();
+             var st = con.createStatement();
+             var rs = st.executeQuery("select count(*) from copy where borrower_id is not null")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static void write(int[] borrowerCounts, Duration duration, List<double[]> results) throws IOException {
+        var file = Path.of("target", "lending-contention.json");
+        Files.createDirectories(file.getParent());
+        try (var json = new JsonWriter(new FileOutputStream(file.toFile()))) {
+            json.beginObject()
+                    .name("hotFilms").value(HOT_FILMS)
+                    .name("seconds").value(duration.toSeconds())
+                    .name("runs").beginArray();
+            for (int i = 0; i < results.size(); i++) {
+                var result = results.get(i);
+                json.beginObject()
+                        .name("borrowers").value(borrowerCounts[i])
+                        .name("loansPerSecond").value(result[0])
+                        .name("unavailable").value((long) result[1])
+                        .name("gaveUp").value((long) result[2])
+                        .name("conflictsPerLoan").value(result[3])
+                        .name("p50Ms").value(result[4])
+                        .name("p99Ms").value(result[5])
+                        .endObject();
+            }
+            json.endArray().endObject();
+        }
+        System.out.println("Results written to " + file.toAbsolutePath());
+    }
+}
@@ -0,0 +1,229 @@
+package benchmarks;
+
+import dao.CopyFilmDAO;
+import dao.FilmDAO;
+import dao.InventoryDAO;
+import dao.LoanDAO;
+import dao.UserDAO;
+import metrics.LatencyHistogram;
+import search.FilmSearchIndex;
+import search.IndexingFilmDAO;
+import server.FilmServer;
+import server.JsonWriter;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * The {@code LoadProfile} class measures the throughput and tail latency of the HTTP API served by
+ * {@link FilmServer} on localhost, the way the JMH benchmarks measure the DAOs.
+ * <p>
+ * It starts the server on a {@link BenchmarkDatabase} of 10,000 films and 1,000 users owning 20 copies each,
+ * then runs a number of clients, each on its own virtual thread and logged in as its own user, that send
+ * requests back to back for a warm-up period and then for the measured period. The request mix is that of a
+ * user browsing: 50% {@code GET /api/films/{id}}, 20% film searches, 20% pages of 20 copies of the library and
+ * 10% {@code GET /api/users/me}. The requests per second and the p50, p99 and p99.9 latencies of each kind of
+ * request are printed and written as JSON to {@code target/load-profile.json}.
+ * </p>
+ * Run it after packaging the benchmarks, optionally giving the number of clients and the measured seconds:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar benchmarks.LoadProfile 64 15
+ * </pre>
+ * The clients wait for each response before sending the next request, so when the server stalls they send less
+ * and the latencies understate what clients arriving at a fixed rate would see. Compare runs on the same
+ * machine; the client and the server share its cores.
+ */
+public class LoadProfile {
+
+    private static final Duration WARMUP = Duration.ofSeconds(5);
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+
+    /**
+     * One kind of request of the mix, with the latencies of the measured period.
+     */
+    private record Operation(String name, int weight, LatencyHistogram latencies, LongAdder errors) {
+        Operation(String name, int weight) {
+            this(name, weight, new LatencyHistogram(), new LongAdder());
+        }
+    }
+
+    private final HttpClient client;
+    private final URI base;
+    private final int films;
+    private final int users;
+    private final List<Operation> operations = List.of(
+            new Operation("getFilm", 50),
+            new Operation("searchFilms", 20),
+            new Operation("libraryPage", 20),
+            new Operation("me", 10));
+    private volatile boolean measuring;
+    private volatile boolean stopped;
+
+    private LoadProfile(HttpClient client, URI base, int films, int users) {
+        this.client = client;
+        this.base = base;
+        this.films = films;
+        this.users = users;
+    }
+
+    /**
+     * Runs the load profile.
+     *
+     * @param args the number of clients (64 by default) and the measured seconds (15 by default)
+     * @throws Exception if the server cannot be started or the results cannot be written
+     */
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        var duration = Duration.ofSeconds(args.length > 1 ? Long.parseLong(args[1]) : 15);
+
+        try (var database = BenchmarkDatabase.create(10_000, 1_000, 20)) {
+            var ds = database.getDataSource();
+            var index = new FilmSearchIndex();
+            try (var films = new FilmDAO(ds).streamAll()) {
+                index.rebuild(films);
+            }
+            try (var server = new FilmServer(new InetSocketAddress("localhost", 0),
+                    new IndexingFilmDAO(new FilmDAO(ds), index), index, new CopyFilmDAO(ds), new UserDAO(ds),
+                    new InventoryDAO(ds), new LoanDAO(ds));
+                 var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                server.start();
+                var client = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .executor(executor)
+                        .build();
+                var base = URI.create("http://localhost:" + server.getAddress().getPort() + "/api/");
+                new LoadProfile(client, base, database.getFilms(), database.getUsers()).run(clients, duration);
+            }
+        }
+    }
+
+    private void run(int clients, Duration duration) throws InterruptedException, IOException {
+        var threads = new ArrayList<Thread>();
+        for (int i = 0; i < clients; i++) {
+            int userNumber = i % users + 1;
+            threads.add(Thread.ofVirtual().name("client-" + i).start(() -> client(userNumber)));
+        }
+        System.out.printf("%d clients, warming up for %ds%n", clients, WARMUP.toSeconds());
+        Thread.sleep(WARMUP);
+        measuring = true;
+        long start = System.nanoTime();
+        Thread.sleep(duration);
+        measuring = false;
+        double seconds = (System.nanoTime() - start) / 1e9;
+        stopped = true;
+        for (var thread : threads) {
+            thread.join();
+        }
+        report(clients, seconds);
+    }
+
+    private void client(int userNumber) {
+        try {
+            var token = login(userNumber);
+            int totalWeight = operations.stream().mapToInt(Operation::weight).sum();
+            var random = ThreadLocalRandom.current();
+            while (!stopped) {
+                int pick = random.nextInt(totalWeight);
+                var operation = operations.get(0);
+                for (var candidate : operations) {
+                    operation = candidate;
+                    pick -= candidate.weight();
+                    if (pick < 0) {
+                        break;
+                    }
+                }
+                var path = switch (operation.name()) {
+                    case "getFilm" -> "films/" + (random.nextInt(films) + 1);
+                    case "searchFilms" -> "films/search?q=film+" + random.nextInt(films) + "&limit=10";
+                    case "libraryPage" -> "copies?limit=20";
+                    default -> "users/me";
+                };
+                long begin = System.nanoTime();
+                var response = client.send(HttpRequest.newBuilder(base.resolve(path))
+                        .header("Authorization", "Bearer " + token)
+                        .build(), HttpResponse.BodyHandlers.discarding());
+                long elapsed = System.nanoTime() - begin;
+                if (measuring) {
+                    operation.latencies().record(elapsed);
+                    if (response.statusCode() != 200) {
+                        operation.errors().increment();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String login(int userNumber) throws IOException, InterruptedException {
+        var body = "{\"userName\": \"user" + userNumber + "\", \"password\": \"pass" + userNumber + "\"}";
+        var response = client.send(HttpRequest.newBuilder(base.resolve("session"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        var matcher = TOKEN.matcher(response.body());
+        if (response.statusCode() != 200 || !matcher.find()) {
+            throw new IllegalStateException("Login of user" + userNumber + " failed: " + response.body());
+        }
+        return matcher.group(1);
+    }
+
+    private void report(int clients, double seconds) throws IOException {
+        var results = new LinkedHashMap<String, Map<String, Double>>();
+        long total = 0;
+        System.out.printf("%-12s %10s %8s %10s %10s %10s %8s%n", "operation", "req/s", "errors", "p50 ms", "p99 ms",
+                "p99.9 ms", "max ms");
+        for (var operation : operations) {
+            var latencies = operation.latencies();
+            total += latencies.getCount();
+            var result = new LinkedHashMap<String, Double>();
+            result.put("requestsPerSecond", latencies.getCount() / seconds);
+            result.put("errors", (double) operation.errors().sum());
+            result.put("p50Ms", latencies.getPercentile(50) / 1e6);
+            result.put("p99Ms", latencies.getPercentile(99) / 1e6);
+            result.put("p999Ms", latencies.getPercentile(99.9) / 1e6);
+            result.put("maxMs", latencies.getMax() / 1e6);
+            results.put(operation.name(), result);
+            System.out.printf("%-12s %10.0f %8.0f %10.2f %10.2f %10.2f %8.2f%n", operation.name(),
+                    result.get("requestsPerSecond"), result.get("errors"), result.get("p50Ms"), result.get("p99Ms"),
+                    result.get("p999Ms"), result.get("maxMs"));
+        }
+        System.out.printf("%-12s %10.0f%n", "total", total / seconds);
+
+        var file = Path.of("target", "load-profile.json");
+        Files.createDirectories(file.getParent());
+        try (var json = new JsonWriter(new FileOutputStream(file.toFile()))) {
+            json.beginObject()
+                    .name("clients").value(clients)
+                    .name("seconds").value(seconds)
+                    .name("requestsPerSecond").value(total / seconds)
+                    .name("operations").beginObject();
+            for (var entry : results.entrySet()) {
+                json.name(entry.getKey()).beginObject();
+                for (var value : entry.getValue().entrySet()) {
+                    json.name(value.getKey()).value(value.getValue());
+                }
+                json.endObject();
+            }
+            json.endObject().endObject();
+        }
+        System.out.println("Results written to " + file.toAbsolutePath());
+    }
+}
@@ -0,0 +1,71 @@
+package benchmarks;
+
+import dao.CopyFilmDAO;
+import dao.UserDAO;
+import model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The login round trip: {@link UserDAO#validateUser} with valid and wrong credentials, and the full path from
+ * the login screen to the first screen of the main view, which also counts the user's copies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginBenchmark {
+
+    private BenchmarkDatabase database;
+    private UserDAO userDao;
+    private CopyFilmDAO copyDao;
+
+    @Setup
+    public void setUp() {
+        database = BenchmarkDatabase.create(1_000, 10_000, 5);
+        userDao = new UserDAO(database.getDataSource());
+        copyDao = new CopyFilmDAO(database.getDataSource());
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public User validLogin() {
+        int n = randomUserNumber();
+        return userDao.validateUser("user" + n, ("pass" + n).toCharArray());
+    }
+
+    @Benchmark
+    public User wrongPassword() {
+        int n = randomUserNumber();
+        return userDao.validateUser("user" + n, "wrong".toCharArray());
+    }
+
+    @Benchmark
+    public int loginAndCountLibrary() {
+        int n = randomUserNumber();
+        var user = userDao.validateUser("user" + n, ("pass" + n).toCharArray());
+        return copyDao.countByUser(user);
+    }
+
+    private int randomUserNumber() {
+        return ThreadLocalRandom.current().nextInt(database.getUsers()) + 1;
+    }
+}
@@ -0,0 +1,131 @@
+package benchmarks;
+
+import dao.RowMapper;
+import dao.RowMappers;
+import model.Film;
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning ResultSet rows into entities with the shared {@link RowMappers}, without any database work: every
+ * invocation maps {@value #ROWS} rows held in memory, and the score is the time per row. {@code filmByLabel}
+ * reads every column by label, as the DAOs did before {@link RowMapper}, for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+
+    static final int ROWS = 1_000;
+
+    private SimpleResultSet films;
+    private SimpleResultSet copies;
+    private SimpleResultSet users;
+    private SimpleResultSet library;
+
+    @Setup
+    public void setUp() {
+        films = new SimpleResultSet();
+        addColumns(films, "id", "title", "genre", "year", "description", "director");
+        copies = new SimpleResultSet();
+        addColumns(copies, "id", "condition", "support", "film_id", "user_id");
+        users = new SimpleResultSet();
+        addColumns(users, "id", "userName", "password");
+        library = new SimpleResultSet();
+        addColumns(library, "id", "condition", "support", "film_id", "user_id",
+                "film_title", "film_genre", "film_year", "film_description", "film_director");
+        for (int i = 1; i <= ROWS; i++) {
+            films.addRow(i, "Film " + i, "Drama", 2000 + i % 25, "The story of film " + i, "Director " + i % 50);
+            copies.addRow(i, "New", "DVD", i, 1);
+            users.addRow(i, "user" + i, "pass" + i);
+            library.addRow(i, "Damaged", "Blu-ray", i, 1,
+                    "Film " + i, "Drama", 2000 + i % 25, "The story of film " + i, "Director " + i % 50);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void film(Blackhole bh) throws SQLException {
+        films.beforeFirst();
+        var mapper = RowMappers.FILM.bind(films);
+        while (films.next()) {
+            bh.consume(mapper.map(films));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void filmByLabel(Blackhole bh) throws SQLException {
+        films.beforeFirst();
+        while (films.next()) {
+            var film = new Film();
+            film.setId(films.getInt("id"));
+            film.setTitle(films.getString("title"));
+            film.setGenre(films.getString("genre"));
+            film.setYear(films.getInt("year"));
+            film.setDescription(films.getString("description"));
+            film.setDirector(films.getString("director"));
+            bh.consume(film);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void copyFilm(Blackhole bh) throws SQLException {
+        copies.beforeFirst();
+        var mapper = RowMappers.COPY_FILM.bind(copies);
+        while (copies.next()) {
+            bh.consume(mapper.map(copies));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void copyWithFilm(Blackhole bh) throws SQLException {
+        library.beforeFirst();
+        var mapper = RowMappers.COPY_WITH_FILM.bind(library);
+        while (library.next()) {
+            bh.consume(mapper.map(library));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void user(Blackhole bh) throws SQLException {
+        users.beforeFirst();
+        var mapper = RowMappers.USER.bind(users);
+        while (users.next()) {
+            bh.consume(mapper.map(users));
+        }
+    }
+
+    /**
+     * Declares the columns of a result set, typed like the columns of {@code Films.sql}.
+     */
+    private static void addColumns(SimpleResultSet rs, String... names) {
+        // Keep the rows after the last one is read, so every invocation can start over with beforeFirst()
+        rs.setAutoClose(false);
+        for (var name : names) {
+            boolean number = name.equals("id") || name.endsWith("_id") || name.endsWith("year");
+            rs.addColumn(name, number ? Types.INTEGER : Types.VARCHAR, number ? 10 : 255, 0);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package benchmarks;
+
+import dao.CopyConflictException;
+import dao.CopyFilmDAO;
+import dao.WriteBehindQueue;
+import model.CopyFilm;
+
+import java.time.Duration;
+
+/**
+ * The {@code WriteBehindCheck} class checks that updates of a copy made back to back through a {@link CopyFilmDAO}
+ * in write-behind mode all land, whether the queue coalesces them or has already flushed the first.
+ * <p>
+ * On a small {@link BenchmarkDatabase}, it reads a copy and updates it twice in a row through the same object,
+ * then once more through a new object carrying the version the previous update left, as a client echoing it back
+ * would. It flushes, updates twice more across a flush, then updates it once more and tries an update read
+ * from the database before that one was written. It checks that the row has the last values each time, that the
+ * stale update is refused at once and that the queue dropped nothing.
+ * </p>
+ * Run it after packaging the benchmarks:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar benchmarks.WriteBehindCheck
+ * </pre>
+ * A lost or refused update makes it exit with status 1.
+ */
+public class WriteBehindCheck {
+
+    /**
+     * Runs the check.
+     *
+     * @param args ignored
+     */
+    public static void main(String[] args) {
+        boolean failed = false;
+        try (var database = BenchmarkDatabase.create(10, 2, 2)) {
+            var copies = new CopyFilmDAO(database.getDataSource());
+            var config = new WriteBehindQueue.Config(100, 100, Duration.ofSeconds(10), true);
+            try (var queue = copies.enableWriteBehind(config, () -> { })) {
+                var copy = copies.getById(1);
+                int readVersion = copy.getVersion();
+
+                // Coalesced in the queue
+                copy.setCondition("New");
+                copies.update(copy);
+                copy.setSupport("DVD");
+                copies.update(copy);
+                var echoed = copyOf(copy);
+                echoed.setCondition("Damaged");
+                copies.update(echoed);
+                queue.flush();
+                failed |= !check("coalesced updates", copies.getById(1), "Damaged", "DVD", readVersion + 1);
+
+                // Across a flush
+                echoed.setCondition("New");
+                copies.update(echoed);
+                queue.flush();
+                echoed.setSupport("Blu-ray");
+                copies.update(echoed);
+                queue.flush();
+                failed |= !check("updates across a flush", copies.getById(1), "New", "Blu-ray", readVersion + 3);
+
+                // Behind an update still queued
+                echoed.setSupport("DVD");
+                copies.update(echoed);
+                var stale = copies.getById(1);
+                stale.setCondition("Damaged");
+                try {
+                    copies.update(stale);
+                    System.out.println("stale update: queued");
+                    failed = true;
+                } catch (CopyConflictException e) {
+                    System.out.println("stale update: refused");
+                }
+                queue.flush();
+                failed |= !check("update ahead of a stale one", copies.getById(1), "New", "DVD", readVersion + 4);
+                if (queue.getDroppedCount() > 0) {
+                    System.out.println(queue.getDroppedCount() + " updates dropped by the queue");
+                    failed = true;
+                }
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(String name, CopyFilm row, String condition, String support, int version) {
+        boolean landed = condition.equals(row.getCondition()) && support.equals(row.getSupport())
+                && row.getVersion() == version;
+        System.out.printf("%s: %s (condition %s, support %s, version %d)%n", name, landed ? "landed" : "LOST",
+                row.getCondition(), row.getSupport(), row.getVersion());
+        return landed;
+    }
+
+    private static CopyFilm copyOf(CopyFilm copy) {
+        var other = new CopyFilm();
+        other.setId(copy.getId());
+        other.setCondition(copy.getCondition());
+        other.setSupport(copy.getSupport());
+        other.setFilmId(copy.getFilmId());
+        other.setUserId(copy.getUserId());
+        other.setVersion(copy.getVersion());
+        return other;
+    }
+}
@@ -1,5 +1,10 @@
+import startup.Startup;
+import util.StartupReport;
 import view.Loggin;
 
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 /**
  * The {@code Main} class is the entry point of the application.
  * It initializes and displays the login screen when the application is launched.
@@ -7,9 +12,14 @@ import view.Loggin;
  * This class contains the main method, which is the starting point for the Java program.
  * It creates an instance of the {@link Loggin} class and makes the login window visible.
  * </p>
+ * The database is brought up by {@link Startup} in the background meanwhile, running the migrations unless the
+ * system property {@code films.migrate} is set to {@code false}. Once it is up, the {@link StartupReport} of the
+ * launch is logged.
  */
 public class Main {
 
+    private static final Logger LOG = Logger.getLogger(Main.class.getName());
+
     /**
      * The main method serves as the entry point of the application.
      * It creates an instance of the {@link Loggin} view and displays it.
@@ -17,8 +27,19 @@ public class Main {
      * @param args command-line arguments (unused in this application)
      */
     public static void main(String[] args) {
+        var report = StartupReport.getDefault();
+        var ready = Startup.begin();
+
         // Create and show the login screen
-        var loggin = new Loggin();
+        var loggin = report.call("login window", Loggin::new);
         loggin.setVisible(true);
+        report.mark("interactive");
+
+        ready.whenComplete((done, failure) -> {
+            if (failure != null) {
+                LOG.log(Level.SEVERE, "Startup failed; the first database call will try again", failure);
+            }
+            report.log();
+        });
     }
 }
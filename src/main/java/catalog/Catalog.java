@@ -0,0 +1,360 @@
+package catalog;
+
+import model.CopyFilm;
+import model.Film;
+import util.IntIntMap;
+import util.IntMultimap;
+import util.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The {@code Catalog} class joins the films and copies in memory: films and copies by ID, and the copies of
+ * each user and of each film, so a library or the copies of a title are read without a query.
+ * <p>
+ * The indexes are keyed by primitive {@code int} IDs ({@link IntObjectMap}, {@link IntIntMap},
+ * {@link IntMultimap}) rather than {@code HashMap<Integer, ...>}: at catalog scale, millions of copies, boxed
+ * keys, map nodes and per-user lists would be millions of small objects for the garbage collector to trace,
+ * where these indexes are a handful of arrays. See {@code benchmarks.CatalogIndexBenchmark} for the comparison.
+ * </p>
+ * <p>
+ * A catalog is not modified once built, so it can be read by any number of threads. The films and copies it
+ * holds are shared with its readers, which must treat them as read-only. {@link #withChanges} derives a new
+ * catalog from the rows changed since, copying the indexes instead of rebuilding them, and leaves this one as
+ * it was for the readers still holding it.
+ * </p>
+ */
+public final class Catalog implements CatalogReader {
+
+    /**
+     * The share of empty slots, left by deleted copies, past which {@link #withChanges} rebuilds the catalog
+     * rather than keep copying the holes along.
+     */
+    private static final double MAX_HOLE_RATIO = 0.25;
+
+    private final IntObjectMap<Film> films;
+    private final CopyFilm[] copies;
+    private final IntIntMap copyPositions;
+    private final IntMultimap copiesByUser;
+    private final IntMultimap copiesByFilm;
+    private final int holes;
+
+    private Catalog(IntObjectMap<Film> films, CopyFilm[] copies, IntIntMap copyPositions, IntMultimap copiesByUser,
+                    IntMultimap copiesByFilm, int holes) {
+        this.films = films;
+        this.copies = copies;
+        this.copyPositions = copyPositions;
+        this.copiesByUser = copiesByUser;
+        this.copiesByFilm = copiesByFilm;
+        this.holes = holes;
+    }
+
+    /**
+     * @return a catalog without films or copies
+     */
+    public static Catalog empty() {
+        return of(List.of(), List.of());
+    }
+
+    /**
+     * Builds a catalog. Every copy gets its film attached, if the film is in {@code films}.
+     *
+     * @param films  the films
+     * @param copies the copies
+     * @return the catalog
+     */
+    public static Catalog of(Collection<Film> films, Collection<CopyFilm> copies) {
+        var filmsById = new IntObjectMap<Film>(films.size());
+        for (var film : films) {
+            filmsById.put(film.getId(), film);
+        }
+        var sorted = copies.toArray(new CopyFilm[0]);
+        for (var copy : sorted) {
+            copy.setFilm(filmsById.get(copy.getFilmId()));
+        }
+        return index(filmsById, sorted);
+    }
+
+    /**
+     * Derives a catalog with the given rows changed, leaving this one unchanged. The indexes are copied and
+     * patched, which costs a few array copies rather than a rebuild; a copy whose film changed is replaced by
+     * a new object pointing at the new film, so the copies of this catalog keep their film.
+     * <p>
+     * Copies are expected to be added with increasing IDs, as an auto-increment key gives them, so they can be
+     * appended in order. The catalog is rebuilt instead when a new copy has a lower ID than the last one, or
+     * when deletions have left more than a quarter of the copy slots empty.
+     * </p>
+     *
+     * @param changedFilms   the films added or updated
+     * @param deletedFilmIds the IDs of the films deleted
+     * @param changedCopies  the copies added or updated; they become part of the catalog
+     * @param deletedCopyIds the IDs of the copies deleted
+     * @return the changed catalog
+     */
+    public Catalog withChanges(Collection<Film> changedFilms, int[] deletedFilmIds,
+                               Collection<CopyFilm> changedCopies, int[] deletedCopyIds) {
+        var newFilms = films.copy();
+        for (int id : deletedFilmIds) {
+            newFilms.remove(id);
+        }
+        for (var film : changedFilms) {
+            newFilms.put(film.getId(), film);
+        }
+        int lastId = lastCopyId();
+        int added = 0;
+        for (var copy : changedCopies) {
+            copy.setFilm(newFilms.get(copy.getFilmId()));
+            if (!copyPositions.containsKey(copy.getId())) {
+                if (copy.getId() <= lastId) {
+                    return rebuild(newFilms, changedCopies, deletedCopyIds);
+                }
+                added++;
+            }
+        }
+        if (holes + deletedCopyIds.length > (copies.length + added) * MAX_HOLE_RATIO) {
+            return rebuild(newFilms, changedCopies, deletedCopyIds);
+        }
+
+        var newCopies = Arrays.copyOf(copies, copies.length + added);
+        var positions = copyPositions.copy();
+        var byUser = copiesByUser.copy();
+        var byFilm = copiesByFilm.copy();
+        int newHoles = holes;
+        for (int id : deletedCopyIds) {
+            int position = positions.remove(id, -1);
+            if (position >= 0) {
+                var copy = newCopies[position];
+                byUser.remove(copy.getUserId(), position);
+                byFilm.remove(copy.getFilmId(), position);
+                newCopies[position] = null;
+                newHoles++;
+            }
+        }
+        // The copies of a changed film still point at its old version
+        for (var film : changedFilms) {
+            copiesByFilm.forEach(film.getId(), position -> {
+                var copy = newCopies[position];
+                if (copy != null && copy.getFilm() != film) {
+                    newCopies[position] = withFilm(copy, film);
+                }
+            });
+        }
+        var sorted = new ArrayList<>(changedCopies);
+        sorted.sort(Comparator.comparingInt(CopyFilm::getId));
+        int next = copies.length;
+        for (var copy : sorted) {
+            int position = positions.get(copy.getId(), -1);
+            if (position < 0) {
+                position = next++;
+                positions.put(copy.getId(), position);
+            } else {
+                var old = newCopies[position];
+                byUser.remove(old.getUserId(), position);
+                byFilm.remove(old.getFilmId(), position);
+            }
+            newCopies[position] = copy;
+            byUser.put(copy.getUserId(), position);
+            byFilm.put(copy.getFilmId(), position);
+        }
+        return new Catalog(newFilms, newCopies, positions, byUser, byFilm, newHoles);
+    }
+
+    /**
+     * Indexes copies whose film is attached. Copies are kept in ID order and grouped by position, so a group
+     * lists its copies in ID order.
+     */
+    private static Catalog index(IntObjectMap<Film> filmsById, CopyFilm[] copies) {
+        Arrays.sort(copies, Comparator.comparingInt(CopyFilm::getId));
+        var positions = new IntIntMap(copies.length);
+        var byUser = new IntMultimap(Math.max(16, copies.length / 16), copies.length);
+        var byFilm = new IntMultimap(filmsById.size(), copies.length);
+        for (int i = 0; i < copies.length; i++) {
+            var copy = copies[i];
+            positions.put(copy.getId(), i);
+            byUser.put(copy.getUserId(), i);
+            byFilm.put(copy.getFilmId(), i);
+        }
+        byUser.compact();
+        byFilm.compact();
+        return new Catalog(filmsById, copies, positions, byUser, byFilm, 0);
+    }
+
+    /**
+     * Builds a catalog from scratch out of this one and the changes, which {@link #withChanges} has already
+     * applied to the films and attached to the changed copies.
+     */
+    private Catalog rebuild(IntObjectMap<Film> newFilms, Collection<CopyFilm> changedCopies, int[] deletedCopyIds) {
+        var replaced = new IntIntMap(changedCopies.size() + deletedCopyIds.length);
+        for (int id : deletedCopyIds) {
+            replaced.put(id, 1);
+        }
+        for (var copy : changedCopies) {
+            replaced.put(copy.getId(), 1);
+        }
+        var all = new ArrayList<CopyFilm>(copies.length - holes + changedCopies.size());
+        for (var copy : copies) {
+            if (copy != null && !replaced.containsKey(copy.getId())) {
+                var film = newFilms.get(copy.getFilmId());
+                all.add(copy.getFilm() == film ? copy : withFilm(copy, film));
+            }
+        }
+        all.addAll(changedCopies);
+        return index(newFilms, all.toArray(new CopyFilm[0]));
+    }
+
+    private int lastCopyId() {
+        for (int i = copies.length - 1; i >= 0; i--) {
+            if (copies[i] != null) {
+                return copies[i].getId();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns a new copy with the same columns as {@code copy} and the given film.
+     */
+    private static CopyFilm withFilm(CopyFilm copy, Film film) {
+        var changed = new CopyFilm();
+        changed.setId(copy.getId());
+        changed.setCondition(copy.getCondition());
+        changed.setSupport(copy.getSupport());
+        changed.setFilmId(copy.getFilmId());
+        changed.setUserId(copy.getUserId());
+        changed.setVersion(copy.getVersion());
+        changed.setUser(copy.getUser());
+        changed.setFilm(film);
+        return changed;
+    }
+
+    /**
+     * @param id the ID of a film
+     * @return the film, or {@code null} if there is none with that ID
+     */
+    @Override
+    public Film getFilm(int id) {
+        return films.get(id);
+    }
+
+    /**
+     * @param id the ID of a copy
+     * @return the copy with its film, or {@code null} if there is none with that ID
+     */
+    @Override
+    public CopyFilm getCopy(int id) {
+        int position = copyPositions.get(id, -1);
+        return position < 0 ? null : copies[position];
+    }
+
+    /**
+     * @param userId the ID of a user
+     * @return the copies owned by the user, with their film, ordered by copy ID
+     */
+    @Override
+    public List<CopyFilm> getCopiesOfUser(int userId) {
+        return copiesAt(copiesByUser, userId);
+    }
+
+    /**
+     * Returns one page of a user's copies, for keyset pagination.
+     *
+     * @param userId  the ID of a user
+     * @param afterId the ID of the last copy of the previous page, or 0 for the first page
+     * @param limit   the maximum number of copies to return
+     * @return the next copies owned by the user whose ID is greater than {@code afterId}, with their film,
+     * ordered by copy ID
+     */
+    @Override
+    public List<CopyFilm> getCopiesOfUserAfter(int userId, int afterId, int limit) {
+        var positions = copiesByUser.get(userId);
+        Arrays.sort(positions);
+        int low = 0;
+        int high = positions.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (copies[positions[mid]].getId() <= afterId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int end = (int) Math.min(positions.length, (long) low + limit);
+        var result = new ArrayList<CopyFilm>(end - low);
+        for (int i = low; i < end; i++) {
+            result.add(copies[positions[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * @param userId the ID of a user
+     * @return the number of copies owned by the user
+     */
+    @Override
+    public int countCopiesOfUser(int userId) {
+        return copiesByUser.count(userId);
+    }
+
+    /**
+     * @param filmId the ID of a film
+     * @return the copies of the film, ordered by copy ID
+     */
+    @Override
+    public List<CopyFilm> getCopiesOfFilm(int filmId) {
+        return copiesAt(copiesByFilm, filmId);
+    }
+
+    /**
+     * @return the number of films
+     */
+    @Override
+    public int getFilmCount() {
+        return films.size();
+    }
+
+    /**
+     * @return the number of copies
+     */
+    @Override
+    public int getCopyCount() {
+        return copies.length - holes;
+    }
+
+    /**
+     * Passes every film to an action, in no particular order.
+     *
+     * @param action the action
+     */
+    void forEachFilm(Consumer<Film> action) {
+        films.forEach((id, film) -> action.accept(film));
+    }
+
+    /**
+     * Passes every copy to an action, in ID order.
+     *
+     * @param action the action
+     */
+    void forEachCopy(Consumer<CopyFilm> action) {
+        for (var copy : copies) {
+            if (copy != null) {
+                action.accept(copy);
+            }
+        }
+    }
+
+    private List<CopyFilm> copiesAt(IntMultimap groups, int key) {
+        // Positions follow copy IDs; a group is only out of order once withChanges has moved copies into it
+        var positions = groups.get(key);
+        Arrays.sort(positions);
+        var result = new ArrayList<CopyFilm>(positions.length);
+        for (int position : positions) {
+            result.add(copies[position]);
+        }
+        return result;
+    }
+}
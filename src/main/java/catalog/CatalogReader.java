@@ -0,0 +1,67 @@
+package catalog;
+
+import model.CopyFilm;
+import model.Film;
+
+import java.util.List;
+
+/**
+ * The {@code CatalogReader} interface is the read side of a catalog of films and copies, served either by a
+ * {@link Catalog} held in memory or by a {@link CatalogSnapshot} mapped from a file.
+ * <p>
+ * The films and copies returned must be treated as read-only.
+ * </p>
+ */
+public interface CatalogReader {
+
+    /**
+     * @param id the ID of a film
+     * @return the film, or {@code null} if there is none with that ID
+     */
+    Film getFilm(int id);
+
+    /**
+     * @param id the ID of a copy
+     * @return the copy with its film, or {@code null} if there is none with that ID
+     */
+    CopyFilm getCopy(int id);
+
+    /**
+     * @param userId the ID of a user
+     * @return the copies owned by the user, with their film, ordered by copy ID
+     */
+    List<CopyFilm> getCopiesOfUser(int userId);
+
+    /**
+     * Returns one page of a user's copies, for keyset pagination.
+     *
+     * @param userId  the ID of a user
+     * @param afterId the ID of the last copy of the previous page, or 0 for the first page
+     * @param limit   the maximum number of copies to return
+     * @return the next copies owned by the user whose ID is greater than {@code afterId}, with their film,
+     * ordered by copy ID
+     */
+    List<CopyFilm> getCopiesOfUserAfter(int userId, int afterId, int limit);
+
+    /**
+     * @param userId the ID of a user
+     * @return the number of copies owned by the user
+     */
+    int countCopiesOfUser(int userId);
+
+    /**
+     * @param filmId the ID of a film
+     * @return the copies of the film, ordered by copy ID
+     */
+    List<CopyFilm> getCopiesOfFilm(int filmId);
+
+    /**
+     * @return the number of films
+     */
+    int getFilmCount();
+
+    /**
+     * @return the number of copies
+     */
+    int getCopyCount();
+}
@@ -0,0 +1,334 @@
+package catalog;
+
+import dao.CatalogChangeDAO;
+import dao.CatalogChangeFeed;
+import dao.CopyFilmDAO;
+import dao.FilmDAO;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * The {@code CatalogRefresher} class keeps a {@link Catalog} of the {@code film} and {@code copy} tables up to
+ * date, so the views read films and copies from memory instead of querying the database.
+ * <p>
+ * The catalog is loaded in full once, on first use. After that a background thread polls the change log of
+ * {@link CatalogChangeDAO} and, when rows changed, reads only those rows and publishes a new catalog derived
+ * from the current one with {@link Catalog#withChanges}. Publishing is a single volatile write, so readers
+ * never lock: {@link #get()} returns whichever catalog is current, and a reader keeps a consistent catalog for
+ * as long as it holds it.
+ * </p>
+ * <p>
+ * The log is read through a {@link CatalogChangeFeed}, so a change committed after a later one is still applied
+ * once it shows up, within {@code films.catalog.gapMillis}. A poll that finds no new change costs one query of the
+ * latest sequence number.
+ * </p>
+ * <p>
+ * Changes are kept in the log for {@code films.catalog.retentionHours} (24 by default); a refresher that has
+ * not caught up for longer than that reloads everything. The polling period is
+ * {@code films.catalog.refreshMillis} (2000 by default).
+ * </p>
+ * <p>
+ * A process that changes a row and shows the result right away, as the views do after a deletion, calls
+ * {@link #refresh()} rather than wait for the next poll.
+ * </p>
+ * The catalog is also saved to a {@link CatalogSnapshot} file, {@code films.catalog.snapshot}
+ * ({@code ~/.films/catalog.snapshot} by default, empty to disable): after it is loaded, and then every
+ * {@code films.catalog.snapshotMinutes} (10 by default) if it changed. {@link #openSnapshot()} maps the file left
+ * by the previous run, so {@link #read()} can serve it while the catalog loads, and the load itself decodes the
+ * snapshot and applies the changes logged since it was written instead of reading both tables, unless the snapshot
+ * is older than the retention period or was written against another database.
+ * <p>
+ * The data source is only resolved when the catalog is first loaded, on the refresher's thread unless
+ * {@link #get()} needs it sooner, so creating the refresher, mapping the snapshot and {@link #start()} do not wait
+ * for the database to be up.
+ * </p>
+ */
+public class CatalogRefresher implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(CatalogRefresher.class.getName());
+
+    private static final long REFRESH_MILLIS = Long.getLong("films.catalog.refreshMillis", 2000);
+    private static final Duration RETENTION = Duration.ofHours(Long.getLong("films.catalog.retentionHours", 24));
+    private static final long SNAPSHOT_MINUTES = Long.getLong("films.catalog.snapshotMinutes", 10);
+
+    /**
+     * The DAOs the catalog is read through, created on first use.
+     */
+    private record Sources(FilmDAO films, CopyFilmDAO copies, CatalogChangeDAO changes, CatalogChangeFeed feed) {
+    }
+
+    private final Supplier<DataSource> dataSource;
+    private final Path snapshotFile;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile Sources sources;
+    private volatile Catalog current;
+    /** The snapshot left by the previous run, until {@link #current} is loaded. */
+    private volatile CatalogSnapshot snapshot;
+    /** Whether {@link #openSnapshot()} has run. Guarded by {@code this}. */
+    private boolean snapshotOpened;
+    /** The sequence number of the last change saved to the snapshot file, or -1. Written by one thread at a time. */
+    private volatile long savedSeq = -1;
+    /** The horizon of the change feed when {@link #current} was last brought up to date. Guarded by {@code this}. */
+    private long lastSeq;
+    /** When {@link #current} was last brought up to date, from {@link System#nanoTime()}. Guarded by {@code this}. */
+    private long lastRefresh;
+
+    /**
+     * Creates a refresher. Nothing is loaded until {@link #get()} or {@link #start()} is called.
+     *
+     * @param dataSource   returns the data source of the films, copies and change log, called once, when the
+     *                     catalog is first loaded; it may wait for the database to be up
+     * @param snapshotFile the file the catalog is saved to and read from at startup, or {@code null} for none
+     */
+    public CatalogRefresher(Supplier<DataSource> dataSource, Path snapshotFile) {
+        this.dataSource = dataSource;
+        this.snapshotFile = snapshotFile;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            var t = new Thread(r, "catalog-refresher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * @return the snapshot file given by {@code films.catalog.snapshot}, or {@code null} if it is set empty
+     */
+    public static Path snapshotFileFromSystemProperties() {
+        var file = System.getProperty("films.catalog.snapshot",
+                Path.of(System.getProperty("user.home"), ".films", "catalog.snapshot").toString());
+        return file.isBlank() ? null : Path.of(file);
+    }
+
+    /**
+     * Loads the catalog in the background, mapping the snapshot file first if {@link #openSnapshot()} was not
+     * called, then starts polling the change log, pruning the changes older than the retention period once an
+     * hour and saving the snapshot when it is due. Returns at once.
+     */
+    public void start() {
+        openSnapshot();
+        scheduler.execute(this::refreshQuietly);
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, REFRESH_MILLIS, REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::pruneQuietly, 0, 1, TimeUnit.HOURS);
+        if (snapshotFile != null) {
+            scheduler.scheduleWithFixedDelay(this::saveSnapshotQuietly, SNAPSHOT_MINUTES, SNAPSHOT_MINUTES,
+                    TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Returns the current catalog, loading it from the database on first use. Once loaded, this never touches
+     * the database or takes a lock.
+     *
+     * @return the current catalog
+     */
+    public Catalog get() {
+        var catalog = current;
+        if (catalog == null) {
+            synchronized (this) {
+                if (current == null) {
+                    reload();
+                }
+                catalog = current;
+            }
+        }
+        return catalog;
+    }
+
+    /**
+     * Returns the current catalog if it is loaded, or else the snapshot mapped by {@link #openSnapshot()} while the
+     * catalog loads, which may miss the latest changes. Loads the catalog on the calling thread only if there is
+     * neither.
+     *
+     * @return the catalog to read from
+     */
+    public CatalogReader read() {
+        CatalogReader reader = current;
+        if (reader == null) {
+            reader = snapshot;
+        }
+        return reader != null ? reader : get();
+    }
+
+    /**
+     * Stops polling and saves the snapshot if the catalog changed since it was last saved. The current catalog
+     * can still be read.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        saveSnapshotQuietly();
+    }
+
+    /**
+     * Brings the catalog up to date: loads it if it never was, reloads it if the changes it misses may have been
+     * pruned, and otherwise applies the changes logged since the last refresh. Runs on the calling thread and
+     * returns once the new catalog is published.
+     */
+    public synchronized void refresh() {
+        if (current == null || System.nanoTime() - lastRefresh > RETENTION.toNanos()) {
+            reload();
+            return;
+        }
+        var delta = sources().feed().poll();
+        if (!delta.isEmpty()) {
+            current = current.withChanges(delta.films(), delta.deletedFilmIds(), delta.copies(),
+                    delta.deletedCopyIds());
+        }
+        lastSeq = delta.upToSeq();
+        lastRefresh = System.nanoTime();
+    }
+
+    /**
+     * Loads the whole catalog, from the snapshot and the changes logged since if the snapshot can be trusted,
+     * from the tables otherwise, then saves the snapshot. The change feed is started before the tables are read,
+     * so the changes committed while they are read are applied again by the next refresh rather than missed.
+     */
+    private void reload() {
+        long start = System.nanoTime();
+        var from = sources();
+        long seq = from.changes().getLatestSeq();
+        var saved = usableSnapshot(seq);
+        Catalog catalog;
+        if (saved != null) {
+            current = saved.toCatalog();
+            lastSeq = saved.getLastSeq();
+            from.feed().startAt(lastSeq);
+            savedSeq = lastSeq;
+            lastRefresh = System.nanoTime();
+            refresh();
+            catalog = current;
+        } else {
+            long horizon = from.feed().startFromNow();
+            try (var filmStream = from.films().streamAll();
+                 var copyStream = from.copies().streamAll()) {
+                catalog = Catalog.of(filmStream.collect(Collectors.toList()),
+                        copyStream.collect(Collectors.toList()));
+            }
+            current = catalog;
+            lastSeq = horizon;
+            lastRefresh = System.nanoTime();
+        }
+        snapshot = null;
+        if (snapshotFile != null && !scheduler.isShutdown()) {
+            scheduler.execute(this::saveSnapshotQuietly);
+        }
+        LOG.fine(() -> String.format("Loaded %d films and %d copies from %s in %d ms", catalog.getFilmCount(),
+                catalog.getCopyCount(), saved != null ? "the snapshot" : "the database",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+
+    /**
+     * Maps the snapshot file if there is one, so {@link #read()} serves it until the catalog is loaded. This
+     * does not touch the database, so it can run while the database starts. A file that cannot be read is
+     * ignored, and replaced once the catalog is loaded. Does nothing after the first call, or once the catalog is
+     * loaded.
+     */
+    public synchronized void openSnapshot() {
+        if (snapshotOpened || current != null) {
+            return;
+        }
+        snapshotOpened = true;
+        if (snapshotFile == null || !Files.exists(snapshotFile)) {
+            return;
+        }
+        try {
+            snapshot = CatalogSnapshot.open(snapshotFile);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Ignoring the catalog snapshot " + snapshotFile, e);
+        }
+    }
+
+    /**
+     * Returns the DAOs, resolving the data source on first use.
+     */
+    private Sources sources() {
+        var from = sources;
+        if (from == null) {
+            synchronized (this) {
+                if (sources == null) {
+                    var ds = dataSource.get();
+                    var changes = new CatalogChangeDAO(ds);
+                    sources = new Sources(new FilmDAO(ds), new CopyFilmDAO(ds), changes,
+                            new CatalogChangeFeed(changes, true));
+                }
+                from = sources;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Returns the mapped snapshot if the change log still holds every change made since it was written, given
+     * the latest sequence number of the database.
+     */
+    private CatalogSnapshot usableSnapshot(long latestSeq) {
+        var saved = snapshot;
+        if (saved == null) {
+            return null;
+        }
+        if (saved.getLastSeq() > latestSeq) {
+            LOG.info("Ignoring the catalog snapshot, written against another database");
+            return null;
+        }
+        if (saved.getCreatedAt().isBefore(Instant.now().minus(RETENTION))) {
+            LOG.info("Ignoring the catalog snapshot, older than the change log retention");
+            return null;
+        }
+        return saved;
+    }
+
+    /**
+     * Writes the current catalog to the snapshot file, unless it has not changed since it was last written.
+     */
+    private void saveSnapshot() throws IOException {
+        Catalog catalog;
+        long seq;
+        synchronized (this) {
+            catalog = current;
+            seq = lastSeq;
+        }
+        if (snapshotFile == null || catalog == null || seq == savedSeq) {
+            return;
+        }
+        CatalogSnapshot.write(catalog, seq, snapshotFile);
+        savedSeq = seq;
+    }
+
+    private void saveSnapshotQuietly() {
+        try {
+            saveSnapshot();
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Could not save the catalog snapshot to " + snapshotFile, e);
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            // Keep serving the current catalog; the next poll tries again
+            LOG.log(Level.WARNING, "Could not refresh the catalog", e);
+        }
+    }
+
+    private void pruneQuietly() {
+        try {
+            sources().changes().prune(RETENTION);
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Could not prune the catalog change log", e);
+        }
+    }
+}
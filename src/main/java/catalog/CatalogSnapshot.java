@@ -0,0 +1,454 @@
+package catalog;
+
+import model.CopyFilm;
+import model.Film;
+import util.IntIntMap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The {@code CatalogSnapshot} class reads a catalog from a binary file mapped into memory with
+ * {@link FileChannel#map}, so a catalog saved by an earlier run can be read a few milliseconds after startup,
+ * before the database is queried. Nothing is decoded up front: each lookup binary-searches the mapped records and
+ * decodes only the films and copies it returns.
+ * <p>
+ * The file, in big-endian byte order, is made of:
+ * </p>
+ * <ul>
+ *     <li>a header of {@value #HEADER_SIZE} bytes: the magic number, the format version, a CRC-32 of the rest of
+ *     the header, a CRC-32 of the body, the sequence number of {@link dao.CatalogChangeDAO} up to which the
+ *     catalog includes every change, when the file was written, the film and copy counts and the file length;</li>
+ *     <li>the films, ordered by ID, in records of {@value #FILM_SIZE} bytes: ID, year, then title, genre,
+ *     description and director as string references;</li>
+ *     <li>the copies, ordered by user ID then ID, in records of {@value #COPY_SIZE} bytes: ID, film ID, user ID,
+ *     version, then condition and support as string references;</li>
+ *     <li>the positions of the copies ordered by ID, then ordered by film ID and ID, one {@code int} each;</li>
+ *     <li>the string heap: the UTF-8 bytes of every distinct string, which a string reference points into with
+ *     an offset from the start of the heap and a length, or an offset of -1 for {@code null}.</li>
+ * </ul>
+ * <p>
+ * {@link #open(Path)} rejects a file whose magic number, version, length or checksums do not match, so a file
+ * truncated or damaged on disk is never read as a catalog. {@link #write} writes to a temporary file and moves it
+ * over the old one, so a reader never sees a half-written file.
+ * </p>
+ * A snapshot is read-only and is read with absolute gets only, so any number of threads can share it.
+ */
+public final class CatalogSnapshot implements CatalogReader {
+
+    private static final int MAGIC = 0x46434154; // "FCAT"
+    private static final int VERSION = 2;
+    static final int HEADER_SIZE = 64;
+    static final int FILM_SIZE = 40;
+    static final int COPY_SIZE = 32;
+
+    private final ByteBuffer buffer;
+    private final long lastSeq;
+    private final Instant createdAt;
+    private final int filmCount;
+    private final int copyCount;
+    private final int copiesStart;
+    private final int byIdStart;
+    private final int byFilmStart;
+    private final int heapStart;
+
+    private CatalogSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a catalog snapshot");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported catalog snapshot version " + buffer.getInt(4));
+        }
+        if (buffer.getInt(8) != crc(buffer, 12, HEADER_SIZE)) {
+            throw new IOException("Corrupt catalog snapshot header");
+        }
+        this.lastSeq = buffer.getLong(16);
+        this.createdAt = Instant.ofEpochMilli(buffer.getLong(24));
+        this.filmCount = buffer.getInt(32);
+        this.copyCount = buffer.getInt(36);
+        long records = HEADER_SIZE + (long) filmCount * FILM_SIZE
+                + (long) copyCount * (COPY_SIZE + 2 * Integer.BYTES);
+        if (buffer.getLong(40) != buffer.capacity() || filmCount < 0 || copyCount < 0
+                || records > buffer.capacity()) {
+            throw new IOException("Truncated catalog snapshot");
+        }
+        this.copiesStart = HEADER_SIZE + filmCount * FILM_SIZE;
+        this.byIdStart = copiesStart + copyCount * COPY_SIZE;
+        this.byFilmStart = byIdStart + copyCount * Integer.BYTES;
+        this.heapStart = byFilmStart + copyCount * Integer.BYTES;
+        if (buffer.getInt(12) != crc(buffer, HEADER_SIZE, buffer.capacity())) {
+            throw new IOException("Corrupt catalog snapshot");
+        }
+    }
+
+    /**
+     * Maps a snapshot file and checks it. The file can be replaced by {@link #write} while it is mapped; the
+     * snapshot keeps reading the old content.
+     *
+     * @param file the snapshot file
+     * @return the snapshot
+     * @throws IOException if the file cannot be read, or is not a complete and intact snapshot
+     */
+    public static CatalogSnapshot open(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Catalog snapshot too large: " + channel.size() + " bytes");
+            }
+            return new CatalogSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes a catalog to a snapshot file, replacing the file if it exists.
+     *
+     * @param catalog the catalog
+     * @param lastSeq the sequence number up to which the catalog includes every change
+     * @param file    the snapshot file
+     * @throws IOException if the file cannot be written, or the catalog does not fit in a snapshot
+     */
+    public static void write(Catalog catalog, long lastSeq, Path file) throws IOException {
+        var films = new ArrayList<Film>(catalog.getFilmCount());
+        catalog.forEachFilm(films::add);
+        films.sort(Comparator.comparingInt(Film::getId));
+        var byId = new ArrayList<CopyFilm>(catalog.getCopyCount());
+        catalog.forEachCopy(byId::add);
+        // Sorting is stable, so both orders below keep copies of the same user or film in ID order
+        var byUser = byId.toArray(new CopyFilm[0]);
+        Arrays.sort(byUser, Comparator.comparingInt(CopyFilm::getUserId));
+        var byFilm = byId.toArray(new CopyFilm[0]);
+        Arrays.sort(byFilm, Comparator.comparingInt(CopyFilm::getFilmId));
+
+        var heap = new StringHeap();
+        for (var film : films) {
+            heap.add(film.getTitle());
+            heap.add(film.getGenre());
+            heap.add(film.getDescription());
+            heap.add(film.getDirector());
+        }
+        for (var copy : byUser) {
+            heap.add(copy.getCondition());
+            heap.add(copy.getSupport());
+        }
+        long heapStart = HEADER_SIZE + (long) films.size() * FILM_SIZE
+                + (long) byUser.length * (COPY_SIZE + 2 * Integer.BYTES);
+        long length = heapStart + heap.size();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Catalog too large for a snapshot: " + length + " bytes");
+        }
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        var temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (var channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            out.position(HEADER_SIZE);
+            for (var film : films) {
+                out.putInt(film.getId()).putInt(film.getYear());
+                heap.putRef(out, film.getTitle());
+                heap.putRef(out, film.getGenre());
+                heap.putRef(out, film.getDescription());
+                heap.putRef(out, film.getDirector());
+            }
+            var positions = new IntIntMap(byUser.length);
+            for (int i = 0; i < byUser.length; i++) {
+                var copy = byUser[i];
+                positions.put(copy.getId(), i);
+                out.putInt(copy.getId()).putInt(copy.getFilmId()).putInt(copy.getUserId()).putInt(copy.getVersion());
+                heap.putRef(out, copy.getCondition());
+                heap.putRef(out, copy.getSupport());
+            }
+            for (var copy : byId) {
+                out.putInt(positions.get(copy.getId(), -1));
+            }
+            for (var copy : byFilm) {
+                out.putInt(positions.get(copy.getId(), -1));
+            }
+            heap.writeTo(out);
+
+            out.putInt(0, MAGIC).putInt(4, VERSION)
+                    .putInt(12, crc(out, HEADER_SIZE, (int) length))
+                    .putLong(16, lastSeq)
+                    .putLong(24, System.currentTimeMillis())
+                    .putInt(32, films.size())
+                    .putInt(36, byUser.length)
+                    .putLong(40, length);
+            out.putInt(8, crc(out, 12, HEADER_SIZE));
+            out.force();
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * @return the sequence number up to which the snapshot includes every change
+     */
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * @return when the snapshot was written
+     */
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Decodes the whole snapshot into an in-memory catalog.
+     *
+     * @return the catalog
+     */
+    public Catalog toCatalog() {
+        var films = new ArrayList<Film>(filmCount);
+        for (int i = 0; i < filmCount; i++) {
+            films.add(film(i));
+        }
+        var copies = new ArrayList<CopyFilm>(copyCount);
+        for (int i = 0; i < copyCount; i++) {
+            copies.add(copy(i, false));
+        }
+        return Catalog.of(films, copies);
+    }
+
+    @Override
+    public Film getFilm(int id) {
+        int low = 0;
+        int high = filmCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = buffer.getInt(HEADER_SIZE + mid * FILM_SIZE);
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return film(mid);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public CopyFilm getCopy(int id) {
+        int low = 0;
+        int high = copyCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int position = buffer.getInt(byIdStart + mid * Integer.BYTES);
+            int midId = buffer.getInt(copyOffset(position));
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return copy(position, true);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<CopyFilm> getCopiesOfUser(int userId) {
+        int from = firstCopyOfUser(userId);
+        int to = firstCopyOfUser(userId + 1);
+        var result = new ArrayList<CopyFilm>(to - from);
+        for (int i = from; i < to; i++) {
+            result.add(copy(i, true));
+        }
+        return result;
+    }
+
+    @Override
+    public List<CopyFilm> getCopiesOfUserAfter(int userId, int afterId, int limit) {
+        // A user's copies are ordered by ID
+        int low = firstCopyOfUser(userId);
+        int high = firstCopyOfUser(userId + 1);
+        int to = high;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getInt(copyOffset(mid)) <= afterId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int end = (int) Math.min(to, (long) low + limit);
+        var result = new ArrayList<CopyFilm>(end - low);
+        for (int i = low; i < end; i++) {
+            result.add(copy(i, true));
+        }
+        return result;
+    }
+
+    @Override
+    public int countCopiesOfUser(int userId) {
+        return firstCopyOfUser(userId + 1) - firstCopyOfUser(userId);
+    }
+
+    @Override
+    public List<CopyFilm> getCopiesOfFilm(int filmId) {
+        int from = firstCopyOfFilm(filmId);
+        int to = firstCopyOfFilm(filmId + 1);
+        var film = getFilm(filmId);
+        var result = new ArrayList<CopyFilm>(to - from);
+        for (int i = from; i < to; i++) {
+            var copy = copy(buffer.getInt(byFilmStart + i * Integer.BYTES), false);
+            copy.setFilm(film);
+            result.add(copy);
+        }
+        return result;
+    }
+
+    @Override
+    public int getFilmCount() {
+        return filmCount;
+    }
+
+    @Override
+    public int getCopyCount() {
+        return copyCount;
+    }
+
+    /**
+     * Returns the position of the first copy whose user ID is at least {@code userId}.
+     */
+    private int firstCopyOfUser(int userId) {
+        int low = 0;
+        int high = copyCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getInt(copyOffset(mid) + 8) < userId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index, in the film order, of the first copy whose film ID is at least {@code filmId}.
+     */
+    private int firstCopyOfFilm(int filmId) {
+        int low = 0;
+        int high = copyCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int position = buffer.getInt(byFilmStart + mid * Integer.BYTES);
+            if (buffer.getInt(copyOffset(position) + 4) < filmId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int copyOffset(int position) {
+        return copiesStart + position * COPY_SIZE;
+    }
+
+    private Film film(int index) {
+        int offset = HEADER_SIZE + index * FILM_SIZE;
+        var film = new Film();
+        film.setId(buffer.getInt(offset));
+        film.setYear(buffer.getInt(offset + 4));
+        film.setTitle(string(offset + 8));
+        film.setGenre(string(offset + 16));
+        film.setDescription(string(offset + 24));
+        film.setDirector(string(offset + 32));
+        return film;
+    }
+
+    private CopyFilm copy(int position, boolean withFilm) {
+        int offset = copyOffset(position);
+        var copy = new CopyFilm();
+        copy.setId(buffer.getInt(offset));
+        copy.setFilmId(buffer.getInt(offset + 4));
+        copy.setUserId(buffer.getInt(offset + 8));
+        copy.setVersion(buffer.getInt(offset + 12));
+        copy.setCondition(string(offset + 16));
+        copy.setSupport(string(offset + 24));
+        if (withFilm) {
+            copy.setFilm(getFilm(copy.getFilmId()));
+        }
+        return copy;
+    }
+
+    /**
+     * Decodes the string a reference at {@code offset} points to.
+     */
+    private String string(int offset) {
+        int start = buffer.getInt(offset);
+        if (start < 0) {
+            return null;
+        }
+        var bytes = new byte[buffer.getInt(offset + 4)];
+        buffer.get(heapStart + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int crc(ByteBuffer buffer, int from, int to) {
+        var crc = new CRC32();
+        crc.update(buffer.slice(from, to - from));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * The distinct strings of a snapshot, each encoded once: conditions, supports and genres repeat across
+     * thousands of records.
+     */
+    private static final class StringHeap {
+        /** The offset of each string in the heap, in the high 32 bits, and its length in bytes. */
+        private final HashMap<String, Long> refs = new HashMap<>();
+        private final List<byte[]> strings = new ArrayList<>();
+        private long size;
+
+        void add(String value) {
+            if (value != null && !refs.containsKey(value)) {
+                var bytes = value.getBytes(StandardCharsets.UTF_8);
+                refs.put(value, size << 32 | bytes.length);
+                strings.add(bytes);
+                size += bytes.length;
+            }
+        }
+
+        long size() {
+            return size;
+        }
+
+        void putRef(ByteBuffer out, String value) {
+            if (value == null) {
+                out.putInt(-1).putInt(0);
+            } else {
+                long ref = refs.get(value);
+                out.putInt((int) (ref >>> 32)).putInt((int) ref);
+            }
+        }
+
+        void writeTo(ByteBuffer out) {
+            for (var bytes : strings) {
+                out.put(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package dao;
+
+import util.AsyncExecutor;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous counterpart of the {@link DAO} interface. Every operation returns immediately with a
+ * {@link CompletableFuture}, so independent lookups can be started together and combined when they complete.
+ *
+ * @param <T> the type of entity the DAO will manage
+ */
+public interface AsyncDAO<T> {
+
+    /**
+     * Retrieves all records of type T from the data source.
+     *
+     * @return a future List of all objects of type T available in the data source
+     */
+    public CompletableFuture<List<T>> getAllAsync();
+
+    /**
+     * Retrieves a specific object of type T by its ID.
+     *
+     * @param id the ID of the object to retrieve
+     * @return a future object of type T that matches the provided ID
+     */
+    public CompletableFuture<T> getByIdAsync(int id);
+
+    /**
+     * Retrieves several objects of type T by their IDs, running the lookups concurrently. This is still one
+     * query per ID; related rows that one query can join, such as the films of a user's copies, should be read
+     * with that query instead.
+     *
+     * @param ids the IDs of the objects to retrieve
+     * @return a future List of the objects, in the order of the IDs
+     */
+    public default CompletableFuture<List<T>> getByIdsAsync(Collection<Integer> ids) {
+        var lookups = ids.stream().map(this::getByIdAsync).toList();
+        return CompletableFuture.allOf(lookups.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> lookups.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * Adds a new object of type T to the data source.
+     *
+     * @param t the object to be added to the data source
+     * @return a future completed once the object has been added and has its ID
+     */
+    public CompletableFuture<Void> addAsync(T t);
+
+    /**
+     * Updates an existing object of type T in the data source.
+     *
+     * @param t the object with updated data to be saved to the data source
+     * @return a future completed once the object has been updated
+     */
+    public CompletableFuture<Void> updateAsync(T t);
+
+    /**
+     * Deletes an existing object of type T from the data source.
+     *
+     * @param t the object to be deleted from the data source
+     * @return a future completed once the object has been deleted
+     */
+    public CompletableFuture<Void> deleteAsync(T t);
+
+    /**
+     * Returns an asynchronous view of a blocking DAO. Calls run on virtual threads through the
+     * {@link AsyncExecutor}, which limits how many of them reach the database at the same time.
+     *
+     * @param dao the blocking DAO to wrap
+     * @return an AsyncDAO backed by the given DAO
+     */
+    public static <T> AsyncDAO<T> of(DAO<T> dao) {
+        return new AsyncDAO<>() {
+            @Override
+            public CompletableFuture<List<T>> getAllAsync() {
+                return AsyncExecutor.supply(dao::getAll);
+            }
+
+            @Override
+            public CompletableFuture<T> getByIdAsync(int id) {
+                return AsyncExecutor.supply(() -> dao.getById(id));
+            }
+
+            @Override
+            public CompletableFuture<Void> addAsync(T t) {
+                return AsyncExecutor.run(() -> dao.add(t));
+            }
+
+            @Override
+            public CompletableFuture<Void> updateAsync(T t) {
+                return AsyncExecutor.run(() -> dao.update(t));
+            }
+
+            @Override
+            public CompletableFuture<Void> deleteAsync(T t) {
+                return AsyncExecutor.run(() -> dao.delete(t));
+            }
+        };
+    }
+}
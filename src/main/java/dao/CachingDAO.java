@@ -0,0 +1,259 @@
+package dao;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+/**
+ * The {@code CachingDAO} class is a read-through cache that decorates any {@link DAO}.
+ * Calls to {@link #getById(int)} are answered from memory when possible and only reach the
+ * wrapped DAO on a miss. Updates and deletes made through this decorator invalidate the cached entry.
+ * <p>
+ * The cache holds at most {@code maxSize} entries and evicts the least recently used one when it is full.
+ * Entries can optionally expire after a fixed time to live. Hit, miss and eviction counts are available
+ * through {@link #getStats()}.
+ * </p>
+ * Cached objects are shared between callers, so they must be treated as read-only; changes must go through
+ * {@link #update(Object)} so the entry is invalidated. Writes made elsewhere, such as by other processes, are only
+ * seen once the entry expires or is {@link #invalidate(int) invalidated}.
+ *
+ * @param <T> the type of entity the wrapped DAO manages
+ */
+public class CachingDAO<T> implements DAO<T> {
+
+    /**
+     * A snapshot of the cache counters.
+     *
+     * @param hits        number of lookups answered from the cache
+     * @param misses      number of lookups that had to query the wrapped DAO
+     * @param evictions   number of entries removed because the cache was full
+     * @param expirations number of entries removed because their time to live had passed
+     * @param size        number of entries currently cached
+     */
+    public record CacheStats(long hits, long misses, long evictions, long expirations, int size) {
+        /**
+         * @return the fraction of lookups answered from the cache, between 0 and 1
+         */
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    /**
+     * A cached value together with the time it was loaded.
+     */
+    private record Entry<T>(T value, long loadedNanos) {
+    }
+
+    private final DAO<T> delegate;
+    private final ToIntFunction<T> idOf;
+    private final long ttlNanos;
+    private final Map<Integer, Entry<T>> entries;
+    /** Incremented on every invalidation so a load that raced with a write is not cached. */
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * Creates a cache in front of the given DAO.
+     *
+     * @param delegate the DAO that is queried on a cache miss and receives every write
+     * @param idOf     function returning the ID of an entity, used to invalidate entries on writes
+     * @param maxSize  the maximum number of cached entries
+     * @param ttl      how long an entry stays valid, or {@link Duration#ZERO} for no expiry
+     */
+    public CachingDAO(DAO<T> delegate, ToIntFunction<T> idOf, int maxSize, Duration ttl) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        this.delegate = delegate;
+        this.idOf = idOf;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry<T>> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Retrieves all records from the wrapped DAO. Full listings are not cached.
+     *
+     * @return a List of all objects of type T
+     */
+    @Override
+    public List<T> getAll() {
+        return delegate.getAll();
+    }
+
+    /**
+     * Streams all records from the wrapped DAO. Streamed rows are not cached.
+     *
+     * @param fetchSize the number of rows fetched per round trip
+     * @return a Stream of all objects of type T that must be closed after use
+     */
+    @Override
+    public Stream<T> streamAll(int fetchSize) {
+        return delegate.streamAll(fetchSize);
+    }
+
+    /**
+     * Retrieves an object by its ID, from the cache if it holds a valid entry and from the wrapped DAO otherwise.
+     * Only objects found are cached: the placeholder returned for a missing ID, whose ID is not the one asked
+     * for, is returned without being cached, so a later lookup finds the object once it is added.
+     *
+     * @param id the ID of the object to retrieve
+     * @return the object of type T that matches the provided ID
+     */
+    @Override
+    public T getById(int id) {
+        long loadGeneration;
+        synchronized (this) {
+            var entry = entries.get(id);
+            if (entry != null) {
+                if (ttlNanos <= 0 || System.nanoTime() - entry.loadedNanos() < ttlNanos) {
+                    hits.increment();
+                    return entry.value();
+                }
+                entries.remove(id);
+                expirations.increment();
+            }
+            misses.increment();
+            loadGeneration = generation;
+        }
+        // Load outside the lock so a slow query does not block hits on other keys
+        var value = delegate.getById(id);
+        if (value == null || idOf.applyAsInt(value) != id) {
+            // Not found: the DAOs return an empty placeholder, which must not hide the row once it is added
+            return value;
+        }
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                entries.put(id, new Entry<>(value, System.nanoTime()));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Adds a new object through the wrapped DAO.
+     *
+     * @param t the object to be added to the data source
+     */
+    @Override
+    public void add(T t) {
+        delegate.add(t);
+    }
+
+    /**
+     * Updates an object through the wrapped DAO and invalidates its cached entry.
+     *
+     * @param t the object with updated data to be saved to the data source
+     */
+    @Override
+    public void update(T t) {
+        try {
+            delegate.update(t);
+        } finally {
+            invalidate(idOf.applyAsInt(t));
+        }
+    }
+
+    /**
+     * Deletes an object through the wrapped DAO and invalidates its cached entry.
+     *
+     * @param t the object to be deleted from the data source
+     */
+    @Override
+    public void delete(T t) {
+        try {
+            delegate.delete(t);
+        } finally {
+            invalidate(idOf.applyAsInt(t));
+        }
+    }
+
+    /**
+     * Adds several objects through the wrapped DAO.
+     *
+     * @param items the objects to be added to the data source
+     */
+    @Override
+    public void addAll(Collection<T> items) {
+        delegate.addAll(items);
+    }
+
+    /**
+     * Updates several objects through the wrapped DAO and invalidates their cached entries.
+     *
+     * @param items the objects with updated data to be saved to the data source
+     */
+    @Override
+    public void updateAll(Collection<T> items) {
+        try {
+            delegate.updateAll(items);
+        } finally {
+            invalidateAll(items);
+        }
+    }
+
+    /**
+     * Deletes several objects through the wrapped DAO and invalidates their cached entries.
+     *
+     * @param items the objects to be deleted from the data source
+     */
+    @Override
+    public void deleteAll(Collection<T> items) {
+        try {
+            delegate.deleteAll(items);
+        } finally {
+            invalidateAll(items);
+        }
+    }
+
+    private synchronized void invalidateAll(Collection<T> items) {
+        generation++;
+        for (var item : items) {
+            entries.remove(idOf.applyAsInt(item));
+        }
+    }
+
+    /**
+     * Removes the cached entry for the given ID, if any.
+     *
+     * @param id the ID of the entry to remove
+     */
+    public synchronized void invalidate(int id) {
+        generation++;
+        entries.remove(id);
+    }
+
+    /**
+     * Removes every cached entry.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    /**
+     * @return a snapshot of the hit, miss and eviction counters
+     */
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), entries.size());
+    }
+}
@@ -0,0 +1,261 @@
+package dao;
+
+import model.CopyFilm;
+import model.Film;
+import util.IntIntMap;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * The {@code CatalogChangeDAO} class reads and writes the {@code catalog_change} log, which lists the rows of
+ * {@code film} and {@code copy} changed through {@link FilmDAO} and {@link CopyFilmDAO}, in the order of an
+ * increasing sequence number.
+ * <p>
+ * The DAOs log every row they insert, update or delete in the same transaction as the change itself, so a row
+ * is never changed without being logged. A reader that remembers the last sequence number it has seen can
+ * then ask for the rows changed since: {@link #getChanges} re-reads them by ID, so several changes to one row
+ * cost a single read, and the rows that no longer exist are reported as deleted.
+ * </p>
+ * <p>
+ * Sequence numbers come from the auto-increment key of the log, so they are taken when a change is logged but
+ * become visible when its transaction commits: a reader can see a number while a lower one, taken by a transaction
+ * still open, is missing, and rolled back transactions leave numbers that never show up. The log is therefore read
+ * through a {@link CatalogChangeFeed}, which only moves past a missing number once it is old enough to be given
+ * up on. The DAOs log their changes as the last statement of the transaction, which keeps these gaps short.
+ * </p>
+ * Rows written with plain SQL, bypassing the DAOs, are not logged.
+ */
+public class CatalogChangeDAO {
+
+    /** The table name logged for films. */
+    static final String FILM = "film";
+    /** The table name logged for copies. */
+    static final String COPY = "copy";
+
+    static final String INSERT_SQL = "insert into catalog_change(table_name, row_id) values (?, ?)";
+    static final String LATEST_SEQ_SQL = "select coalesce(max(seq), 0) from catalog_change";
+    static final String SEQS_SQL = "select seq from catalog_change where seq > ? and seq <= ? order by seq";
+    static final String RECENT_SEQ_SQL = "select min(seq) from catalog_change where changed_at >= ?";
+    static final String CHANGED_IDS_SQL =
+            "select distinct row_id from catalog_change where table_name=? and seq > ? and seq <= ?";
+    static final String CHANGED_FILMS_SQL = "select * from film where id in"
+            + " (select row_id from catalog_change where table_name='film' and seq > ? and seq <= ?)";
+    static final String CHANGED_COPIES_SQL = "select * from copy where id in"
+            + " (select row_id from catalog_change where table_name='copy' and seq > ? and seq <= ?)";
+    static final String PRUNE_SQL = "delete from catalog_change where changed_at < ?";
+
+    /**
+     * The rows changed between two sequence numbers.
+     *
+     * @param upToSeq        the sequence number up to which every change is included
+     * @param films          the films inserted or updated, as they are now
+     * @param deletedFilmIds the IDs of the films deleted
+     * @param copies         the copies inserted or updated, as they are now
+     * @param deletedCopyIds the IDs of the copies deleted
+     */
+    public record Changes(long upToSeq, List<Film> films, int[] deletedFilmIds, List<CopyFilm> copies,
+                          int[] deletedCopyIds) {
+
+        /**
+         * @return whether no row changed
+         */
+        public boolean isEmpty() {
+            return films.isEmpty() && deletedFilmIds.length == 0 && copies.isEmpty() && deletedCopyIds.length == 0;
+        }
+    }
+
+    private final DataSource ds;
+
+    /**
+     * Creates a new CatalogChangeDAO that uses the provided data source.
+     *
+     * @param ds the data source to borrow connections from
+     */
+    public CatalogChangeDAO(DataSource ds) {
+        this.ds = ds;
+    }
+
+    /**
+     * @return the sequence number of the latest change, or 0 if none was ever logged
+     */
+    public long getLatestSeq() {
+        try (var con = ds.getConnection();
+             var st = con.createStatement();
+             var rs = st.executeQuery(LATEST_SEQ_SQL)) {
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the sequence numbers logged in a range, as far as they are visible.
+     *
+     * @param afterSeq the sequence number before the range
+     * @param upToSeq  the last sequence number of the range
+     * @return the visible sequence numbers in the range, in increasing order
+     */
+    public long[] getSeqs(long afterSeq, long upToSeq) {
+        try (var con = ds.getConnection();
+             var ps = con.prepareStatement(SEQS_SQL)) {
+            ps.setLong(1, afterSeq);
+            ps.setLong(2, upToSeq);
+            try (var rs = ps.executeQuery()) {
+                var seqs = new long[16];
+                int count = 0;
+                while (rs.next()) {
+                    if (count == seqs.length) {
+                        seqs = Arrays.copyOf(seqs, count * 2);
+                    }
+                    seqs[count++] = rs.getLong(1);
+                }
+                return Arrays.copyOf(seqs, count);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the lowest sequence number logged at or after a point in time.
+     *
+     * @param since the point in time
+     * @return that sequence number, or -1 if nothing was logged since
+     */
+    public long getFirstSeqSince(Instant since) {
+        try (var con = ds.getConnection();
+             var ps = con.prepareStatement(RECENT_SEQ_SQL)) {
+            ps.setTimestamp(1, Timestamp.from(since));
+            try (var rs = ps.executeQuery()) {
+                rs.next();
+                long seq = rs.getLong(1);
+                return rs.wasNull() ? -1 : seq;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads the rows changed in a range of sequence numbers. The log and the rows are read in one transaction,
+     * so on MySQL they come from the same consistent snapshot.
+     *
+     * @param afterSeq   the sequence number before the range
+     * @param upToSeq    the last sequence number of the range
+     * @param withCopies whether to read the copies changed, or only the films
+     * @return the changed rows, with {@code upToSeq} as given
+     */
+    public Changes getChanges(long afterSeq, long upToSeq, boolean withCopies) {
+        if (upToSeq <= afterSeq) {
+            return new Changes(afterSeq, List.of(), new int[0], List.of(), new int[0]);
+        }
+        return JdbcSupport.inTransaction(ds, con -> {
+            var films = readRows(con, CHANGED_FILMS_SQL, RowMappers.FILM, afterSeq, upToSeq);
+            var filmIds = deletedIds(con, FILM, afterSeq, upToSeq, films, Film::getId);
+            if (!withCopies) {
+                return new Changes(upToSeq, films, filmIds, List.of(), new int[0]);
+            }
+            var copies = readRows(con, CHANGED_COPIES_SQL, RowMappers.COPY_FILM, afterSeq, upToSeq);
+            return new Changes(upToSeq, films, filmIds, copies,
+                    deletedIds(con, COPY, afterSeq, upToSeq, copies, CopyFilm::getId));
+        });
+    }
+
+    /**
+     * Deletes the changes older than the retention period. A reader that has not caught up within that period
+     * must reload everything.
+     *
+     * @param retention how long changes are kept
+     * @return the number of changes deleted
+     */
+    public int prune(Duration retention) {
+        try (var con = ds.getConnection();
+             var ps = con.prepareStatement(PRUNE_SQL)) {
+            ps.setTimestamp(1, Timestamp.from(Instant.now().minus(retention)));
+            return ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Logs a change to one row, on the connection and in the transaction of the change. It should be the last
+     * statement before the commit, so the sequence number stays invisible for as short a time as possible.
+     *
+     * @param con   the connection the row was changed on
+     * @param table {@link #FILM} or {@link #COPY}
+     * @param id    the ID of the row
+     * @throws SQLException if the change cannot be logged
+     */
+    static void record(Connection con, String table, int id) throws SQLException {
+        try (var ps = con.prepareStatement(INSERT_SQL)) {
+            ps.setString(1, table);
+            ps.setInt(2, id);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Logs a change to several rows with JDBC batching, on the connection and in the transaction of the change.
+     * It should be the last statement before the commit, as for {@link #record}.
+     *
+     * @param con   the connection the rows were changed on
+     * @param table {@link #FILM} or {@link #COPY}
+     * @param items the changed entities
+     * @param idOf  reads the ID of an entity
+     * @throws SQLException if the changes cannot be logged
+     */
+    static <T> void recordAll(Connection con, String table, Collection<T> items, ToIntFunction<T> idOf)
+            throws SQLException {
+        JdbcSupport.executeBatch(con, INSERT_SQL, items, (ps, item) -> {
+            ps.setString(1, table);
+            ps.setInt(2, idOf.applyAsInt(item));
+        }, null);
+    }
+
+    private static <T> List<T> readRows(Connection con, String sql, RowMapper<T> mapper, long afterSeq,
+                                        long upToSeq) throws SQLException {
+        try (var ps = con.prepareStatement(sql)) {
+            ps.setLong(1, afterSeq);
+            ps.setLong(2, upToSeq);
+            return mapper.mapAll(ps.executeQuery());
+        }
+    }
+
+    /**
+     * Returns the IDs logged in the range that are missing from the rows read, which are the deleted ones.
+     */
+    private static <T> int[] deletedIds(Connection con, String table, long afterSeq, long upToSeq, List<T> found,
+                                        ToIntFunction<T> idOf) throws SQLException {
+        var present = new IntIntMap(found.size());
+        for (var row : found) {
+            present.put(idOf.applyAsInt(row), 1);
+        }
+        var deleted = new ArrayList<Integer>();
+        try (var ps = con.prepareStatement(CHANGED_IDS_SQL)) {
+            ps.setString(1, table);
+            ps.setLong(2, afterSeq);
+            ps.setLong(3, upToSeq);
+            try (var rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    if (!present.containsKey(id)) {
+                        deleted.add(id);
+                    }
+                }
+            }
+        }
+        return deleted.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
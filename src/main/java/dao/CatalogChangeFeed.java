@@ -0,0 +1,155 @@
+package dao;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * The {@code CatalogChangeFeed} class reads the {@code catalog_change} log of {@link CatalogChangeDAO} on behalf of
+ * one reader, such as the in-memory catalog, without missing a change committed late.
+ * <p>
+ * Sequence numbers become visible in commit order, not in the order they are taken, so the feed keeps a horizon:
+ * the sequence number up to which every change has been read or given up on. Each {@link #poll()} reads the
+ * changes above the horizon up to the latest one, and moves the horizon past the numbers now visible. A missing
+ * number stops it until it shows up, or until it has been missing for {@code films.catalog.gapMillis} (30000 by
+ * default), counted from the first poll that saw a later number. A number missing for that long was taken by a
+ * transaction that rolled back, or that ran for longer than that, whose changes are then missed.
+ * </p>
+ * <p>
+ * While a number is missing, a poll that sees new changes reads again every change above the horizon; applying a
+ * change twice is harmless, since rows are read as they are now. A poll that finds no change above the horizon
+ * costs one query of the latest sequence number, and a poll that finds only the same missing numbers adds one
+ * query of the visible ones.
+ * </p>
+ */
+public class CatalogChangeFeed {
+
+    private static final Logger LOG = Logger.getLogger(CatalogChangeFeed.class.getName());
+
+    /** How long a missing sequence number is waited for. */
+    public static final Duration GAP_TIMEOUT = Duration.ofMillis(Long.getLong("films.catalog.gapMillis", 30_000));
+
+    /**
+     * A poll of the log.
+     *
+     * @param at        when it ran, from {@link System#nanoTime()}
+     * @param latestSeq the latest sequence number it saw
+     */
+    private record Poll(long at, long latestSeq) {
+    }
+
+    private final CatalogChangeDAO changes;
+    private final boolean withCopies;
+    /** The polls that saw sequence numbers above the horizon, oldest first, to date the missing ones. */
+    private final ArrayDeque<Poll> polls = new ArrayDeque<>();
+    private long horizon;
+    /** The latest sequence number of the last poll, and how many numbers above the horizon were visible then. */
+    private long seenLatest = -1;
+    private int seenAbove;
+
+    /**
+     * Creates a feed starting at sequence number 0.
+     *
+     * @param changes    the change log
+     * @param withCopies whether to read the copies changed, or only the films
+     */
+    public CatalogChangeFeed(CatalogChangeDAO changes, boolean withCopies) {
+        this.changes = changes;
+        this.withCopies = withCopies;
+    }
+
+    /**
+     * Starts the feed after a sequence number, such as the one saved with a copy of the rows. The changes above it
+     * are read by the next poll.
+     *
+     * @param seq the horizon to start from
+     */
+    public synchronized void startAt(long seq) {
+        horizon = seq;
+        polls.clear();
+        seenLatest = -1;
+    }
+
+    /**
+     * Starts the feed before the tables are read in full. The horizon is put before the changes logged in the
+     * last {@code films.catalog.gapMillis}, so the polls after the read apply again those of them that the read
+     * may have missed, and any transaction still open then is waited for as if it had been seen by a poll.
+     *
+     * @return the new horizon
+     */
+    public synchronized long startFromNow() {
+        long latest = changes.getLatestSeq();
+        long recent = changes.getFirstSeqSince(Instant.now().minus(GAP_TIMEOUT));
+        horizon = recent < 0 ? latest : Math.min(latest, recent - 1);
+        polls.clear();
+        polls.add(new Poll(System.nanoTime(), latest));
+        seenLatest = -1;
+        return horizon;
+    }
+
+    /**
+     * @return the sequence number up to which every change has been read or given up on
+     */
+    public synchronized long getHorizon() {
+        return horizon;
+    }
+
+    /**
+     * Reads the changes above the horizon, if any showed up since the last poll, and moves the horizon past the
+     * visible numbers and those missing for too long.
+     *
+     * @return the changes read, with {@code upToSeq} set to the new horizon; empty if nothing new is visible
+     */
+    public synchronized CatalogChangeDAO.Changes poll() {
+        long latest = changes.getLatestSeq();
+        if (latest <= horizon) {
+            return new CatalogChangeDAO.Changes(horizon, List.of(), new int[0], List.of(), new int[0]);
+        }
+        long now = System.nanoTime();
+        if (polls.isEmpty() || polls.getLast().latestSeq() < latest) {
+            polls.addLast(new Poll(now, latest));
+        }
+        var seqs = changes.getSeqs(horizon, latest);
+        long from = horizon;
+        long next = horizon;
+        int passed = 0;
+        for (long seq = horizon + 1; seq <= latest; seq++) {
+            if (passed < seqs.length && seqs[passed] == seq) {
+                passed++;
+            } else if (isMissingTooLong(seq, now)) {
+                long missing = seq;
+                LOG.fine(() -> "Gave up waiting for catalog change " + missing);
+            } else {
+                break;
+            }
+            next = seq;
+        }
+        boolean unchanged = latest == seenLatest && seqs.length == seenAbove;
+        horizon = next;
+        seenLatest = latest;
+        seenAbove = seqs.length - passed;
+        while (!polls.isEmpty() && polls.getFirst().latestSeq() <= horizon) {
+            polls.removeFirst();
+        }
+        if (unchanged) {
+            return new CatalogChangeDAO.Changes(next, List.of(), new int[0], List.of(), new int[0]);
+        }
+        var delta = changes.getChanges(from, latest, withCopies);
+        return new CatalogChangeDAO.Changes(next, delta.films(), delta.deletedFilmIds(), delta.copies(),
+                delta.deletedCopyIds());
+    }
+
+    /**
+     * Returns whether a missing sequence number was already below the latest one seen {@link #GAP_TIMEOUT} ago.
+     */
+    private boolean isMissingTooLong(long seq, long now) {
+        for (var poll : polls) {
+            if (poll.latestSeq() >= seq) {
+                return now - poll.at() >= GAP_TIMEOUT.toNanos();
+            }
+        }
+        return false;
+    }
+}
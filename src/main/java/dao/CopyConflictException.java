@@ -0,0 +1,18 @@
+package dao;
+
+/**
+ * The {@code CopyConflictException} class reports an update that {@link CopyFilmDAO} did not make because the
+ * copy's row changed, or was deleted, since the copy was read: its {@code version} no longer matches. Nothing was
+ * changed; the caller may read the copy again and retry.
+ */
+public class CopyConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message which copies could not be updated
+     */
+    public CopyConflictException(String message) {
+        super(message);
+    }
+}
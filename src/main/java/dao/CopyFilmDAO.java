@@ -1,13 +1,18 @@
 package dao;
 
 import model.CopyFilm;
+import model.Film;
 import model.User;
 
-import java.sql.Connection;
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * The {@code CopyFilmDAO} class provides CRUD operations for the {@link CopyFilm} entity.
@@ -16,21 +21,76 @@ import java.util.List;
  *
  * This DAO handles the operations related to the {@code CopyFilm} entity,
  * including retrieving all copies, getting a copy by its ID, adding, updating, and deleting a copy.
+ * <p>
+ * In write-behind mode, enabled with {@link #enableWriteBehind}, updates and deletions are queued and written in
+ * the background by a {@link WriteBehindQueue}, so they return without waiting for the database. Additions stay
+ * synchronous since the caller needs the generated ID. Reads go to the database and do not see the queued writes
+ * until they are flushed; {@link WriteBehindQueue#flush()} waits for them.
+ * </p>
+ * <p>
+ * Every write also updates the inventory summary read by {@link InventoryDAO}, in the same transaction.
+ * </p>
+ * <p>
+ * Updates are compare-and-set: a copy is only written if its row still has the {@code version} it was read with,
+ * and the update bumps it, as {@link LoanDAO} does. An update that finds the row changed or deleted since throws
+ * {@link CopyConflictException} and changes nothing; in a batch, none of the copies is written. A successful
+ * update sets the copy to its new version, so the caller can update it again. In write-behind mode the queue
+ * checks the version against the writes it already holds for the copy, and sets the copy to the version its row
+ * will have once written; a conflict with a write made elsewhere is only found when the queue writes the update,
+ * after the caller has returned, so the queue logs and drops that update instead. Giving a copy to
+ * another owner ends its loan, if it is lent, since the loan was made by the previous owner.
+ * </p>
  */
 public class CopyFilmDAO implements DAO<CopyFilm> {
 
+    /** Query used by {@link #getAll} and {@link #streamAll}. */
+    static final String SELECT_ALL_SQL = "select * from copy";
+    /** Query used by {@link #getById}. */
+    static final String SELECT_BY_ID_SQL = "select * from copy where id=?";
+    /** Query used by {@link #getByUser}. */
+    static final String SELECT_BY_USER_SQL = "select * from copy where user_id=?";
+    /** Query used by {@link #countByUser}. */
+    static final String COUNT_BY_USER_SQL = "select count(*) from copy where user_id=?";
+    /** Statement used by {@link #add} and {@link #addAll}. */
+    static final String INSERT_SQL = "insert into copy(`condition`, support, film_id, user_id) values (?, ?, ?, ?)";
     /**
-     * Database connection object used to execute SQL queries.
+     * Statement used by {@link #update} and {@link #updateAll}, if the row still has the version read; bumps the
+     * version {@link LoanDAO} compares. The loan is cleared before {@code user_id} is set, since MySQL evaluates
+     * the assignments in order.
      */
-    private static Connection con;
+    static final String UPDATE_SQL = "update copy set borrower_id=case when user_id=? then borrower_id end,"
+            + " borrowed_at=case when user_id=? then borrowed_at end,"
+            + " `condition`=?, support=?, film_id=?, user_id=?, version=version+1 where id=? and version=?";
+    /** Statement used by {@link #delete} and {@link #deleteAll}. */
+    static final String DELETE_SQL = "delete from copy where id=?";
+    /** Query shared by the library methods: a user's copies joined with their films. */
+    static final String LIBRARY_SQL = "select c.id, c.`condition`, c.support, c.film_id, c.user_id, c.version,"
+            + " f.title as film_title, f.genre as film_genre, f.year as film_year,"
+            + " f.description as film_description, f.director as film_director"
+            + " from copy c join film f on f.id = c.film_id"
+            + " where c.user_id=?";
+    /** Query used by {@link #getLibraryByUser}. */
+    static final String LIBRARY_ALL_SQL = LIBRARY_SQL + " order by c.id";
+    /** Query used by {@link #getLibraryPageByUser}. */
+    static final String LIBRARY_PAGE_SQL = LIBRARY_SQL + " and c.id > ? order by c.id limit ?";
 
     /**
-     * Constructor for CopyFilmDAO that initializes the database connection.
+     * Data source that hands out a connection for each operation.
+     */
+    private final DataSource ds;
+
+    /**
+     * Queue of the updates and deletions not written yet, or {@code null} when writes go straight to the database.
+     */
+    private volatile WriteBehindQueue writeBehind;
+
+    /**
+     * Constructor for CopyFilmDAO that sets the data source used to borrow connections.
      *
-     * @param c the Connection object used for the database interaction
+     * @param ds the DataSource used for database interaction
      */
-    public CopyFilmDAO(Connection c) {
-        con = c;
+    public CopyFilmDAO(DataSource ds) {
+        this.ds = ds;
     }
 
     /**
@@ -40,22 +100,23 @@ public class CopyFilmDAO implements DAO<CopyFilm> {
      */
     @Override
     public List<CopyFilm> getAll() {
-        var copies = new ArrayList<CopyFilm>();
-        try (var st = con.createStatement()) {
-            var rs = st.executeQuery("select * from copy");
-            while (rs.next()) {
-                var film = new CopyFilm();
-                film.setId(rs.getInt("id"));
-                film.setCondition(rs.getString("condition"));
-                film.setSupport(rs.getString("support"));
-                film.setFilmId(rs.getInt("film_id"));
-                film.setUserId(rs.getInt("user_id"));
-                copies.add(film);
-            }
+        try (var con = ds.getConnection();
+             var st = con.createStatement()) {
+            return RowMappers.COPY_FILM.mapAll(st.executeQuery(SELECT_ALL_SQL));
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
-        return copies;
+    }
+
+    /**
+     * Streams all CopyFilm records from the database using a cursor.
+     *
+     * @param fetchSize the number of rows fetched per round trip
+     * @return a Stream of CopyFilm objects that must be closed after use
+     */
+    @Override
+    public Stream<CopyFilm> streamAll(int fetchSize) {
+        return JdbcSupport.stream(ds, SELECT_ALL_SQL, fetchSize, RowMappers.COPY_FILM);
     }
 
     /**
@@ -66,78 +127,170 @@ public class CopyFilmDAO implements DAO<CopyFilm> {
      */
     @Override
     public CopyFilm getById(int id) {
-        var film = new CopyFilm();
-        try (var ps = con.prepareStatement("select * from copy where id=?")) {
+        try (var con = ds.getConnection();
+             var ps = con.prepareStatement(SELECT_BY_ID_SQL)) {
             ps.setInt(1, id);
-            var rs = ps.executeQuery();
-            if (rs.next()) {
-                film.setId(rs.getInt("id"));
-                film.setCondition(rs.getString("condition"));
-                film.setSupport(rs.getString("support"));
-                film.setFilmId(rs.getInt("film_id"));
-                film.setUserId(rs.getInt("user_id"));
-            }
+            var copy = RowMappers.COPY_FILM.mapFirst(ps.executeQuery());
+            return copy != null ? copy : new CopyFilm();
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
-        return film;
     }
 
     /**
-     * Adds a new CopyFilm record to the database.
+     * Adds a new CopyFilm record to the database, logs the change for the in-memory catalog and counts the copy
+     * in the inventory summary.
      *
      * @param copyFilm the CopyFilm object to be added to the database
      */
     @Override
     public void add(CopyFilm copyFilm) {
-        try (var ps = con.prepareStatement("insert into copy(condition, support, film_id, user_id) values (?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, copyFilm.getCondition());
-            ps.setString(2, copyFilm.getSupport());
-            ps.setInt(3, copyFilm.getFilmId());
-            ps.setInt(4, copyFilm.getUserId());
-            ps.executeUpdate();
-            if (ps.executeUpdate() > 0) {
-                var rs = ps.getGeneratedKeys();
-                rs.next();
-                copyFilm.setId(rs.getInt(1));
+        JdbcSupport.inTransaction(ds, con -> {
+            try (var ps = con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                bindCopyFilm(ps, copyFilm);
+                if (ps.executeUpdate() > 0) {
+                    var rs = ps.getGeneratedKeys();
+                    rs.next();
+                    copyFilm.setId(rs.getInt(1));
+                    InventoryDAO.Delta.adding(List.of(copyFilm)).apply(con);
+                    CatalogChangeDAO.record(con, CatalogChangeDAO.COPY, copyFilm.getId());
+                }
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+            return null;
+        });
     }
 
     /**
-     * Updates an existing CopyFilm record in the database.
+     * Updates an existing CopyFilm record in the database, if it still has the version read, and logs the change
+     * for the in-memory catalog. In write-behind mode the update is queued instead.
      *
      * @param copyFilm the CopyFilm object containing the updated data
+     * @throws CopyConflictException if the copy changed or was deleted since it was read
      */
     @Override
     public void update(CopyFilm copyFilm) {
-        try (var ps = con.prepareStatement("update copy set condition=?, support=?, film_id=?, user_id=? where id=?")) {
-            ps.setString(1, copyFilm.getCondition());
-            ps.setString(2, copyFilm.getSupport());
-            ps.setInt(3, copyFilm.getFilmId());
-            ps.setInt(4, copyFilm.getUserId());
-            ps.setInt(5, copyFilm.getId());
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        var queue = writeBehind;
+        if (queue != null) {
+            queue.update(copyFilm);
+            return;
         }
+        JdbcSupport.inTransaction(ds, con -> {
+            var inventory = InventoryDAO.Delta.removing(con, List.of(copyFilm));
+            try (var ps = con.prepareStatement(UPDATE_SQL)) {
+                bindUpdate(ps, copyFilm);
+                if (ps.executeUpdate() == 0) {
+                    throw new CopyConflictException("Copy " + copyFilm.getId() + " changed since it was read");
+                }
+            }
+            inventory.addUpdated(List.of(copyFilm)).apply(con);
+            CatalogChangeDAO.record(con, CatalogChangeDAO.COPY, copyFilm.getId());
+            return null;
+        });
+        copyFilm.setVersion(copyFilm.getVersion() + 1);
     }
 
     /**
-     * Deletes a CopyFilm record from the database.
+     * Deletes a CopyFilm record from the database and logs the change for the in-memory catalog.
+     * In write-behind mode the deletion is queued instead.
      *
      * @param copyFilm the CopyFilm object to be deleted
      */
     @Override
     public void delete(CopyFilm copyFilm) {
-        try (var ps = con.prepareStatement("delete from copy where id=?")) {
-            ps.setInt(1, copyFilm.getId());
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        var queue = writeBehind;
+        if (queue != null) {
+            queue.delete(copyFilm);
+            return;
         }
+        JdbcSupport.inTransaction(ds, con -> {
+            var inventory = InventoryDAO.Delta.removing(con, List.of(copyFilm));
+            try (var ps = con.prepareStatement(DELETE_SQL)) {
+                ps.setInt(1, copyFilm.getId());
+                ps.executeUpdate();
+            }
+            inventory.apply(con);
+            CatalogChangeDAO.record(con, CatalogChangeDAO.COPY, copyFilm.getId());
+            return null;
+        });
+    }
+
+    /**
+     * Adds several CopyFilm records to the database in one transaction using JDBC batching.
+     * Each CopyFilm receives its generated ID.
+     *
+     * @param items the CopyFilm objects to be added to the database
+     */
+    @Override
+    public void addAll(Collection<CopyFilm> items) {
+        JdbcSupport.inTransaction(ds, con -> {
+            JdbcSupport.executeBatch(con, INSERT_SQL, items, CopyFilmDAO::bindCopyFilm, CopyFilm::setId);
+            InventoryDAO.Delta.adding(items).apply(con);
+            CatalogChangeDAO.recordAll(con, CatalogChangeDAO.COPY, items, CopyFilm::getId);
+            return null;
+        });
+    }
+
+    /**
+     * Updates several existing CopyFilm records in one transaction using JDBC batching, if they all still have
+     * the version read. In write-behind mode the updates are queued instead.
+     *
+     * @param items the CopyFilm objects containing the updated data
+     * @throws CopyConflictException if a copy changed or was deleted since it was read
+     */
+    @Override
+    public void updateAll(Collection<CopyFilm> items) {
+        var queue = writeBehind;
+        if (queue != null) {
+            queue.updateAll(items);
+            return;
+        }
+        writeAll(items, List.of());
+        for (var copyFilm : items) {
+            copyFilm.setVersion(copyFilm.getVersion() + 1);
+        }
+    }
+
+    /**
+     * Deletes several CopyFilm records in one transaction using JDBC batching.
+     * In write-behind mode the deletions are queued instead.
+     *
+     * @param items the CopyFilm objects to be deleted
+     */
+    @Override
+    public void deleteAll(Collection<CopyFilm> items) {
+        var queue = writeBehind;
+        if (queue != null) {
+            items.forEach(queue::delete);
+            return;
+        }
+        writeAll(List.of(), items);
+    }
+
+    /**
+     * Switches this DAO to write-behind mode: from now on updates and deletions are queued and written in the
+     * background. The queue must be closed on shutdown so the pending writes are written, if its configuration
+     * says so.
+     *
+     * @param config     the settings of the queue
+     * @param afterFlush runs after each flush of the queue, for example to refresh a cache of the copies
+     * @return the queue
+     * @throws IllegalStateException if write-behind mode is already enabled
+     */
+    public synchronized WriteBehindQueue enableWriteBehind(WriteBehindQueue.Config config, Runnable afterFlush) {
+        if (writeBehind != null) {
+            throw new IllegalStateException("Write-behind mode is already enabled");
+        }
+        writeBehind = new WriteBehindQueue(this::writeAll, afterFlush, config);
+        return writeBehind;
+    }
+
+    /**
+     * @param id the ID of a copy
+     * @return whether the copy is queued for deletion in write-behind mode and not deleted yet
+     */
+    public boolean isDeletePending(int id) {
+        var queue = writeBehind;
+        return queue != null && queue.isDeletePending(id);
     }
 
     /**
@@ -147,24 +300,159 @@ public class CopyFilmDAO implements DAO<CopyFilm> {
      * @return a List of CopyFilm objects associated with the specified User
      */
     public List<CopyFilm> getByUser(User user) {
-        int id = user.getId();
-        var copies = new ArrayList<CopyFilm>();
+        try (var con = ds.getConnection();
+             var ps = con.prepareStatement(SELECT_BY_USER_SQL)) {
+            ps.setInt(1, user.getId());
+            return RowMappers.COPY_FILM.mapAll(ps.executeQuery());
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-        try (var ps = con.prepareStatement("select * from copy where user_id=?")) {
-            ps.setInt(1, id);
+    /**
+     * Retrieves the library of a specific User: all of their CopyFilm records with the associated
+     * {@link Film} already attached, using a single JOIN query instead of one film lookup per copy.
+     * The given User object is attached to every copy as its owner.
+     *
+     * @param user the User whose library is to be retrieved
+     * @return a List of CopyFilm objects with their Film and User set, ordered by copy ID
+     */
+    public List<CopyFilm> getLibraryByUser(User user) {
+        try (var con = ds.getConnection();
+             var ps = con.prepareStatement(LIBRARY_ALL_SQL)) {
+            ps.setInt(1, user.getId());
+            return readLibrary(ps.executeQuery(), user);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Retrieves one page of a User's library using keyset pagination: the next {@code limit} copies whose ID
+     * is greater than {@code afterId}, ordered by copy ID, with their {@link Film} and User attached.
+     * Unlike an {@code OFFSET} query, the cost of a page does not grow with its position in the library.
+     *
+     * @param user    the User whose library is paged
+     * @param afterId the ID of the last copy of the previous page, or 0 for the first page
+     * @param limit   the maximum number of copies to return
+     * @return a List of at most {@code limit} CopyFilm objects ordered by copy ID
+     */
+    public List<CopyFilm> getLibraryPageByUser(User user, int afterId, int limit) {
+        try (var con = ds.getConnection();
+             var ps = con.prepareStatement(LIBRARY_PAGE_SQL)) {
+            ps.setInt(1, user.getId());
+            ps.setInt(2, afterId);
+            ps.setInt(3, limit);
+            return readLibrary(ps.executeQuery(), user);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Counts the CopyFilm records associated with a specific User.
+     *
+     * @param user the User whose copies are counted
+     * @return the number of copies owned by the User
+     */
+    public int countByUser(User user) {
+        try (var con = ds.getConnection();
+             var ps = con.prepareStatement(COUNT_BY_USER_SQL)) {
+            ps.setInt(1, user.getId());
             var rs = ps.executeQuery();
-            while (rs.next()) {
-                var copy = new CopyFilm();
-                copy.setId(rs.getInt("id"));
-                copy.setCondition(rs.getString("condition"));
-                copy.setSupport(rs.getString("support"));
-                copy.setFilmId(rs.getInt("film_id"));
-                copy.setUserId(rs.getInt("user_id"));
-                copies.add(copy);
-            }
+            return rs.next() ? rs.getInt(1) : 0;
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
+    }
+
+    /**
+     * Reads the rows of a {@link #LIBRARY_SQL} query, attaching the given owner to every copy.
+     *
+     * @param rs   the result of the query
+     * @param user the owner attached to the copies
+     * @return the CopyFilm objects read, with their Film and User set
+     * @throws SQLException if a row cannot be read
+     */
+    private static List<CopyFilm> readLibrary(ResultSet rs, User user) throws SQLException {
+        var copies = RowMappers.COPY_WITH_FILM.mapAll(rs);
+        for (var copy : copies) {
+            copy.setUser(user);
+        }
         return copies;
     }
-}
\ No newline at end of file
+
+    /**
+     * Updates and deletes CopyFilm records in one transaction using JDBC batching, bypassing the write-behind
+     * queue. This is how both the batch methods and the queue write. The versions of the copies are left as
+     * they were read.
+     *
+     * @param updates the CopyFilm objects containing the updated data
+     * @param deletes the CopyFilm objects to be deleted
+     * @throws CopyConflictException if a copy to update changed or was deleted since it was read
+     */
+    private void writeAll(Collection<CopyFilm> updates, Collection<CopyFilm> deletes) {
+        JdbcSupport.inTransaction(ds, con -> {
+            var all = new ArrayList<CopyFilm>(updates.size() + deletes.size());
+            all.addAll(updates);
+            all.addAll(deletes);
+            var inventory = InventoryDAO.Delta.removing(con, all);
+            var counts = JdbcSupport.executeBatch(con, UPDATE_SQL, updates, CopyFilmDAO::bindUpdate, null);
+            checkUpdated(updates, counts);
+            JdbcSupport.executeBatch(con, DELETE_SQL, deletes, (ps, copyFilm) -> ps.setInt(1, copyFilm.getId()), null);
+            inventory.addUpdated(updates).apply(con);
+            CatalogChangeDAO.recordAll(con, CatalogChangeDAO.COPY, all, CopyFilm::getId);
+            return null;
+        });
+    }
+
+    /**
+     * Throws if any of the batched updates matched no row.
+     *
+     * @throws CopyConflictException naming the copies not updated
+     */
+    private static void checkUpdated(Collection<CopyFilm> updates, int[] counts) {
+        var stale = new ArrayList<Integer>();
+        int i = 0;
+        for (var copyFilm : updates) {
+            if (counts[i++] == 0) {
+                stale.add(copyFilm.getId());
+            }
+        }
+        if (!stale.isEmpty()) {
+            throw new CopyConflictException("Copies " + stale + " changed since they were read");
+        }
+    }
+
+    /**
+     * Sets the parameters of {@link #UPDATE_SQL} from a CopyFilm.
+     *
+     * @param ps the statement whose parameters are set
+     * @param copyFilm the CopyFilm providing the values, its ID and the version it was read with
+     * @throws SQLException if a parameter cannot be set
+     */
+    private static void bindUpdate(PreparedStatement ps, CopyFilm copyFilm) throws SQLException {
+        ps.setInt(1, copyFilm.getUserId());
+        ps.setInt(2, copyFilm.getUserId());
+        ps.setString(3, copyFilm.getCondition());
+        ps.setString(4, copyFilm.getSupport());
+        ps.setInt(5, copyFilm.getFilmId());
+        ps.setInt(6, copyFilm.getUserId());
+        ps.setInt(7, copyFilm.getId());
+        ps.setInt(8, copyFilm.getVersion());
+    }
+
+    /**
+     * Sets the first 4 parameters of an insert statement from a CopyFilm.
+     *
+     * @param ps the statement whose parameters are set
+     * @param copyFilm the CopyFilm providing the values
+     * @throws SQLException if a parameter cannot be set
+     */
+    private static void bindCopyFilm(PreparedStatement ps, CopyFilm copyFilm) throws SQLException {
+        ps.setString(1, copyFilm.getCondition());
+        ps.setString(2, copyFilm.getSupport());
+        ps.setInt(3, copyFilm.getFilmId());
+        ps.setInt(4, copyFilm.getUserId());
+    }
+}
@@ -1,6 +1,8 @@
 package dao;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * DAO (Data Access Object) interface providing CRUD operations for any generic entity type.
@@ -18,6 +20,32 @@ public interface DAO<T> {
      */
     public List<T> getAll();
 
+    /**
+     * The number of rows fetched per round trip by {@link #streamAll()}, taken from the
+     * {@code films.fetchSize} system property.
+     */
+    int DEFAULT_FETCH_SIZE = Integer.getInteger("films.fetchSize", 500);
+
+    /**
+     * Streams all records of type T from the data source without loading them all into memory.
+     * Rows are read from a database cursor {@code fetchSize} rows at a time. The stream keeps a
+     * connection open until it is closed, so it should be used in a try-with-resources block.
+     *
+     * @param fetchSize the number of rows fetched per round trip
+     * @return a Stream of all objects of type T available in the data source
+     */
+    public Stream<T> streamAll(int fetchSize);
+
+    /**
+     * Streams all records of type T using the {@link #DEFAULT_FETCH_SIZE}.
+     *
+     * @return a Stream of all objects of type T available in the data source
+     * @see #streamAll(int)
+     */
+    public default Stream<T> streamAll() {
+        return streamAll(DEFAULT_FETCH_SIZE);
+    }
+
     /**
      * Retrieves a specific object of type T by its ID.
      *
@@ -46,4 +74,26 @@ public interface DAO<T> {
      * @param t the object to be deleted from the data source
      */
     public void delete(T t);
+
+    /**
+     * Adds several objects of type T to the data source in one transaction using JDBC batching.
+     * Each object receives its generated ID, as with {@link #add(Object)}.
+     *
+     * @param items the objects to be added to the data source
+     */
+    public void addAll(Collection<T> items);
+
+    /**
+     * Updates several existing objects of type T in one transaction using JDBC batching.
+     *
+     * @param items the objects with updated data to be saved to the data source
+     */
+    public void updateAll(Collection<T> items);
+
+    /**
+     * Deletes several existing objects of type T in one transaction using JDBC batching.
+     *
+     * @param items the objects to be deleted from the data source
+     */
+    public void deleteAll(Collection<T> items);
 }
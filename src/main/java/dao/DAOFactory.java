@@ -0,0 +1,293 @@
+package dao;
+
+import catalog.CatalogRefresher;
+import metrics.CacheMetrics;
+import metrics.DaoMetrics;
+import model.Film;
+import search.FilmSearchIndex;
+import search.IndexingFilmDAO;
+import util.JdbcUtil;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code DAOFactory} class hands out the DAO instances shared by the whole application.
+ * Sharing them matters because some of them keep state, such as the film cache, that is only
+ * useful if every view goes through the same instance.
+ * <p>
+ * The film cache is configured with the system properties {@code films.cache.films.maxSize}
+ * and {@code films.cache.films.ttlSeconds} (0 disables expiry).
+ * </p>
+ * <p>
+ * Every DAO records the calls it sends to the database and publishes their latencies over JMX, together with
+ * the statistics of the film cache (see {@link DaoMetrics}). Setting the system property
+ * {@code films.metrics.sampleRate} to 0 turns this instrumentation off.
+ * </p>
+ * <p>
+ * Setting the system property {@code films.writeBehind.enabled} to {@code true} switches the CopyFilm DAO to
+ * write-behind mode (see {@link WriteBehindQueue.Config#fromSystemProperties()} for its settings). The pending
+ * writes are flushed by {@link #closeWriteBehind()}, which a shutdown hook calls.
+ * </p>
+ * <p>
+ * The views read films and copies from the in-memory catalog of {@link #getCatalog()}, which follows the writes
+ * made through these DAOs by polling their change log. The film search index and the film cache follow the same
+ * log through a {@link FilmChangeFollower}, so they also see the films written by other processes.
+ * </p>
+ */
+public class DAOFactory {
+
+    private static final FilmSearchIndex filmSearchIndex = new FilmSearchIndex();
+    private static volatile boolean filmSearchIndexLoaded;
+    private static volatile FilmChangeFollower filmChangeFollower;
+    private static volatile CachingDAO<Film> filmDAO;
+    private static volatile CopyFilmDAO copyFilmDAO;
+    private static volatile UserDAO userDAO;
+    private static volatile InventoryDAO inventoryDAO;
+    private static volatile LoanDAO loanDAO;
+    private static volatile CatalogRefresher catalog;
+    private static volatile WriteBehindQueue copyWriteBehind;
+
+    /** The statements {@link #prepareStatements()} prepares ahead of their first use. */
+    private static final List<String> WARM_STATEMENTS = List.of(UserDAO.VALIDATE_SQL, CatalogChangeDAO.LATEST_SEQ_SQL,
+            CatalogChangeDAO.SEQS_SQL, FilmDAO.SELECT_BY_ID_SQL, CopyFilmDAO.SELECT_BY_ID_SQL, CopyFilmDAO.UPDATE_SQL,
+            CopyFilmDAO.DELETE_SQL);
+
+    /**
+     * Returns the shared Film DAO, which caches films by ID in front of {@link FilmDAO}
+     * and keeps the film search index up to date with every write. Films changed by other processes are
+     * evicted from the cache once the film change follower reads them from the change log.
+     *
+     * @return the cached Film DAO
+     */
+    public static CachingDAO<Film> getFilmDAO() {
+        if (filmDAO == null) {
+            synchronized (DAOFactory.class) {
+                if (filmDAO == null) {
+                    DAO<Film> films = new FilmDAO(JdbcUtil.getDataSource());
+                    if (isInstrumented()) {
+                        films = new InstrumentedDAO<>(films, new DaoMetrics("FilmDAO"));
+                    }
+                    var indexing = new IndexingFilmDAO(films, filmSearchIndex);
+                    var cache = new CachingDAO<>(indexing, Film::getId,
+                            Integer.getInteger("films.cache.films.maxSize", 10_000),
+                            Duration.ofSeconds(Long.getLong("films.cache.films.ttlSeconds", 0)));
+                    if (isInstrumented()) {
+                        CacheMetrics.register("films", cache);
+                    }
+                    getFilmChangeFollower().addListener((changed, deletedIds) -> {
+                        changed.forEach(film -> cache.invalidate(film.getId()));
+                        for (int id : deletedIds) {
+                            cache.invalidate(id);
+                        }
+                    });
+                    filmDAO = cache;
+                }
+            }
+        }
+        return filmDAO;
+    }
+
+    /**
+     * Returns the shared film search index, loading it from the database on first use.
+     * Films written through {@link #getFilmDAO()} are indexed as they change, and films written by other
+     * processes once the film change follower reads them from the change log.
+     *
+     * @return the film search index
+     */
+    public static FilmSearchIndex getFilmSearchIndex() {
+        if (!filmSearchIndexLoaded) {
+            synchronized (DAOFactory.class) {
+                if (!filmSearchIndexLoaded) {
+                    var follower = getFilmChangeFollower();
+                    follower.addListener((films, deletedIds) -> {
+                        films.forEach(filmSearchIndex::update);
+                        for (int id : deletedIds) {
+                            filmSearchIndex.remove(id);
+                        }
+                    });
+                    follower.reload(() -> {
+                        try (var films = new FilmDAO(JdbcUtil.getDataSource()).streamAll()) {
+                            filmSearchIndex.rebuild(films);
+                        }
+                    });
+                    filmSearchIndexLoaded = true;
+                }
+            }
+        }
+        return filmSearchIndex;
+    }
+
+    /**
+     * Returns the shared follower of the films changed in the change log, started on first use.
+     *
+     * @return the film change follower
+     */
+    private static FilmChangeFollower getFilmChangeFollower() {
+        if (filmChangeFollower == null) {
+            synchronized (DAOFactory.class) {
+                if (filmChangeFollower == null) {
+                    var follower = new FilmChangeFollower(JdbcUtil.getDataSource());
+                    follower.start();
+                    filmChangeFollower = follower;
+                }
+            }
+        }
+        return filmChangeFollower;
+    }
+
+    /**
+     * Returns the shared CopyFilm DAO, in write-behind mode if {@code films.writeBehind.enabled} is set.
+     *
+     * @return the CopyFilm DAO
+     */
+    public static CopyFilmDAO getCopyFilmDAO() {
+        if (copyFilmDAO == null) {
+            synchronized (DAOFactory.class) {
+                if (copyFilmDAO == null) {
+                    var copies = isInstrumented()
+                            ? new InstrumentedCopyFilmDAO(JdbcUtil.getDataSource(), new DaoMetrics("CopyFilmDAO"))
+                            : new CopyFilmDAO(JdbcUtil.getDataSource());
+                    if (Boolean.getBoolean("films.writeBehind.enabled")) {
+                        copyWriteBehind = copies.enableWriteBehind(WriteBehindQueue.Config.fromSystemProperties(),
+                                DAOFactory::refreshCatalog);
+                        Runtime.getRuntime().addShutdownHook(new Thread(DAOFactory::closeWriteBehind));
+                    }
+                    copyFilmDAO = copies;
+                }
+            }
+        }
+        return copyFilmDAO;
+    }
+
+    /**
+     * Returns the shared User DAO.
+     *
+     * @return the User DAO
+     */
+    public static UserDAO getUserDAO() {
+        if (userDAO == null) {
+            synchronized (DAOFactory.class) {
+                if (userDAO == null) {
+                    userDAO = isInstrumented()
+                            ? new InstrumentedUserDAO(JdbcUtil.getDataSource(), new DaoMetrics("UserDAO"))
+                            : new UserDAO(JdbcUtil.getDataSource());
+                }
+            }
+        }
+        return userDAO;
+    }
+
+    /**
+     * Returns the shared Inventory DAO, which counts copies from the summary kept up to date by the CopyFilm DAO.
+     *
+     * @return the Inventory DAO
+     */
+    public static InventoryDAO getInventoryDAO() {
+        if (inventoryDAO == null) {
+            synchronized (DAOFactory.class) {
+                if (inventoryDAO == null) {
+                    inventoryDAO = new InventoryDAO(JdbcUtil.getDataSource());
+                }
+            }
+        }
+        return inventoryDAO;
+    }
+
+    /**
+     * Returns the shared Loan DAO, which lends copies between users.
+     *
+     * @return the Loan DAO
+     */
+    public static LoanDAO getLoanDAO() {
+        if (loanDAO == null) {
+            synchronized (DAOFactory.class) {
+                if (loanDAO == null) {
+                    loanDAO = new LoanDAO(JdbcUtil.getDataSource());
+                }
+            }
+        }
+        return loanDAO;
+    }
+
+    /**
+     * Returns the shared in-memory catalog of films and copies, refreshed in the background from the changes
+     * logged by the DAOs. The snapshot saved by the previous run, when there is one, is mapped on the calling
+     * thread and {@link CatalogRefresher#read()} serves it until the catalog is loaded. The catalog loads in the
+     * background once the database is up, so this returns without waiting for it.
+     *
+     * @return the catalog refresher
+     */
+    public static CatalogRefresher getCatalog() {
+        if (catalog == null) {
+            synchronized (DAOFactory.class) {
+                if (catalog == null) {
+                    var refresher = new CatalogRefresher(JdbcUtil::getDataSource,
+                            CatalogRefresher.snapshotFileFromSystemProperties());
+                    refresher.openSnapshot();
+                    refresher.start();
+                    catalog = refresher;
+                }
+            }
+        }
+        return catalog;
+    }
+
+    /**
+     * Writes the copy updates and deletions still queued by the CopyFilm DAO in write-behind mode, or drops them if
+     * {@code films.writeBehind.flushOnClose} is {@code false}, and stops queueing. Must run before the connection
+     * pool is closed. Does nothing when write-behind mode is off or already closed.
+     */
+    public static void closeWriteBehind() {
+        var queue = copyWriteBehind;
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+    /**
+     * Brings the catalog up to date after the write-behind queue has written to the database, if it is in use.
+     */
+    private static void refreshCatalog() {
+        var refresher = catalog;
+        if (refresher != null) {
+            refresher.refresh();
+        }
+    }
+
+    /**
+     * Prepares the statements of the login check, the catalog refresh and the copy detail on every idle pooled
+     * connection, so their statement caches hold them before the first user action needs them. On MySQL with
+     * {@code useServerPrepStmts}, this is a round trip to the server per statement and connection that startup
+     * pays in the background instead.
+     */
+    public static void prepareStatements() {
+        var pool = JdbcUtil.getPool();
+        var connections = new ArrayList<Connection>();
+        try {
+            // Holding the connections borrowed so each statement is prepared on a different one
+            for (int i = Math.max(1, pool.getIdleCount()); i > 0; i--) {
+                connections.add(pool.getConnection());
+            }
+            for (var con : connections) {
+                for (var sql : WARM_STATEMENTS) {
+                    con.prepareStatement(sql).close();
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            JdbcSupport.closeQuietly(connections.toArray(new AutoCloseable[0]));
+        }
+    }
+
+    /**
+     * Whether the DAOs record their calls, which is the case unless {@code films.metrics.sampleRate} is 0.
+     */
+    private static boolean isInstrumented() {
+        return DaoMetrics.SAMPLE_RATE > 0;
+    }
+}
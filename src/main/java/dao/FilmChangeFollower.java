@@ -0,0 +1,129 @@
+package dao;
+
+import model.Film;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The {@code FilmChangeFollower} class follows the films changed in the {@code catalog_change} log and passes
+ * them to its listeners, so what this process derives from the {@code film} table, such as the film search index,
+ * also sees the films written by other processes: the bulk importer, other servers and other clients.
+ * <p>
+ * Once {@link #start()}ed, a background thread polls the log every {@code films.catalog.refreshMillis} (2000 by
+ * default) through a {@link CatalogChangeFeed} reading the films only, so a film changed elsewhere reaches the
+ * listeners within a poll, or within {@code films.catalog.gapMillis} if a change logged before it is still
+ * uncommitted. A listener may be passed the same change twice, and must apply it as it would apply it once.
+ * </p>
+ */
+public class FilmChangeFollower implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(FilmChangeFollower.class.getName());
+
+    private static final long REFRESH_MILLIS = Long.getLong("films.catalog.refreshMillis", 2000);
+
+    /**
+     * Receives the films changed since the previous poll.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called on the follower's thread, or on the thread calling {@link #poll()}, one call at a time.
+         *
+         * @param films      the films inserted or updated, as they are now
+         * @param deletedIds the IDs of the films deleted
+         */
+        void filmsChanged(List<Film> films, int[] deletedIds);
+    }
+
+    private final CatalogChangeFeed feed;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler;
+    /** Whether the feed was started. Guarded by {@code this}. */
+    private boolean started;
+
+    /**
+     * Creates a follower. Nothing is read until {@link #start()}, {@link #poll()} or {@link #reload} is called.
+     *
+     * @param ds the data source of the change log and the films
+     */
+    public FilmChangeFollower(DataSource ds) {
+        this.feed = new CatalogChangeFeed(new CatalogChangeDAO(ds), false);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            var t = new Thread(r, "film-change-follower");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Adds a listener, passed the changes of every poll from now on.
+     *
+     * @param listener the listener
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Starts polling the change log in the background. Returns at once.
+     */
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::pollQuietly, 0, REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Passes the films changed since the previous poll to the listeners. The first poll only starts following
+     * the log from now.
+     */
+    public synchronized void poll() {
+        if (!started) {
+            feed.startFromNow();
+            started = true;
+            return;
+        }
+        var changes = feed.poll();
+        if (changes.films().isEmpty() && changes.deletedFilmIds().length == 0) {
+            return;
+        }
+        for (var listener : listeners) {
+            listener.filmsChanged(changes.films(), changes.deletedFilmIds());
+        }
+    }
+
+    /**
+     * Runs a full read of the films, such as a rebuild of an index, with no poll running meanwhile, after
+     * restarting the feed so the changes committed during the read are passed to the listeners again by the
+     * next poll rather than missed.
+     *
+     * @param load reads the films
+     */
+    public synchronized void reload(Runnable load) {
+        feed.startFromNow();
+        started = true;
+        load.run();
+    }
+
+    /**
+     * Stops polling.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            // The next poll tries again from the same horizon
+            LOG.log(Level.WARNING, "Could not read the films changed", e);
+        }
+    }
+}
@@ -2,11 +2,13 @@ package dao;
 
 import model.Film;
 
-import java.sql.Connection;
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * The {@code FilmDAO} class provides CRUD operations for the {@link Film} entity.
@@ -18,18 +20,31 @@ import java.util.List;
  */
 public class FilmDAO implements DAO<Film> {
 
+    /** Query used by {@link #getPageAfter}. */
+    static final String SELECT_PAGE_SQL = "select * from film where id > ? order by id limit ?";
+    /** Query used by {@link #getAll} and {@link #streamAll}. */
+    static final String SELECT_ALL_SQL = "select * from film";
+    /** Query used by {@link #getById}. */
+    static final String SELECT_BY_ID_SQL = "select * from film where id=?";
+    /** Statement used by {@link #add} and {@link #addAll}. */
+    static final String INSERT_SQL = "insert into film(title, genre, year, description, director) values (?,?,?,?,?)";
+    /** Statement used by {@link #update} and {@link #updateAll}. */
+    static final String UPDATE_SQL = "update film set title=?, genre=?, year=?, description=?, director=? where id=?";
+    /** Statement used by {@link #delete} and {@link #deleteAll}. */
+    static final String DELETE_SQL = "delete from film where id=?";
+
     /**
-     * Database connection object used to execute SQL queries.
+     * Data source that hands out a connection for each operation.
      */
-    public static Connection con = null;
+    private final DataSource ds;
 
     /**
-     * Constructor for FilmDAO that initializes the database connection.
+     * Constructor for FilmDAO that sets the data source used to borrow connections.
      *
-     * @param c the Connection object used for database interaction
+     * @param ds the DataSource used for database interaction
      */
-    public FilmDAO(Connection c) {
-        con = c;
+    public FilmDAO(DataSource ds) {
+        this.ds = ds;
     }
 
     /**
@@ -39,23 +54,42 @@ public class FilmDAO implements DAO<Film> {
      */
     @Override
     public List<Film> getAll() {
-        var films = new ArrayList<Film>();
-        try (var st = con.createStatement()) {
-            var rs = st.executeQuery("select * from film");
-            while (rs.next()) {
-                var film = new Film();
-                film.setId(rs.getInt("id"));
-                film.setTitle(rs.getString("title"));
-                film.setGenre(rs.getString("genre"));
-                film.setYear(rs.getInt("year"));
-                film.setDescription(rs.getString("description"));
-                film.setDirector(rs.getString("director"));
-                films.add(film);
-            }
+        try (var con = ds.getConnection();
+             var st = con.createStatement()) {
+            return RowMappers.FILM.mapAll(st.executeQuery(SELECT_ALL_SQL));
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Streams all Film records from the database using a cursor.
+     *
+     * @param fetchSize the number of rows fetched per round trip
+     * @return a Stream of Film objects that must be closed after use
+     */
+    @Override
+    public Stream<Film> streamAll(int fetchSize) {
+        return JdbcSupport.stream(ds, SELECT_ALL_SQL, fetchSize, RowMappers.FILM);
+    }
+
+    /**
+     * Retrieves one page of films using keyset pagination: the next {@code limit} films whose ID
+     * is greater than {@code afterId}, ordered by ID.
+     *
+     * @param afterId the ID of the last film of the previous page, or 0 for the first page
+     * @param limit   the maximum number of films to return
+     * @return a List of at most {@code limit} Film objects ordered by ID
+     */
+    public List<Film> getPageAfter(int afterId, int limit) {
+        try (var con = ds.getConnection();
+             var ps = con.prepareStatement(SELECT_PAGE_SQL)) {
+            ps.setInt(1, afterId);
+            ps.setInt(2, limit);
+            return RowMappers.FILM.mapAll(ps.executeQuery());
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
-        return films;
     }
 
     /**
@@ -66,80 +100,130 @@ public class FilmDAO implements DAO<Film> {
      */
     @Override
     public Film getById(int id) {
-        var film = new Film();
-        try (var ps = con.prepareStatement("select * from film where id=?")) {
+        try (var con = ds.getConnection();
+             var ps = con.prepareStatement(SELECT_BY_ID_SQL)) {
             ps.setInt(1, id);
-            var rs = ps.executeQuery();
-            if (rs.next()) {
-                film.setId(rs.getInt("id"));
-                film.setTitle(rs.getString("title"));
-                film.setGenre(rs.getString("genre"));
-                film.setYear(rs.getInt("year"));
-                film.setDescription(rs.getString("description"));
-                film.setDirector(rs.getString("director"));
-            }
+            var film = RowMappers.FILM.mapFirst(ps.executeQuery());
+            return film != null ? film : new Film();
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
-        return film;
     }
 
     /**
-     * Adds a new Film record to the database.
+     * Adds a new Film record to the database and logs the change for the in-memory catalog.
      *
      * @param film the Film object to be added to the database
      */
     @Override
     public void add(Film film) {
-        try (var ps = con.prepareStatement("insert into film(title, genre, year, description, director) values (?,?,?,?,?)", Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, film.getTitle());
-            ps.setString(2, film.getGenre());
-            ps.setInt(3, film.getYear());
-            ps.setString(4, film.getDescription());
-            ps.setString(5, film.getDirector());
-            if (ps.executeUpdate() > 0) {
-                var rs = ps.getGeneratedKeys();
-                rs.next();
-                film.setId(rs.getInt(1));
+        JdbcSupport.inTransaction(ds, con -> {
+            try (var ps = con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                bindFilm(ps, film);
+                if (ps.executeUpdate() > 0) {
+                    var rs = ps.getGeneratedKeys();
+                    rs.next();
+                    film.setId(rs.getInt(1));
+                    CatalogChangeDAO.record(con, CatalogChangeDAO.FILM, film.getId());
+                }
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+            return null;
+        });
     }
 
     /**
-     * Updates an existing Film record in the database.
+     * Updates an existing Film record in the database and logs the change for the in-memory catalog.
      *
      * @param film the Film object containing the updated data
      */
     @Override
     public void update(Film film) {
-        try (var ps = con.prepareStatement("update film set title=?, genre=?, year=?, description=?, director=? where id=?")) {
-            ps.setString(1, film.getTitle());
-            ps.setString(2, film.getGenre());
-            ps.setInt(3, film.getYear());
-            ps.setString(4, film.getDescription());
-            ps.setString(5, film.getDirector());
-            ps.setInt(6, film.getId());
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        JdbcSupport.inTransaction(ds, con -> {
+            try (var ps = con.prepareStatement(UPDATE_SQL)) {
+                bindFilm(ps, film);
+                ps.setInt(6, film.getId());
+                ps.executeUpdate();
+            }
+            CatalogChangeDAO.record(con, CatalogChangeDAO.FILM, film.getId());
+            return null;
+        });
     }
 
     /**
-     * Deletes a Film record from the database.
+     * Deletes a Film record from the database and logs the change for the in-memory catalog.
      *
      * @param film the Film object to be deleted
      */
     @Override
     public void delete(Film film) {
-        try (var ps = con.prepareStatement("delete from film where id=?")) {
-            ps.setInt(1, film.getId());
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        JdbcSupport.inTransaction(ds, con -> {
+            try (var ps = con.prepareStatement(DELETE_SQL)) {
+                ps.setInt(1, film.getId());
+                ps.executeUpdate();
+            }
+            CatalogChangeDAO.record(con, CatalogChangeDAO.FILM, film.getId());
+            return null;
+        });
+    }
+
+    /**
+     * Adds several Film records to the database in one transaction using JDBC batching.
+     * Each Film receives its generated ID.
+     *
+     * @param items the Film objects to be added to the database
+     */
+    @Override
+    public void addAll(Collection<Film> items) {
+        JdbcSupport.inTransaction(ds, con -> {
+            JdbcSupport.executeBatch(con, INSERT_SQL, items, FilmDAO::bindFilm, Film::setId);
+            CatalogChangeDAO.recordAll(con, CatalogChangeDAO.FILM, items, Film::getId);
+            return null;
+        });
+    }
+
+    /**
+     * Updates several existing Film records in one transaction using JDBC batching.
+     *
+     * @param items the Film objects containing the updated data
+     */
+    @Override
+    public void updateAll(Collection<Film> items) {
+        JdbcSupport.inTransaction(ds, con -> {
+            JdbcSupport.executeBatch(con, UPDATE_SQL, items, (ps, film) -> {
+                bindFilm(ps, film);
+                ps.setInt(6, film.getId());
+            }, null);
+            CatalogChangeDAO.recordAll(con, CatalogChangeDAO.FILM, items, Film::getId);
+            return null;
+        });
     }
-}
 
+    /**
+     * Deletes several Film records in one transaction using JDBC batching.
+     *
+     * @param items the Film objects to be deleted
+     */
+    @Override
+    public void deleteAll(Collection<Film> items) {
+        JdbcSupport.inTransaction(ds, con -> {
+            JdbcSupport.executeBatch(con, DELETE_SQL, items, (ps, film) -> ps.setInt(1, film.getId()), null);
+            CatalogChangeDAO.recordAll(con, CatalogChangeDAO.FILM, items, Film::getId);
+            return null;
+        });
+    }
+
+    /**
+     * Sets the first 5 parameters of an insert or update statement from a Film.
+     *
+     * @param ps the statement whose parameters are set
+     * @param film the Film providing the values
+     * @throws SQLException if a parameter cannot be set
+     */
+    private static void bindFilm(PreparedStatement ps, Film film) throws SQLException {
+        ps.setString(1, film.getTitle());
+        ps.setString(2, film.getGenre());
+        ps.setInt(3, film.getYear());
+        ps.setString(4, film.getDescription());
+        ps.setString(5, film.getDirector());
+    }
+}
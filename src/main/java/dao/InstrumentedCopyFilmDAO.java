@@ -0,0 +1,122 @@
+package dao;
+
+import metrics.DaoMetrics;
+import metrics.OperationMetrics;
+import model.CopyFilm;
+import model.User;
+
+import javax.sql.DataSource;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The {@code InstrumentedCopyFilmDAO} class is a {@link CopyFilmDAO} that records the number of calls, the
+ * number of failed calls and the latency of every operation, the per-user queries included, in a
+ * {@link DaoMetrics}. It extends {@link CopyFilmDAO} rather than decorating it so it can be used wherever a
+ * CopyFilmDAO is expected.
+ */
+public class InstrumentedCopyFilmDAO extends CopyFilmDAO {
+
+    private final OperationMetrics getAll;
+    private final OperationMetrics streamAll;
+    private final OperationMetrics getById;
+    private final OperationMetrics add;
+    private final OperationMetrics update;
+    private final OperationMetrics delete;
+    private final OperationMetrics addAll;
+    private final OperationMetrics updateAll;
+    private final OperationMetrics deleteAll;
+    private final OperationMetrics getByUser;
+    private final OperationMetrics getLibraryByUser;
+    private final OperationMetrics getLibraryPageByUser;
+    private final OperationMetrics countByUser;
+
+    /**
+     * Creates a CopyFilmDAO that records its calls.
+     *
+     * @param ds      the DataSource used for database interaction
+     * @param metrics the metrics the calls are recorded in
+     */
+    public InstrumentedCopyFilmDAO(DataSource ds, DaoMetrics metrics) {
+        super(ds);
+        this.getAll = metrics.operation("getAll");
+        this.streamAll = metrics.operation("streamAll");
+        this.getById = metrics.operation("getById");
+        this.add = metrics.operation("add");
+        this.update = metrics.operation("update");
+        this.delete = metrics.operation("delete");
+        this.addAll = metrics.operation("addAll");
+        this.updateAll = metrics.operation("updateAll");
+        this.deleteAll = metrics.operation("deleteAll");
+        this.getByUser = metrics.operation("getByUser");
+        this.getLibraryByUser = metrics.operation("getLibraryByUser");
+        this.getLibraryPageByUser = metrics.operation("getLibraryPageByUser");
+        this.countByUser = metrics.operation("countByUser");
+    }
+
+    @Override
+    public List<CopyFilm> getAll() {
+        return getAll.time(super::getAll);
+    }
+
+    @Override
+    public Stream<CopyFilm> streamAll(int fetchSize) {
+        return InstrumentedDAO.timeStream(streamAll, () -> super.streamAll(fetchSize));
+    }
+
+    @Override
+    public CopyFilm getById(int id) {
+        return getById.time(() -> super.getById(id));
+    }
+
+    @Override
+    public void add(CopyFilm copyFilm) {
+        add.run(() -> super.add(copyFilm));
+    }
+
+    @Override
+    public void update(CopyFilm copyFilm) {
+        update.run(() -> super.update(copyFilm));
+    }
+
+    @Override
+    public void delete(CopyFilm copyFilm) {
+        delete.run(() -> super.delete(copyFilm));
+    }
+
+    @Override
+    public void addAll(Collection<CopyFilm> items) {
+        addAll.run(() -> super.addAll(items));
+    }
+
+    @Override
+    public void updateAll(Collection<CopyFilm> items) {
+        updateAll.run(() -> super.updateAll(items));
+    }
+
+    @Override
+    public void deleteAll(Collection<CopyFilm> items) {
+        deleteAll.run(() -> super.deleteAll(items));
+    }
+
+    @Override
+    public List<CopyFilm> getByUser(User user) {
+        return getByUser.time(() -> super.getByUser(user));
+    }
+
+    @Override
+    public List<CopyFilm> getLibraryByUser(User user) {
+        return getLibraryByUser.time(() -> super.getLibraryByUser(user));
+    }
+
+    @Override
+    public List<CopyFilm> getLibraryPageByUser(User user, int afterId, int limit) {
+        return getLibraryPageByUser.time(() -> super.getLibraryPageByUser(user, afterId, limit));
+    }
+
+    @Override
+    public int countByUser(User user) {
+        return countByUser.time(() -> super.countByUser(user));
+    }
+}
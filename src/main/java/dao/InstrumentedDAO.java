@@ -0,0 +1,118 @@
+package dao;
+
+import metrics.DaoMetrics;
+import metrics.OperationMetrics;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * The {@code InstrumentedDAO} class decorates a {@link DAO} and records the number of calls, the number of
+ * failed calls and the latency of every operation in a {@link DaoMetrics}, which publishes them over JMX.
+ * <p>
+ * The latency of {@link #streamAll(int)} runs from the query until the stream is closed, since the rows are
+ * read while the caller consumes it. The DAOs with operations beyond {@link DAO} are instrumented by the
+ * subclasses {@link InstrumentedUserDAO} and {@link InstrumentedCopyFilmDAO}.
+ * </p>
+ *
+ * @param <T> the type of entity handled by the DAO
+ */
+public class InstrumentedDAO<T> implements DAO<T> {
+
+    private final DAO<T> delegate;
+    private final OperationMetrics getAll;
+    private final OperationMetrics streamAll;
+    private final OperationMetrics getById;
+    private final OperationMetrics add;
+    private final OperationMetrics update;
+    private final OperationMetrics delete;
+    private final OperationMetrics addAll;
+    private final OperationMetrics updateAll;
+    private final OperationMetrics deleteAll;
+
+    /**
+     * Creates a decorator that records the calls made through the given DAO.
+     *
+     * @param delegate the DAO that performs the database operations
+     * @param metrics  the metrics the calls are recorded in
+     */
+    public InstrumentedDAO(DAO<T> delegate, DaoMetrics metrics) {
+        this.delegate = delegate;
+        this.getAll = metrics.operation("getAll");
+        this.streamAll = metrics.operation("streamAll");
+        this.getById = metrics.operation("getById");
+        this.add = metrics.operation("add");
+        this.update = metrics.operation("update");
+        this.delete = metrics.operation("delete");
+        this.addAll = metrics.operation("addAll");
+        this.updateAll = metrics.operation("updateAll");
+        this.deleteAll = metrics.operation("deleteAll");
+    }
+
+    @Override
+    public List<T> getAll() {
+        return getAll.time(delegate::getAll);
+    }
+
+    @Override
+    public Stream<T> streamAll(int fetchSize) {
+        return timeStream(streamAll, () -> delegate.streamAll(fetchSize));
+    }
+
+    @Override
+    public T getById(int id) {
+        return getById.time(() -> delegate.getById(id));
+    }
+
+    @Override
+    public void add(T t) {
+        add.run(() -> delegate.add(t));
+    }
+
+    @Override
+    public void update(T t) {
+        update.run(() -> delegate.update(t));
+    }
+
+    @Override
+    public void delete(T t) {
+        delete.run(() -> delegate.delete(t));
+    }
+
+    @Override
+    public void addAll(Collection<T> items) {
+        addAll.run(() -> delegate.addAll(items));
+    }
+
+    @Override
+    public void updateAll(Collection<T> items) {
+        updateAll.run(() -> delegate.updateAll(items));
+    }
+
+    @Override
+    public void deleteAll(Collection<T> items) {
+        deleteAll.run(() -> delegate.deleteAll(items));
+    }
+
+    /**
+     * Opens a stream and records it as one call lasting until the stream is closed. The call counts as failed
+     * if the stream could not be opened.
+     *
+     * @param operation the metrics of the operation
+     * @param open      opens the stream
+     * @return the stream, recording the call when closed
+     */
+    static <T> Stream<T> timeStream(OperationMetrics operation, Supplier<Stream<T>> open) {
+        long start = operation.start();
+        Stream<T> stream;
+        try {
+            stream = open.get();
+        } catch (RuntimeException | Error e) {
+            operation.end(start, true);
+            throw e;
+        }
+        return stream.onClose(() -> operation.end(start, false));
+    }
+}
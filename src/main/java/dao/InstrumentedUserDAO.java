@@ -0,0 +1,99 @@
+package dao;
+
+import metrics.DaoMetrics;
+import metrics.OperationMetrics;
+import model.User;
+
+import javax.sql.DataSource;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The {@code InstrumentedUserDAO} class is a {@link UserDAO} that records the number of calls, the number of
+ * failed calls and the latency of every operation, {@link #validateUser} included, in a {@link DaoMetrics}.
+ * It extends {@link UserDAO} rather than decorating it so it can be used wherever a UserDAO is expected.
+ */
+public class InstrumentedUserDAO extends UserDAO {
+
+    private final OperationMetrics getAll;
+    private final OperationMetrics streamAll;
+    private final OperationMetrics getById;
+    private final OperationMetrics add;
+    private final OperationMetrics update;
+    private final OperationMetrics delete;
+    private final OperationMetrics addAll;
+    private final OperationMetrics updateAll;
+    private final OperationMetrics deleteAll;
+    private final OperationMetrics validateUser;
+
+    /**
+     * Creates a UserDAO that records its calls.
+     *
+     * @param ds      the DataSource used for database interaction
+     * @param metrics the metrics the calls are recorded in
+     */
+    public InstrumentedUserDAO(DataSource ds, DaoMetrics metrics) {
+        super(ds);
+        this.getAll = metrics.operation("getAll");
+        this.streamAll = metrics.operation("streamAll");
+        this.getById = metrics.operation("getById");
+        this.add = metrics.operation("add");
+        this.update = metrics.operation("update");
+        this.delete = metrics.operation("delete");
+        this.addAll = metrics.operation("addAll");
+        this.updateAll = metrics.operation("updateAll");
+        this.deleteAll = metrics.operation("deleteAll");
+        this.validateUser = metrics.operation("validateUser");
+    }
+
+    @Override
+    public List<User> getAll() {
+        return getAll.time(super::getAll);
+    }
+
+    @Override
+    public Stream<User> streamAll(int fetchSize) {
+        return InstrumentedDAO.timeStream(streamAll, () -> super.streamAll(fetchSize));
+    }
+
+    @Override
+    public User getById(int id) {
+        return getById.time(() -> super.getById(id));
+    }
+
+    @Override
+    public void add(User user) {
+        add.run(() -> super.add(user));
+    }
+
+    @Override
+    public void update(User user) {
+        update.run(() -> super.update(user));
+    }
+
+    @Override
+    public void delete(User user) {
+        delete.run(() -> super.delete(user));
+    }
+
+    @Override
+    public void addAll(Collection<User> items) {
+        addAll.run(() -> super.addAll(items));
+    }
+
+    @Override
+    public void updateAll(Collection<User> items) {
+        updateAll.run(() -> super.updateAll(items));
+    }
+
+    @Override
+    public void deleteAll(Collection<User> items) {
+        deleteAll.run(() -> super.deleteAll(items));
+    }
+
+    @Override
+    public User validateUser(String user, char[] userPassword) {
+        return validateUser.time(() -> super.validateUser(user, userPassword));
+    }
+}
@@ -0,0 +1,299 @@
+package dao;
+
+import model.CopyFilm;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The {@code InventoryDAO} class answers inventory questions, such as the copies of each film, new against
+ * damaged copies by genre or the Blu-ray copies of each director, with SQL {@code GROUP BY} queries instead of
+ * reading every copy and film to count them in Java.
+ * <p>
+ * The counts are read from {@code inventory_summary}, which holds the number of copies of each film in each
+ * condition and on each support. {@link CopyFilmDAO} keeps it up to date in the transaction of every insert,
+ * update and deletion, subtracting one from the row of the old values and adding one to the row of the new ones,
+ * so the counts of a film are a primary key lookup and a statistic over the whole inventory reads a few rows per
+ * film instead of every copy.
+ * </p>
+ * <p>
+ * Copies written with plain SQL bypass the summary: {@link #countLive} counts the {@code copy} table itself, and
+ * {@link #rebuildSummary()} recounts the summary from it. Copies without a film are not counted.
+ * </p>
+ */
+public class InventoryDAO {
+
+    private static final String TEXT_CONDITION = "coalesce(concat(`condition`, ''), '')";
+    private static final String TEXT_SUPPORT = "coalesce(concat(support, ''), '')";
+
+    /** Query used by {@link #countCopiesOfFilm}. */
+    static final String COUNT_FILM_SQL = "select coalesce(sum(copies), 0) from inventory_summary where film_id=?";
+    /** Statement used by {@link Delta#apply} to add to the count of a film, condition and support. */
+    static final String UPSERT_SQL = "insert into inventory_summary(film_id, `condition`, support, copies)"
+            + " values (?, ?, ?, ?) on duplicate key update copies = copies + ?";
+    /** Statements used by {@link #rebuildSummary}; the concat turns the enum columns into text, as in V5. */
+    static final String CLEAR_SQL = "delete from inventory_summary";
+    static final String REBUILD_SQL = "insert into inventory_summary(film_id, `condition`, support, copies)"
+            + " select film_id, " + TEXT_CONDITION + ", " + TEXT_SUPPORT + ", count(*) from copy"
+            + " where film_id is not null group by film_id, " + TEXT_CONDITION + ", " + TEXT_SUPPORT;
+    /** Query used by {@link Delta#removing}, followed by one placeholder per copy. */
+    private static final String CURRENT_SQL = "select id, film_id, `condition`, support from copy where id in (";
+
+    /**
+     * A column copies can be counted by.
+     */
+    public enum Dimension {
+        FILM("s.film_id", "c.film_id", false),
+        GENRE("f.genre", "f.genre", true),
+        DIRECTOR("f.director", "f.director", true),
+        YEAR("f.year", "f.year", true),
+        CONDITION("nullif(s.`condition`, '')", "c.`condition`", false),
+        SUPPORT("nullif(s.support, '')", "c.support", false);
+
+        private final String summaryColumn;
+        private final String copyColumn;
+        private final boolean filmColumn;
+
+        Dimension(String summaryColumn, String copyColumn, boolean filmColumn) {
+            this.summaryColumn = summaryColumn;
+            this.copyColumn = copyColumn;
+            this.filmColumn = filmColumn;
+        }
+
+        /**
+         * @return the name of the dimension in lower case, as used by the API
+         */
+        public String getName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * The number of copies sharing the same values of the counted dimensions.
+     *
+     * @param values the values of the dimensions, in the order they were given, as text; {@code null} if missing
+     * @param copies the number of copies
+     */
+    public record Count(List<String> values, long copies) {
+    }
+
+    private final DataSource ds;
+
+    /**
+     * Creates a new InventoryDAO that uses the provided data source.
+     *
+     * @param ds the data source to borrow connections from
+     */
+    public InventoryDAO(DataSource ds) {
+        this.ds = ds;
+    }
+
+    /**
+     * Counts the copies by the given dimensions from the summary, for example by genre and condition. The groups
+     * are ordered by their values; groups without copies are left out.
+     *
+     * @param dimensions the dimensions to group by, none for the total
+     * @return the count of each group
+     */
+    public List<Count> count(Dimension... dimensions) {
+        boolean joinFilm = false;
+        var columns = new ArrayList<String>();
+        for (var dimension : dimensions) {
+            columns.add(dimension.summaryColumn);
+            joinFilm |= dimension.filmColumn;
+        }
+        return query(groupBy(columns, "sum(s.copies)",
+                "inventory_summary s" + (joinFilm ? " join film f on f.id = s.film_id" : ""),
+                "having sum(s.copies) > 0"), dimensions.length);
+    }
+
+    /**
+     * Counts the copies by the given dimensions from the {@code copy} table, reading every copy. Gives the same
+     * groups as {@link #count} when the summary is up to date, though conditions and supports are ordered as their
+     * enum columns declare them rather than alphabetically.
+     *
+     * @param dimensions the dimensions to group by, none for the total
+     * @return the count of each group
+     */
+    public List<Count> countLive(Dimension... dimensions) {
+        var columns = new ArrayList<String>();
+        for (var dimension : dimensions) {
+            columns.add(dimension.copyColumn);
+        }
+        return query(groupBy(columns, "count(*)", "copy c join film f on f.id = c.film_id", ""), dimensions.length);
+    }
+
+    /**
+     * Counts the copies of a film, in any condition and on any support, from the summary.
+     *
+     * @param filmId the ID of the film
+     * @return the number of copies of the film
+     */
+    public int countCopiesOfFilm(int filmId) {
+        try (var con = ds.getConnection();
+             var ps = con.prepareStatement(COUNT_FILM_SQL)) {
+            ps.setInt(1, filmId);
+            var rs = ps.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Recounts the summary from the {@code copy} table in one transaction, for after copies were written with
+     * plain SQL.
+     */
+    public void rebuildSummary() {
+        JdbcSupport.inTransaction(ds, con -> {
+            try (var st = con.createStatement()) {
+                st.executeUpdate(CLEAR_SQL);
+                st.executeUpdate(REBUILD_SQL);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Builds a {@code GROUP BY} query over the given columns, ordered by them.
+     */
+    private static String groupBy(List<String> columns, String aggregate, String from, String having) {
+        if (columns.isEmpty()) {
+            return "select " + aggregate + " from " + from;
+        }
+        var keys = String.join(", ", columns);
+        return "select " + keys + ", " + aggregate + " from " + from + " group by " + keys + " " + having
+                + " order by " + keys;
+    }
+
+    private List<Count> query(String sql, int keyCount) {
+        try (var con = ds.getConnection();
+             var st = con.createStatement();
+             var rs = st.executeQuery(sql)) {
+            var counts = new ArrayList<Count>();
+            while (rs.next()) {
+                var values = new ArrayList<String>(keyCount);
+                for (int i = 1; i <= keyCount; i++) {
+                    values.add(rs.getString(i));
+                }
+                counts.add(new Count(values, rs.getLong(keyCount + 1)));
+            }
+            return counts;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The changes to the summary made by a write to {@code copy}, applied on the connection and in the
+     * transaction of the write. Changes to the same row of the summary are added up first, and the rows are
+     * written in key order, so two transactions changing the same rows lock them in the same order.
+     */
+    static final class Delta {
+
+        private record Key(int filmId, String condition, String support) {
+        }
+
+        private static final Comparator<Key> ORDER = Comparator.comparingInt(Key::filmId)
+                .thenComparing(Key::condition).thenComparing(Key::support);
+
+        private final Map<Key, Integer> changes = new TreeMap<>(ORDER);
+        /** The IDs of the copies found by {@link #removing}, the only ones an update changes. */
+        private final Set<Integer> found = new HashSet<>();
+
+        /**
+         * @param copies the copies inserted
+         * @return a delta counting the copies once each
+         */
+        static Delta adding(Collection<CopyFilm> copies) {
+            var delta = new Delta();
+            for (var copy : copies) {
+                delta.add(copy.getFilmId(), copy.getCondition(), copy.getSupport(), 1);
+            }
+            return delta;
+        }
+
+        /**
+         * Reads the current rows of copies about to be updated or deleted, locking them, and returns a delta that
+         * uncounts them. Must run before the write, in its transaction.
+         *
+         * @param con    the connection of the write
+         * @param copies the copies about to be written; only their IDs are used
+         * @return a delta uncounting the copies as they are in the database
+         * @throws SQLException if the rows cannot be read
+         */
+        static Delta removing(Connection con, Collection<CopyFilm> copies) throws SQLException {
+            var delta = new Delta();
+            var ids = copies.stream().mapToInt(CopyFilm::getId).toArray();
+            for (int from = 0; from < ids.length; from += JdbcSupport.BATCH_SIZE) {
+                int to = Math.min(ids.length, from + JdbcSupport.BATCH_SIZE);
+                var sql = CURRENT_SQL + "?" + ", ?".repeat(to - from - 1) + ") for update";
+                try (var ps = con.prepareStatement(sql)) {
+                    for (int i = from; i < to; i++) {
+                        ps.setInt(i - from + 1, ids[i]);
+                    }
+                    try (var rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            delta.found.add(rs.getInt(1));
+                            int filmId = rs.getInt(2);
+                            if (!rs.wasNull()) {
+                                delta.add(filmId, rs.getString(3), rs.getString(4), -1);
+                            }
+                        }
+                    }
+                }
+            }
+            return delta;
+        }
+
+        /**
+         * Counts updated copies with the values they were written with, leaving out those {@link #removing} did
+         * not find: they were already deleted, so the update changed nothing.
+         *
+         * @param updated the copies updated
+         * @return this delta
+         */
+        Delta addUpdated(Collection<CopyFilm> updated) {
+            for (var copy : updated) {
+                if (found.contains(copy.getId())) {
+                    add(copy.getFilmId(), copy.getCondition(), copy.getSupport(), 1);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Writes the non-zero changes to the summary with JDBC batching.
+         *
+         * @param con the connection of the write
+         * @throws SQLException if the summary cannot be written
+         */
+        void apply(Connection con) throws SQLException {
+            var rows = changes.entrySet().stream().filter(change -> change.getValue() != 0).toList();
+            JdbcSupport.executeBatch(con, UPSERT_SQL, rows, (ps, change) -> {
+                ps.setInt(1, change.getKey().filmId());
+                ps.setString(2, change.getKey().condition());
+                ps.setString(3, change.getKey().support());
+                ps.setInt(4, change.getValue());
+                ps.setInt(5, change.getValue());
+            }, null);
+        }
+
+        private void add(int filmId, String condition, String support, int copies) {
+            var key = new Key(filmId, Objects.requireNonNullElse(condition, ""),
+                    Objects.requireNonNullElse(support, ""));
+            changes.merge(key, copies, Integer::sum);
+        }
+    }
+}
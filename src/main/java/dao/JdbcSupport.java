@@ -0,0 +1,228 @@
+package dao;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Package-private JDBC helpers shared by the DAO implementations.
+ */
+final class JdbcSupport {
+
+    /**
+     * Sets the parameters of a statement from an entity.
+     *
+     * @param <T> the type of entity bound
+     */
+    @FunctionalInterface
+    interface StatementBinder<T> {
+        void bind(PreparedStatement ps, T t) throws SQLException;
+    }
+
+    /**
+     * Work run inside a transaction by {@link #inTransaction(DataSource, TransactionWork)}.
+     *
+     * @param <R> the type of result produced
+     */
+    @FunctionalInterface
+    interface TransactionWork<R> {
+        R run(Connection con) throws SQLException;
+    }
+
+    /**
+     * The number of rows sent per {@code executeBatch()} call, taken from the {@code films.batchSize} system property.
+     */
+    static final int BATCH_SIZE = Integer.getInteger("films.batchSize", 1000);
+
+    private JdbcSupport() {
+    }
+
+    /**
+     * Runs the given work on a borrowed connection inside a single transaction.
+     * The transaction is committed if the work completes and rolled back if it throws.
+     *
+     * @param ds   the data source to borrow the connection from
+     * @param work the work to run
+     * @return the result of the work
+     * @throws RuntimeException wrapping any {@link SQLException}
+     */
+    static <R> R inTransaction(DataSource ds, TransactionWork<R> work) {
+        try (var con = ds.getConnection()) {
+            return inTransaction(con, work);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Runs the given work inside a single transaction on a connection already borrowed, which is left in
+     * auto-commit mode afterwards. The transaction is committed if the work completes and rolled back if it
+     * throws.
+     *
+     * @param con  the connection, in auto-commit mode
+     * @param work the work to run
+     * @return the result of the work
+     * @throws SQLException if the work, the commit or the rollback fails
+     */
+    static <R> R inTransaction(Connection con, TransactionWork<R> work) throws SQLException {
+        con.setAutoCommit(false);
+        try {
+            var result = work.run(con);
+            con.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Executes a statement once per item using JDBC batching, sending {@link #BATCH_SIZE} rows per round trip.
+     * With {@code rewriteBatchedStatements=true} on the JDBC URL, Connector/J turns each batch of inserts
+     * into a single multi-row statement.
+     *
+     * @param con    the connection to use; the caller controls the transaction
+     * @param sql    the statement to execute for each item
+     * @param items  the items to bind, in order
+     * @param binder sets the statement parameters from an item
+     * @param setId  receives each item with its generated key, or {@code null} if no keys are wanted
+     * @return the update count of each item, in order, or {@link Statement#SUCCESS_NO_INFO} where the driver
+     * does not tell
+     * @throws SQLException if the batch fails
+     */
+    static <T> int[] executeBatch(Connection con, String sql, Collection<T> items,
+                                 StatementBinder<T> binder, ObjIntConsumer<T> setId) throws SQLException {
+        var counts = new int[items.size()];
+        if (items.isEmpty()) {
+            return counts;
+        }
+        try (var ps = setId == null ? con.prepareStatement(sql)
+                : con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            var chunk = new ArrayList<T>(Math.min(items.size(), BATCH_SIZE));
+            int sent = 0;
+            for (var item : items) {
+                binder.bind(ps, item);
+                ps.addBatch();
+                chunk.add(item);
+                if (chunk.size() == BATCH_SIZE) {
+                    sent = flushBatch(ps, chunk, setId, counts, sent);
+                }
+            }
+            flushBatch(ps, chunk, setId, counts, sent);
+        }
+        return counts;
+    }
+
+    /**
+     * Sends the pending batch, copies its update counts into {@code counts} from {@code sent} on, and hands the
+     * generated keys back to the items, in order.
+     *
+     * @return the number of items sent so far
+     */
+    private static <T> int flushBatch(PreparedStatement ps, List<T> chunk, ObjIntConsumer<T> setId,
+                                      int[] counts, int sent) throws SQLException {
+        if (chunk.isEmpty()) {
+            return sent;
+        }
+        var chunkCounts = ps.executeBatch();
+        for (int i = 0; i < chunk.size(); i++) {
+            counts[sent + i] = i < chunkCounts.length ? chunkCounts[i] : Statement.SUCCESS_NO_INFO;
+        }
+        if (setId != null) {
+            try (var keys = ps.getGeneratedKeys()) {
+                for (var item : chunk) {
+                    if (!keys.next()) {
+                        throw new SQLException("Driver returned fewer generated keys than inserted rows");
+                    }
+                    setId.accept(item, keys.getInt(1));
+                }
+            }
+        }
+        sent += chunk.size();
+        chunk.clear();
+        return sent;
+    }
+
+    /**
+     * Runs a query and exposes its rows as a lazily populated stream.
+     * <p>
+     * The statement is forward-only and read-only with the given fetch size, so with {@code useCursorFetch=true}
+     * on the JDBC URL MySQL serves the rows from a server-side cursor {@code fetchSize} rows at a time.
+     * A fetch size of {@link Integer#MIN_VALUE} switches Connector/J to row-by-row streaming instead.
+     * Either way only a bounded number of rows is held in memory.
+     * </p>
+     * The connection stays borrowed until the stream is closed.
+     *
+     * @param ds        the data source to borrow the connection from
+     * @param sql       the query to run
+     * @param fetchSize the number of rows fetched per round trip
+     * @param mapper    converts each row into an entity
+     * @return a stream of entities that must be closed after use
+     */
+    static <T> Stream<T> stream(DataSource ds, String sql, int fetchSize, RowMapper<T> mapper) {
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        RowMapper.Bound<T> reader;
+        try {
+            con = ds.getConnection();
+            ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            rs = ps.executeQuery();
+            reader = mapper.bind(rs);
+        } catch (SQLException e) {
+            closeQuietly(rs, ps, con);
+            throw new RuntimeException(e);
+        }
+
+        var resultSet = rs;
+        var statement = ps;
+        var connection = con;
+        var spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!resultSet.next()) {
+                        return false;
+                    }
+                    action.accept(reader.map(resultSet));
+                    return true;
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false)
+                .onClose(() -> closeQuietly(resultSet, statement, connection));
+    }
+
+    /**
+     * Closes each of the given resources, ignoring nulls and failures.
+     */
+    static void closeQuietly(AutoCloseable... resources) {
+        for (var resource : resources) {
+            if (resource != null) {
+                try {
+                    resource.close();
+                } catch (Exception ignored) {
+                    // Nothing useful can be done if closing fails
+                }
+            }
+        }
+    }
+}
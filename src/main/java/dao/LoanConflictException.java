@@ -0,0 +1,18 @@
+package dao;
+
+/**
+ * The {@code LoanConflictException} class reports a loan that {@link LoanDAO} could not make or end because other
+ * users kept changing the copy between its reading the row and its compare-and-set update, for every attempt it
+ * is allowed. Nothing was changed; the caller may try again later.
+ */
+public class LoanConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message what could not be done, and after how many attempts
+     */
+    public LoanConflictException(String message) {
+        super(message);
+    }
+}
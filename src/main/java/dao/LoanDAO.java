@@ -0,0 +1,263 @@
+package dao;
+
+import model.Loan;
+import model.User;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code LoanDAO} class lends copies of films to users other than their owner, and takes them back.
+ * <p>
+ * It uses optimistic concurrency control rather than row locks. Every change to a loan is a compare-and-set
+ * update of the copy's row, {@code ... where id=? and version=?}, that also bumps the row's {@code version}. When
+ * several users try to borrow the same copy at once, one update matches the row and the others match nothing.
+ * None of them locks the row past its own statement or waits for another's transaction. A user who loses the race
+ * reads the row again and retries, up to {@code films.lending.maxAttempts} times (5 by default), with a random
+ * backoff that grows with each attempt. After the last attempt the call throws {@link LoanConflictException}.
+ * </p>
+ * <p>
+ * {@link #borrow} lends any free copy of a film. It reads up to {@value #CANDIDATES} free copies and tries them
+ * in random order, so the borrowers of a popular film spread over its copies rather than all racing for the
+ * first one. {@link CopyFilmDAO#update} bumps the version too, so a loan never goes through on a copy whose owner
+ * changed since it was read.
+ * </p>
+ * <p>
+ * A loan is logged to {@link CatalogChangeDAO} in the same transaction as its update, so the in-memory catalog
+ * picks up the new version of the copy and the copies it serves can still be updated.
+ * </p>
+ */
+public class LoanDAO {
+
+    /** The lending columns of {@code copy}, as read by {@link RowMappers#LOAN}. */
+    private static final String COLUMNS = "select id, film_id, user_id, borrower_id, borrowed_at, version from copy";
+    /** Query used by {@link #borrowCopy} and {@link #giveBack}. */
+    static final String SELECT_BY_COPY_SQL = COLUMNS + " where id=?";
+    /** Query used by {@link #borrow}: free copies of a film owned by someone else. */
+    static final String AVAILABLE_SQL = COLUMNS + " where film_id=? and borrower_id is null and user_id<>?"
+            + " order by id limit ?";
+    /** Query used by {@link #getLoansOfUser}. */
+    static final String LOANS_OF_USER_SQL = COLUMNS + " where borrower_id=? order by id";
+    /** Statement used to lend a copy, if its row still has the version read. */
+    static final String BORROW_SQL = "update copy set borrower_id=?, borrowed_at=?, version=version+1"
+            + " where id=? and version=?";
+    /** Statement used to take a copy back, if its row still has the version read. */
+    static final String GIVE_BACK_SQL = "update copy set borrower_id=null, borrowed_at=null, version=version+1"
+            + " where id=? and version=?";
+
+    /** The free copies {@link #borrow} reads per attempt. */
+    private static final int CANDIDATES = 16;
+    /** The backoff before the second attempt; it doubles with every attempt after that. */
+    private static final long BASE_BACKOFF_NANOS = Duration.ofMillis(1).toNanos();
+    private static final long MAX_BACKOFF_NANOS = Duration.ofMillis(50).toNanos();
+
+    private final DataSource ds;
+    private final int maxAttempts;
+    private final LongAdder conflicts = new LongAdder();
+
+    /**
+     * Creates a new LoanDAO that uses the provided data source and makes up to {@code films.lending.maxAttempts}
+     * attempts per call.
+     *
+     * @param ds the data source to borrow connections from
+     */
+    public LoanDAO(DataSource ds) {
+        this(ds, Integer.getInteger("films.lending.maxAttempts", 5));
+    }
+
+    /**
+     * Creates a new LoanDAO that uses the provided data source.
+     *
+     * @param ds          the data source to borrow connections from
+     * @param maxAttempts the number of times a call reads the rows and tries to update them before giving up
+     */
+    public LoanDAO(DataSource ds, int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1, got " + maxAttempts);
+        }
+        this.ds = ds;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Lends the user any free copy of a film that someone else owns.
+     *
+     * @param filmId   the ID of the film
+     * @param borrower the user borrowing the copy
+     * @return the loan, or {@code null} if every copy of the film is lent or owned by the user
+     * @throws LoanConflictException if other users took every copy tried, on every attempt
+     */
+    public Loan borrow(int filmId, User borrower) {
+        for (int attempt = 1; ; attempt++) {
+            try (var con = ds.getConnection()) {
+                List<Loan> free;
+                try (var ps = con.prepareStatement(AVAILABLE_SQL)) {
+                    ps.setInt(1, filmId);
+                    ps.setInt(2, borrower.getId());
+                    ps.setInt(3, CANDIDATES);
+                    free = RowMappers.LOAN.mapAll(ps.executeQuery());
+                }
+                if (free.isEmpty()) {
+                    return null;
+                }
+                Collections.shuffle(free, ThreadLocalRandom.current());
+                for (var copy : free) {
+                    if (compareAndSet(con, copy, borrower)) {
+                        return copy;
+                    }
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+            backOff(attempt, "borrow a copy of film " + filmId);
+        }
+    }
+
+    /**
+     * Lends the user a given copy.
+     *
+     * @param copyId   the ID of the copy
+     * @param borrower the user borrowing the copy
+     * @return the loan, or {@code null} if the copy does not exist, is lent or is owned by the user
+     * @throws LoanConflictException if the copy kept changing, on every attempt
+     */
+    public Loan borrowCopy(int copyId, User borrower) {
+        for (int attempt = 1; ; attempt++) {
+            try (var con = ds.getConnection()) {
+                var copy = selectCopy(con, copyId);
+                if (copy == null || copy.getBorrowerId() != 0 || copy.getOwnerId() == borrower.getId()) {
+                    return null;
+                }
+                if (compareAndSet(con, copy, borrower)) {
+                    return copy;
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+            backOff(attempt, "borrow copy " + copyId);
+        }
+    }
+
+    /**
+     * Takes back a copy from the user who borrowed it.
+     *
+     * @param copyId   the ID of the copy
+     * @param borrower the user giving the copy back
+     * @return {@code true} if the copy was given back, {@code false} if it is not lent to the user
+     * @throws LoanConflictException if the copy kept changing, on every attempt
+     */
+    public boolean giveBack(int copyId, User borrower) {
+        for (int attempt = 1; ; attempt++) {
+            try (var con = ds.getConnection()) {
+                var copy = selectCopy(con, copyId);
+                if (copy == null || copy.getBorrowerId() != borrower.getId()) {
+                    return false;
+                }
+                if (compareAndSet(con, copy, null)) {
+                    return true;
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+            backOff(attempt, "give back copy " + copyId);
+        }
+    }
+
+    /**
+     * @param borrower a user
+     * @return the copies the user has borrowed, ordered by copy ID
+     */
+    public List<Loan> getLoansOfUser(User borrower) {
+        try (var con = ds.getConnection();
+             var ps = con.prepareStatement(LOANS_OF_USER_SQL)) {
+            ps.setInt(1, borrower.getId());
+            return RowMappers.LOAN.mapAll(ps.executeQuery());
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the number of compare-and-set updates that found the row changed since it was read, since this
+     * DAO was created
+     */
+    public long getConflictCount() {
+        return conflicts.sum();
+    }
+
+    private static Loan selectCopy(Connection con, int copyId) throws SQLException {
+        try (var ps = con.prepareStatement(SELECT_BY_COPY_SQL)) {
+            ps.setInt(1, copyId);
+            return RowMappers.LOAN.mapFirst(ps.executeQuery());
+        }
+    }
+
+    /**
+     * Lends a copy to a user, or takes it back if the user is {@code null}, if its row still has the version it
+     * was read with. On success, updates the copy to the new state of the row.
+     *
+     * @return whether the row was updated
+     */
+    private boolean compareAndSet(Connection con, Loan copy, User borrower) throws SQLException {
+        // Seconds, as a MySQL timestamp stores them, so the loan returned matches the one read back later
+        var borrowedAt = borrower == null ? null : Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        int updated = JdbcSupport.inTransaction(con, c -> {
+            int count;
+            if (borrower != null) {
+                try (var ps = c.prepareStatement(BORROW_SQL)) {
+                    ps.setInt(1, borrower.getId());
+                    ps.setTimestamp(2, Timestamp.from(borrowedAt));
+                    ps.setInt(3, copy.getCopyId());
+                    ps.setInt(4, copy.getVersion());
+                    count = ps.executeUpdate();
+                }
+            } else {
+                try (var ps = c.prepareStatement(GIVE_BACK_SQL)) {
+                    ps.setInt(1, copy.getCopyId());
+                    ps.setInt(2, copy.getVersion());
+                    count = ps.executeUpdate();
+                }
+            }
+            if (count > 0) {
+                CatalogChangeDAO.record(c, CatalogChangeDAO.COPY, copy.getCopyId());
+            }
+            return count;
+        });
+        if (updated == 0) {
+            conflicts.increment();
+            return false;
+        }
+        copy.setBorrowerId(borrower == null ? 0 : borrower.getId());
+        copy.setBorrowedAt(borrowedAt);
+        copy.setVersion(copy.getVersion() + 1);
+        return true;
+    }
+
+    /**
+     * Waits before the next attempt for a random time of up to twice as long as before the previous one, so the
+     * users who lost a race do not all retry at once. The connection is returned to the pool meanwhile.
+     *
+     * @throws LoanConflictException if that was the last attempt, or the thread is interrupted
+     */
+    private void backOff(int attempt, String what) {
+        if (attempt >= maxAttempts) {
+            throw new LoanConflictException("Could not " + what + " after " + attempt + " attempts");
+        }
+        long bound = Math.min(MAX_BACKOFF_NANOS, BASE_BACKOFF_NANOS << Math.min(attempt - 1, 16));
+        try {
+            Thread.sleep(Duration.ofNanos(ThreadLocalRandom.current().nextLong(bound) + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LoanConflictException("Interrupted while trying to " + what);
+        }
+    }
+}
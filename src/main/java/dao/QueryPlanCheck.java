@@ -0,0 +1,143 @@
+package dao;
+
+import migration.MigrationRunner;
+import util.JdbcUtil;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code QueryPlanCheck} class runs {@code EXPLAIN} on every query the DAOs send to the database and
+ * reports the queries that read a whole table when they should use an index.
+ * <p>
+ * It is meant to be run against a local MySQL database, after changing a DAO query or a migration:
+ * </p>
+ * <pre>
+ * java -Dfilms.db.url=jdbc:mysql://localhost:3306/films -cp target/classes:... dao.QueryPlanCheck
+ * </pre>
+ * The schema is migrated first, then every query is explained with sample parameters and each table of the plan
+ * with access type {@code ALL} is reported. The process exits with status 1 if any query that is not an intended
+ * full scan, like {@link FilmDAO#getAll()}, falls back to a table scan. On a nearly empty table MySQL may prefer
+ * a scan over an index it could use, so run it against a database holding more than the sample data of
+ * {@code Films.sql}.
+ */
+public class QueryPlanCheck {
+
+    /**
+     * A DAO query and the parameters it is explained with.
+     *
+     * @param name       the DAO method running the query
+     * @param sql        the SQL of the query
+     * @param fullScan   whether reading the whole table is what the query is meant to do
+     * @param parameters sample values for the placeholders of the query
+     */
+    record Query(String name, String sql, boolean fullScan, Object... parameters) {
+    }
+
+    /**
+     * The plan of one table of an explained query.
+     *
+     * @param query the explained query
+     * @param table the table, or its alias in the query
+     * @param type  the access type, such as {@code const}, {@code ref}, {@code range} or {@code ALL}
+     * @param key   the index used, or {@code null}
+     * @param rows  the number of rows MySQL expects to examine
+     */
+    record Plan(Query query, String table, String type, String key, long rows) {
+        boolean isFullScan() {
+            return "ALL".equalsIgnoreCase(type);
+        }
+    }
+
+    /**
+     * Every query run by the DAOs. Inserts are left out since they do not read any table.
+     */
+    static final List<Query> QUERIES = List.of(
+            new Query("FilmDAO.getAll", FilmDAO.SELECT_ALL_SQL, true),
+            new Query("FilmDAO.getById", FilmDAO.SELECT_BY_ID_SQL, false, 1),
+            new Query("FilmDAO.getPageAfter", FilmDAO.SELECT_PAGE_SQL, false, 0, 100),
+            new Query("FilmDAO.update", FilmDAO.UPDATE_SQL, false, "", "", 0, "", "", 1),
+            new Query("FilmDAO.delete", FilmDAO.DELETE_SQL, false, 1),
+            new Query("CopyFilmDAO.getAll", CopyFilmDAO.SELECT_ALL_SQL, true),
+            new Query("CopyFilmDAO.getById", CopyFilmDAO.SELECT_BY_ID_SQL, false, 1),
+            new Query("CopyFilmDAO.getByUser", CopyFilmDAO.SELECT_BY_USER_SQL, false, 1),
+            new Query("CopyFilmDAO.countByUser", CopyFilmDAO.COUNT_BY_USER_SQL, false, 1),
+            new Query("CopyFilmDAO.getLibraryByUser", CopyFilmDAO.LIBRARY_ALL_SQL, false, 1),
+            new Query("CopyFilmDAO.getLibraryPageByUser", CopyFilmDAO.LIBRARY_PAGE_SQL, false, 1, 0, 100),
+            new Query("CopyFilmDAO.update", CopyFilmDAO.UPDATE_SQL, false, 1, 1, "New", "DVD", 1, 1, 1, 0),
+            new Query("CopyFilmDAO.delete", CopyFilmDAO.DELETE_SQL, false, 1),
+            new Query("InventoryDAO.countCopiesOfFilm", InventoryDAO.COUNT_FILM_SQL, false, 1),
+            new Query("LoanDAO.borrow", LoanDAO.AVAILABLE_SQL, false, 1, 1, 16),
+            new Query("LoanDAO.borrow", LoanDAO.BORROW_SQL, false, 1, "2000-01-01 00:00:00", 1, 0),
+            new Query("LoanDAO.borrowCopy", LoanDAO.SELECT_BY_COPY_SQL, false, 1),
+            new Query("LoanDAO.giveBack", LoanDAO.GIVE_BACK_SQL, false, 1, 0),
+            new Query("LoanDAO.getLoansOfUser", LoanDAO.LOANS_OF_USER_SQL, false, 1),
+            new Query("CatalogChangeDAO.getLatestSeq", CatalogChangeDAO.LATEST_SEQ_SQL, false),
+            new Query("CatalogChangeDAO.getSeqs", CatalogChangeDAO.SEQS_SQL, false, 0, 100),
+            new Query("CatalogChangeDAO.getFirstSeqSince", CatalogChangeDAO.RECENT_SEQ_SQL, true,
+                    "2000-01-01 00:00:00"),
+            new Query("CatalogChangeDAO.getChanges", CatalogChangeDAO.CHANGED_IDS_SQL, false, "film", 0, 100),
+            new Query("CatalogChangeDAO.getChanges", CatalogChangeDAO.CHANGED_FILMS_SQL, false, 0, 100),
+            new Query("CatalogChangeDAO.getChanges", CatalogChangeDAO.CHANGED_COPIES_SQL, false, 0, 100),
+            new Query("CatalogChangeDAO.prune", CatalogChangeDAO.PRUNE_SQL, true, "2000-01-01 00:00:00"),
+            new Query("UserDAO.getAll", UserDAO.SELECT_ALL_SQL, true),
+            new Query("UserDAO.getById", UserDAO.SELECT_BY_ID_SQL, false, 1),
+            new Query("UserDAO.validateUser", UserDAO.VALIDATE_SQL, false, "johnsmith", "securePass123"),
+            new Query("UserDAO.update", UserDAO.UPDATE_SQL, false, "", "", 1),
+            new Query("UserDAO.delete", UserDAO.DELETE_SQL, false, 1));
+
+    /**
+     * Migrates the configured database, explains every DAO query and exits with status 1 if a query
+     * unexpectedly reads a whole table.
+     *
+     * @param args command-line arguments (unused)
+     */
+    public static void main(String[] args) {
+        var ds = JdbcUtil.getDataSource();
+        new MigrationRunner(ds).migrate();
+        var plans = explain(ds, QUERIES);
+        var failures = 0;
+        for (var plan : plans) {
+            boolean failed = plan.isFullScan() && !plan.query().fullScan();
+            if (failed) {
+                failures++;
+            }
+            System.out.printf("%-4s %-34s %-6s %-8s %-22s rows=%d%n", failed ? "FAIL" : "ok",
+                    plan.query().name(), plan.table(), plan.type(), plan.key(), plan.rows());
+        }
+        System.out.printf("%d queries explained, %d full table scans%n", QUERIES.size(), failures);
+        JdbcUtil.getPool().close();
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Explains the given queries.
+     *
+     * @param ds      the data source of the database to explain the queries on
+     * @param queries the queries to explain
+     * @return the plan of every table read by every query, in order
+     */
+    static List<Plan> explain(DataSource ds, List<Query> queries) {
+        var plans = new ArrayList<Plan>();
+        try (var con = ds.getConnection()) {
+            for (var query : queries) {
+                try (var ps = con.prepareStatement("explain " + query.sql())) {
+                    for (int i = 0; i < query.parameters().length; i++) {
+                        ps.setObject(i + 1, query.parameters()[i]);
+                    }
+                    try (var rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            plans.add(new Plan(query, rs.getString("table"), rs.getString("type"),
+                                    rs.getString("key"), rs.getLong("rows")));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        return plans;
+    }
+}
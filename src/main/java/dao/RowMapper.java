@@ -0,0 +1,336 @@
+package dao;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * The {@code RowMapper} class turns the rows of a {@link ResultSet} into entities.
+ * <p>
+ * A mapper is a list of column labels, each with the code that copies the column into the entity. Reading a
+ * column by label makes the driver search the columns of the result set, ignoring case, for every column of
+ * every row. A mapper instead looks each label up once per result set, in {@link #bind(ResultSet)}, and then
+ * reads the row by column index.
+ * </p>
+ * <p>
+ * Columns missing from the result set are left out rather than rejected, so the same mapper reads
+ * {@code select *} as well as a query selecting only some columns; the fields of the missing columns keep their
+ * default value. {@link #withPrefix(String)} reads the columns under a prefix, such as a {@code film_title}
+ * alias in a join, and {@link Builder#nested(RowMapper, BiConsumer)} maps another entity from the same row.
+ * </p>
+ * Mappers are immutable and can be shared by every thread; the shared mappers of the entities are in
+ * {@link RowMappers}.
+ *
+ * @param <T> the type of entity mapped
+ */
+public final class RowMapper<T> {
+
+    /**
+     * Copies one column of the current row into an entity.
+     *
+     * @param <T> the type of entity read into
+     */
+    @FunctionalInterface
+    public interface ColumnReader<T> {
+        /**
+         * @param rs     the result set positioned on the row
+         * @param index  the index of the column in the result set
+         * @param target the entity to set the value on
+         * @throws SQLException if the column cannot be read
+         */
+        void read(ResultSet rs, int index, T target) throws SQLException;
+    }
+
+    /**
+     * A mapper bound to the columns of one result set.
+     *
+     * @param <T> the type of entity mapped
+     */
+    @FunctionalInterface
+    public interface Bound<T> {
+        /**
+         * Maps the current row.
+         *
+         * @param rs the result set the mapper was bound to, positioned on a row
+         * @return the entity read from the row
+         * @throws SQLException if a column cannot be read
+         */
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Another entity mapped from the same row, and how to attach it to the outer one.
+     */
+    private record Nested<T, U>(RowMapper<U> mapper, BiConsumer<T, U> setter) {
+        Nested<T, U> withPrefix(String prefix) {
+            return new Nested<>(mapper.withPrefix(prefix), setter);
+        }
+    }
+
+    private final String entityName;
+    private final Supplier<T> factory;
+    private final String[] labels;
+    private final ColumnReader<T>[] readers;
+    private final List<Nested<T, ?>> nested;
+
+    private RowMapper(String entityName, Supplier<T> factory, String[] labels, ColumnReader<T>[] readers,
+                      List<Nested<T, ?>> nested) {
+        this.entityName = entityName;
+        this.factory = factory;
+        this.labels = labels;
+        this.readers = readers;
+        this.nested = nested;
+    }
+
+    /**
+     * Starts describing a mapper.
+     *
+     * @param entityName the name of the entity, used in error messages
+     * @param factory    creates an empty entity for each row
+     * @param <T>        the type of entity mapped
+     * @return a builder to add the columns to
+     */
+    public static <T> Builder<T> builder(String entityName, Supplier<T> factory) {
+        return new Builder<>(entityName, factory);
+    }
+
+    /**
+     * Starts describing a mapper that reads the same columns as this one, and more.
+     *
+     * @return a builder holding the columns of this mapper
+     */
+    public Builder<T> toBuilder() {
+        var builder = new Builder<>(entityName, factory);
+        builder.labels.addAll(Arrays.asList(labels));
+        builder.readers.addAll(Arrays.asList(readers));
+        builder.nested.addAll(nested);
+        return builder;
+    }
+
+    /**
+     * Returns a mapper reading the same columns, with every label, nested ones included, starting with {@code prefix}.
+     *
+     * @param prefix the prefix of the column labels, such as {@code film_}
+     * @return the prefixed mapper
+     */
+    public RowMapper<T> withPrefix(String prefix) {
+        var prefixed = new String[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            prefixed[i] = prefix + labels[i];
+        }
+        var prefixedNested = new ArrayList<Nested<T, ?>>(nested.size());
+        for (var n : nested) {
+            prefixedNested.add(n.withPrefix(prefix));
+        }
+        return new RowMapper<>(entityName, factory, prefixed, readers, List.copyOf(prefixedNested));
+    }
+
+    /**
+     * Looks up the columns of this mapper in a result set.
+     *
+     * @param rs the result set whose rows are to be mapped
+     * @return a mapper reading the rows of {@code rs} by column index
+     * @throws SQLException if the result set has none of the columns of this mapper
+     */
+    public Bound<T> bind(ResultSet rs) throws SQLException {
+        var bound = bind(rs.getMetaData());
+        if (bound == null) {
+            throw new SQLException("The result set has none of the columns of " + entityName
+                    + " " + Arrays.toString(labels));
+        }
+        return bound;
+    }
+
+    /**
+     * Maps every remaining row of a result set.
+     *
+     * @param rs the result set to read
+     * @return the entities read, in row order
+     * @throws SQLException if the rows cannot be read
+     */
+    public List<T> mapAll(ResultSet rs) throws SQLException {
+        var bound = bind(rs);
+        var entities = new ArrayList<T>();
+        while (rs.next()) {
+            entities.add(bound.map(rs));
+        }
+        return entities;
+    }
+
+    /**
+     * Maps the next row of a result set, if there is one.
+     *
+     * @param rs the result set to read
+     * @return the entity read, or {@code null} if there are no more rows
+     * @throws SQLException if the row cannot be read
+     */
+    public T mapFirst(ResultSet rs) throws SQLException {
+        var bound = bind(rs);
+        return rs.next() ? bound.map(rs) : null;
+    }
+
+    /**
+     * Binds this mapper to the columns described by the metadata, or returns {@code null} if none of them match.
+     */
+    @SuppressWarnings("unchecked")
+    private Bound<T> bind(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        var columnLabels = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnLabels[i] = metaData.getColumnLabel(i + 1);
+        }
+
+        var indexes = new int[labels.length];
+        ColumnReader<T>[] found = readerArray(labels.length);
+        int count = 0;
+        for (int i = 0; i < labels.length; i++) {
+            int index = indexOf(columnLabels, labels[i]);
+            if (index > 0) {
+                indexes[count] = index;
+                found[count] = readers[i];
+                count++;
+            }
+        }
+        var boundNested = new ArrayList<BoundNested<T, ?>>(nested.size());
+        for (var n : nested) {
+            var b = bindNested(n, metaData);
+            if (b != null) {
+                boundNested.add(b);
+            }
+        }
+        if (count == 0 && boundNested.isEmpty()) {
+            return null;
+        }
+
+        int columns = count;
+        var columnIndexes = Arrays.copyOf(indexes, count);
+        var columnReaders = Arrays.copyOf(found, count);
+        var nestedMappers = boundNested.toArray(new BoundNested<?, ?>[0]);
+        return rs -> {
+            var entity = factory.get();
+            for (int i = 0; i < columns; i++) {
+                columnReaders[i].read(rs, columnIndexes[i], entity);
+            }
+            for (var n : nestedMappers) {
+                ((BoundNested<T, ?>) n).mapInto(rs, entity);
+            }
+            return entity;
+        };
+    }
+
+    /**
+     * A nested mapper bound to a result set.
+     */
+    private record BoundNested<T, U>(Bound<U> bound, BiConsumer<T, U> setter) {
+        void mapInto(ResultSet rs, T entity) throws SQLException {
+            setter.accept(entity, bound.map(rs));
+        }
+    }
+
+    private static <T, U> BoundNested<T, U> bindNested(Nested<T, U> nested, ResultSetMetaData metaData)
+            throws SQLException {
+        var bound = nested.mapper().bind(metaData);
+        return bound == null ? null : new BoundNested<>(bound, nested.setter());
+    }
+
+    /**
+     * Creates an array of column readers, which cannot be created with a type argument.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> ColumnReader<T>[] readerArray(int length) {
+        return (ColumnReader<T>[]) new ColumnReader<?>[length];
+    }
+
+    /**
+     * Returns the 1-based index of the column with the given label, ignoring case, or 0 if there is none.
+     */
+    private static int indexOf(String[] columnLabels, String label) {
+        for (int i = 0; i < columnLabels.length; i++) {
+            if (columnLabels[i].equalsIgnoreCase(label)) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Describes the columns of a {@link RowMapper}.
+     *
+     * @param <T> the type of entity mapped
+     */
+    public static final class Builder<T> {
+        private final String entityName;
+        private final Supplier<T> factory;
+        private final List<String> labels = new ArrayList<>();
+        private final List<ColumnReader<T>> readers = new ArrayList<>();
+        private final List<Nested<T, ?>> nested = new ArrayList<>();
+
+        private Builder(String entityName, Supplier<T> factory) {
+            this.entityName = entityName;
+            this.factory = factory;
+        }
+
+        /**
+         * Adds a column read with a custom reader.
+         *
+         * @param label  the label of the column
+         * @param reader copies the column into the entity
+         * @return this builder
+         */
+        public Builder<T> column(String label, ColumnReader<T> reader) {
+            labels.add(label);
+            readers.add(reader);
+            return this;
+        }
+
+        /**
+         * Adds an {@code int} column; SQL {@code NULL} is read as 0.
+         *
+         * @param label  the label of the column
+         * @param setter sets the value on the entity
+         * @return this builder
+         */
+        public Builder<T> intColumn(String label, ObjIntConsumer<T> setter) {
+            return column(label, (rs, index, target) -> setter.accept(target, rs.getInt(index)));
+        }
+
+        /**
+         * Adds a text column.
+         *
+         * @param label  the label of the column
+         * @param setter sets the value on the entity
+         * @return this builder
+         */
+        public Builder<T> stringColumn(String label, BiConsumer<T, String> setter) {
+            return column(label, (rs, index, target) -> setter.accept(target, rs.getString(index)));
+        }
+
+        /**
+         * Maps another entity from the same row and attaches it to this one. The nested entity is only
+         * mapped if the result set has at least one of its columns.
+         *
+         * @param mapper the mapper of the nested entity, usually {@linkplain RowMapper#withPrefix(String) prefixed}
+         * @param setter attaches the nested entity
+         * @param <U>    the type of the nested entity
+         * @return this builder
+         */
+        public <U> Builder<T> nested(RowMapper<U> mapper, BiConsumer<T, U> setter) {
+            nested.add(new Nested<>(mapper, setter));
+            return this;
+        }
+
+        /**
+         * @return the mapper
+         */
+        public RowMapper<T> build() {
+            return new RowMapper<>(entityName, factory, labels.toArray(new String[0]),
+                    readers.toArray(RowMapper.<T>readerArray(0)), List.copyOf(nested));
+        }
+    }
+}
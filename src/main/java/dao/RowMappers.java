@@ -0,0 +1,72 @@
+package dao;
+
+import model.CopyFilm;
+import model.Film;
+import model.Loan;
+import model.User;
+
+/**
+ * The {@code RowMappers} class holds the {@link RowMapper}s of the entities, shared by every DAO method that
+ * reads them, so a column is mapped in exactly one place.
+ */
+public final class RowMappers {
+
+    /**
+     * Maps the columns of the {@code film} table.
+     */
+    public static final RowMapper<Film> FILM = RowMapper.builder("Film", Film::new)
+            .intColumn("id", Film::setId)
+            .stringColumn("title", Film::setTitle)
+            .stringColumn("genre", Film::setGenre)
+            .intColumn("year", Film::setYear)
+            .stringColumn("description", Film::setDescription)
+            .stringColumn("director", Film::setDirector)
+            .build();
+
+    /**
+     * Maps the columns of the {@code copy} table.
+     */
+    public static final RowMapper<CopyFilm> COPY_FILM = RowMapper.builder("CopyFilm", CopyFilm::new)
+            .intColumn("id", CopyFilm::setId)
+            .stringColumn("condition", CopyFilm::setCondition)
+            .stringColumn("support", CopyFilm::setSupport)
+            .intColumn("film_id", CopyFilm::setFilmId)
+            .intColumn("user_id", CopyFilm::setUserId)
+            .intColumn("version", CopyFilm::setVersion)
+            .build();
+
+    /**
+     * Maps a copy joined with its film, whose columns are selected with a {@code film_} prefix
+     * ({@code film_id}, {@code film_title}, ...), and attaches the film to the copy.
+     */
+    public static final RowMapper<CopyFilm> COPY_WITH_FILM = COPY_FILM.toBuilder()
+            .nested(FILM.withPrefix("film_"), CopyFilm::setFilm)
+            .build();
+
+    /**
+     * Maps the lending columns of the {@code copy} table; {@code borrower_id} is 0 while the copy is not lent.
+     */
+    public static final RowMapper<Loan> LOAN = RowMapper.builder("Loan", Loan::new)
+            .intColumn("id", Loan::setCopyId)
+            .intColumn("film_id", Loan::setFilmId)
+            .intColumn("user_id", Loan::setOwnerId)
+            .intColumn("borrower_id", Loan::setBorrowerId)
+            .column("borrowed_at", (rs, index, loan) -> {
+                var borrowedAt = rs.getTimestamp(index);
+                loan.setBorrowedAt(borrowedAt == null ? null : borrowedAt.toInstant());
+            })
+            .intColumn("version", Loan::setVersion)
+            .build();
+
+    /**
+     * Maps the columns of the {@code user} table.
+     */
+    public static final RowMapper<User> USER = RowMapper.builder("User", User::new)
+            .intColumn("id", User::setId)
+            .stringColumn("userName", User::setUserName)
+            .stringColumn("password", User::setPassword)
+            .build();
+
+    private RowMappers() {
+    }
+}
@@ -2,9 +2,11 @@ package dao;
 
 import model.User;
 
+import javax.sql.DataSource;
 import java.sql.*;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * The {@code UserDAO} class provides CRUD operations for the {@link User} entity.
@@ -14,18 +16,31 @@ import java.util.List;
  */
 public class UserDAO implements DAO<User> {
 
+    /** Query used by {@link #getAll} and {@link #streamAll}. */
+    static final String SELECT_ALL_SQL = "select * from user";
+    /** Query used by {@link #getById}. */
+    static final String SELECT_BY_ID_SQL = "select * from user where id = ?";
+    /** Query used by {@link #validateUser}. */
+    static final String VALIDATE_SQL = "select * from user where userName=? and password=?";
+    /** Statement used by {@link #add} and {@link #addAll}. */
+    static final String INSERT_SQL = "insert into user(userName,password) values(?,?)";
+    /** Statement used by {@link #update} and {@link #updateAll}. */
+    static final String UPDATE_SQL = "update user set userName=?, password=? where id=?";
+    /** Statement used by {@link #delete} and {@link #deleteAll}. */
+    static final String DELETE_SQL = "delete from user where id=?";
+
     /**
-     * Database connection object used to execute SQL queries.
+     * Data source that hands out a connection for each operation.
      */
-    private static Connection con = null;
+    private final DataSource ds;
 
     /**
-     * Constructor for UserDAO that initializes the database connection.
+     * Constructor for UserDAO that sets the data source used to borrow connections.
      *
-     * @param c the Connection object used for database interaction
+     * @param ds the DataSource used for database interaction
      */
-    public UserDAO(Connection c) {
-        con = c;
+    public UserDAO(DataSource ds) {
+        this.ds = ds;
     }
 
     /**
@@ -35,20 +50,23 @@ public class UserDAO implements DAO<User> {
      */
     @Override
     public List<User> getAll() {
-        List<User> users = new ArrayList<>();
-        try (Statement st = con.createStatement()) {
-            var rs = st.executeQuery("select * from user");
-            while (rs.next()) {
-                User user = new User();
-                user.setId(rs.getInt("id"));
-                user.setUserName(rs.getString("userName"));
-                user.setPassword(rs.getString("password"));
-                users.add(user);
-            }
+        try (Connection con = ds.getConnection();
+             Statement st = con.createStatement()) {
+            return RowMappers.USER.mapAll(st.executeQuery(SELECT_ALL_SQL));
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
-        return users;
+    }
+
+    /**
+     * Streams all User records from the database using a cursor.
+     *
+     * @param fetchSize the number of rows fetched per round trip
+     * @return a Stream of User objects that must be closed after use
+     */
+    @Override
+    public Stream<User> streamAll(int fetchSize) {
+        return JdbcSupport.stream(ds, SELECT_ALL_SQL, fetchSize, RowMappers.USER);
     }
 
     /**
@@ -59,20 +77,16 @@ public class UserDAO implements DAO<User> {
      */
     @Override
     public User getById(int id) {
-        var user = new User();
-        try (PreparedStatement ps = con.prepareStatement("select * from user where id = ?")) {
+        try (Connection con = ds.getConnection();
+             PreparedStatement ps = con.prepareStatement(SELECT_BY_ID_SQL)) {
             ps.setInt(1, id);
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    user.setId(rs.getInt("id"));
-                    user.setUserName(rs.getString("userName"));
-                    user.setPassword(rs.getString("password"));
-                }
+                var user = RowMappers.USER.mapFirst(rs);
+                return user != null ? user : new User();
             }
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
-        return user;
     }
 
     /**
@@ -82,9 +96,9 @@ public class UserDAO implements DAO<User> {
      */
     @Override
     public void add(User user) {
-        try (var ps = con.prepareStatement("insert into user(userName,password) values(?,?)", Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, user.getUserName());
-            ps.setString(2, user.getPassword());
+        try (var con = ds.getConnection();
+             var ps = con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            bindUser(ps, user);
             if (ps.executeUpdate() > 0) {
                 var rs = ps.getGeneratedKeys();
                 rs.next();
@@ -102,9 +116,9 @@ public class UserDAO implements DAO<User> {
      */
     @Override
     public void update(User user) {
-        try (var ps = con.prepareStatement("update user set userName=?, password=? where id=?")) {
-            ps.setString(1, user.getUserName());
-            ps.setString(2, user.getPassword());
+        try (var con = ds.getConnection();
+             var ps = con.prepareStatement(UPDATE_SQL)) {
+            bindUser(ps, user);
             ps.setInt(3, user.getId());
             ps.executeUpdate();
         } catch (SQLException e) {
@@ -119,7 +133,8 @@ public class UserDAO implements DAO<User> {
      */
     @Override
     public void delete(User user) {
-        try (var ps = con.prepareStatement("delete from user where id=?")) {
+        try (var con = ds.getConnection();
+             var ps = con.prepareStatement(DELETE_SQL)) {
             ps.setInt(1, user.getId());
             ps.executeUpdate();
         } catch (SQLException e) {
@@ -127,6 +142,49 @@ public class UserDAO implements DAO<User> {
         }
     }
 
+    /**
+     * Adds several User records to the database in one transaction using JDBC batching.
+     * Each User receives its generated ID.
+     *
+     * @param items the User objects to be added to the database
+     */
+    @Override
+    public void addAll(Collection<User> items) {
+        JdbcSupport.inTransaction(ds, con -> {
+            JdbcSupport.executeBatch(con, INSERT_SQL, items, UserDAO::bindUser, User::setId);
+            return null;
+        });
+    }
+
+    /**
+     * Updates several existing User records in one transaction using JDBC batching.
+     *
+     * @param items the User objects containing the updated data
+     */
+    @Override
+    public void updateAll(Collection<User> items) {
+        JdbcSupport.inTransaction(ds, con -> {
+            JdbcSupport.executeBatch(con, UPDATE_SQL, items, (ps, user) -> {
+                bindUser(ps, user);
+                ps.setInt(3, user.getId());
+            }, null);
+            return null;
+        });
+    }
+
+    /**
+     * Deletes several User records in one transaction using JDBC batching.
+     *
+     * @param items the User objects to be deleted
+     */
+    @Override
+    public void deleteAll(Collection<User> items) {
+        JdbcSupport.inTransaction(ds, con -> {
+            JdbcSupport.executeBatch(con, DELETE_SQL, items, (ps, user) -> ps.setInt(1, user.getId()), null);
+            return null;
+        });
+    }
+
     /**
      * Validates a user's credentials by checking the database for a matching username and password.
      *
@@ -135,21 +193,27 @@ public class UserDAO implements DAO<User> {
      * @return the User object if the credentials are valid, otherwise returns an empty User object
      */
     public User validateUser(String user, char[] userPassword) {
-        var userData = new User();
-        try (var ps = con.prepareStatement("select * from user where userName=? and password=?")) {
+        try (var con = ds.getConnection();
+             var ps = con.prepareStatement(VALIDATE_SQL)) {
             var password = new String(userPassword);
             ps.setString(1, user);
             ps.setString(2, password);
-            var rs = ps.executeQuery();
-            if (rs.next()) {
-                userData.setId(rs.getInt("id"));
-                userData.setUserName(rs.getString("userName"));
-                userData.setPassword(rs.getString("password"));
-            }
+            var userData = RowMappers.USER.mapFirst(ps.executeQuery());
+            return userData != null ? userData : new User();
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
-        return userData;
     }
-}
 
+    /**
+     * Sets the first 2 parameters of an insert or update statement from a User.
+     *
+     * @param ps the statement whose parameters are set
+     * @param user the User providing the values
+     * @throws SQLException if a parameter cannot be set
+     */
+    private static void bindUser(PreparedStatement ps, User user) throws SQLException {
+        ps.setString(1, user.getUserName());
+        ps.setString(2, user.getPassword());
+    }
+}
@@ -0,0 +1,443 @@
+package dao;
+
+import model.CopyFilm;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The {@code WriteBehindQueue} class holds the copy updates and deletions of a {@link CopyFilmDAO} in write-behind
+ * mode, and writes them to the database in the background, so the caller returns without waiting for a commit.
+ * <p>
+ * Pending writes are keyed by copy ID: a second update of a copy replaces the first, and a deletion replaces any
+ * pending update, so a copy costs at most one statement per flush however often it changes. A background thread
+ * flushes the queue every {@code flushInterval}, or as soon as {@code batchSize} copies are pending, writing the
+ * updates and deletions in JDBC batches inside a single transaction. If that transaction fails, the writes are
+ * retried one by one, and those that still fail are logged and dropped, so one bad row cannot hold the queue up.
+ * </p>
+ * <p>
+ * Updates are compare-and-set, as in {@link CopyFilmDAO}. Queuing an update sets the copy to the version its row
+ * will have once the update is written, so the caller can update it again, just as after a synchronous update. An
+ * update whose version does not follow the writes already queued for its copy, or of a copy queued for deletion,
+ * throws {@link CopyConflictException} at once and queues nothing. A coalesced update still compares the version
+ * of the update it replaces, since that is the version still in the row. A conflict with a write made outside
+ * the queue can only be found when the update is written, and is then logged and dropped.
+ * </p>
+ * <p>
+ * The queue holds at most {@code capacity} copies. A write to a copy not already pending waits while the queue is
+ * full, which slows writers down to the pace of the database instead of letting the queue grow without bound.
+ * </p>
+ * <p>
+ * Writes are not durable until flushed. {@link #close()} writes what is still pending before returning, unless
+ * {@code flushOnClose} is off, in which case the pending writes are dropped.
+ * </p>
+ */
+public class WriteBehindQueue implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(WriteBehindQueue.class.getName());
+
+    /**
+     * The settings of a write-behind queue.
+     *
+     * @param capacity      the largest number of copies with a pending write
+     * @param batchSize     the number of pending copies that triggers a flush before the interval elapses
+     * @param flushInterval how long a write may stay pending
+     * @param flushOnClose  whether {@link #close()} writes the pending writes or drops them
+     */
+    public record Config(int capacity, int batchSize, Duration flushInterval, boolean flushOnClose) {
+
+        /**
+         * @return the settings given by the {@code films.writeBehind.*} system properties
+         */
+        public static Config fromSystemProperties() {
+            return new Config(Integer.getInteger("films.writeBehind.capacity", 10_000),
+                    Integer.getInteger("films.writeBehind.batchSize", JdbcSupport.BATCH_SIZE),
+                    Duration.ofMillis(Long.getLong("films.writeBehind.flushMillis", 200)),
+                    Boolean.parseBoolean(System.getProperty("films.writeBehind.flushOnClose", "true")));
+        }
+    }
+
+    /**
+     * Writes a flush to the database in one transaction.
+     */
+    @FunctionalInterface
+    interface Writer {
+        /**
+         * @param updates the copies to update
+         * @param deletes the copies to delete
+         */
+        void write(List<CopyFilm> updates, List<CopyFilm> deletes);
+    }
+
+    /**
+     * A pending write: the state of the copy to update, or the copy to delete.
+     */
+    private record Pending(CopyFilm copy, boolean delete) {
+    }
+
+    private final Writer writer;
+    private final Runnable afterFlush;
+    private final Config config;
+    private final Thread flusher;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition flushNeeded = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    /** The pending writes, in the order their copies were first queued. Guarded by {@link #lock}. */
+    private LinkedHashMap<Integer, Pending> pending = new LinkedHashMap<>();
+    /** The writes being flushed, not committed yet. Guarded by {@link #lock}. */
+    private LinkedHashMap<Integer, Pending> writing = new LinkedHashMap<>();
+    /** The number of writes queued so far, and how many of them have been flushed. Guarded by {@link #lock}. */
+    private long queuedCount;
+    private long flushedCount;
+    private long coalescedCount;
+    private long droppedCount;
+    /** When the oldest pending write was queued, from {@link System#nanoTime()}. Guarded by {@link #lock}. */
+    private long oldestQueuedAt;
+    private boolean flushRequested;
+    private boolean closed;
+
+    /**
+     * Creates a queue and starts its flusher thread.
+     *
+     * @param writer     writes a flush to the database
+     * @param afterFlush runs on the flusher thread after each flush, for example to refresh a cache
+     * @param config     the settings of the queue
+     */
+    WriteBehindQueue(Writer writer, Runnable afterFlush, Config config) {
+        this.writer = writer;
+        this.afterFlush = afterFlush;
+        this.config = config;
+        this.flusher = new Thread(this::run, "copy-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Queues the update of a copy, and sets the copy to the version its row will have once the update is written.
+     * The copy is copied, so changing it afterwards does not change the write.
+     *
+     * @param copy the copy with its new values and the version it was read with
+     * @throws CopyConflictException if the version does not follow the writes already queued for the copy
+     */
+    void update(CopyFilm copy) {
+        updateAll(List.of(copy));
+    }
+
+    /**
+     * Queues the update of several copies, as {@link #update} does. Their versions are all checked before any is
+     * queued, so a conflict queues none of them, unless another thread queues one of the copies while this one
+     * waits for room in the queue.
+     *
+     * @param copies the copies with their new values and the versions they were read with
+     * @throws CopyConflictException if the version of a copy does not follow the writes already queued for it
+     */
+    void updateAll(Collection<CopyFilm> copies) {
+        lock.lock();
+        try {
+            for (var copy : copies) {
+                checkVersion(copy);
+            }
+            for (var copy : copies) {
+                var queued = enqueue(new Pending(snapshot(copy), false));
+                copy.setVersion(queued.copy().getVersion() + 1);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues the deletion of a copy.
+     *
+     * @param copy the copy to delete
+     */
+    void delete(CopyFilm copy) {
+        enqueue(new Pending(snapshot(copy), true));
+    }
+
+    /**
+     * @param id the ID of a copy
+     * @return whether the copy is queued for deletion and not deleted yet
+     */
+    public boolean isDeletePending(int id) {
+        lock.lock();
+        try {
+            var write = pending.get(id);
+            if (write == null) {
+                write = writing.get(id);
+            }
+            return write != null && write.delete();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes every write queued so far and waits until they are committed.
+     *
+     * @throws IllegalStateException if the queue is closed and its writes were dropped
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            long target = queuedCount;
+            flushRequested = true;
+            flushNeeded.signal();
+            while (flushedCount < target) {
+                if (!flusher.isAlive()) {
+                    throw new IllegalStateException("The write-behind queue is closed");
+                }
+                flushed.await(100, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of copies with a pending write
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of writes that replaced a pending write of the same copy
+     */
+    public long getCoalescedCount() {
+        lock.lock();
+        try {
+            return coalescedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of writes dropped, because they failed or the queue was closed without flushing
+     */
+    public long getDroppedCount() {
+        lock.lock();
+        try {
+            return droppedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the flusher, after writing the pending writes if {@code flushOnClose} is set. Writes queued after
+     * this are rejected. Does nothing if the queue is already closed.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (!config.flushOnClose()) {
+                droppedCount += pending.size();
+                if (!pending.isEmpty()) {
+                    LOG.warning("Dropped " + pending.size() + " pending copy writes on close");
+                }
+                pending = new LinkedHashMap<>();
+            }
+            flushNeeded.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Throws {@link CopyConflictException} unless the version of an updated copy is the one its row will have once
+     * the writes already queued for it are written. Called with {@link #lock} held.
+     */
+    private void checkVersion(CopyFilm copy) {
+        var queued = pending.get(copy.getId());
+        if (queued == null) {
+            queued = writing.get(copy.getId());
+        }
+        if (queued != null && (queued.delete() || copy.getVersion() != queued.copy().getVersion() + 1)) {
+            throw new CopyConflictException("Copy " + copy.getId() + (queued.delete()
+                    ? " is queued for deletion" : " changed since it was read"));
+        }
+    }
+
+    /**
+     * Queues a write once there is room for it.
+     *
+     * @return the write now pending for the copy
+     */
+    private Pending enqueue(Pending write) {
+        int id = write.copy().getId();
+        lock.lock();
+        try {
+            while (!closed && pending.size() >= config.capacity() && !pending.containsKey(id)) {
+                flushRequested = true;
+                flushNeeded.signal();
+                notFull.await();
+            }
+            if (closed) {
+                throw new IllegalStateException("The write-behind queue is closed");
+            }
+            if (!write.delete()) {
+                checkVersion(write.copy());
+            }
+            var previous = pending.get(id);
+            if (previous != null) {
+                coalescedCount++;
+                if (!write.delete()) {
+                    // The row still has the version of the update replaced
+                    write.copy().setVersion(previous.copy().getVersion());
+                }
+                pending.put(id, write);
+            } else {
+                if (pending.isEmpty()) {
+                    oldestQueuedAt = System.nanoTime();
+                }
+                pending.put(id, write);
+            }
+            queuedCount++;
+            if (pending.size() == 1 || pending.size() >= config.batchSize()) {
+                flushNeeded.signal();
+            }
+            return write;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for room in the write-behind queue", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The flusher loop: waits until the oldest pending write is {@code flushInterval} old, a batch is full, a
+     * flush is requested or the queue is closed, and writes what is pending.
+     */
+    private void run() {
+        long intervalNanos = config.flushInterval().toNanos();
+        while (true) {
+            LinkedHashMap<Integer, Pending> batch;
+            long batchEnd;
+            boolean last;
+            lock.lock();
+            try {
+                while (!closed && !flushRequested && pending.size() < config.batchSize()) {
+                    if (pending.isEmpty()) {
+                        flushNeeded.await();
+                        continue;
+                    }
+                    long wait = oldestQueuedAt + intervalNanos - System.nanoTime();
+                    if (wait <= 0) {
+                        break;
+                    }
+                    flushNeeded.awaitNanos(wait);
+                }
+                flushRequested = false;
+                batch = pending;
+                writing = batch;
+                batchEnd = queuedCount;
+                last = closed;
+                pending = new LinkedHashMap<>();
+                notFull.signalAll();
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                afterFlushQuietly();
+            }
+            lock.lock();
+            try {
+                flushedCount = batchEnd;
+                writing = new LinkedHashMap<>();
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (last) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes a batch in one transaction, or one write at a time if the transaction fails.
+     */
+    private void write(LinkedHashMap<Integer, Pending> batch) {
+        var updates = new ArrayList<CopyFilm>();
+        var deletes = new ArrayList<CopyFilm>();
+        for (var write : batch.values()) {
+            (write.delete() ? deletes : updates).add(write.copy());
+        }
+        try {
+            writer.write(updates, deletes);
+            return;
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Could not write " + batch.size() + " copies, retrying one by one", e);
+        }
+        int dropped = 0;
+        for (var write : batch.values()) {
+            try {
+                var one = List.of(write.copy());
+                writer.write(write.delete() ? List.of() : one, write.delete() ? one : List.of());
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Dropped the " + (write.delete() ? "deletion" : "update")
+                        + " of copy " + write.copy().getId(), e);
+                dropped++;
+            }
+        }
+        lock.lock();
+        try {
+            droppedCount += dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void afterFlushQuietly() {
+        try {
+            afterFlush.run();
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Could not run the after-flush action", e);
+        }
+    }
+
+    private static CopyFilm snapshot(CopyFilm copy) {
+        var snapshot = new CopyFilm();
+        snapshot.setId(copy.getId());
+        snapshot.setCondition(copy.getCondition());
+        snapshot.setSupport(copy.getSupport());
+        snapshot.setFilmId(copy.getFilmId());
+        snapshot.setUserId(copy.getUserId());
+        snapshot.setVersion(copy.getVersion());
+        return snapshot;
+    }
+}
@@ -0,0 +1,185 @@
+package exporter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * The {@code ByteSink} class writes bytes to a file through a {@link FileChannel}. Callers encode straight into
+ * its {@link #buffer()}, calling {@link #ensure(int)} first, and the sink writes the buffer out whenever it fills,
+ * so a whole export goes through the same buffer.
+ * <p>
+ * A gzip sink compresses the buffer with a {@link Deflater} working on byte buffers, so compressing does not copy
+ * the bytes into arrays or go through {@code GZIPOutputStream}.
+ * </p>
+ */
+abstract class ByteSink implements AutoCloseable {
+
+    protected final FileChannel channel;
+    protected final ByteBuffer buffer;
+    private long bytesWritten;
+
+    private ByteSink(FileChannel channel, ByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer.clear();
+    }
+
+    /**
+     * Creates or truncates a file and returns a sink writing to it.
+     *
+     * @param file   the file to write
+     * @param gzip   whether to compress the file with gzip
+     * @param buffer the buffer to encode into, reused across sinks; a direct buffer saves a copy per write
+     * @param output the buffer compressed bytes are written from, used only by gzip sinks
+     * @return the sink
+     * @throws IOException if the file cannot be opened
+     */
+    static ByteSink open(Path file, boolean gzip, ByteBuffer buffer, ByteBuffer output) throws IOException {
+        var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        return gzip ? new Gzip(channel, buffer, output) : new Plain(channel, buffer);
+    }
+
+    /**
+     * @return the buffer to encode into, in write mode
+     */
+    final ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Makes room for the given number of bytes in the buffer, writing it out if needed.
+     *
+     * @param bytes the number of bytes about to be put, at most the capacity of the buffer
+     * @throws IOException if the file cannot be written
+     */
+    final void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    /**
+     * @return the number of bytes written to the file so far, compressed if the sink compresses
+     */
+    final long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Writes out the buffer and what the sink still holds, and closes the file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public final void close() throws IOException {
+        try (channel) {
+            drain();
+            finish();
+            channel.force(false);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Writes out the content of the buffer and clears it.
+     */
+    abstract void drain() throws IOException;
+
+    /**
+     * Writes out what the sink holds beyond the buffer, once the buffer is drained for the last time.
+     */
+    void finish() throws IOException {
+    }
+
+    /**
+     * Frees what the sink holds outside the heap. Runs even if writing failed.
+     */
+    void release() {
+    }
+
+    /**
+     * Writes all the remaining bytes of {@code bytes} to the file.
+     */
+    final void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            bytesWritten += channel.write(bytes);
+        }
+    }
+
+    private static final class Plain extends ByteSink {
+        Plain(FileChannel channel, ByteBuffer buffer) {
+            super(channel, buffer);
+        }
+
+        @Override
+        void drain() throws IOException {
+            buffer.flip();
+            writeFully(buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Writes the gzip format of RFC 1952: a fixed header, the raw deflate stream, and the CRC-32 and length of
+     * the uncompressed bytes.
+     */
+    private static final class Gzip extends ByteSink {
+        private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+        private static final byte[] NO_INPUT = new byte[0];
+
+        private final ByteBuffer output;
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final CRC32 crc = new CRC32();
+        private long uncompressed;
+
+        Gzip(FileChannel channel, ByteBuffer buffer, ByteBuffer output) throws IOException {
+            super(channel, buffer);
+            this.output = output;
+            writeFully(ByteBuffer.wrap(HEADER));
+        }
+
+        @Override
+        void drain() throws IOException {
+            buffer.flip();
+            uncompressed += buffer.remaining();
+            crc.update(buffer.duplicate());
+            deflater.setInput(buffer);
+            while (!deflater.needsInput()) {
+                deflate();
+            }
+            // The deflater keeps the buffer as its input; once cleared, it would read the old bytes again
+            deflater.setInput(NO_INPUT);
+            buffer.clear();
+        }
+
+        @Override
+        void finish() throws IOException {
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate();
+            }
+            var trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            trailer.putInt((int) crc.getValue()).putInt((int) uncompressed).flip();
+            writeFully(trailer);
+        }
+
+        @Override
+        void release() {
+            deflater.end();
+        }
+
+        private void deflate() throws IOException {
+            output.clear();
+            deflater.deflate(output);
+            output.flip();
+            writeFully(output);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package exporter;
+
+import dao.DAO;
+import util.JdbcUtil;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The {@code CatalogExporter} class dumps the {@code film}, {@code copy} and {@code user} tables to CSV or
+ * JSON-lines files, optionally gzipped, for analytics.
+ * <p>
+ * A table is read through a forward-only cursor of {@link DAO#DEFAULT_FETCH_SIZE} rows, as
+ * {@link DAO#streamAll()} does, but its columns are read off the result set and encoded by a {@link RowWriter}
+ * straight into a direct buffer of {@code films.export.bufferKb} KB (256 by default), written to the file through
+ * a {@link java.nio.channels.FileChannel} whenever it fills. No entity is created and no line is built as a
+ * {@code String}; the only objects created per row are the column strings returned by the JDBC driver. The heap
+ * used is therefore the same for a thousand rows or tens of millions, and the buffers are reused from one table
+ * to the next.
+ * </p>
+ * Passwords are never exported. Run it with:
+ * <pre>
+ * java -cp ... exporter.CatalogExporter [--format csv|jsonl] [--gzip] [--dir &lt;directory&gt;] [film] [copy] [user]
+ * </pre>
+ */
+public class CatalogExporter {
+
+    /**
+     * A table that can be exported and the columns written for it.
+     */
+    public enum Table {
+        FILM("film", column("id", true), column("title", false), column("genre", false), column("year", true),
+                column("description", false), column("director", false)),
+        COPY("copy", column("id", true), column("condition", false), column("support", false),
+                column("film_id", true), column("user_id", true)),
+        USER("user", column("id", true), column("userName", false));
+
+        private final String tableName;
+        private final Column[] columns;
+        private final String sql;
+
+        Table(String tableName, Column... columns) {
+            this.tableName = tableName;
+            this.columns = columns;
+            var names = new ArrayList<String>();
+            for (var c : columns) {
+                names.add("`" + c.name() + "`");
+            }
+            this.sql = "select " + String.join(", ", names) + " from " + tableName;
+        }
+
+        /**
+         * @return the name of the table, also the base name of its export file
+         */
+        public String getTableName() {
+            return tableName;
+        }
+    }
+
+    /**
+     * A column of an exported table.
+     *
+     * @param name    the name of the column, in the table and in the file
+     * @param numeric whether the column holds an integer rather than text
+     */
+    private record Column(String name, boolean numeric) {
+    }
+
+    private static Column column(String name, boolean numeric) {
+        return new Column(name, numeric);
+    }
+
+    /**
+     * The outcome of the export of one table.
+     *
+     * @param table   the table exported
+     * @param file    the file written
+     * @param rows    the number of rows written
+     * @param bytes   the size of the file
+     * @param elapsed how long the export took
+     */
+    public record Result(Table table, Path file, long rows, long bytes, Duration elapsed) {
+        @Override
+        public String toString() {
+            double seconds = Math.max(1e-9, elapsed.toNanos() / 1e9);
+            return String.format(Locale.ROOT, "%s: %,d rows, %,d bytes in %.1f s (%,.0f rows/s, %.1f MB/s) to %s",
+                    table.getTableName(), rows, bytes, seconds, rows / seconds, bytes / seconds / 1e6, file);
+        }
+    }
+
+    private final DataSource ds;
+    private final ExportFormat format;
+    private final boolean gzip;
+    private final ByteBuffer buffer;
+    private final ByteBuffer compressed;
+
+    /**
+     * Creates an exporter. Its buffers are allocated once, outside the heap, and reused by every export.
+     *
+     * @param ds     the data source of the database to export
+     * @param format the format of the files
+     * @param gzip   whether to compress the files with gzip
+     */
+    public CatalogExporter(DataSource ds, ExportFormat format, boolean gzip) {
+        this.ds = ds;
+        this.format = format;
+        this.gzip = gzip;
+        int size = Integer.getInteger("films.export.bufferKb", 256) * 1024;
+        this.buffer = ByteBuffer.allocateDirect(size);
+        this.compressed = gzip ? ByteBuffer.allocateDirect(size) : null;
+    }
+
+    /**
+     * Exports a table to {@code <table>.<extension>} in a directory, with a {@code .gz} suffix when compressed.
+     * An existing file is replaced.
+     *
+     * @param table     the table to export
+     * @param directory the directory to write the file in
+     * @return the outcome of the export
+     * @throws IOException if the file cannot be written
+     */
+    public Result export(Table table, Path directory) throws IOException {
+        var file = directory.resolve(table.getTableName() + "." + format.getExtension() + (gzip ? ".gz" : ""));
+        long start = System.nanoTime();
+        long rows = 0;
+        var sink = ByteSink.open(file, gzip, buffer, compressed);
+        try (sink;
+             var con = ds.getConnection();
+             var ps = con.prepareStatement(table.sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(DAO.DEFAULT_FETCH_SIZE);
+            var names = new String[table.columns.length];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = table.columns[i].name();
+            }
+            var writer = new RowWriter(sink, format, names);
+            writer.header();
+            try (var rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    writeRow(rs, table.columns, writer);
+                    rows++;
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        return new Result(table, file, rows, sink.getBytesWritten(), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static void writeRow(ResultSet rs, Column[] columns, RowWriter writer) throws SQLException, IOException {
+        writer.beginRow();
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].numeric()) {
+                int value = rs.getInt(i + 1);
+                if (rs.wasNull()) {
+                    writer.nullValue(i);
+                } else {
+                    writer.intValue(i, value);
+                }
+            } else {
+                writer.textValue(i, rs.getString(i + 1));
+            }
+        }
+        writer.endRow();
+    }
+
+    /**
+     * Exports the given tables, or all of them, and prints the outcome of each.
+     *
+     * @param args {@code --format csv|jsonl}, {@code --gzip}, {@code --dir <directory>} (the current directory
+     *             by default) and the names of the tables to export
+     * @throws IOException if a file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        var format = ExportFormat.CSV;
+        boolean gzip = false;
+        var directory = Path.of(".");
+        var tables = new ArrayList<Table>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--format" -> format = switch (args[++i]) {
+                    case "csv" -> ExportFormat.CSV;
+                    case "jsonl" -> ExportFormat.JSON_LINES;
+                    default -> throw new IllegalArgumentException("Unknown format " + args[i]
+                            + ", expected csv or jsonl");
+                };
+                case "--gzip" -> gzip = true;
+                case "--dir" -> directory = Path.of(args[++i]);
+                default -> tables.add(Table.valueOf(args[i].toUpperCase(Locale.ROOT)));
+            }
+        }
+        Files.createDirectories(directory);
+        var exporter = new CatalogExporter(JdbcUtil.getDataSource(), format, gzip);
+        try {
+            for (var table : tables.isEmpty() ? List.of(Table.values()) : tables) {
+                System.out.println(exporter.export(table, directory));
+            }
+        } finally {
+            JdbcUtil.getPool().close();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package exporter;
+
+/**
+ * The file formats {@link CatalogExporter} writes.
+ */
+public enum ExportFormat {
+
+    /**
+     * Comma-separated values with a header line. Text is always quoted, with quotes doubled; a {@code null} is an
+     * empty field.
+     */
+    CSV("csv"),
+
+    /**
+     * One JSON object per line, keyed by column name.
+     */
+    JSON_LINES("jsonl");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return the file extension of the format, without the dot
+     */
+    public String getExtension() {
+        return extension;
+    }
+}
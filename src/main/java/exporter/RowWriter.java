@@ -0,0 +1,195 @@
+package exporter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The {@code RowWriter} class encodes rows in an {@link ExportFormat} straight into the buffer of a
+ * {@link ByteSink}: numbers are written digit by digit and text is encoded to UTF-8 and escaped character by
+ * character, so encoding a row allocates nothing. The column names are encoded once, when the writer is created.
+ * <p>
+ * A row is written as {@link #beginRow()}, one value call per column in order, then {@link #endRow()}.
+ * </p>
+ * <p>
+ * CSV text is always quoted, with its quotes doubled and its line breaks written as they are, so a field may span
+ * several lines; the importer joins them back into one record, reading each line break as {@code \n}. JSON
+ * escapes them, so every row stays on one line.
+ * </p>
+ */
+final class RowWriter {
+
+    /** The most bytes a character takes once encoded and escaped: {@code \}{@code u001f} in JSON. */
+    private static final int MAX_CHAR_BYTES = 6;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private final ByteSink sink;
+    private final ExportFormat format;
+    private final String[] columns;
+    /** The bytes written before the value of each column: the separator, and the member name in JSON. */
+    private final byte[][] prefixes;
+    private final byte[] digits = new byte[11];
+
+    /**
+     * @param sink    the sink to encode into
+     * @param format  the format to write
+     * @param columns the names of the columns, in the order their values are written
+     */
+    RowWriter(ByteSink sink, ExportFormat format, String[] columns) {
+        this.sink = sink;
+        this.format = format;
+        this.columns = columns;
+        this.prefixes = new byte[columns.length][];
+        for (int i = 0; i < columns.length; i++) {
+            var prefix = format == ExportFormat.CSV ? (i == 0 ? "" : ",")
+                    : (i == 0 ? "" : ",") + "\"" + columns[i] + "\":";
+            prefixes[i] = prefix.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Writes the header line of a CSV file; does nothing in other formats.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    void header() throws IOException {
+        if (format != ExportFormat.CSV) {
+            return;
+        }
+        for (int i = 0; i < columns.length; i++) {
+            putPrefix(i);
+            putText(columns[i]);
+        }
+        putByte('\n');
+    }
+
+    void beginRow() throws IOException {
+        if (format == ExportFormat.JSON_LINES) {
+            putByte('{');
+        }
+    }
+
+    void endRow() throws IOException {
+        if (format == ExportFormat.JSON_LINES) {
+            putByte('}');
+        }
+        putByte('\n');
+    }
+
+    /**
+     * Writes an integer value.
+     *
+     * @param column the index of the column
+     * @param value  the value
+     * @throws IOException if the file cannot be written
+     */
+    void intValue(int column, int value) throws IOException {
+        putPrefix(column);
+        sink.ensure(digits.length);
+        var buffer = sink.buffer();
+        long v = value;
+        if (v < 0) {
+            buffer.put((byte) '-');
+            v = -v;
+        }
+        int n = 0;
+        do {
+            digits[n++] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        while (n > 0) {
+            buffer.put(digits[--n]);
+        }
+    }
+
+    /**
+     * Writes a missing value: an empty CSV field or a JSON {@code null}.
+     *
+     * @param column the index of the column
+     * @throws IOException if the file cannot be written
+     */
+    void nullValue(int column) throws IOException {
+        putPrefix(column);
+        if (format == ExportFormat.JSON_LINES) {
+            putBytes(NULL);
+        }
+    }
+
+    /**
+     * Writes a text value, quoted and escaped.
+     *
+     * @param column the index of the column
+     * @param value  the value, or {@code null}
+     * @throws IOException if the file cannot be written
+     */
+    void textValue(int column, String value) throws IOException {
+        if (value == null) {
+            nullValue(column);
+            return;
+        }
+        putPrefix(column);
+        putText(value);
+    }
+
+    private void putText(String value) throws IOException {
+        putByte('"');
+        boolean json = format == ExportFormat.JSON_LINES;
+        var buffer = sink.buffer();
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (buffer.remaining() < MAX_CHAR_BYTES) {
+                sink.ensure(MAX_CHAR_BYTES);
+            }
+            char c = value.charAt(i);
+            if (c == '"') {
+                buffer.put(json ? (byte) '\\' : (byte) '"').put((byte) '"');
+            } else if (c < 0x80) {
+                if (json && (c == '\\' || c < 0x20)) {
+                    putJsonEscape(buffer, c);
+                } else {
+                    buffer.put((byte) c);
+                }
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xc0 | c >> 6)).put((byte) (0x80 | c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xf0 | cp >> 18)).put((byte) (0x80 | cp >> 12 & 0x3f))
+                        .put((byte) (0x80 | cp >> 6 & 0x3f)).put((byte) (0x80 | cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xe0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3f))
+                        .put((byte) (0x80 | c & 0x3f));
+            }
+        }
+        putByte('"');
+    }
+
+    private static void putJsonEscape(ByteBuffer buffer, char c) {
+        buffer.put((byte) '\\');
+        switch (c) {
+            case '\\' -> buffer.put((byte) '\\');
+            case '\n' -> buffer.put((byte) 'n');
+            case '\r' -> buffer.put((byte) 'r');
+            case '\t' -> buffer.put((byte) 't');
+            default -> buffer.put((byte) 'u').put((byte) '0').put((byte) '0')
+                    .put(HEX[c >> 4]).put(HEX[c & 0xf]);
+        }
+    }
+
+    private void putPrefix(int column) throws IOException {
+        putBytes(prefixes[column]);
+    }
+
+    private void putBytes(byte[] bytes) throws IOException {
+        sink.ensure(bytes.length);
+        sink.buffer().put(bytes);
+    }
+
+    private void putByte(char c) throws IOException {
+        sink.ensure(1);
+        sink.buffer().put((byte) c);
+    }
+}
@@ -0,0 +1,453 @@
+package importer;
+
+import dao.CopyFilmDAO;
+import dao.FilmDAO;
+import dao.UserDAO;
+import migration.MigrationRunner;
+import model.CopyFilm;
+import model.Film;
+import util.IntIntMap;
+import util.JdbcUtil;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code BulkImporter} class loads films and copies from CSV or JSON-lines files (see {@link RecordParser})
+ * into the database, streaming each file through a pipeline so a file of millions of rows is imported in one
+ * pass with a bounded amount of memory:
+ * <ol>
+ *     <li>a reader thread cuts the file into chunks of {@code films.import.chunkSize} records (5,000 by default),
+ *     joining the lines of a CSV record whose quoted field spans several;</li>
+ *     <li>{@code films.import.parsers} threads (one per core by default) parse and validate the chunks in
+ *     parallel;</li>
+ *     <li>the writer, on the calling thread, resolves the film and user references of each chunk and inserts it
+ *     with {@link FilmDAO#addAll} or {@link CopyFilmDAO#addAll}, one transaction and a few JDBC batches per
+ *     chunk.</li>
+ * </ol>
+ * The stages are connected by queues of two chunks per parser, so a fast reader waits for the parsers and the
+ * parsers wait for the database rather than filling the heap. Rows that fail validation or resolution are
+ * reported with their line number and skipped. The rate of each file is printed every
+ * {@code films.import.reportSeconds} (5 by default).
+ * <p>
+ * Film columns are {@code id}, {@code title} (required), {@code genre}, {@code year}, {@code description} and
+ * {@code director}. The {@code id} is the film's ID in the source system: the film gets a new ID, and copies
+ * imported in the same run refer to it by the source ID. Copy columns are {@code film_id} (required),
+ * {@code user_id} or {@code user_name} (one required), {@code condition} ({@code New} or {@code Damaged}) and
+ * {@code support} ({@code DVD} or {@code Blu-ray}). A {@code film_id} that is not the source ID of a film imported
+ * in this run must be the ID of a film already in the database. Users are not imported and must exist.
+ * </p>
+ * Run it with:
+ * <pre>
+ * java -cp ... importer.BulkImporter [--films films.csv] [--copies copies.jsonl]
+ * </pre>
+ */
+public class BulkImporter {
+
+    private static final Set<String> CONDITIONS = Set.of("New", "Damaged");
+    private static final Set<String> SUPPORTS = Set.of("DVD", "Blu-ray");
+    private static final int MAX_TEXT_LENGTH = 255;
+    /** The most lines a record may span; past them, a stray quote is taken to be unterminated. */
+    private static final int MAX_RECORD_LINES = 1000;
+
+    /**
+     * The rows imported and rejected from one file.
+     *
+     * @param imported the number of rows inserted
+     * @param rejected the number of rows skipped
+     */
+    public record Result(long imported, long rejected) {
+    }
+
+    /**
+     * A chunk of consecutive records of a file.
+     *
+     * @param lineNumbers the line number of the first line of each record, from 1
+     * @param records     the records, each one line or, for a CSV record with a quoted field spanning lines, the
+     *                    lines joined by {@code \n}; an empty list marks the end of the file
+     */
+    private record Chunk(long[] lineNumbers, List<String> records) {
+        static final Chunk END = new Chunk(new long[0], List.of());
+    }
+
+    /**
+     * A parsed row waiting to be resolved and inserted.
+     */
+    private record Row<T>(long line, T entity, int sourceId, String userName) {
+    }
+
+    /**
+     * Validates a record and turns it into an entity.
+     */
+    @FunctionalInterface
+    private interface RowParser<T> {
+        Row<T> parse(RecordParser.Record record, long line);
+    }
+
+    /**
+     * Resolves and inserts a chunk of rows, reporting the rows it rejects.
+     */
+    @FunctionalInterface
+    private interface ChunkWriter<T> {
+        void write(List<Row<T>> rows, ImportProgress progress);
+    }
+
+    private final DataSource ds;
+    private final FilmDAO films;
+    private final CopyFilmDAO copies;
+    private final PrintStream out;
+    private final int parsers;
+    private final int chunkSize;
+    private final long reportSeconds;
+
+    /** Source film ID to new film ID, for the films imported by this importer. Only touched by the writer. */
+    private final IntIntMap importedFilmIds = new IntIntMap();
+    /** IDs of the films in the database before the copies are imported, loaded on first need. */
+    private IntIntMap existingFilmIds;
+    /** User IDs by name, and the set of user IDs, loaded on first need. */
+    private Map<String, Integer> userIdsByName;
+    private IntIntMap userIds;
+
+    /**
+     * Creates an importer writing to the given database, configured from the {@code films.import.*} system
+     * properties.
+     *
+     * @param ds  the data source of the database to import into
+     * @param out where progress and rejected rows are printed
+     */
+    public BulkImporter(DataSource ds, PrintStream out) {
+        this.ds = ds;
+        this.films = new FilmDAO(ds);
+        this.copies = new CopyFilmDAO(ds);
+        this.out = out;
+        this.parsers = Integer.getInteger("films.import.parsers", Runtime.getRuntime().availableProcessors());
+        this.chunkSize = Integer.getInteger("films.import.chunkSize", 5000);
+        this.reportSeconds = Long.getLong("films.import.reportSeconds", 5);
+    }
+
+    /**
+     * Imports a file of films. Copies imported afterwards by this importer can refer to them by their source ID.
+     *
+     * @param file a CSV or JSON-lines file of films
+     * @return the rows imported and rejected
+     * @throws IOException if the file cannot be read
+     */
+    public Result importFilms(Path file) throws IOException {
+        return importFile(file, "films", BulkImporter::parseFilm, this::writeFilms);
+    }
+
+    /**
+     * Imports a file of copies.
+     *
+     * @param file a CSV or JSON-lines file of copies
+     * @return the rows imported and rejected
+     * @throws IOException if the file cannot be read
+     */
+    public Result importCopies(Path file) throws IOException {
+        loadReferences();
+        return importFile(file, "copies", BulkImporter::parseCopy, this::writeCopies);
+    }
+
+    /**
+     * Runs the reader, the parsers and the writer over one file.
+     */
+    private <T> Result importFile(Path file, String name, RowParser<T> rowParser, ChunkWriter<T> writer)
+            throws IOException {
+        var progress = new ImportProgress(name, out);
+        BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(parsers * 2);
+        BlockingQueue<List<Row<T>>> parsed = new ArrayBlockingQueue<>(parsers * 2);
+        List<Row<T>> endOfParser = List.of();
+
+        try (var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             var threads = Executors.newFixedThreadPool(parsers + 1);
+             var reporter = Executors.newSingleThreadScheduledExecutor()) {
+            var recordParser = RecordParser.forFile(file, reader);
+            reporter.scheduleAtFixedRate(progress::report, reportSeconds, reportSeconds, TimeUnit.SECONDS);
+
+            Future<?> reading = threads.submit(() -> {
+                try {
+                    long lineNumber = recordParser.headerLines();
+                    var records = new ArrayList<String>(chunkSize);
+                    var lineNumbers = new long[chunkSize];
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        lineNumber++;
+                        lineNumbers[records.size()] = lineNumber;
+                        if (recordParser.continues(line, false)) {
+                            var record = new StringBuilder(line);
+                            boolean open = true;
+                            for (int spanned = 1; open && spanned < MAX_RECORD_LINES
+                                    && (line = reader.readLine()) != null; spanned++) {
+                                lineNumber++;
+                                record.append('\n').append(line);
+                                open = recordParser.continues(line, true);
+                            }
+                            // A record still open is passed on as is, and rejected by the parser
+                            line = record.toString();
+                        }
+                        records.add(line);
+                        if (records.size() == chunkSize) {
+                            chunks.put(new Chunk(lineNumbers, records));
+                            records = new ArrayList<>(chunkSize);
+                            lineNumbers = new long[chunkSize];
+                        }
+                    }
+                    if (!records.isEmpty()) {
+                        chunks.put(new Chunk(lineNumbers, records));
+                    }
+                } finally {
+                    // Every parser stops at an end marker, even if reading failed
+                    for (int i = 0; i < parsers; i++) {
+                        chunks.put(Chunk.END);
+                    }
+                }
+                return null;
+            });
+            for (int i = 0; i < parsers; i++) {
+                threads.submit(() -> {
+                    try {
+                        for (var chunk = chunks.take(); chunk != Chunk.END; chunk = chunks.take()) {
+                            parsed.put(parseChunk(chunk, recordParser, rowParser, progress));
+                        }
+                    } finally {
+                        parsed.put(endOfParser);
+                    }
+                    return null;
+                });
+            }
+
+            try {
+                for (int running = parsers; running > 0; ) {
+                    var rows = parsed.take();
+                    if (rows == endOfParser) {
+                        running--;
+                    } else if (!rows.isEmpty()) {
+                        writer.write(rows, progress);
+                    }
+                }
+                reading.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                threads.shutdownNow();
+                throw new IOException("Import of " + file + " interrupted", e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+            } catch (RuntimeException e) {
+                // The writer failed; stop the other stages instead of waiting for them to fill their queues
+                threads.shutdownNow();
+                throw e;
+            } finally {
+                reporter.shutdownNow();
+            }
+        }
+        progress.summary();
+        return new Result(progress.getImported(), progress.getRejected());
+    }
+
+    private static <T> List<Row<T>> parseChunk(Chunk chunk, RecordParser recordParser, RowParser<T> rowParser,
+                                               ImportProgress progress) {
+        var rows = new ArrayList<Row<T>>(chunk.records().size());
+        for (int i = 0; i < chunk.records().size(); i++) {
+            var text = chunk.records().get(i);
+            long line = chunk.lineNumbers()[i];
+            if (!text.isBlank()) {
+                progress.rowRead();
+                try {
+                    rows.add(rowParser.parse(recordParser.parse(text), line));
+                } catch (ImportException e) {
+                    progress.rejected(line, e.getMessage());
+                } catch (RuntimeException e) {
+                    progress.rejected(line, e.toString());
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static Row<Film> parseFilm(RecordParser.Record record, long line) {
+        var film = new Film();
+        film.setTitle(text(record, "title", true));
+        film.setGenre(text(record, "genre", false));
+        var year = record.get("year");
+        film.setYear(year == null ? 0 : integer("year", year));
+        film.setDescription(text(record, "description", false));
+        film.setDirector(text(record, "director", false));
+        var id = record.get("id");
+        return new Row<>(line, film, id == null ? 0 : integer("id", id), null);
+    }
+
+    private static Row<CopyFilm> parseCopy(RecordParser.Record record, long line) {
+        var copy = new CopyFilm();
+        copy.setCondition(oneOf(record, "condition", CONDITIONS));
+        copy.setSupport(oneOf(record, "support", SUPPORTS));
+        copy.setFilmId(integer("film_id", required(record, "film_id")));
+        var userName = record.get("user_name");
+        if (userName == null) {
+            copy.setUserId(integer("user_id", required(record, "user_id")));
+        }
+        return new Row<>(line, copy, 0, userName);
+    }
+
+    /**
+     * Inserts a chunk of films and remembers the new ID of each source ID.
+     */
+    private void writeFilms(List<Row<Film>> rows, ImportProgress progress) {
+        var batch = new ArrayList<Film>(rows.size());
+        var sourceIds = new ArrayList<Integer>(rows.size());
+        for (var row : rows) {
+            if (row.sourceId() != 0 && importedFilmIds.containsKey(row.sourceId())) {
+                progress.rejected(row.line(), "duplicate film id " + row.sourceId());
+                continue;
+            }
+            if (row.sourceId() != 0) {
+                importedFilmIds.put(row.sourceId(), 0);
+            }
+            batch.add(row.entity());
+            sourceIds.add(row.sourceId());
+        }
+        films.addAll(batch);
+        for (int i = 0; i < batch.size(); i++) {
+            if (sourceIds.get(i) != 0) {
+                importedFilmIds.put(sourceIds.get(i), batch.get(i).getId());
+            }
+        }
+        progress.imported(batch.size());
+    }
+
+    /**
+     * Resolves the film and owner of a chunk of copies and inserts the copies that resolve.
+     */
+    private void writeCopies(List<Row<CopyFilm>> rows, ImportProgress progress) {
+        var batch = new ArrayList<CopyFilm>(rows.size());
+        for (var row : rows) {
+            var copy = row.entity();
+            int filmId = importedFilmIds.get(copy.getFilmId(), 0);
+            if (filmId == 0) {
+                if (!existingFilmIds.containsKey(copy.getFilmId())) {
+                    progress.rejected(row.line(), "unknown film_id " + copy.getFilmId());
+                    continue;
+                }
+                filmId = copy.getFilmId();
+            }
+            if (row.userName() != null) {
+                var userId = userIdsByName.get(row.userName());
+                if (userId == null) {
+                    progress.rejected(row.line(), "unknown user_name " + row.userName());
+                    continue;
+                }
+                copy.setUserId(userId);
+            } else if (!userIds.containsKey(copy.getUserId())) {
+                progress.rejected(row.line(), "unknown user_id " + copy.getUserId());
+                continue;
+            }
+            copy.setFilmId(filmId);
+            batch.add(copy);
+        }
+        copies.addAll(batch);
+        progress.imported(batch.size());
+    }
+
+    /**
+     * Loads the IDs of the films and users already in the database, which copies may refer to.
+     */
+    private void loadReferences() {
+        if (existingFilmIds != null) {
+            return;
+        }
+        existingFilmIds = new IntIntMap();
+        try (var all = films.streamAll()) {
+            all.forEach(film -> existingFilmIds.put(film.getId(), 1));
+        }
+        userIdsByName = new HashMap<>();
+        userIds = new IntIntMap();
+        try (var all = new UserDAO(ds).streamAll()) {
+            all.forEach(user -> {
+                userIds.put(user.getId(), 1);
+                userIdsByName.put(user.getUserName(), user.getId());
+            });
+        }
+    }
+
+    private static String required(RecordParser.Record record, String column) {
+        var value = record.get(column);
+        if (value == null) {
+            throw new ImportException("missing " + column);
+        }
+        return value;
+    }
+
+    private static String text(RecordParser.Record record, String column, boolean required) {
+        var value = required ? required(record, column) : record.get(column);
+        if (value != null && value.length() > MAX_TEXT_LENGTH) {
+            throw new ImportException(column + " is longer than " + MAX_TEXT_LENGTH + " characters");
+        }
+        return value;
+    }
+
+    private static int integer(String column, String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ImportException(column + " must be an integer: " + value);
+        }
+    }
+
+    private static String oneOf(RecordParser.Record record, String column, Set<String> allowed) {
+        var value = required(record, column);
+        if (!allowed.contains(value)) {
+            throw new ImportException(column + " must be one of " + allowed + ": " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Migrates the configured database and imports the given files, films first.
+     *
+     * @param args {@code --films <file>} and/or {@code --copies <file>}
+     * @throws IOException if a file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        Path filmsFile = null;
+        Path copiesFile = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--films" -> filmsFile = Path.of(args[i + 1]);
+                case "--copies" -> copiesFile = Path.of(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (filmsFile == null && copiesFile == null || args.length % 2 != 0) {
+            System.err.println("Usage: importer.BulkImporter [--films <file>] [--copies <file>]");
+            System.exit(2);
+        }
+        if (Boolean.parseBoolean(System.getProperty("films.migrate", "true"))) {
+            new MigrationRunner(JdbcUtil.getDataSource()).migrate();
+        }
+        try {
+            var importer = new BulkImporter(JdbcUtil.getDataSource(), System.out);
+            if (filmsFile != null) {
+                importer.importFilms(filmsFile);
+            }
+            if (copiesFile != null) {
+                importer.importCopies(copiesFile);
+            }
+        } finally {
+            JdbcUtil.getPool().close();
+        }
+    }
+}
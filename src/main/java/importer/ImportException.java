@@ -0,0 +1,17 @@
+package importer;
+
+/**
+ * The {@code ImportException} class reports a row of an import file that cannot be imported, such as a malformed
+ * line, a missing column or a reference to a film that does not exist. The row is skipped and the import goes on.
+ */
+public class ImportException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message why the row is rejected, shown after its line number
+     */
+    public ImportException(String message) {
+        super(message);
+    }
+}
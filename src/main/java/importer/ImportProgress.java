@@ -0,0 +1,94 @@
+package importer;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code ImportProgress} class counts the rows of one import file as they go through the pipeline, and prints
+ * the rejected rows and the import rate.
+ * <p>
+ * The first {@link #MAX_PRINTED_REJECTIONS} rejected rows are printed with their line number and reason; past
+ * that only their number is reported, so a file with a systematic error does not flood the console.
+ * </p>
+ * The counters are updated by the parsing threads and the writer at once.
+ */
+final class ImportProgress {
+
+    /** The number of rejected rows printed one by one. */
+    static final int MAX_PRINTED_REJECTIONS = 100;
+
+    private final String name;
+    private final PrintStream out;
+    private final long startNanos = System.nanoTime();
+    private final LongAdder read = new LongAdder();
+    private final LongAdder imported = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicInteger printedRejections = new AtomicInteger();
+    private long lastReportNanos = startNanos;
+    private long lastReportImported;
+
+    /**
+     * @param name what is imported, such as {@code "films"}, shown in the reports
+     * @param out  where the reports are printed
+     */
+    ImportProgress(String name, PrintStream out) {
+        this.name = name;
+        this.out = out;
+    }
+
+    void rowRead() {
+        read.increment();
+    }
+
+    void imported(int rows) {
+        imported.add(rows);
+    }
+
+    /**
+     * Counts a rejected row and prints it, unless enough rows were printed already.
+     *
+     * @param line   the line number of the row in the file
+     * @param reason why the row is rejected
+     */
+    void rejected(long line, String reason) {
+        rejected.increment();
+        int printed = printedRejections.getAndIncrement();
+        if (printed < MAX_PRINTED_REJECTIONS) {
+            out.printf("%s line %d rejected: %s%n", name, line, reason);
+        } else if (printed == MAX_PRINTED_REJECTIONS) {
+            out.printf("%s: more rejected rows are counted but not printed%n", name);
+        }
+    }
+
+    long getImported() {
+        return imported.sum();
+    }
+
+    long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Prints the rows counted so far, with the import rate since the previous report. Called by one thread.
+     */
+    void report() {
+        long now = System.nanoTime();
+        long done = imported.sum();
+        double rate = (done - lastReportImported) / Math.max(1e-9, (now - lastReportNanos) / 1e9);
+        lastReportNanos = now;
+        lastReportImported = done;
+        out.printf("%s: %,d read, %,d imported, %,d rejected, %,.0f rows/s%n", name, read.sum(), done,
+                rejected.sum(), rate);
+    }
+
+    /**
+     * Prints the totals and the average import rate of the whole file.
+     */
+    void summary() {
+        double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+        long done = imported.sum();
+        out.printf("%s done: %,d imported, %,d rejected in %.1f s, %,.0f rows/s%n", name, done, rejected.sum(),
+                seconds, done / seconds);
+    }
+}
@@ -0,0 +1,198 @@
+package importer;
+
+import server.JsonReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The {@code RecordParser} class turns one record of an import file into a {@link Record} whose fields are read by
+ * column name, so the rest of the importer does not depend on the file format.
+ * <p>
+ * Two formats are read, chosen by the file extension:
+ * </p>
+ * <ul>
+ *     <li>{@code .csv}: comma-separated values with a header line naming the columns. Fields may be quoted with
+ *     {@code "}, a quote inside a quoted field is doubled, and an empty field is missing. A quoted field may span
+ *     several lines, as the exporter writes a line break inside one; it is read back as {@code \n}.</li>
+ *     <li>{@code .jsonl} or {@code .ndjson}: one flat JSON object per line, keyed by column name.</li>
+ * </ul>
+ * A parser keeps no state between records, so one parser is shared by all the parsing threads.
+ */
+abstract class RecordParser {
+
+    /**
+     * The fields of one record.
+     */
+    @FunctionalInterface
+    interface Record {
+        /**
+         * @param column the name of a column
+         * @return the value of the column, or {@code null} if it is missing or empty
+         */
+        String get(String column);
+    }
+
+    /**
+     * Returns the parser for a file, reading the header line of a CSV file from {@code reader}.
+     *
+     * @param file   the file, whose extension gives the format
+     * @param reader reads the file from its first line
+     * @return the parser for the records that follow
+     * @throws IOException             if the header cannot be read
+     * @throws IllegalArgumentException if the format is not supported or a CSV file has no header
+     */
+    static RecordParser forFile(Path file, BufferedReader reader) throws IOException {
+        var name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            var header = reader.readLine();
+            if (header == null) {
+                throw new IllegalArgumentException(file + " has no header line");
+            }
+            return new Csv(splitCsv(header.startsWith("\uFEFF") ? header.substring(1) : header));
+        }
+        if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+            return new JsonLines();
+        }
+        throw new IllegalArgumentException("Unsupported file type, expected .csv, .jsonl or .ndjson: " + file);
+    }
+
+    /**
+     * @return the number of lines before the first record
+     */
+    abstract int headerLines();
+
+    /**
+     * Tells whether the record a line belongs to goes on to the next line.
+     *
+     * @param line      a line of the file
+     * @param continued whether the line continues a record, inside a field left open by the line before
+     * @return whether the record goes on to the next line
+     */
+    abstract boolean continues(String line, boolean continued);
+
+    /**
+     * Parses one record.
+     *
+     * @param line a record of the file, not blank: one line, or the lines of a record joined by {@code \n}
+     * @return its fields
+     * @throws ImportException if the record is malformed
+     */
+    abstract Record parse(String line);
+
+    private static final class Csv extends RecordParser {
+        private final Map<String, Integer> columns = new HashMap<>();
+
+        Csv(String[] header) {
+            for (int i = 0; i < header.length; i++) {
+                columns.put(header[i].trim(), i);
+            }
+        }
+
+        @Override
+        int headerLines() {
+            return 1;
+        }
+
+        @Override
+        boolean continues(String line, boolean continued) {
+            // A doubled quote leaves the field open, so only the parity of the quotes counts
+            boolean open = continued;
+            for (int i = line.indexOf('"'); i >= 0; i = line.indexOf('"', i + 1)) {
+                open = !open;
+            }
+            return open;
+        }
+
+        @Override
+        Record parse(String line) {
+            var values = splitCsv(line);
+            return column -> {
+                var index = columns.get(column);
+                if (index == null || index >= values.length || values[index].isEmpty()) {
+                    return null;
+                }
+                return values[index];
+            };
+        }
+    }
+
+    private static final class JsonLines extends RecordParser {
+        @Override
+        int headerLines() {
+            return 0;
+        }
+
+        @Override
+        boolean continues(String line, boolean continued) {
+            // A JSON string cannot hold a raw line break
+            return false;
+        }
+
+        @Override
+        Record parse(String line) {
+            Map<String, Object> members;
+            try {
+                members = JsonReader.parseObject(line);
+            } catch (RuntimeException e) {
+                throw new ImportException(e.getMessage());
+            }
+            return column -> switch (members.get(column)) {
+                case null -> null;
+                case Double d when d == Math.rint(d) && Math.abs(d) < 1e15 -> Long.toString(d.longValue());
+                case String s when s.isEmpty() -> null;
+                case Object value -> value.toString();
+            };
+        }
+    }
+
+    /**
+     * Splits a CSV record into its fields, unquoting the quoted ones.
+     */
+    static String[] splitCsv(String line) {
+        var fields = new ArrayList<String>();
+        var field = new StringBuilder();
+        int i = 0;
+        int n = line.length();
+        while (true) {
+            field.setLength(0);
+            if (i < n && line.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= n) {
+                        throw new ImportException("unterminated quoted field");
+                    }
+                    char c = line.charAt(i++);
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < n && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                if (i < n && line.charAt(i) != ',') {
+                    throw new ImportException("unexpected text after a quoted field");
+                }
+            } else {
+                int end = line.indexOf(',', i);
+                if (end < 0) {
+                    end = n;
+                }
+                field.append(line, i, end);
+                i = end;
+            }
+            fields.add(field.toString());
+            if (i >= n) {
+                return fields.toArray(new String[0]);
+            }
+            i++; // the comma
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package metrics;
+
+import dao.CachingDAO;
+
+/**
+ * The {@code CacheMetrics} class publishes the statistics of a {@link CachingDAO} over JMX.
+ */
+public final class CacheMetrics implements CacheMetricsMXBean {
+
+    private final CachingDAO<?> cache;
+
+    private CacheMetrics(CachingDAO<?> cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Publishes the statistics of a cache as {@code films:type=Cache,name=<name>}.
+     *
+     * @param name  the name of the cache, such as {@code films}
+     * @param cache the cache
+     */
+    public static void register(String name, CachingDAO<?> cache) {
+        Jmx.register("films:type=Cache,name=" + Jmx.quote(name), new CacheMetrics(cache));
+    }
+
+    @Override
+    public long getHits() {
+        return cache.getStats().hits();
+    }
+
+    @Override
+    public long getMisses() {
+        return cache.getStats().misses();
+    }
+
+    @Override
+    public double getHitRate() {
+        return cache.getStats().hitRate();
+    }
+
+    @Override
+    public long getEvictions() {
+        return cache.getStats().evictions();
+    }
+
+    @Override
+    public long getExpirations() {
+        return cache.getStats().expirations();
+    }
+
+    @Override
+    public int getSize() {
+        return cache.getStats().size();
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
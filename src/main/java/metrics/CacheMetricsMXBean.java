@@ -0,0 +1,42 @@
+package metrics;
+
+/**
+ * The JMX view of a {@link dao.CachingDAO}, registered as {@code films:type=Cache,name=<cache>}.
+ */
+public interface CacheMetricsMXBean {
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    long getHits();
+
+    /**
+     * @return the number of lookups that queried the database
+     */
+    long getMisses();
+
+    /**
+     * @return the fraction of lookups answered from the cache, between 0 and 1
+     */
+    double getHitRate();
+
+    /**
+     * @return the number of entries removed because the cache was full
+     */
+    long getEvictions();
+
+    /**
+     * @return the number of entries removed because their time to live had passed
+     */
+    long getExpirations();
+
+    /**
+     * @return the number of entries cached
+     */
+    int getSize();
+
+    /**
+     * Empties the cache.
+     */
+    void invalidateAll();
+}
@@ -0,0 +1,79 @@
+package metrics;
+
+import util.ConnectionPool;
+
+/**
+ * The {@code ConnectionPoolMetrics} class publishes the statistics of a {@link ConnectionPool} over JMX.
+ */
+public final class ConnectionPoolMetrics implements ConnectionPoolMetricsMXBean {
+
+    private final ConnectionPool pool;
+
+    private ConnectionPoolMetrics(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Publishes the statistics of a pool as {@code films:type=ConnectionPool}.
+     *
+     * @param pool the pool
+     */
+    public static void register(ConnectionPool pool) {
+        Jmx.register("films:type=ConnectionPool", new ConnectionPoolMetrics(pool));
+    }
+
+    @Override
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    @Override
+    public int getIdleCount() {
+        return pool.getIdleCount();
+    }
+
+    @Override
+    public int getTotalCount() {
+        return pool.getTotalCount();
+    }
+
+    @Override
+    public int getMaxSize() {
+        return pool.getConfig().maxSize();
+    }
+
+    @Override
+    public int getWaitingCount() {
+        return pool.getWaitingCount();
+    }
+
+    @Override
+    public long getBorrowCount() {
+        return pool.getBorrowCount();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return pool.getTimeoutCount();
+    }
+
+    @Override
+    public double getAverageWaitMicros() {
+        return pool.getAverageWaitMicros();
+    }
+
+    @Override
+    public long getStatementCacheHits() {
+        return pool.getStatementCacheMetrics().getHits();
+    }
+
+    @Override
+    public long getStatementCacheMisses() {
+        return pool.getStatementCacheMetrics().getMisses();
+    }
+
+    @Override
+    public double getStatementCacheHitRate() {
+        return pool.getStatementCacheMetrics().getHitRate();
+    }
+}
@@ -0,0 +1,62 @@
+package metrics;
+
+/**
+ * The JMX view of a {@link util.ConnectionPool}, registered as {@code films:type=ConnectionPool}.
+ */
+public interface ConnectionPoolMetricsMXBean {
+
+    /**
+     * @return the number of connections currently borrowed
+     */
+    int getActiveCount();
+
+    /**
+     * @return the number of open connections waiting in the pool
+     */
+    int getIdleCount();
+
+    /**
+     * @return the number of open connections
+     */
+    int getTotalCount();
+
+    /**
+     * @return the maximum number of open connections
+     */
+    int getMaxSize();
+
+    /**
+     * @return the number of threads waiting for a connection
+     */
+    int getWaitingCount();
+
+    /**
+     * @return the number of successful borrows
+     */
+    long getBorrowCount();
+
+    /**
+     * @return the number of borrows that gave up waiting for a connection
+     */
+    long getTimeoutCount();
+
+    /**
+     * @return the average time spent waiting for a connection
+     */
+    double getAverageWaitMicros();
+
+    /**
+     * @return the number of prepares answered by a cached statement
+     */
+    long getStatementCacheHits();
+
+    /**
+     * @return the number of prepares that created a new statement
+     */
+    long getStatementCacheMisses();
+
+    /**
+     * @return the fraction of prepares answered by a cached statement, between 0 and 1
+     */
+    double getStatementCacheHitRate();
+}
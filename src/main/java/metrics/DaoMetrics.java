@@ -0,0 +1,70 @@
+package metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@code DaoMetrics} class holds the {@link OperationMetrics} of every operation of one DAO and publishes
+ * each of them over JMX as {@code films:type=DAO,name=<dao>,operation=<method>}.
+ * <p>
+ * The sample rate of the latencies is read from the {@code films.metrics.sampleRate} system property:
+ * 1, the default, times every call, {@code n} times one call in {@code n}, and 0 leaves the DAOs uninstrumented.
+ * </p>
+ */
+public final class DaoMetrics {
+
+    /** The default sample rate, from the {@code films.metrics.sampleRate} system property. */
+    public static final int SAMPLE_RATE = Integer.getInteger("films.metrics.sampleRate", 1);
+
+    private final String daoName;
+    private final int sampleRate;
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the metrics of a DAO with the default sample rate.
+     *
+     * @param daoName the name the DAO is published under, such as {@code FilmDAO}
+     */
+    public DaoMetrics(String daoName) {
+        this(daoName, SAMPLE_RATE);
+    }
+
+    /**
+     * Creates the metrics of a DAO.
+     *
+     * @param daoName    the name the DAO is published under, such as {@code FilmDAO}
+     * @param sampleRate record the latency of one call in this many
+     */
+    public DaoMetrics(String daoName, int sampleRate) {
+        this.daoName = daoName;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Returns the metrics of an operation, creating and publishing them the first time.
+     *
+     * @param name the name of the operation, usually the DAO method
+     * @return the metrics of the operation
+     */
+    public OperationMetrics operation(String name) {
+        return operations.computeIfAbsent(name, n -> {
+            var metrics = new OperationMetrics(n, sampleRate);
+            Jmx.register("films:type=DAO,name=" + Jmx.quote(daoName) + ",operation=" + Jmx.quote(n), metrics);
+            return metrics;
+        });
+    }
+
+    /**
+     * @return the metrics of every operation created so far, by operation name
+     */
+    public Map<String, OperationMetrics> getOperations() {
+        return Map.copyOf(operations);
+    }
+
+    /**
+     * @return the name the DAO is published under
+     */
+    public String getDaoName() {
+        return daoName;
+    }
+}
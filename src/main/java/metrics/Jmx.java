@@ -0,0 +1,48 @@
+package metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * The {@code Jmx} class registers the application's MBeans with the platform MBean server, where JConsole,
+ * VisualVM or any JMX client attached to the process can read them under the {@code films} domain.
+ */
+public final class Jmx {
+
+    private Jmx() {
+    }
+
+    /**
+     * Registers an MBean, replacing the one already registered under the same name, for example the
+     * statistics of a connection pool that has been recreated.
+     *
+     * @param name  the object name, such as {@code films:type=ConnectionPool}
+     * @param mbean the MBean, implementing an interface whose name ends with {@code MXBean}
+     * @throws RuntimeException if the name is malformed or the object is not a valid MBean
+     */
+    public static void register(String name, Object mbean) {
+        var server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            var objectName = new ObjectName(name);
+            synchronized (Jmx.class) {
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+                server.registerMBean(mbean, objectName);
+            }
+        } catch (JMException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Quotes a value for use in an object name, if it contains characters that are not allowed unquoted.
+     *
+     * @param value the value of a key property
+     * @return the value, quoted if needed
+     */
+    public static String quote(String value) {
+        return value.matches("[\\w.-]*") ? value : ObjectName.quote(value);
+    }
+}
@@ -0,0 +1,123 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code LatencyHistogram} class records durations in nanoseconds and answers percentile queries,
+ * using the log-linear bucket layout of HdrHistogram.
+ * <p>
+ * Values below 32 get a bucket each. Above that, every power of two is split into 16 equal buckets, so a
+ * recorded value is reported with an error of at most 1/16 (about 6%), whatever its magnitude, and any
+ * {@code long} fits in 960 counters. Recording is a couple of shifts and an atomic increment and never
+ * allocates, so it can be called on every DAO call from any number of threads.
+ * </p>
+ * Percentiles are computed from a live view of the counters, so a value recorded concurrently may or may not
+ * be included.
+ */
+public final class LatencyHistogram {
+
+    /** Values below {@code 2^SUB_BUCKET_BITS} are recorded exactly. */
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int HALF_SUB_BUCKETS = 1 << (SUB_BUCKET_BITS - 1);
+    private static final int BUCKETS = indexOf(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos the duration in nanoseconds; negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return the number of recorded durations
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the largest recorded duration in nanoseconds, or 0 if nothing was recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the mean of the recorded durations in nanoseconds, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Returns the duration below which the given percentage of the recorded durations fall.
+     *
+     * @param percentile the percentile, between 0 and 100, such as 99.9
+     * @return the upper bound of the bucket holding the percentile, in nanoseconds, or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        var snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(highestValueAt(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Forgets every recorded duration.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * Returns the bucket of a value: {@code 16k + (value >>> k)}, where {@code k} is 0 for values below 32 and
+     * otherwise the number of low bits dropped to keep the top 5 bits of the value.
+     */
+    private static int indexOf(long value) {
+        int highestBit = 63 - Long.numberOfLeadingZeros(value | 1);
+        int shift = Math.max(0, highestBit - (SUB_BUCKET_BITS - 1));
+        return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the largest value recorded in the given bucket.
+     */
+    private static long highestValueAt(int index) {
+        int shift = index < 2 * HALF_SUB_BUCKETS ? 0 : index / HALF_SUB_BUCKETS - 1;
+        long subBucket = index - (long) shift * HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,158 @@
+package metrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * The {@code OperationMetrics} class counts the calls and errors of one DAO operation and records
+ * the latency of a sample of the calls in a {@link LatencyHistogram}.
+ * <p>
+ * Every call is counted. With a sample rate of {@code n}, only about one call in {@code n}, picked at random,
+ * reads the clock and is recorded in the histogram, which keeps the cost of instrumenting very hot calls, such
+ * as cached lookups, down to a counter increment.
+ * </p>
+ */
+public final class OperationMetrics implements OperationMetricsMXBean {
+
+    private final String name;
+    private final int sampleRate;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    /**
+     * Creates the metrics of an operation.
+     *
+     * @param name       the name of the operation, such as {@code getById}
+     * @param sampleRate record the latency of one call in this many; 1 records every call
+     */
+    public OperationMetrics(String name, int sampleRate) {
+        this.name = name;
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+
+    /**
+     * Runs a call of the operation and records it.
+     *
+     * @param call the call
+     * @param <R>  the type of result of the call
+     * @return the result of the call
+     */
+    public <R> R time(Supplier<R> call) {
+        long start = sampled() ? System.nanoTime() : 0;
+        try {
+            return call.get();
+        } catch (RuntimeException | Error e) {
+            errors.increment();
+            throw e;
+        } finally {
+            calls.increment();
+            if (start != 0) {
+                latencies.record(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Runs a call of the operation that returns nothing and records it.
+     *
+     * @param call the call
+     */
+    public void run(Runnable call) {
+        time(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * Starts timing a call whose end is only known later, such as reading a stream until it is closed.
+     *
+     * @return the start of the call, to pass to {@link #end(long, boolean)}, or 0 if the call is not sampled
+     */
+    public long start() {
+        return sampled() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the end of a call started with {@link #start()}.
+     *
+     * @param start  the value returned by {@link #start()}
+     * @param failed whether the call failed
+     */
+    public void end(long start, boolean failed) {
+        calls.increment();
+        if (failed) {
+            errors.increment();
+        }
+        if (start != 0) {
+            latencies.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return the name of the operation
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the histogram of the sampled latencies, in nanoseconds
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getSampledCalls() {
+        return latencies.getCount();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latencies.getMean() / 1_000;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latencies.getPercentile(50) / 1_000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latencies.getPercentile(99) / 1_000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latencies.getPercentile(99.9) / 1_000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latencies.getMax() / 1_000.0;
+    }
+
+    @Override
+    public void reset() {
+        calls.reset();
+        errors.reset();
+        latencies.reset();
+    }
+
+    private boolean sampled() {
+        return sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+    }
+}
@@ -0,0 +1,54 @@
+package metrics;
+
+/**
+ * The JMX view of the {@link OperationMetrics} of one DAO operation, registered as
+ * {@code films:type=DAO,name=<dao>,operation=<method>}.
+ * Latencies are in microseconds and only cover the sampled calls.
+ */
+public interface OperationMetricsMXBean {
+
+    /**
+     * @return the number of calls, failed ones included
+     */
+    long getCalls();
+
+    /**
+     * @return the number of calls that threw an exception
+     */
+    long getErrors();
+
+    /**
+     * @return the number of calls whose latency was recorded
+     */
+    long getSampledCalls();
+
+    /**
+     * @return the mean latency
+     */
+    double getMeanMicros();
+
+    /**
+     * @return the median latency
+     */
+    double getP50Micros();
+
+    /**
+     * @return the 99th percentile of the latency
+     */
+    double getP99Micros();
+
+    /**
+     * @return the 99.9th percentile of the latency
+     */
+    double getP999Micros();
+
+    /**
+     * @return the largest latency
+     */
+    double getMaxMicros();
+
+    /**
+     * Clears the counters and the latencies, for example before reproducing a slow screen.
+     */
+    void reset();
+}
@@ -0,0 +1,51 @@
+package migration;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * The {@code Migration} record is one versioned SQL script of the schema, as found on the classpath.
+ * Scripts are named {@code V<version>__<description>.sql}, for example {@code V1__unique_user_name.sql}.
+ *
+ * @param version     the version the script brings the schema to
+ * @param description the description taken from the file name, with underscores turned into spaces
+ * @param script      the file name of the script
+ * @param sql         the contents of the script
+ * @param checksum    the SHA-256 of the contents, in hex, used to detect scripts edited after being applied
+ */
+public record Migration(int version, String description, String script, String sql, String checksum) {
+
+    private static final Pattern NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    /**
+     * Creates a migration from the name and contents of its script.
+     *
+     * @param script the file name of the script
+     * @param sql    the contents of the script
+     * @return the migration
+     * @throws IllegalArgumentException if the file name does not follow the {@code V<version>__<description>.sql} pattern
+     */
+    public static Migration of(String script, String sql) {
+        var matcher = NAME.matcher(script);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Migration script " + script
+                    + " is not named V<version>__<description>.sql");
+        }
+        // Line endings are normalized so a checkout with CRLF endings does not look like an edited script
+        var normalized = sql.replace("\r\n", "\n");
+        return new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '),
+                script, normalized, sha256(normalized));
+    }
+
+    private static String sha256(String text) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package migration;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code MigrationRunner} class brings the database schema up to date by applying the versioned SQL
+ * scripts under {@code db/migration/} on the classpath, in order, and recording each one in the
+ * {@code schema_history} table.
+ * <p>
+ * The scripts to apply are listed, one per line, in {@code db/migration/migrations.txt}, since the contents
+ * of a classpath directory cannot be listed reliably once it is packaged in a jar. Every script that has
+ * already been applied is checked against the SHA-256 recorded for it, and the run fails if one has been
+ * edited since, so the schema never silently drifts from the scripts in the repository.
+ * </p>
+ * On MySQL the run holds a named lock, so two instances of the application starting together do not apply
+ * the same migration twice. Each migration is committed together with its history row, but MySQL commits DDL
+ * implicitly, so a script that fails halfway through may leave its first statements applied; keep one schema
+ * change per script.
+ */
+public class MigrationRunner {
+
+    /** The classpath folder holding the scripts. */
+    public static final String LOCATION = "db/migration/";
+    /** The file listing the scripts to apply, in order. */
+    public static final String INDEX = LOCATION + "migrations.txt";
+
+    private static final String LOCK_NAME = "films.schema_history";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    private static final String CREATE_HISTORY_SQL = "create table if not exists schema_history ("
+            + "version int primary key,"
+            + " description varchar(255) not null,"
+            + " script varchar(255) not null,"
+            + " checksum char(64) not null,"
+            + " installed_on timestamp not null default current_timestamp,"
+            + " execution_ms bigint not null)";
+    private static final String SELECT_HISTORY_SQL = "select version, script, checksum from schema_history";
+    private static final String INSERT_HISTORY_SQL =
+            "insert into schema_history(version, description, script, checksum, execution_ms) values (?, ?, ?, ?, ?)";
+
+    private final DataSource ds;
+    private final ClassLoader classLoader;
+
+    /**
+     * Creates a runner that migrates the database behind the given data source with the scripts on the
+     * classpath of this class.
+     *
+     * @param ds the data source of the database to migrate
+     */
+    public MigrationRunner(DataSource ds) {
+        this(ds, MigrationRunner.class.getClassLoader());
+    }
+
+    /**
+     * Creates a runner that loads the scripts through the given class loader.
+     *
+     * @param ds          the data source of the database to migrate
+     * @param classLoader the class loader the scripts are read from
+     */
+    public MigrationRunner(DataSource ds, ClassLoader classLoader) {
+        this.ds = ds;
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Applies every migration that has not been applied yet.
+     *
+     * @return the migrations applied by this call, in order; empty if the schema was already up to date
+     * @throws IllegalStateException if an applied script was edited or removed, or the scripts are not in order
+     * @throws RuntimeException      if a migration fails
+     */
+    public List<Migration> migrate() {
+        var migrations = load();
+        try (var con = ds.getConnection()) {
+            boolean mysql = con.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql");
+            if (mysql) {
+                lock(con);
+            }
+            try {
+                return apply(con, migrations);
+            } finally {
+                if (mysql) {
+                    unlock(con);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads the scripts listed in the index file, checking that their versions increase.
+     *
+     * @return the migrations, in the order they are applied
+     */
+    public List<Migration> load() {
+        var migrations = new ArrayList<Migration>();
+        for (var script : readLines(INDEX)) {
+            var migration = Migration.of(script, read(LOCATION + script));
+            if (!migrations.isEmpty() && migrations.get(migrations.size() - 1).version() >= migration.version()) {
+                throw new IllegalStateException("Migration " + script + " is listed after a migration with a"
+                        + " higher or equal version in " + INDEX);
+            }
+            migrations.add(migration);
+        }
+        return migrations;
+    }
+
+    private List<Migration> apply(Connection con, List<Migration> migrations) throws SQLException {
+        try (var st = con.createStatement()) {
+            st.execute(CREATE_HISTORY_SQL);
+        }
+        var applied = appliedChecksums(con);
+        var byVersion = new HashMap<Integer, Migration>();
+        for (var migration : migrations) {
+            byVersion.put(migration.version(), migration);
+        }
+        for (var entry : applied.entrySet()) {
+            var migration = byVersion.get(entry.getKey());
+            if (migration == null) {
+                throw new IllegalStateException("Migration version " + entry.getKey()
+                        + " has been applied but is missing from " + INDEX);
+            }
+            if (!migration.checksum().equals(entry.getValue())) {
+                throw new IllegalStateException("Migration " + migration.script()
+                        + " has been changed after it was applied");
+            }
+        }
+
+        var done = new ArrayList<Migration>();
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try {
+            for (var migration : migrations) {
+                if (applied.containsKey(migration.version())) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                try (var st = con.createStatement()) {
+                    for (var sql : split(migration.sql())) {
+                        st.execute(sql);
+                    }
+                } catch (SQLException e) {
+                    con.rollback();
+                    throw new RuntimeException("Migration " + migration.script() + " failed", e);
+                }
+                try (var ps = con.prepareStatement(INSERT_HISTORY_SQL)) {
+                    ps.setInt(1, migration.version());
+                    ps.setString(2, migration.description());
+                    ps.setString(3, migration.script());
+                    ps.setString(4, migration.checksum());
+                    ps.setLong(5, (System.nanoTime() - start) / 1_000_000);
+                    ps.executeUpdate();
+                }
+                con.commit();
+                done.add(migration);
+            }
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+        return done;
+    }
+
+    private static Map<Integer, String> appliedChecksums(Connection con) throws SQLException {
+        var applied = new HashMap<Integer, String>();
+        try (var st = con.createStatement();
+             var rs = st.executeQuery(SELECT_HISTORY_SQL)) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getString("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    private static void lock(Connection con) throws SQLException {
+        try (var ps = con.prepareStatement("select get_lock(?, ?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (var rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new IllegalStateException("Timed out waiting for another instance to finish migrating");
+                }
+            }
+        }
+    }
+
+    private static void unlock(Connection con) throws SQLException {
+        try (var ps = con.prepareStatement("select release_lock(?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        }
+    }
+
+    /**
+     * Splits a script into statements on the semicolons that are outside of quotes and comments.
+     * Comments are dropped.
+     *
+     * @param script the SQL script
+     * @return the statements of the script, without their trailing semicolon
+     */
+    static List<String> split(String script) {
+        var statements = new ArrayList<String>();
+        var current = new StringBuilder();
+        char quote = 0;
+        for (int i = 0; i < script.length(); i++) {
+            char c = script.charAt(i);
+            char next = i + 1 < script.length() ? script.charAt(i + 1) : 0;
+            if (quote != 0) {
+                current.append(c);
+                if (c == '\\' && quote != '`' && next != 0) {
+                    current.append(next);
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+                current.append(c);
+            } else if (c == '#' || (c == '-' && next == '-')) {
+                while (i + 1 < script.length() && script.charAt(i + 1) != '\n') {
+                    i++;
+                }
+            } else if (c == '/' && next == '*') {
+                int end = script.indexOf("*/", i + 2);
+                i = end < 0 ? script.length() : end + 1;
+            } else if (c == ';') {
+                addStatement(statements, current);
+            } else {
+                current.append(c);
+            }
+        }
+        addStatement(statements, current);
+        return statements;
+    }
+
+    private static void addStatement(List<String> statements, StringBuilder current) {
+        var sql = current.toString().strip();
+        if (!sql.isEmpty()) {
+            statements.add(sql);
+        }
+        current.setLength(0);
+    }
+
+    private List<String> readLines(String resource) {
+        var lines = new ArrayList<String>();
+        for (var line : read(resource).split("\n")) {
+            var name = line.strip();
+            if (!name.isEmpty() && !name.startsWith("#")) {
+                lines.add(name);
+            }
+        }
+        return lines;
+    }
+
+    private String read(String resource) {
+        try (InputStream in = classLoader.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Migration resource " + resource + " was not found on the classpath");
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -40,6 +40,13 @@ public class CopyFilm implements Serializable {
      */
     private String Support;
 
+    /**
+     * The version of the copy's row when the copy was read, which an update compares against. The in-memory
+     * catalog keeps it as of its last refresh, so a copy read from the catalog can be updated unless its row
+     * changed since.
+     */
+    private int version;
+
     /**
      * The user associated with this film copy. This is a reference to the {@link User} object.
      */
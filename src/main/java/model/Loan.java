@@ -0,0 +1,47 @@
+package model;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * The Loan class represents a copy of a film lent by its owner to another user.
+ * A copy is lent to at most one user at a time; the loan ends when the borrower gives the copy back.
+ * It uses Lombok's {@code @Data} annotation to automatically generate boilerplate code like getters,
+ * setters, {@code equals()}, {@code hashCode()}, and {@code toString()} methods.
+ * Implements {@code Serializable} for potential use in serialization.
+ */
+@Data
+public class Loan implements Serializable {
+
+    /**
+     * The unique identifier of the copy lent.
+     */
+    private int copyId;
+
+    /**
+     * The unique identifier of the film of the copy.
+     */
+    private int filmId;
+
+    /**
+     * The unique identifier of the user who owns the copy.
+     */
+    private int ownerId;
+
+    /**
+     * The unique identifier of the user who borrowed the copy.
+     */
+    private int borrowerId;
+
+    /**
+     * When the copy was borrowed.
+     */
+    private Instant borrowedAt;
+
+    /**
+     * The version of the copy's row after it was borrowed, which giving it back compares against.
+     */
+    private int version;
+}
@@ -0,0 +1,362 @@
+package search;
+
+import model.Film;
+import util.IntIntMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * The {@code FilmSearchIndex} class is an in-memory inverted index over the text fields of {@link Film}.
+ * It maps every term of a film's title, director, genre and description to the films containing it,
+ * and ranks matches with BM25, counting a term in the title or the director more than in the description.
+ * <p>
+ * Films are stored under an internal ordinal. Updating a film marks its old ordinal as deleted and indexes
+ * it again under a new one, so posting lists only ever grow at the end; once enough ordinals are deleted
+ * the index is rebuilt from the live films. Searches run concurrently under a read lock, while changes
+ * take the write lock.
+ * </p>
+ * <p>
+ * The index keeps its own copy of every film and returns copies from {@link #search}, so a caller changing a
+ * film it passed in or got back, such as one held by the film cache, cannot change what the index removes when
+ * the film is updated.
+ * </p>
+ */
+public class FilmSearchIndex {
+
+    /**
+     * A film matching a query together with its relevance score.
+     *
+     * @param film  the matching film
+     * @param score the BM25 score of the film for the query; higher is more relevant
+     */
+    public record SearchResult(Film film, double score) {
+    }
+
+    /** BM25 term frequency saturation. */
+    private static final float K1 = 1.2f;
+    /** BM25 document length normalization. */
+    private static final float B = 0.75f;
+
+    private static final float TITLE_WEIGHT = 3f;
+    private static final float DIRECTOR_WEIGHT = 2f;
+    private static final float GENRE_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+
+    /**
+     * Terms found in more than this fraction of the films only add to the score of films matched by
+     * rarer query terms, unless they are the only terms that match anything.
+     */
+    private static final float COMMON_TERM_RATIO = 0.05f;
+
+    /**
+     * The films containing one term, as parallel arrays of ordinals and weighted term frequencies,
+     * in increasing ordinal order.
+     */
+    private static final class Postings {
+        int[] ordinals = new int[4];
+        float[] frequencies = new float[4];
+        int size;
+        /** Number of entries pointing at deleted ordinals. */
+        int deleted;
+
+        void add(int ordinal, float frequency) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            ordinals[size] = ordinal;
+            frequencies[size] = frequency;
+            size++;
+        }
+    }
+
+    /**
+     * Per-thread scratch space for scoring, reused between searches to avoid allocating per query.
+     */
+    private static final class Scratch {
+        float[] scores = new float[0];
+        int[] touched = new int[0];
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    private final Map<String, Postings> terms = new HashMap<>();
+    private Film[] films = new Film[16];
+    private float[] lengths = new float[16];
+    private final BitSet deletedOrdinals = new BitSet();
+    private final IntIntMap ordinalById = new IntIntMap();
+    private int ordinalCount;
+    private int liveCount;
+    private double totalLength;
+
+    /**
+     * Replaces the contents of the index with the given films.
+     *
+     * @param source the films to index, typically {@code filmDao.streamAll()}
+     */
+    public void rebuild(Stream<Film> source) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            source.map(FilmSearchIndex::copyOf).forEach(this::addLocked);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a film to the index, replacing any previous version with the same ID.
+     *
+     * @param film the film to index
+     */
+    public void add(Film film) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(film.getId());
+            addLocked(copyOf(film));
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Re-indexes a film after its fields changed.
+     *
+     * @param film the updated film
+     */
+    public void update(Film film) {
+        add(film);
+    }
+
+    /**
+     * Removes a film from the index.
+     *
+     * @param filmId the ID of the film to remove
+     */
+    public void remove(int filmId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(filmId);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of films in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the films that best match a free-text query. A film matches if it contains at least one of the
+     * query terms; films containing more of them, or containing them in the title, rank higher. Terms that
+     * appear in most films only refine the ranking of films matched by the other terms.
+     *
+     * @param query the text to search for
+     * @param limit the maximum number of results
+     * @return the matching films, best match first
+     */
+    public List<SearchResult> search(String query, int limit) {
+        var queryTerms = Tokenizer.tokenize(query).stream().distinct().toList();
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            var s = scratch.get();
+            if (s.scores.length < ordinalCount) {
+                s.scores = new float[films.length];
+                s.touched = new int[films.length];
+            }
+            float[] scores = s.scores;
+            int[] touched = s.touched;
+            int touchedCount = 0;
+            float averageLength = liveCount == 0 ? 1 : (float) (totalLength / liveCount);
+
+            // Score rare terms first. A very common term is then only scored for the films already matched,
+            // looking each one up in its sorted posting list, instead of walking the whole list.
+            var postingLists = new ArrayList<Postings>(queryTerms.size());
+            for (var term : queryTerms) {
+                var postings = terms.get(term);
+                if (postings != null && postings.size > postings.deleted) {
+                    postingLists.add(postings);
+                }
+            }
+            postingLists.sort((a, b) -> Integer.compare(a.size - a.deleted, b.size - b.deleted));
+            for (var postings : postingLists) {
+                int documentFrequency = postings.size - postings.deleted;
+                float idf = (float) Math.log(1 + (liveCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+                if (touchedCount > 0 && documentFrequency > liveCount * COMMON_TERM_RATIO) {
+                    for (int i = 0; i < touchedCount; i++) {
+                        int ordinal = touched[i];
+                        int at = Arrays.binarySearch(postings.ordinals, 0, postings.size, ordinal);
+                        if (at >= 0) {
+                            scores[ordinal] += bm25(idf, postings.frequencies[at], lengths[ordinal], averageLength);
+                        }
+                    }
+                    continue;
+                }
+                for (int i = 0; i < postings.size; i++) {
+                    int ordinal = postings.ordinals[i];
+                    if (deletedOrdinals.get(ordinal)) {
+                        continue;
+                    }
+                    if (scores[ordinal] == 0) {
+                        touched[touchedCount++] = ordinal;
+                    }
+                    scores[ordinal] += bm25(idf, postings.frequencies[i], lengths[ordinal], averageLength);
+                }
+            }
+
+            // Keep the best `limit` ordinals in a min-heap, then reset the scratch scores for the next query
+            var best = new PriorityQueue<Integer>(limit + 1, (a, b) -> Float.compare(scores[a], scores[b]));
+            var results = new ArrayList<SearchResult>(Math.min(limit, touchedCount));
+            for (int i = 0; i < touchedCount; i++) {
+                int ordinal = touched[i];
+                best.add(ordinal);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            while (!best.isEmpty()) {
+                int ordinal = best.poll();
+                results.add(new SearchResult(copyOf(films[ordinal]), scores[ordinal]));
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                scores[touched[i]] = 0;
+            }
+            Collections.reverse(results);
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The BM25 contribution of one term to the score of one film.
+     */
+    private static float bm25(float idf, float tf, float length, float averageLength) {
+        float norm = K1 * (1 - B + B * length / averageLength);
+        return idf * tf * (K1 + 1) / (tf + norm);
+    }
+
+    /**
+     * Indexes a film the index owns, which nothing else may change.
+     */
+    private void addLocked(Film film) {
+        int ordinal = ordinalCount++;
+        if (ordinal == films.length) {
+            films = Arrays.copyOf(films, ordinal * 2);
+            lengths = Arrays.copyOf(lengths, ordinal * 2);
+        }
+        var frequencies = new HashMap<String, Float>();
+        float length = 0;
+        length += collect(film.getTitle(), TITLE_WEIGHT, frequencies);
+        length += collect(film.getDirector(), DIRECTOR_WEIGHT, frequencies);
+        length += collect(film.getGenre(), GENRE_WEIGHT, frequencies);
+        length += collect(film.getDescription(), DESCRIPTION_WEIGHT, frequencies);
+        for (var entry : frequencies.entrySet()) {
+            terms.computeIfAbsent(entry.getKey(), k -> new Postings()).add(ordinal, entry.getValue());
+        }
+        films[ordinal] = film;
+        lengths[ordinal] = length;
+        ordinalById.put(film.getId(), ordinal);
+        liveCount++;
+        totalLength += length;
+    }
+
+    /**
+     * Adds the weighted frequencies of the terms of one field and returns the weighted field length.
+     */
+    private static float collect(String text, float weight, Map<String, Float> frequencies) {
+        float[] length = {0};
+        Tokenizer.tokenize(text, term -> {
+            frequencies.merge(term, weight, Float::sum);
+            length[0] += weight;
+        });
+        return length[0];
+    }
+
+    private void removeLocked(int filmId) {
+        int ordinal = ordinalById.remove(filmId, -1);
+        if (ordinal < 0) {
+            return;
+        }
+        deletedOrdinals.set(ordinal);
+        var film = films[ordinal];
+        var filmTerms = new HashSet<String>();
+        for (var text : new String[]{film.getTitle(), film.getDirector(), film.getGenre(), film.getDescription()}) {
+            Tokenizer.tokenize(text, filmTerms::add);
+        }
+        for (var term : filmTerms) {
+            var postings = terms.get(term);
+            if (postings != null) {
+                postings.deleted++;
+            }
+        }
+        films[ordinal] = null;
+        liveCount--;
+        totalLength -= lengths[ordinal];
+    }
+
+    /**
+     * Rebuilds the index from the live films once more than a quarter of the ordinals are deleted,
+     * so deleted entries do not slow searches down forever.
+     */
+    private void compactIfNeeded() {
+        int deleted = ordinalCount - liveCount;
+        if (deleted < 1024 || deleted * 4 < ordinalCount) {
+            return;
+        }
+        var live = new ArrayList<Film>(liveCount);
+        for (int i = 0; i < ordinalCount; i++) {
+            if (!deletedOrdinals.get(i)) {
+                live.add(films[i]);
+            }
+        }
+        clear();
+        live.forEach(this::addLocked);
+    }
+
+    private static Film copyOf(Film film) {
+        var copy = new Film();
+        copy.setId(film.getId());
+        copy.setTitle(film.getTitle());
+        copy.setGenre(film.getGenre());
+        copy.setYear(film.getYear());
+        copy.setDescription(film.getDescription());
+        copy.setDirector(film.getDirector());
+        return copy;
+    }
+
+    private void clear() {
+        terms.clear();
+        films = new Film[16];
+        lengths = new float[16];
+        deletedOrdinals.clear();
+        ordinalById.clear();
+        ordinalCount = 0;
+        liveCount = 0;
+        totalLength = 0;
+    }
+}
@@ -0,0 +1,99 @@
+package search;
+
+import dao.DAO;
+import model.Film;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The {@code IndexingFilmDAO} class decorates a Film {@link DAO} and keeps a {@link FilmSearchIndex}
+ * up to date with every film added, updated or deleted through it. Reads are passed straight through.
+ * <p>
+ * Only the writes made through this decorator are seen, as soon as they are made; the films written by other
+ * processes reach the index through a {@link dao.FilmChangeFollower}.
+ * </p>
+ */
+public class IndexingFilmDAO implements DAO<Film> {
+
+    private final DAO<Film> delegate;
+    private final FilmSearchIndex index;
+
+    /**
+     * Creates a decorator that indexes the writes made through the given DAO.
+     *
+     * @param delegate the DAO that performs the database operations
+     * @param index    the index updated after each successful write
+     */
+    public IndexingFilmDAO(DAO<Film> delegate, FilmSearchIndex index) {
+        this.delegate = delegate;
+        this.index = index;
+    }
+
+    @Override
+    public List<Film> getAll() {
+        return delegate.getAll();
+    }
+
+    @Override
+    public Stream<Film> streamAll(int fetchSize) {
+        return delegate.streamAll(fetchSize);
+    }
+
+    @Override
+    public Film getById(int id) {
+        return delegate.getById(id);
+    }
+
+    /**
+     * Adds a film and indexes it under its generated ID.
+     *
+     * @param film the Film to be added
+     */
+    @Override
+    public void add(Film film) {
+        delegate.add(film);
+        index.add(film);
+    }
+
+    /**
+     * Updates a film and re-indexes it.
+     *
+     * @param film the Film containing the updated data
+     */
+    @Override
+    public void update(Film film) {
+        delegate.update(film);
+        index.update(film);
+    }
+
+    /**
+     * Deletes a film and removes it from the index.
+     *
+     * @param film the Film to be deleted
+     */
+    @Override
+    public void delete(Film film) {
+        delegate.delete(film);
+        index.remove(film.getId());
+    }
+
+    @Override
+    public void addAll(Collection<Film> items) {
+        delegate.addAll(items);
+        items.forEach(index::add);
+    }
+
+    @Override
+    public void updateAll(Collection<Film> items) {
+        delegate.updateAll(items);
+        items.forEach(index::update);
+    }
+
+    @Override
+    public void deleteAll(Collection<Film> items) {
+        delegate.deleteAll(items);
+        items.forEach(film -> index.remove(film.getId()));
+    }
+}
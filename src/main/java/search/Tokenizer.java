@@ -0,0 +1,75 @@
+package search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * The {@code Tokenizer} class splits film text into search terms.
+ * Text is lowercased and accent-folded, so "Iñárritu" and "inarritu" produce the same term,
+ * and then split on every character that is not a letter or a digit.
+ */
+public final class Tokenizer {
+
+    private Tokenizer() {
+    }
+
+    /**
+     * Splits the given text into terms.
+     *
+     * @param text the text to split, may be {@code null}
+     * @return the terms of the text, in order, possibly with repetitions
+     */
+    public static List<String> tokenize(String text) {
+        var terms = new ArrayList<String>();
+        tokenize(text, terms::add);
+        return terms;
+    }
+
+    /**
+     * Splits the given text into terms and passes each one to the consumer, without building a list.
+     *
+     * @param text     the text to split, may be {@code null}
+     * @param consumer receives each term, in order
+     */
+    public static void tokenize(String text, Consumer<String> consumer) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        var folded = fold(text);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean word = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                consumer.accept(folded.substring(start, i));
+                start = -1;
+            }
+        }
+    }
+
+    /**
+     * Lowercases the text and removes diacritics. Plain ASCII text skips the Unicode normalization.
+     */
+    static String fold(String text) {
+        boolean ascii = true;
+        for (int i = 0; i < text.length() && ascii; i++) {
+            ascii = text.charAt(i) < 0x80;
+        }
+        if (!ascii) {
+            var decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+            var sb = new StringBuilder(decomposed.length());
+            for (int i = 0; i < decomposed.length(); i++) {
+                char c = decomposed.charAt(i);
+                if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                    sb.append(c);
+                }
+            }
+            text = sb.toString();
+        }
+        return text.toLowerCase(Locale.ROOT);
+    }
+}
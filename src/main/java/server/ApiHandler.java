@@ -0,0 +1,300 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import model.User;
+import util.SessionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLTransientException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The {@code ApiHandler} class is the base of the handlers of the HTTP API. It splits the request path into
+ * segments, turns exceptions into JSON error responses and provides the helpers shared by the handlers:
+ * reading a JSON body, authenticating the caller and streaming a JSON response.
+ * <p>
+ * Errors are answered as {@code {"error": "..."}}: an {@link HttpException} with its own status, a write
+ * rejected by a unique or foreign key constraint with 409, a pool that timed out handing out a connection with
+ * 503, so clients back off, and anything else with 500. Database errors are never sent to the client; the
+ * unexpected ones are logged. If the error happens while a response is already being streamed, the connection
+ * is closed instead, which the client sees as a truncated response.
+ * </p>
+ */
+abstract class ApiHandler implements HttpHandler {
+
+    private static final Logger LOG = Logger.getLogger(ApiHandler.class.getName());
+
+    /** The largest request body accepted, in bytes. */
+    private static final int MAX_BODY = 64 * 1024;
+    /** The largest response body sent with a {@code Content-Length} rather than chunked, in bytes. */
+    private static final int RESPONSE_BUFFER = 16 * 1024;
+
+    /**
+     * Writes the body of a JSON response.
+     */
+    @FunctionalInterface
+    interface JsonBody {
+        void write(JsonWriter json) throws IOException;
+    }
+
+    protected final SessionManager sessions;
+
+    protected ApiHandler(SessionManager sessions) {
+        this.sessions = sessions;
+    }
+
+    @Override
+    public final void handle(HttpExchange exchange) throws IOException {
+        try {
+            var path = exchange.getRequestURI().getPath()
+                    .substring(exchange.getHttpContext().getPath().length());
+            var segments = Arrays.stream(path.split("/")).filter(s -> !s.isEmpty()).toList();
+            handle(exchange, exchange.getRequestMethod(), segments);
+        } catch (HttpException e) {
+            sendError(exchange, e.getStatus(), e.getMessage());
+        } catch (UncheckedIOException e) {
+            // The client went away while the response was being written
+        } catch (RuntimeException e) {
+            int status = statusOf(e);
+            switch (status) {
+                case 409 -> sendError(exchange, status, "The change conflicts with existing data");
+                case 503 -> sendError(exchange, status, "The server is busy, try again later");
+                default -> {
+                    LOG.log(Level.SEVERE, exchange.getRequestMethod() + " " + exchange.getRequestURI() + " failed", e);
+                    sendError(exchange, status, "Internal server error");
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Handles a request.
+     *
+     * @param exchange the request and its response
+     * @param method   the HTTP method
+     * @param path     the segments of the path after the context path of the handler
+     * @throws IOException if the request cannot be read or the response written
+     */
+    protected abstract void handle(HttpExchange exchange, String method, List<String> path) throws IOException;
+
+    /**
+     * Returns the user of the session named by the {@code Authorization: Bearer <token>} header, whose token
+     * is the session ID.
+     *
+     * @param exchange the request
+     * @return the logged-in user
+     * @throws HttpException with status 401 if there is no valid token or the session expired
+     */
+    protected User requireUser(HttpExchange exchange) {
+        var token = bearerToken(exchange);
+        var session = token == null ? null : sessions.get(token);
+        if (session == null) {
+            throw new HttpException(401, "Log in first");
+        }
+        return session.user();
+    }
+
+    /**
+     * @param exchange the request
+     * @return the bearer token of the request, or {@code null} if it has none
+     */
+    protected static String bearerToken(HttpExchange exchange) {
+        var header = exchange.getRequestHeaders().getFirst("Authorization");
+        return header != null && header.startsWith("Bearer ") ? header.substring(7).trim() : null;
+    }
+
+    /**
+     * Reads the request body as a flat JSON object.
+     *
+     * @param exchange the request
+     * @return the members of the object
+     * @throws IOException   if the body cannot be read
+     * @throws HttpException with status 400 or 413 if the body is not valid JSON or too large
+     */
+    protected static Map<String, Object> readJson(HttpExchange exchange) throws IOException {
+        var bytes = exchange.getRequestBody().readNBytes(MAX_BODY + 1);
+        if (bytes.length > MAX_BODY) {
+            throw new HttpException(413, "Request body larger than " + MAX_BODY + " bytes");
+        }
+        return JsonReader.parseObject(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses the query string of a request.
+     *
+     * @param exchange the request
+     * @return the decoded query parameters; the last value wins when a name is repeated
+     */
+    protected static Map<String, String> query(HttpExchange exchange) {
+        var params = new HashMap<String, String>();
+        var raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) {
+            return params;
+        }
+        for (var pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            var name = eq < 0 ? pair : pair.substring(0, eq);
+            var value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    /**
+     * Parses an integer from a path segment or query parameter.
+     *
+     * @param value        the text, or {@code null}
+     * @param defaultValue the value used when the text is {@code null}
+     * @param min          the smallest accepted value
+     * @param max          the largest accepted value
+     * @return the parsed integer
+     * @throws HttpException with status 400 if the text is not an integer in range
+     */
+    protected static int parseInt(String value, int defaultValue, int min, int max) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int n = Integer.parseInt(value);
+            if (n >= min && n <= max) {
+                return n;
+            }
+        } catch (NumberFormatException ignored) {
+            // Reported below
+        }
+        throw new HttpException(400, "Expected an integer between " + min + " and " + max + ", got " + value);
+    }
+
+    /**
+     * Sends a JSON response. A body of up to {@value #RESPONSE_BUFFER} bytes is sent in one write with its
+     * length; a larger one is streamed with chunked encoding as it is written, so it is never held in memory.
+     *
+     * @param exchange the request
+     * @param status   the HTTP status code
+     * @param body     writes the body
+     * @throws IOException if the response cannot be written
+     */
+    protected static void sendJson(HttpExchange exchange, int status, JsonBody body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        // Not closed on failure, which would send a partial body as if it were complete
+        var json = new JsonWriter(new ResponseStream(exchange, status));
+        body.write(json);
+        json.close();
+    }
+
+    /**
+     * Sends an empty response.
+     *
+     * @param exchange the request
+     * @param status   the HTTP status code, such as 204
+     * @throws IOException if the response cannot be written
+     */
+    protected static void sendEmpty(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    /**
+     * @return an exception answered with 404
+     */
+    protected static HttpException notFound() {
+        return new HttpException(404, "Not found");
+    }
+
+    /**
+     * @return an exception answered with 405
+     */
+    protected static HttpException methodNotAllowed() {
+        return new HttpException(405, "Method not allowed");
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        if (exchange.getResponseCode() != -1) {
+            // Headers already sent; closing the exchange is all that can be done
+            return;
+        }
+        try {
+            sendJson(exchange, status, json -> json.beginObject().name("error").value(message).endObject());
+        } catch (IOException ignored) {
+            // The client went away
+        }
+    }
+
+    private static int statusOf(Throwable e) {
+        for (var cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLIntegrityConstraintViolationException) {
+                return 409;
+            }
+            if (cause instanceof SQLTransientException) {
+                return 503;
+            }
+        }
+        return 500;
+    }
+
+    /**
+     * The body of a response, held back until it is complete or outgrows {@link #RESPONSE_BUFFER}.
+     * Sending the headers and a short body in separate writes would leave the body waiting on the client's
+     * delayed acknowledgement of the headers.
+     */
+    private static final class ResponseStream extends OutputStream {
+        private final HttpExchange exchange;
+        private final int status;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+        private OutputStream body;
+
+        ResponseStream(HttpExchange exchange, int status) {
+            this.exchange = exchange;
+            this.status = status;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (body == null && buffer.size() + length <= RESPONSE_BUFFER) {
+                buffer.write(bytes, offset, length);
+                return;
+            }
+            if (body == null) {
+                exchange.sendResponseHeaders(status, 0);
+                body = exchange.getResponseBody();
+                buffer.writeTo(body);
+            }
+            body.write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (body != null) {
+                body.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (body == null) {
+                exchange.sendResponseHeaders(status, buffer.size() == 0 ? -1 : buffer.size());
+                body = exchange.getResponseBody();
+                buffer.writeTo(body);
+            }
+            body.close();
+        }
+    }
+}
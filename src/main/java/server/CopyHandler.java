@@ -0,0 +1,111 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import dao.CopyConflictException;
+import dao.CopyFilmDAO;
+import model.CopyFilm;
+import model.User;
+import util.SessionManager;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The {@code CopyHandler} class serves the copies of the logged-in user. Copies of other users are answered
+ * with 404, as if they did not exist.
+ * <ul>
+ *     <li>{@code GET /api/copies} returns the library of the user, every copy with its film; with
+ *     {@code limit} (and {@code afterId}, the last ID of the previous page) it returns one page of it</li>
+ *     <li>{@code GET /api/copies/{id}} returns a copy</li>
+ *     <li>{@code POST /api/copies} with {@code {"filmId": ..., "condition": ..., "support": ...}} adds a copy</li>
+ *     <li>{@code PUT /api/copies/{id}} replaces a copy; with the {@code version} of the copy as read, 409 if the
+ *     copy changed since, for example because it was lent</li>
+ *     <li>{@code DELETE /api/copies/{id}} deletes a copy</li>
+ * </ul>
+ */
+class CopyHandler extends ApiHandler {
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final CopyFilmDAO copies;
+
+    CopyHandler(SessionManager sessions, CopyFilmDAO copies) {
+        super(sessions);
+        this.copies = copies;
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange, String method, List<String> path) throws IOException {
+        var user = requireUser(exchange);
+        if (path.isEmpty()) {
+            switch (method) {
+                case "GET" -> library(exchange, user);
+                case "POST" -> {
+                    var copy = EntityJson.readCopy(readJson(exchange));
+                    copy.setUserId(user.getId());
+                    copies.add(copy);
+                    sendJson(exchange, 201, json -> EntityJson.write(json, copy));
+                }
+                default -> throw methodNotAllowed();
+            }
+        } else if (path.size() == 1) {
+            int id = parseInt(path.get(0), 0, 1, Integer.MAX_VALUE);
+            switch (method) {
+                case "GET" -> {
+                    var copy = find(id, user);
+                    sendJson(exchange, 200, json -> EntityJson.write(json, copy));
+                }
+                case "PUT" -> {
+                    var current = find(id, user);
+                    var body = readJson(exchange);
+                    var copy = EntityJson.readCopy(body);
+                    copy.setId(id);
+                    copy.setUserId(user.getId());
+                    // Without a version, the copy is replaced as it was just read
+                    copy.setVersion(body.containsKey("version") ? EntityJson.integer(body, "version")
+                            : current.getVersion());
+                    try {
+                        copies.update(copy);
+                    } catch (CopyConflictException e) {
+                        throw new HttpException(409, "The copy changed since it was read, read it again");
+                    }
+                    sendJson(exchange, 200, json -> EntityJson.write(json, copy));
+                }
+                case "DELETE" -> {
+                    copies.delete(find(id, user));
+                    sendEmpty(exchange, 204);
+                }
+                default -> throw methodNotAllowed();
+            }
+        } else {
+            throw notFound();
+        }
+    }
+
+    private void library(HttpExchange exchange, User user) throws IOException {
+        var query = query(exchange);
+        List<CopyFilm> library;
+        if (query.containsKey("limit")) {
+            int limit = parseInt(query.get("limit"), 0, 1, MAX_PAGE_SIZE);
+            int afterId = parseInt(query.get("afterId"), 0, 0, Integer.MAX_VALUE);
+            library = copies.getLibraryPageByUser(user, afterId, limit);
+        } else {
+            library = copies.getLibraryByUser(user);
+        }
+        sendJson(exchange, 200, json -> {
+            json.beginArray();
+            for (var copy : library) {
+                EntityJson.write(json, copy);
+            }
+            json.endArray();
+        });
+    }
+
+    private CopyFilm find(int id, User user) {
+        var copy = copies.getById(id);
+        if (copy == null || copy.getId() == 0 || copy.getUserId() != user.getId()) {
+            throw notFound();
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,124 @@
+package server;
+
+import model.CopyFilm;
+import model.Film;
+import model.Loan;
+import model.User;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@code EntityJson} class converts the entities to and from the JSON of the HTTP API.
+ * Passwords are read from requests but never written to responses.
+ */
+final class EntityJson {
+
+    private static final Set<String> CONDITIONS = Set.of("New", "Damaged");
+    private static final Set<String> SUPPORTS = Set.of("DVD", "Blu-ray");
+
+    private EntityJson() {
+    }
+
+    static void write(JsonWriter json, Film film) throws IOException {
+        json.beginObject()
+                .name("id").value(film.getId())
+                .name("title").value(film.getTitle())
+                .name("genre").value(film.getGenre())
+                .name("year").value(film.getYear())
+                .name("description").value(film.getDescription())
+                .name("director").value(film.getDirector())
+                .endObject();
+    }
+
+    static void write(JsonWriter json, CopyFilm copy) throws IOException {
+        json.beginObject()
+                .name("id").value(copy.getId())
+                .name("condition").value(copy.getCondition())
+                .name("support").value(copy.getSupport())
+                .name("filmId").value(copy.getFilmId())
+                .name("userId").value(copy.getUserId())
+                .name("version").value(copy.getVersion());
+        if (copy.getFilm() != null) {
+            json.name("film");
+            write(json, copy.getFilm());
+        }
+        json.endObject();
+    }
+
+    static void write(JsonWriter json, User user) throws IOException {
+        json.beginObject()
+                .name("id").value(user.getId())
+                .name("userName").value(user.getUserName())
+                .endObject();
+    }
+
+    static void write(JsonWriter json, Loan loan) throws IOException {
+        json.beginObject()
+                .name("copyId").value(loan.getCopyId())
+                .name("filmId").value(loan.getFilmId())
+                .name("ownerId").value(loan.getOwnerId())
+                .name("borrowerId").value(loan.getBorrowerId())
+                .name("borrowedAt").value(loan.getBorrowedAt() == null ? null : loan.getBorrowedAt().toString())
+                .endObject();
+    }
+
+    static Film readFilm(Map<String, Object> body) {
+        var film = new Film();
+        film.setTitle(string(body, "title", true));
+        film.setGenre(string(body, "genre", false));
+        film.setYear(integer(body, "year"));
+        film.setDescription(string(body, "description", false));
+        film.setDirector(string(body, "director", false));
+        return film;
+    }
+
+    static CopyFilm readCopy(Map<String, Object> body) {
+        var copy = new CopyFilm();
+        copy.setCondition(oneOf(body, "condition", CONDITIONS));
+        copy.setSupport(oneOf(body, "support", SUPPORTS));
+        copy.setFilmId(integer(body, "filmId"));
+        return copy;
+    }
+
+    static User readUser(Map<String, Object> body) {
+        var user = new User();
+        user.setUserName(string(body, "userName", true));
+        user.setPassword(string(body, "password", true));
+        return user;
+    }
+
+    static String string(Map<String, Object> body, String name, boolean required) {
+        var value = body.get(name);
+        if (value == null) {
+            if (required) {
+                throw new HttpException(400, "Missing " + name);
+            }
+            return null;
+        }
+        if (!(value instanceof String s)) {
+            throw new HttpException(400, name + " must be a string");
+        }
+        if (required && s.isBlank()) {
+            throw new HttpException(400, name + " must not be empty");
+        }
+        return s;
+    }
+
+    static int integer(Map<String, Object> body, String name) {
+        if (!(body.get(name) instanceof Double d) || d != Math.rint(d)
+                || d < Integer.MIN_VALUE || d > Integer.MAX_VALUE) {
+            throw new HttpException(400, name + " must be an integer");
+        }
+        return d.intValue();
+    }
+
+    private static String oneOf(Map<String, Object> body, String name, Set<String> allowed) {
+        var value = string(body, name, true);
+        if (!allowed.contains(value)) {
+            throw new HttpException(400, name + " must be one of " + allowed);
+        }
+        return value;
+    }
+}
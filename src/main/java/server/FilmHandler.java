@@ -0,0 +1,124 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import dao.DAO;
+import model.Film;
+import search.FilmSearchIndex;
+import util.SessionManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * The {@code FilmHandler} class serves the film catalog to logged-in users.
+ * <ul>
+ *     <li>{@code GET /api/films} streams every film, straight from a database cursor</li>
+ *     <li>{@code GET /api/films/search?q=...&limit=...} returns the best matches of the search index, with
+ *     their score</li>
+ *     <li>{@code GET /api/films/{id}} returns a film</li>
+ *     <li>{@code POST /api/films} adds a film and returns it with its ID</li>
+ *     <li>{@code PUT /api/films/{id}} replaces a film</li>
+ *     <li>{@code DELETE /api/films/{id}} deletes a film; 409 if copies of it exist</li>
+ * </ul>
+ */
+class FilmHandler extends ApiHandler {
+
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int MAX_SEARCH_LIMIT = 200;
+
+    private final DAO<Film> films;
+    private final FilmSearchIndex searchIndex;
+
+    FilmHandler(SessionManager sessions, DAO<Film> films, FilmSearchIndex searchIndex) {
+        super(sessions);
+        this.films = films;
+        this.searchIndex = searchIndex;
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange, String method, List<String> path) throws IOException {
+        requireUser(exchange);
+        if (path.isEmpty()) {
+            switch (method) {
+                case "GET" -> streamAll(exchange);
+                case "POST" -> {
+                    var film = EntityJson.readFilm(readJson(exchange));
+                    films.add(film);
+                    sendJson(exchange, 201, json -> EntityJson.write(json, film));
+                }
+                default -> throw methodNotAllowed();
+            }
+        } else if (path.equals(List.of("search"))) {
+            if (!method.equals("GET")) {
+                throw methodNotAllowed();
+            }
+            search(exchange);
+        } else if (path.size() == 1) {
+            int id = parseInt(path.get(0), 0, 1, Integer.MAX_VALUE);
+            switch (method) {
+                case "GET" -> {
+                    var film = find(id);
+                    sendJson(exchange, 200, json -> EntityJson.write(json, film));
+                }
+                case "PUT" -> {
+                    find(id);
+                    var film = EntityJson.readFilm(readJson(exchange));
+                    film.setId(id);
+                    films.update(film);
+                    sendJson(exchange, 200, json -> EntityJson.write(json, film));
+                }
+                case "DELETE" -> {
+                    films.delete(find(id));
+                    sendEmpty(exchange, 204);
+                }
+                default -> throw methodNotAllowed();
+            }
+        } else {
+            throw notFound();
+        }
+    }
+
+    private void streamAll(HttpExchange exchange) throws IOException {
+        try (var all = films.streamAll()) {
+            sendJson(exchange, 200, json -> {
+                json.beginArray();
+                all.forEach(film -> {
+                    try {
+                        EntityJson.write(json, film);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                json.endArray();
+            });
+        }
+    }
+
+    private void search(HttpExchange exchange) throws IOException {
+        var query = query(exchange);
+        var q = query.get("q");
+        if (q == null || q.isBlank()) {
+            throw new HttpException(400, "Missing q");
+        }
+        int limit = parseInt(query.get("limit"), DEFAULT_SEARCH_LIMIT, 1, MAX_SEARCH_LIMIT);
+        var results = searchIndex.search(q, limit);
+        sendJson(exchange, 200, json -> {
+            json.beginArray();
+            for (var result : results) {
+                json.beginObject().name("score").value(result.score()).name("film");
+                EntityJson.write(json, result.film());
+                json.endObject();
+            }
+            json.endArray();
+        });
+    }
+
+    private Film find(int id) {
+        var film = films.getById(id);
+        if (film == null || film.getId() == 0) {
+            throw notFound();
+        }
+        return film;
+    }
+}
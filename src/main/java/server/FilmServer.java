@@ -0,0 +1,123 @@
+package server;
+
+import com.sun.net.httpserver.HttpServer;
+import dao.CopyFilmDAO;
+import dao.DAO;
+import dao.DAOFactory;
+import dao.InventoryDAO;
+import dao.LoanDAO;
+import dao.UserDAO;
+import migration.MigrationRunner;
+import model.Film;
+import search.FilmSearchIndex;
+import util.JdbcUtil;
+import util.SessionManager;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The {@code FilmServer} class runs the application headless, as a JSON API over HTTP serving many users at
+ * once, instead of the single-user Swing client started by {@code Main}.
+ * <p>
+ * It is built on the JDK's {@code com.sun.net.httpserver} and handles every request on its own virtual thread,
+ * so a request blocked on the database or on a slow client holds no platform thread; the number of requests
+ * running queries at once is bounded by the connection pool instead. The endpoints, all under {@code /api},
+ * are described by {@link SessionHandler}, {@link UserHandler}, {@link FilmHandler}, {@link CopyHandler},
+ * {@link InventoryHandler} and {@link LoanHandler}. Every endpoint but logging in and registering needs the bearer
+ * token returned by {@code POST /api/session}, the ID of a session kept by the server's own {@link SessionManager}.
+ * </p>
+ * Started with {@link #main(String[])}, it listens on the port given by the system property
+ * {@code films.server.port} (8080 by default) and serves the shared DAOs of {@link DAOFactory}.
+ */
+public class FilmServer implements AutoCloseable {
+
+    static {
+        // The JDK server writes the response headers and the body separately; with Nagle's algorithm on, the
+        // body then waits for the client's delayed acknowledgement, adding about 40 ms to every response.
+        // The property is read once, when the first server is created, so it must be set before that.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final SessionManager sessions;
+
+    /**
+     * Creates a server on the given DAOs. It does not accept requests until {@link #start()} is called.
+     *
+     * @param address     the address to listen on; port 0 picks a free port
+     * @param films       the Film DAO
+     * @param searchIndex the film search index, kept up to date with the writes made through {@code films}
+     * @param copies      the CopyFilm DAO
+     * @param users       the User DAO
+     * @param inventory   the Inventory DAO
+     * @param loans       the Loan DAO
+     * @throws IOException if the address cannot be bound
+     */
+    public FilmServer(InetSocketAddress address, DAO<Film> films, FilmSearchIndex searchIndex,
+                      CopyFilmDAO copies, UserDAO users, InventoryDAO inventory,
+                      LoanDAO loans) throws IOException {
+        sessions = new SessionManager(SessionManager.Config.fromSystemProperties());
+        server = HttpServer.create(address, Integer.getInteger("films.server.backlog", 1024));
+        server.createContext("/api/session", new SessionHandler(sessions, users));
+        server.createContext("/api/users", new UserHandler(sessions, users));
+        server.createContext("/api/films", new FilmHandler(sessions, films, searchIndex));
+        server.createContext("/api/copies", new CopyHandler(sessions, copies));
+        server.createContext("/api/inventory", new InventoryHandler(sessions, inventory));
+        server.createContext("/api/loans", new LoanHandler(sessions, loans));
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return the address the server listens on, with the actual port
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for the running ones to finish and stops the server.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.close();
+        sessions.close();
+    }
+
+    /**
+     * Migrates the database, loads the film search index and serves the API until the process is stopped.
+     *
+     * @param args command-line arguments (unused)
+     * @throws IOException if the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        if (Boolean.parseBoolean(System.getProperty("films.migrate", "true"))) {
+            new MigrationRunner(JdbcUtil.getDataSource()).migrate();
+        }
+        var server = new FilmServer(new InetSocketAddress(Integer.getInteger("films.server.port", 8080)),
+                DAOFactory.getFilmDAO(), DAOFactory.getFilmSearchIndex(),
+                DAOFactory.getCopyFilmDAO(), DAOFactory.getUserDAO(), DAOFactory.getInventoryDAO(),
+                DAOFactory.getLoanDAO());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            DAOFactory.closeWriteBehind();
+            JdbcUtil.getPool().close();
+        }));
+        server.start();
+        System.out.println("Serving on http://localhost:" + server.getAddress().getPort() + "/api");
+    }
+}
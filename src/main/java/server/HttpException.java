@@ -0,0 +1,30 @@
+package server;
+
+/**
+ * The {@code HttpException} class is thrown by request handlers to answer with an HTTP error status
+ * and a message, which {@link ApiHandler} sends back as {@code {"error": "..."}}.
+ */
+public class HttpException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    /**
+     * Creates an exception answered with the given status.
+     *
+     * @param status  the HTTP status code, such as 404
+     * @param message the message sent to the client
+     */
+    public HttpException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    /**
+     * @return the HTTP status code to answer with
+     */
+    public int getStatus() {
+        return status;
+    }
+}
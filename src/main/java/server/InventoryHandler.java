@@ -0,0 +1,94 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import dao.InventoryDAO;
+import util.SessionManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The {@code InventoryHandler} class serves statistics over the copies of every user, counted by the database.
+ * <ul>
+ *     <li>{@code GET /api/inventory?by=genre,condition} returns the number of copies of each combination of the
+ *     given dimensions ({@code film}, {@code genre}, {@code director}, {@code year}, {@code condition},
+ *     {@code support}) as {@code [{"genre": ..., "condition": ..., "copies": ...}, ...]}; without {@code by},
+ *     the total. The counts come from the inventory summary, or from the copies themselves with
+ *     {@code live=true}</li>
+ *     <li>{@code GET /api/inventory/films/{id}} returns {@code {"filmId": ..., "copies": ...}}</li>
+ * </ul>
+ */
+class InventoryHandler extends ApiHandler {
+
+    private final InventoryDAO inventory;
+
+    InventoryHandler(SessionManager sessions, InventoryDAO inventory) {
+        super(sessions);
+        this.inventory = inventory;
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange, String method, List<String> path) throws IOException {
+        requireUser(exchange);
+        if (!method.equals("GET")) {
+            throw methodNotAllowed();
+        }
+        if (path.isEmpty()) {
+            counts(exchange);
+        } else if (path.size() == 2 && path.get(0).equals("films")) {
+            int filmId = parseInt(path.get(1), 0, 1, Integer.MAX_VALUE);
+            int copies = inventory.countCopiesOfFilm(filmId);
+            sendJson(exchange, 200, json -> json.beginObject()
+                    .name("filmId").value(filmId)
+                    .name("copies").value(copies)
+                    .endObject());
+        } else {
+            throw notFound();
+        }
+    }
+
+    private void counts(HttpExchange exchange) throws IOException {
+        var query = query(exchange);
+        var dimensions = parseDimensions(query.get("by"));
+        var array = dimensions.toArray(new InventoryDAO.Dimension[0]);
+        var counts = Boolean.parseBoolean(query.get("live")) ? inventory.countLive(array) : inventory.count(array);
+        sendJson(exchange, 200, json -> {
+            json.beginArray();
+            for (var count : counts) {
+                json.beginObject();
+                for (int i = 0; i < dimensions.size(); i++) {
+                    json.name(dimensions.get(i).getName()).value(count.values().get(i));
+                }
+                json.name("copies").value(count.copies()).endObject();
+            }
+            json.endArray();
+        });
+    }
+
+    /**
+     * Parses a comma-separated list of dimension names.
+     *
+     * @throws HttpException with status 400 if a name is unknown or repeated
+     */
+    private static List<InventoryDAO.Dimension> parseDimensions(String by) {
+        var dimensions = new ArrayList<InventoryDAO.Dimension>();
+        if (by == null || by.isBlank()) {
+            return dimensions;
+        }
+        for (var name : by.split(",")) {
+            InventoryDAO.Dimension dimension;
+            try {
+                dimension = InventoryDAO.Dimension.valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new HttpException(400, "Unknown dimension " + name.trim());
+            }
+            if (dimensions.contains(dimension)) {
+                throw new HttpException(400, "Dimension " + dimension.getName() + " given twice");
+            }
+            dimensions.add(dimension);
+        }
+        return dimensions;
+    }
+}
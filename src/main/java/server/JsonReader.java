@@ -0,0 +1,156 @@
+package server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The {@code JsonReader} class parses the request bodies of the API, which are flat JSON objects such as
+ * {@code {"userName": "johnsmith", "password": "..."}}. Member values may be strings, numbers, booleans or
+ * {@code null}; nested objects and arrays are rejected.
+ */
+public final class JsonReader {
+
+    private final String text;
+    private int pos;
+
+    private JsonReader(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Parses a flat JSON object.
+     *
+     * @param text the JSON text
+     * @return the members of the object, with strings as {@link String}, numbers as {@link Double},
+     * booleans as {@link Boolean} and {@code null} as {@code null}
+     * @throws HttpException with status 400 if the text is not a flat JSON object
+     */
+    public static Map<String, Object> parseObject(String text) {
+        var reader = new JsonReader(text);
+        var members = reader.object();
+        reader.skipWhitespace();
+        if (reader.pos != text.length()) {
+            throw reader.error("unexpected text after the object");
+        }
+        return members;
+    }
+
+    private Map<String, Object> object() {
+        var members = new HashMap<String, Object>();
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return members;
+        }
+        while (true) {
+            skipWhitespace();
+            var name = string();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            members.put(name, value());
+            skipWhitespace();
+            if (peek() == ',') {
+                pos++;
+            } else {
+                expect('}');
+                return members;
+            }
+        }
+    }
+
+    private Object value() {
+        char c = peek();
+        if (c == '"') {
+            return string();
+        }
+        if (text.startsWith("true", pos)) {
+            pos += 4;
+            return Boolean.TRUE;
+        }
+        if (text.startsWith("false", pos)) {
+            pos += 5;
+            return Boolean.FALSE;
+        }
+        if (text.startsWith("null", pos)) {
+            pos += 4;
+            return null;
+        }
+        if (c == '-' || (c >= '0' && c <= '9')) {
+            int start = pos;
+            while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+                pos++;
+            }
+            try {
+                return Double.parseDouble(text.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw error("malformed number");
+            }
+        }
+        throw error("expected a string, number, boolean or null");
+    }
+
+    private String string() {
+        expect('"');
+        var s = new StringBuilder();
+        while (true) {
+            if (pos >= text.length()) {
+                throw error("unterminated string");
+            }
+            char c = text.charAt(pos++);
+            if (c == '"') {
+                return s.toString();
+            }
+            if (c != '\\') {
+                s.append(c);
+                continue;
+            }
+            if (pos >= text.length()) {
+                throw error("unterminated string");
+            }
+            char e = text.charAt(pos++);
+            switch (e) {
+                case '"', '\\', '/' -> s.append(e);
+                case 'b' -> s.append('\b');
+                case 'f' -> s.append('\f');
+                case 'n' -> s.append('\n');
+                case 'r' -> s.append('\r');
+                case 't' -> s.append('\t');
+                case 'u' -> {
+                    if (pos + 4 > text.length()) {
+                        throw error("malformed unicode escape");
+                    }
+                    try {
+                        s.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw error("malformed unicode escape");
+                    }
+                    pos += 4;
+                }
+                default -> throw error("unknown escape \\" + e);
+            }
+        }
+    }
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw error("expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    private char peek() {
+        return pos < text.length() ? text.charAt(pos) : 0;
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private HttpException error(String message) {
+        return new HttpException(400, "Malformed JSON at offset " + pos + ": " + message);
+    }
+}
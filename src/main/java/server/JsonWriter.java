@@ -0,0 +1,212 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
+/**
+ * The {@code JsonWriter} class writes JSON straight to an output stream, so a response listing thousands
+ * of films is sent while the rows are still being read from the database instead of being built in memory.
+ * <p>
+ * Values are written in order: {@link #beginObject()}, then {@link #name(String)} and a value for each member,
+ * then {@link #endObject()}; arrays are written the same way without names. Commas are added automatically.
+ * </p>
+ */
+public class JsonWriter implements AutoCloseable {
+
+    private final Writer out;
+    /** For each open object or array, whether a value has been written in it yet. */
+    private final BitSet hasValue = new BitSet();
+    private int depth;
+    private boolean afterName;
+
+    /**
+     * Creates a writer sending UTF-8 JSON to the given stream.
+     *
+     * @param out the stream to write to; closed with this writer
+     */
+    public JsonWriter(OutputStream out) {
+        this.out = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Starts an object.
+     *
+     * @return this writer
+     * @throws IOException if the stream cannot be written
+     */
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    /**
+     * Ends the current object.
+     *
+     * @return this writer
+     * @throws IOException if the stream cannot be written
+     */
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    /**
+     * Starts an array.
+     *
+     * @return this writer
+     * @throws IOException if the stream cannot be written
+     */
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    /**
+     * Ends the current array.
+     *
+     * @return this writer
+     * @throws IOException if the stream cannot be written
+     */
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    /**
+     * Writes the name of the next member of the current object.
+     *
+     * @param name the member name
+     * @return this writer
+     * @throws IOException if the stream cannot be written
+     */
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        string(name);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Writes a string value, or {@code null}.
+     *
+     * @param value the value
+     * @return this writer
+     * @throws IOException if the stream cannot be written
+     */
+    public JsonWriter value(String value) throws IOException {
+        separate();
+        if (value == null) {
+            out.write("null");
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a number value.
+     *
+     * @param value the value
+     * @return this writer
+     * @throws IOException if the stream cannot be written
+     */
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes a number value.
+     *
+     * @param value the value; NaN and infinities are written as {@code null}
+     * @return this writer
+     * @throws IOException if the stream cannot be written
+     */
+    public JsonWriter value(double value) throws IOException {
+        separate();
+        out.write(Double.isFinite(value) ? Double.toString(value) : "null");
+        return this;
+    }
+
+    /**
+     * Writes a boolean value.
+     *
+     * @param value the value
+     * @return this writer
+     * @throws IOException if the stream cannot be written
+     */
+    public JsonWriter value(boolean value) throws IOException {
+        separate();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Sends what has been written so far to the client.
+     *
+     * @throws IOException if the stream cannot be written
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private JsonWriter open(char c) throws IOException {
+        separate();
+        out.write(c);
+        depth++;
+        hasValue.clear(depth);
+        return this;
+    }
+
+    private JsonWriter close(char c) throws IOException {
+        out.write(c);
+        depth--;
+        return this;
+    }
+
+    /**
+     * Writes the comma before a value or member name, unless it is the first one or follows a name.
+     */
+    private void separate() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (hasValue.get(depth)) {
+                out.write(',');
+            }
+            hasValue.set(depth);
+        }
+    }
+
+    private void string(String s) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            String escape = switch (c) {
+                case '"' -> "\\\"";
+                case '\\' -> "\\\\";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '\t' -> "\\t";
+                default -> c < 0x20 || c == '\u2028' || c == '\u2029' ? String.format("\\u%04x", (int) c) : null;
+            };
+            if (escape != null) {
+                out.write(s, start, i - start);
+                out.write(escape);
+                start = i + 1;
+            }
+        }
+        out.write(s, start, s.length() - start);
+        out.write('"');
+    }
+}
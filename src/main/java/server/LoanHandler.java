@@ -0,0 +1,77 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import dao.LoanConflictException;
+import dao.LoanDAO;
+import model.User;
+import util.SessionManager;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The {@code LoanHandler} class serves the copies the logged-in user borrows from other users.
+ * <ul>
+ *     <li>{@code GET /api/loans} returns the copies the user has borrowed</li>
+ *     <li>{@code POST /api/loans} with {@code {"filmId": ...}} borrows any free copy of a film, or with
+ *     {@code {"copyId": ...}} a given copy, and returns the loan; 409 if no copy is free</li>
+ *     <li>{@code DELETE /api/loans/{copyId}} gives a copy back; 404 if the user has not borrowed it</li>
+ * </ul>
+ * A loan that keeps losing the race for a copy against other users is answered with 409 too, and can be retried.
+ */
+class LoanHandler extends ApiHandler {
+
+    private final LoanDAO loans;
+
+    LoanHandler(SessionManager sessions, LoanDAO loans) {
+        super(sessions);
+        this.loans = loans;
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange, String method, List<String> path) throws IOException {
+        var user = requireUser(exchange);
+        try {
+            if (path.isEmpty()) {
+                switch (method) {
+                    case "GET" -> {
+                        var borrowed = loans.getLoansOfUser(user);
+                        sendJson(exchange, 200, json -> {
+                            json.beginArray();
+                            for (var loan : borrowed) {
+                                EntityJson.write(json, loan);
+                            }
+                            json.endArray();
+                        });
+                    }
+                    case "POST" -> borrow(exchange, user);
+                    default -> throw methodNotAllowed();
+                }
+            } else if (path.size() == 1) {
+                int copyId = parseInt(path.get(0), 0, 1, Integer.MAX_VALUE);
+                if (!method.equals("DELETE")) {
+                    throw methodNotAllowed();
+                }
+                if (!loans.giveBack(copyId, user)) {
+                    throw notFound();
+                }
+                sendEmpty(exchange, 204);
+            } else {
+                throw notFound();
+            }
+        } catch (LoanConflictException e) {
+            throw new HttpException(409, "The copy is in demand, try again");
+        }
+    }
+
+    private void borrow(HttpExchange exchange, User user) throws IOException {
+        var body = readJson(exchange);
+        var loan = body.containsKey("copyId")
+                ? loans.borrowCopy(EntityJson.integer(body, "copyId"), user)
+                : loans.borrow(EntityJson.integer(body, "filmId"), user);
+        if (loan == null) {
+            throw new HttpException(409, "No copy is free to borrow");
+        }
+        sendJson(exchange, 201, json -> EntityJson.write(json, loan));
+    }
+}
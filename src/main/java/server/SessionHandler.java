@@ -0,0 +1,58 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import dao.UserDAO;
+import util.SessionManager;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The {@code SessionHandler} class logs users in and out.
+ * <ul>
+ *     <li>{@code POST /api/session} with {@code {"userName": ..., "password": ...}} answers
+ *     {@code {"token": ..., "user": {...}}}; the token is sent back as {@code Authorization: Bearer <token>}</li>
+ *     <li>{@code DELETE /api/session} ends the session of the token sent</li>
+ * </ul>
+ */
+class SessionHandler extends ApiHandler {
+
+    private final UserDAO users;
+
+    SessionHandler(SessionManager sessions, UserDAO users) {
+        super(sessions);
+        this.users = users;
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange, String method, List<String> path) throws IOException {
+        if (!path.isEmpty()) {
+            throw notFound();
+        }
+        switch (method) {
+            case "POST" -> login(exchange);
+            case "DELETE" -> {
+                var token = bearerToken(exchange);
+                if (token != null) {
+                    sessions.remove(token);
+                }
+                sendEmpty(exchange, 204);
+            }
+            default -> throw methodNotAllowed();
+        }
+    }
+
+    private void login(HttpExchange exchange) throws IOException {
+        var credentials = EntityJson.readUser(readJson(exchange));
+        var user = users.validateUser(credentials.getUserName(), credentials.getPassword().toCharArray());
+        if (user.getUserName() == null) {
+            throw new HttpException(401, "Wrong user name or password");
+        }
+        var token = sessions.create(user).id();
+        sendJson(exchange, 200, json -> {
+            json.beginObject().name("token").value(token).name("user");
+            EntityJson.write(json, user);
+            json.endObject();
+        });
+    }
+}
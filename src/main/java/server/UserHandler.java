@@ -0,0 +1,46 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import dao.UserDAO;
+import util.SessionManager;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The {@code UserHandler} class serves the user accounts.
+ * <ul>
+ *     <li>{@code POST /api/users} with {@code {"userName": ..., "password": ...}} registers a user; a name that
+ *     is already taken is answered with 409</li>
+ *     <li>{@code GET /api/users/me} returns the logged-in user</li>
+ * </ul>
+ */
+class UserHandler extends ApiHandler {
+
+    private final UserDAO users;
+
+    UserHandler(SessionManager sessions, UserDAO users) {
+        super(sessions);
+        this.users = users;
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange, String method, List<String> path) throws IOException {
+        if (path.isEmpty()) {
+            if (!method.equals("POST")) {
+                throw methodNotAllowed();
+            }
+            var user = EntityJson.readUser(readJson(exchange));
+            users.add(user);
+            sendJson(exchange, 201, json -> EntityJson.write(json, user));
+        } else if (path.equals(List.of("me"))) {
+            if (!method.equals("GET")) {
+                throw methodNotAllowed();
+            }
+            var user = requireUser(exchange);
+            sendJson(exchange, 200, json -> EntityJson.write(json, user));
+        } else {
+            throw notFound();
+        }
+    }
+}
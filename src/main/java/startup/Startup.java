@@ -0,0 +1,50 @@
+package startup;
+
+import dao.DAOFactory;
+import migration.MigrationRunner;
+import util.BackgroundExecutor;
+import util.JdbcUtil;
+import util.StartupReport;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The {@code Startup} class brings the database side of the application up in the background, so the login window
+ * can be shown as soon as the JVM has started instead of after the first connections are open.
+ * <p>
+ * The JDBC driver is loaded, the connection pool opened and the migrations run, unless {@code films.migrate} is
+ * {@code false}, in that order, through {@link JdbcUtil#startAsync}: a DAO used before they are done waits for
+ * them rather than fails. Then the DAOs and their caches are created and the hot statements are prepared on the
+ * pooled connections, all at once on the virtual threads of the {@link BackgroundExecutor}. The catalog snapshot
+ * needs no database, so it is mapped right away, alongside the database phases, and the views can read from it
+ * before the pool is open. Each phase is timed in the {@link StartupReport}.
+ * </p>
+ */
+public final class Startup {
+
+    private Startup() {
+    }
+
+    /**
+     * Starts every phase in the background and returns at once.
+     *
+     * @return a future completed once every phase has finished, or exceptionally if one failed
+     */
+    public static CompletableFuture<Void> begin() {
+        var report = StartupReport.getDefault();
+        var executor = BackgroundExecutor.get();
+        boolean migrate = Boolean.parseBoolean(System.getProperty("films.migrate", "true"));
+        var database = JdbcUtil.startAsync(executor, ds -> {
+            if (migrate) {
+                report.run("migrations", () -> new MigrationRunner(ds).migrate());
+            }
+        });
+        return CompletableFuture.allOf(
+                database.thenRunAsync(() -> report.run("user DAO", DAOFactory::getUserDAO), executor),
+                database.thenRunAsync(() -> report.run("film DAO and cache", DAOFactory::getFilmDAO), executor),
+                database.thenRunAsync(() -> report.run("copy DAO", DAOFactory::getCopyFilmDAO), executor),
+                CompletableFuture.runAsync(() -> report.run("catalog", DAOFactory::getCatalog), executor),
+                database.thenRunAsync(() -> report.run("prepared statements", DAOFactory::prepareStatements),
+                        executor));
+    }
+}
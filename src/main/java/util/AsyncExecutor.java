@@ -0,0 +1,84 @@
+package util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * The AsyncExecutor class runs blocking database work asynchronously and returns it as a
+ * {@link CompletableFuture}.
+ * Work runs on the virtual threads of the {@link BackgroundExecutor}, and a semaphore in front of the
+ * connection pool limits how many tasks use the database at the same time. Extra tasks wait cheaply on their
+ * virtual thread instead of running into the pool's borrow timeout.
+ * <p>
+ * The limit is taken from the {@code films.async.maxConcurrency} system property and defaults to the
+ * maximum size of the connection pool.
+ * </p>
+ */
+public class AsyncExecutor {
+    /**
+     * Limits the number of tasks running database work at the same time. Created on first use.
+     */
+    private static volatile Semaphore limiter;
+
+    /**
+     * Runs the given work on a virtual thread once a permit is available.
+     *
+     * @param work the blocking work to run, typically one or more DAO calls
+     * @return a future completed with the result of the work, or exceptionally if it throws
+     */
+    public static <R> CompletableFuture<R> supply(Supplier<R> work) {
+        var permits = getLimiter();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            try {
+                return work.get();
+            } finally {
+                permits.release();
+            }
+        }, BackgroundExecutor.get());
+    }
+
+    /**
+     * Runs the given work on a virtual thread once a permit is available.
+     *
+     * @param work the blocking work to run
+     * @return a future completed when the work has finished
+     */
+    public static CompletableFuture<Void> run(Runnable work) {
+        return supply(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * @return the number of tasks that can start database work right now
+     */
+    public static int getAvailablePermits() {
+        return getLimiter().availablePermits();
+    }
+
+    private static Semaphore getLimiter() {
+        var s = limiter;
+        if (s == null) {
+            synchronized (AsyncExecutor.class) {
+                s = limiter;
+                if (s == null) {
+                    // Read first: the default waits for the pool, which may still be starting in the background
+                    var maxConcurrency = Integer.getInteger("films.async.maxConcurrency");
+                    s = new Semaphore(maxConcurrency != null ? maxConcurrency
+                            : JdbcUtil.getPool().getConfig().maxSize(), true);
+                    limiter = s;
+                }
+            }
+        }
+        return s;
+    }
+}
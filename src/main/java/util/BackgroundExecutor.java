@@ -0,0 +1,26 @@
+package util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The BackgroundExecutor class holds the executor used to run database work away from the
+ * Swing Event Dispatch Thread.
+ * Each task runs on its own virtual thread, so a task blocked on a slow query costs almost nothing,
+ * while the connection pool still bounds how many queries reach the database at the same time.
+ */
+public class BackgroundExecutor {
+    /**
+     * The executor shared by the whole application. It creates one virtual thread per task.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Returns the shared background executor.
+     *
+     * @return the {@code ExecutorService} that runs background tasks on virtual threads
+     */
+    public static ExecutorService get() {
+        return EXECUTOR;
+    }
+}
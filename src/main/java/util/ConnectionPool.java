@@ -0,0 +1,406 @@
+package util;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * The {@code ConnectionPool} class is a bounded pool of JDBC connections exposed as a {@link DataSource}.
+ * Callers borrow a connection with {@link #getConnection()} and give it back by closing it, so every
+ * DAO operation can use its own connection inside a try-with-resources block.
+ * <p>
+ * The pool keeps at least {@code minSize} physical connections open and never more than {@code maxSize}.
+ * Idle connections are validated before they are handed out, connections that stay idle for longer than
+ * the idle timeout are closed by a background evictor, and a caller that cannot get a connection within
+ * the borrow timeout receives a {@link SQLTransientConnectionException}.
+ * Each physical connection keeps a {@link StatementCache} so frequently used statements are prepared
+ * only once per connection.
+ * </p>
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+
+    /**
+     * Settings used to open physical connections and to size the pool.
+     *
+     * @param url             the JDBC URL of the database
+     * @param user            the database username
+     * @param password        the database password
+     * @param minSize         the number of connections kept open even when the pool is idle
+     * @param maxSize         the maximum number of connections open at the same time
+     * @param borrowTimeoutMs how long {@link #getConnection()} waits for a free connection, in milliseconds
+     * @param idleTimeoutMs   how long a connection may stay idle before it is closed, in milliseconds
+     * @param validationTimeoutSec the timeout passed to {@link Connection#isValid(int)} on borrow, in seconds
+     * @param statementCacheSize   the number of prepared statements cached per connection, or 0 to disable the cache
+     */
+    public record Config(String url, String user, String password,
+                         int minSize, int maxSize,
+                         long borrowTimeoutMs, long idleTimeoutMs, int validationTimeoutSec,
+                         int statementCacheSize) {
+        public Config {
+            if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+                throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+            }
+        }
+    }
+
+    /**
+     * A physical connection together with its statement cache and the time it was last returned to the pool.
+     */
+    private static final class PooledConnection {
+        final Connection physical;
+        final StatementCache statements;
+        volatile long lastUsedNanos = System.nanoTime();
+
+        PooledConnection(Connection physical, StatementCache statements) {
+            this.physical = physical;
+            this.statements = statements;
+        }
+    }
+
+    private final Config config;
+    /** Idle connections. Used as a stack so the most recently used connection is handed out first. */
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    /** One permit per connection that may still be borrowed; limits the pool to {@code maxSize}. */
+    private final Semaphore permits;
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final StatementCache.Metrics statementMetrics = new StatementCache.Metrics();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    /**
+     * Creates the pool, opens {@code minSize} connections and starts the idle evictor.
+     *
+     * @param config the pool settings
+     * @throws RuntimeException if one of the initial connections cannot be opened
+     */
+    public ConnectionPool(Config config) {
+        this.config = config;
+        this.permits = new Semaphore(config.maxSize(), true);
+        try {
+            for (int i = 0; i < config.minSize(); i++) {
+                idle.push(open());
+            }
+        } catch (SQLException e) {
+            close();
+            throw new RuntimeException(e);
+        }
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            var t = new Thread(r, "connection-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, config.idleTimeoutMs() / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool. Closing the returned connection gives it back to the pool.
+     *
+     * @return a validated connection
+     * @throws SQLTransientConnectionException if no connection became free within the borrow timeout
+     * @throws SQLException if a new physical connection could not be opened
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(config.borrowTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                timeoutCount.increment();
+                throw new SQLTransientConnectionException(
+                        "Timed out after " + config.borrowTimeoutMs() + " ms waiting for a connection"
+                                + " (active=" + getActiveCount() + ", idle=" + getIdleCount() + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        try {
+            var pooled = takeValidIdle();
+            if (pooled == null) {
+                pooled = open();
+            }
+            active.incrementAndGet();
+            borrowCount.increment();
+            waitNanos.add(System.nanoTime() - start);
+            return wrap(pooled);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Pops idle connections until one passes validation; broken ones are discarded.
+     */
+    private PooledConnection takeValidIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.poll()) != null) {
+            try {
+                if (pooled.physical.isValid(config.validationTimeoutSec())) {
+                    return pooled;
+                }
+            } catch (SQLException ignored) {
+                // Treated as an invalid connection below
+            }
+            discard(pooled);
+        }
+        return null;
+    }
+
+    private PooledConnection open() throws SQLException {
+        var physical = DriverManager.getConnection(config.url(), config.user(), config.password());
+        var statements = config.statementCacheSize() > 0
+                ? new StatementCache(physical, config.statementCacheSize(), statementMetrics) : null;
+        var pooled = new PooledConnection(physical, statements);
+        total.incrementAndGet();
+        return pooled;
+    }
+
+    private void discard(PooledConnection pooled) {
+        total.decrementAndGet();
+        if (pooled.statements != null) {
+            pooled.statements.closeAll();
+        }
+        try {
+            pooled.physical.close();
+        } catch (SQLException ignored) {
+            // The connection is being thrown away anyway
+        }
+    }
+
+    /**
+     * Gives a borrowed connection back to the pool, resetting the state a DAO may have changed.
+     */
+    private void release(PooledConnection pooled) {
+        active.decrementAndGet();
+        try {
+            if (closed || pooled.physical.isClosed()) {
+                discard(pooled);
+            } else {
+                if (pooled.statements != null) {
+                    pooled.statements.releaseAll();
+                }
+                if (!pooled.physical.getAutoCommit()) {
+                    pooled.physical.rollback();
+                    pooled.physical.setAutoCommit(true);
+                }
+                pooled.lastUsedNanos = System.nanoTime();
+                idle.push(pooled);
+            }
+        } catch (SQLException e) {
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes connections that have been idle for longer than the idle timeout, keeping at least
+     * {@code minSize} connections open.
+     */
+    private void evictIdle() {
+        long limit = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(config.idleTimeoutMs());
+        for (var pooled : idle) {
+            if (total.get() <= config.minSize()) {
+                return;
+            }
+            if (pooled.lastUsedNanos < limit && idle.removeFirstOccurrence(pooled)) {
+                discard(pooled);
+            }
+        }
+    }
+
+    /**
+     * Wraps a pooled connection in a proxy whose {@code close()} returns it to the pool.
+     * {@code prepareStatement(sql)} and {@code prepareStatement(sql, autoGeneratedKeys)} go through the
+     * connection's {@link StatementCache}; every other call is forwarded to the physical connection.
+     */
+    private Connection wrap(PooledConnection pooled) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean released;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close" -> {
+                        if (!released) {
+                            released = true;
+                            release(pooled);
+                        }
+                        return null;
+                    }
+                    case "isClosed" -> {
+                        return released || pooled.physical.isClosed();
+                    }
+                    case "unwrap" -> {
+                        return pooled.physical.unwrap((Class<?>) args[0]);
+                    }
+                    default -> {
+                        if (released) {
+                            throw new SQLException("Connection has already been returned to the pool");
+                        }
+                    }
+                }
+                if (pooled.statements != null && method.getName().equals("prepareStatement")
+                        && (args.length == 1 || (args.length == 2 && args[1] instanceof Integer))) {
+                    int keys = args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+                    return pooled.statements.prepare((Connection) proxy, (String) args[0], keys);
+                }
+                try {
+                    return method.invoke(pooled.physical, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+    }
+
+    /**
+     * @return the number of connections currently borrowed
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    /**
+     * @return the number of open connections waiting in the pool
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * @return the number of physical connections currently open
+     */
+    public int getTotalCount() {
+        return total.get();
+    }
+
+    /**
+     * @return the number of callers currently waiting for a connection
+     */
+    public int getWaitingCount() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * @return the number of successful borrows since the pool was created
+     */
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    /**
+     * @return the number of borrows that failed because of the borrow timeout
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    /**
+     * @return the average time a successful borrow waited for a connection, in microseconds
+     */
+    public double getAverageWaitMicros() {
+        long borrows = borrowCount.sum();
+        return borrows == 0 ? 0 : waitNanos.sum() / 1000.0 / borrows;
+    }
+
+    /**
+     * @return the hit, miss and eviction counters of the per-connection statement caches
+     */
+    public StatementCache.Metrics getStatementCacheMetrics() {
+        return statementMetrics;
+    }
+
+    /**
+     * @return the settings this pool was created with
+     */
+    public Config getConfig() {
+        return config;
+    }
+
+    /**
+     * Closes every idle connection and stops the evictor. Borrowed connections are closed
+     * when they are given back.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        PooledConnection pooled;
+        while ((pooled = idle.poll()) != null) {
+            discard(pooled);
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("The pool only hands out connections for its configured user");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
@@ -0,0 +1,62 @@
+package util;
+
+/**
+ * The {@code IntHashing} class holds the table arithmetic shared by the open-addressing {@code int} maps.
+ * Tables have a power-of-two size and are grown once two thirds of their slots are used.
+ */
+final class IntHashing {
+
+    /** The largest table size, the largest power of two an array can have. */
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private IntHashing() {
+    }
+
+    /**
+     * Returns the home slot of a key. IDs are mostly consecutive, so they are scrambled with a Fibonacci
+     * multiplier to spread runs of keys over the whole table instead of filling it one block at a time.
+     *
+     * @param key  the key
+     * @param mask the table size minus one
+     * @return the index of the first slot to probe
+     */
+    static int slot(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * @param expectedSize the number of entries to hold
+     * @return the smallest table size holding that many entries without growing
+     */
+    static int tableSize(int expectedSize) {
+        long needed = Math.max(4, (long) expectedSize * 3 / 2 + 1);
+        if (needed > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Too many entries: " + expectedSize);
+        }
+        return Integer.highestOneBit((int) needed - 1) << 1;
+    }
+
+    /**
+     * @param capacity the current table size
+     * @return the size of the table to grow into
+     * @throws IllegalStateException if the table cannot grow any further
+     */
+    static int grow(int capacity) {
+        if (capacity == MAX_CAPACITY) {
+            throw new IllegalStateException("The table cannot hold more than " + resizeThreshold(capacity) + " entries");
+        }
+        return capacity * 2;
+    }
+
+    /**
+     * @param capacity the table size
+     * @return the number of entries above which the table grows
+     */
+    static int resizeThreshold(int capacity) {
+        if (capacity == MAX_CAPACITY) {
+            return capacity - 1;
+        }
+        return capacity / 3 * 2;
+    }
+}
@@ -0,0 +1,209 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * The {@code IntIntMap} class is a hash map from {@code int} keys to {@code int} values, such as the position
+ * of an entity in an array by its ID, with neither keys nor values boxed.
+ * <p>
+ * Like {@link IntObjectMap}, it keeps the entries in parallel arrays and probes linearly. A key of 0 marks an
+ * empty slot, so the entry of the key 0 itself, if any, is kept in a field of its own. Lookups of a missing key
+ * return a caller-chosen value instead of {@code null}.
+ * </p>
+ * The map is not thread-safe.
+ */
+public final class IntIntMap {
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    /**
+     * Creates an empty map.
+     */
+    public IntIntMap() {
+        this(8);
+    }
+
+    /**
+     * Creates an empty map that holds the given number of entries without growing.
+     *
+     * @param expectedSize the number of entries expected
+     */
+    public IntIntMap(int expectedSize) {
+        allocate(IntHashing.tableSize(expectedSize));
+    }
+
+    /**
+     * @param key          the key
+     * @param missingValue the value returned if the map does not contain the key
+     * @return the value of the key, or {@code missingValue}
+     */
+    public int get(int key, int missingValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : missingValue;
+        }
+        for (int i = IntHashing.slot(key, mask); ; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) {
+                return values[i];
+            }
+            if (k == 0) {
+                return missingValue;
+            }
+        }
+    }
+
+    /**
+     * @param key the key
+     * @return whether the map contains the key
+     */
+    public boolean containsKey(int key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        for (int i = IntHashing.slot(key, mask); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Associates a value with a key, replacing any previous value.
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public void put(int key, int value) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        int i = IntHashing.slot(key, mask);
+        while (keys[i] != 0) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeAt) {
+            rehash(IntHashing.grow(keys.length));
+        }
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key          the key
+     * @param missingValue the value returned if the map does not contain the key
+     * @return the value the key had, or {@code missingValue}
+     */
+    public int remove(int key, int missingValue) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return missingValue;
+            }
+            hasZeroKey = false;
+            size--;
+            return zeroValue;
+        }
+        for (int i = IntHashing.slot(key, mask); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                int previous = values[i];
+                shiftBack(i);
+                size--;
+                return previous;
+            }
+        }
+        return missingValue;
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return whether the map has no entries
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every entry, keeping the current capacity.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        hasZeroKey = false;
+        size = 0;
+    }
+
+    /**
+     * @return an independent map with the same entries, made by copying the tables rather than re-inserting
+     */
+    public IntIntMap copy() {
+        var copy = new IntIntMap(0);
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.mask = mask;
+        copy.size = size;
+        copy.resizeAt = resizeAt;
+        copy.hasZeroKey = hasZeroKey;
+        copy.zeroValue = zeroValue;
+        return copy;
+    }
+
+    /**
+     * Empties slot {@code gap} by moving back the entries after it that probed past it.
+     */
+    private void shiftBack(int gap) {
+        for (int j = (gap + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+            int home = IntHashing.slot(keys[j], mask);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        keys[gap] = 0;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = IntHashing.resizeThreshold(capacity);
+    }
+
+    private void rehash(int capacity) {
+        var oldKeys = keys;
+        var oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int j = IntHashing.slot(oldKeys[i], mask);
+                while (keys[j] != 0) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * The {@code IntMultimap} class maps {@code int} keys to lists of {@code int} values, such as a user ID to the
+ * IDs of the copies they own, where a {@code HashMap<Integer, List<Integer>>} would hold a boxed key, a list
+ * object and a boxed value per element.
+ * <p>
+ * The lists live in two shared {@code int} arrays as singly linked chains, one value and the index of the next
+ * node per element, and an {@link IntIntMap} finds the chain of a key. A value costs 8 bytes and a key about 20,
+ * whatever the length of its list. Values keep the order they were added in. Removing a value walks the list
+ * of its key, and the freed node is reused by the next value added.
+ * </p>
+ * The multimap is not thread-safe.
+ */
+public final class IntMultimap {
+
+    private static final int NONE = -1;
+
+    private IntIntMap groupOf;
+    private int[] heads;
+    private int[] tails;
+    private int[] counts;
+    private int groupCount;
+
+    private int[] nodeValues;
+    private int[] nextNodes;
+    private int nodeCount;
+    private int freeNode = NONE;
+
+    private int keyCount;
+    private int size;
+
+    /**
+     * Creates an empty multimap.
+     */
+    public IntMultimap() {
+        this(8, 8);
+    }
+
+    /**
+     * Creates an empty multimap that holds the given number of keys and values without growing.
+     *
+     * @param expectedKeys   the number of distinct keys expected
+     * @param expectedValues the total number of values expected
+     */
+    public IntMultimap(int expectedKeys, int expectedValues) {
+        groupOf = new IntIntMap(expectedKeys);
+        heads = new int[Math.max(4, expectedKeys)];
+        tails = new int[heads.length];
+        counts = new int[heads.length];
+        nodeValues = new int[Math.max(4, expectedValues)];
+        nextNodes = new int[nodeValues.length];
+    }
+
+    /**
+     * Adds a value at the end of the list of a key.
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public void put(int key, int value) {
+        int group = groupOf.get(key, NONE);
+        if (group == NONE) {
+            group = groupCount++;
+            if (group == heads.length) {
+                int capacity = heads.length * 2;
+                heads = Arrays.copyOf(heads, capacity);
+                tails = Arrays.copyOf(tails, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+            }
+            groupOf.put(key, group);
+            heads[group] = NONE;
+        }
+        int node = newNode(value);
+        if (counts[group] == 0) {
+            heads[group] = node;
+            keyCount++;
+        } else {
+            nextNodes[tails[group]] = node;
+        }
+        tails[group] = node;
+        counts[group]++;
+        size++;
+    }
+
+    /**
+     * Removes the first occurrence of a value from the list of a key.
+     *
+     * @param key   the key
+     * @param value the value
+     * @return whether the value was found
+     */
+    public boolean remove(int key, int value) {
+        int group = groupOf.get(key, NONE);
+        if (group == NONE) {
+            return false;
+        }
+        int previous = NONE;
+        for (int node = heads[group]; node != NONE && counts[group] > 0; node = nextNodes[node]) {
+            if (nodeValues[node] == value) {
+                int next = nextNodes[node];
+                if (previous == NONE) {
+                    heads[group] = next;
+                } else {
+                    nextNodes[previous] = next;
+                }
+                if (tails[group] == node) {
+                    tails[group] = previous;
+                }
+                nextNodes[node] = freeNode;
+                freeNode = node;
+                if (--counts[group] == 0) {
+                    keyCount--;
+                }
+                size--;
+                return true;
+            }
+            previous = node;
+        }
+        return false;
+    }
+
+    /**
+     * @param key the key
+     * @return the values of the key, in the order they were added; empty if the key has none
+     */
+    public int[] get(int key) {
+        int group = groupOf.get(key, NONE);
+        if (group == NONE) {
+            return new int[0];
+        }
+        var result = new int[counts[group]];
+        int node = heads[group];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = nodeValues[node];
+            node = nextNodes[node];
+        }
+        return result;
+    }
+
+    /**
+     * Passes the values of a key to an action, in the order they were added, without copying them.
+     *
+     * @param key    the key
+     * @param action receives each value
+     */
+    public void forEach(int key, IntConsumer action) {
+        int group = groupOf.get(key, NONE);
+        if (group == NONE) {
+            return;
+        }
+        int node = heads[group];
+        for (int i = counts[group]; i > 0; i--) {
+            action.accept(nodeValues[node]);
+            node = nextNodes[node];
+        }
+    }
+
+    /**
+     * @param key the key
+     * @return the number of values of the key
+     */
+    public int count(int key) {
+        int group = groupOf.get(key, NONE);
+        return group == NONE ? 0 : counts[group];
+    }
+
+    /**
+     * @param key the key
+     * @return whether the key has at least one value
+     */
+    public boolean containsKey(int key) {
+        return count(key) > 0;
+    }
+
+    /**
+     * @return the number of keys having at least one value
+     */
+    public int keyCount() {
+        return keyCount;
+    }
+
+    /**
+     * @return the number of values of all the keys together
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return an independent multimap with the same keys and values, made by copying the arrays
+     */
+    public IntMultimap copy() {
+        var copy = new IntMultimap(0, 0);
+        copy.groupOf = groupOf.copy();
+        copy.heads = heads.clone();
+        copy.tails = tails.clone();
+        copy.counts = counts.clone();
+        copy.groupCount = groupCount;
+        copy.nodeValues = nodeValues.clone();
+        copy.nextNodes = nextNodes.clone();
+        copy.nodeCount = nodeCount;
+        copy.freeNode = freeNode;
+        copy.keyCount = keyCount;
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Moves the values of every key next to each other, in the order of the keys' first values, and drops the
+     * nodes freed by removals. Values added in a random order of keys otherwise end up scattered over the
+     * node arrays, and reading the list of a key misses the CPU cache on every value; call this once a
+     * multimap is fully built and mostly read.
+     */
+    public void compact() {
+        var values = new int[Math.max(4, size)];
+        var next = new int[values.length];
+        int node = 0;
+        for (int group = 0; group < groupCount; group++) {
+            int count = counts[group];
+            if (count == 0) {
+                heads[group] = NONE;
+                continue;
+            }
+            int old = heads[group];
+            heads[group] = node;
+            for (int i = 0; i < count; i++) {
+                values[node] = nodeValues[old];
+                next[node] = node + 1;
+                old = nextNodes[old];
+                node++;
+            }
+            next[node - 1] = NONE;
+            tails[group] = node - 1;
+        }
+        nodeValues = values;
+        nextNodes = next;
+        nodeCount = node;
+        freeNode = NONE;
+    }
+
+    private int newNode(int value) {
+        int node;
+        if (freeNode != NONE) {
+            node = freeNode;
+            freeNode = nextNodes[node];
+        } else {
+            node = nodeCount++;
+            if (node == nodeValues.length) {
+                int capacity = nodeValues.length * 2;
+                nodeValues = Arrays.copyOf(nodeValues, capacity);
+                nextNodes = Arrays.copyOf(nextNodes, capacity);
+            }
+        }
+        nodeValues[node] = value;
+        nextNodes[node] = NONE;
+        return node;
+    }
+}
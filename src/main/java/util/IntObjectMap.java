@@ -0,0 +1,226 @@
+package util;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.IntFunction;
+
+/**
+ * The {@code IntObjectMap} class is a hash map from {@code int} keys to objects, for indexing entities by ID
+ * without boxing the IDs.
+ * <p>
+ * A {@code HashMap<Integer, V>} holds, for every entry, a node object and a boxed key next to the value:
+ * about 48 bytes per entry on top of the table, all of it for the garbage collector to trace. This map keeps
+ * the keys and values in two parallel arrays and resolves collisions by linear probing, so an entry costs
+ * the 4-byte key and the value reference, at a load factor of at most 2/3. Removal shifts the following
+ * entries back instead of leaving tombstones, so lookups never slow down as entries come and go.
+ * </p>
+ * Values may not be {@code null}; a {@code null} slot marks an empty one. The map is not thread-safe: share it
+ * between threads only once it is no longer modified, as the immutable snapshots built on it do.
+ *
+ * @param <V> the type of the values
+ */
+public final class IntObjectMap<V> {
+
+    /**
+     * Receives the entries of a map.
+     *
+     * @param <V> the type of the values
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    /**
+     * Creates an empty map.
+     */
+    public IntObjectMap() {
+        this(8);
+    }
+
+    /**
+     * Creates an empty map that holds the given number of entries without growing.
+     *
+     * @param expectedSize the number of entries expected
+     */
+    public IntObjectMap(int expectedSize) {
+        allocate(IntHashing.tableSize(expectedSize));
+    }
+
+    /**
+     * @param key the key
+     * @return the value of the key, or {@code null} if the map does not contain it
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        for (int i = IntHashing.slot(key, mask); ; i = (i + 1) & mask) {
+            var value = values[i];
+            if (value == null || keys[i] == key) {
+                return (V) value;
+            }
+        }
+    }
+
+    /**
+     * @param key the key
+     * @return whether the map contains the key
+     */
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Associates a value with a key, replacing any previous value.
+     *
+     * @param key   the key
+     * @param value the value, not {@code null}
+     * @return the previous value of the key, or {@code null} if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        Objects.requireNonNull(value, "value");
+        int i = IntHashing.slot(key, mask);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                var previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeAt) {
+            rehash(IntHashing.grow(keys.length));
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value of a key, first adding the value computed by {@code factory} if there is none.
+     *
+     * @param key     the key
+     * @param factory computes the value of a missing key; must not return {@code null}
+     * @return the current value of the key
+     */
+    public V computeIfAbsent(int key, IntFunction<? extends V> factory) {
+        var value = get(key);
+        if (value == null) {
+            value = factory.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key the key
+     * @return the value the key had, or {@code null} if the map did not contain it
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        for (int i = IntHashing.slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                var previous = (V) values[i];
+                shiftBack(i);
+                size--;
+                return previous;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return whether the map has no entries
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every entry, keeping the current capacity.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * @return an independent map with the same entries, made by copying the tables rather than re-inserting
+     */
+    public IntObjectMap<V> copy() {
+        var copy = new IntObjectMap<V>(0);
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.mask = mask;
+        copy.size = size;
+        copy.resizeAt = resizeAt;
+        return copy;
+    }
+
+    /**
+     * Passes every entry to an action, in no particular order. The map must not be modified meanwhile.
+     *
+     * @param action receives each key and value
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> action) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                action.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    /**
+     * Empties slot {@code gap} by moving back the entries after it that probed past it.
+     */
+    private void shiftBack(int gap) {
+        for (int j = (gap + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int home = IntHashing.slot(keys[j], mask);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        values[gap] = null;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = IntHashing.resizeThreshold(capacity);
+    }
+
+    private void rehash(int capacity) {
+        var oldKeys = keys;
+        var oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int j = IntHashing.slot(oldKeys[i], mask);
+                while (values[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+}
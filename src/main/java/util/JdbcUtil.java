@@ -1,48 +1,178 @@
 package util;
 
+import metrics.ConnectionPoolMetrics;
+
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * The JdbcUtil class is a utility class that manages the JDBC connection to the database.
- * It provides a single static method {@link #getConnection()} to access the established connection.
- * The connection is initialized when the class is loaded using a static block.
- * This class is responsible for establishing and providing the connection to the database.
- * The connection is created using the MySQL JDBC driver and the credentials specified in the static block.
+ * The JdbcUtil class is a utility class that manages the JDBC connections to the database.
+ * It owns the application's {@link ConnectionPool}, which is created the first time it is needed,
+ * and exposes it through {@link #getDataSource()}.
+ * <p>
+ * The pool is configured from system properties so it can be sized without recompiling:
+ * {@code films.db.url}, {@code films.db.user}, {@code films.db.password}, {@code films.pool.min},
+ * {@code films.pool.max}, {@code films.pool.borrowTimeoutMs}, {@code films.pool.idleTimeoutMs}
+ * {@code films.pool.validationTimeoutSec} and {@code films.pool.statementCacheSize}.
+ * The default URL enables {@code useCursorFetch} so streamed queries read through a server-side cursor,
+ * {@code rewriteBatchedStatements} so batched inserts are sent as multi-row statements, and
+ * {@code useServerPrepStmts} so the statements kept by the pool's statement cache are prepared on the server once.
+ * </p>
+ * <p>
+ * The pool is created on first use, or ahead of it by {@link #startAsync}, which loads the driver, opens the pool
+ * and prepares the database in the background while the application starts. A caller that needs the pool
+ * meanwhile waits for that work, up to {@code films.db.startupTimeoutMs} (60000 by default), instead of opening a
+ * pool of its own or failing; if the work failed, the caller tries again. The driver and pool phases are timed in
+ * the {@link StartupReport}.
+ * </p>
+ * The statistics of the pool are published over JMX as {@code films:type=ConnectionPool}.
  */
 public class JdbcUtil {
+
+    private static final Logger LOG = Logger.getLogger(JdbcUtil.class.getName());
+    private static final long STARTUP_TIMEOUT_MS = Long.getLong("films.db.startupTimeoutMs", 60_000);
+
     /**
-     * The static {@code Connection} object that is used to interact with the database.
-     * It is initialized in the static block and reused for all database operations.
+     * The pool shared by every DAO. It is created lazily by {@link #getDataSource()}, or by {@link #startAsync}.
      */
-    private static Connection con;
+    private static volatile ConnectionPool pool;
+    /** The pool being created in the background by {@link #startAsync}, or {@code null}. */
+    private static volatile CompletableFuture<DataSource> starting;
+    /** Prepares the database before the pool is handed out, such as running the migrations. Guarded by the class. */
+    private static Consumer<DataSource> initializer = ds -> {
+    };
 
     /**
-     * Static block that initializes the {@code Connection} object when the class is loaded.
-     * It establishes a connection to the MySQL database using the provided URL, user, and password.
+     * Starts creating the pool in the background, unless it exists or is already being created. The pool is
+     * handed out once {@code initializer} has run on it, so every caller of {@link #getDataSource()} sees a
+     * prepared database.
      *
-     * @throws RuntimeException if a {@link SQLException} occurs during connection initialization.
+     * @param executor    runs the creation of the pool
+     * @param initializer prepares the database, on the new pool, before the pool is handed out; it runs again if
+     *                    the pool has to be created again after a failure
+     * @return a future completed with the pool once it is ready, or exceptionally if it could not be created
      */
-    static {
-        String url="jdbc:mysql://localhost:3306/mydb";    // Database URL
-        String user="root";                               // Database username
-        String password="my-secret-pw";                   // Database password
+    public static synchronized CompletableFuture<DataSource> startAsync(Executor executor,
+                                                                        Consumer<DataSource> initializer) {
+        if (pool != null) {
+            return CompletableFuture.completedFuture(pool);
+        }
+        if (starting == null || starting.isCompletedExceptionally()) {
+            JdbcUtil.initializer = initializer;
+            starting = CompletableFuture.supplyAsync(JdbcUtil::createPool, executor);
+        }
+        return starting;
+    }
 
-        try {
-            con = DriverManager.getConnection(url, user, password);
-        } catch (SQLException e) {
-            throw new RuntimeException(e);  // Rethrow the exception as a RuntimeException
+    /**
+     * Returns the pooled data source used by the application, creating it on first use.
+     * It establishes the initial connections to the MySQL database using the configured URL, user, and password.
+     * If the pool is being created in the background, this waits for it instead.
+     *
+     * @return the pooled {@code DataSource}
+     * @throws RuntimeException if the initial connections cannot be established, or the pool being created in the
+     *                          background is not ready within {@code films.db.startupTimeoutMs}
+     */
+    public static DataSource getDataSource() {
+        var p = pool;
+        if (p != null) {
+            return p;
+        }
+        var pending = starting;
+        if (pending != null) {
+            try {
+                return pending.get(STARTUP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                LOG.log(Level.WARNING, "The connection pool could not be created in the background, retrying",
+                        e.getCause());
+            } catch (TimeoutException e) {
+                throw new RuntimeException("The database was not ready after " + STARTUP_TIMEOUT_MS + " ms", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for the database", e);
+            }
         }
+        return createPool();
+    }
+
+    /**
+     * Returns the connection pool, creating it on first use, so its statistics can be inspected.
+     *
+     * @return the application's {@code ConnectionPool}
+     */
+    public static ConnectionPool getPool() {
+        return (ConnectionPool) getDataSource();
     }
 
     /**
-     * Retrieves the established database connection.
+     * Borrows a connection from the pool. The caller must close it to give it back.
      *
-     * @return the {@code Connection} object used to interact with the database.
+     * @return a {@code Connection} borrowed from the pool
+     * @throws RuntimeException if no connection could be obtained
      */
     public static Connection getConnection() {
-        return con;
+        try {
+            return getDataSource().getConnection();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates the pool if no other thread did, loading the driver first and running the initializer before
+     * handing the pool out.
+     */
+    private static synchronized ConnectionPool createPool() {
+        var p = pool;
+        if (p != null) {
+            return p;
+        }
+        var report = StartupReport.getDefault();
+        var config = loadConfig();
+        report.run("jdbc driver", () -> {
+            try {
+                DriverManager.getDriver(config.url());
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        var created = report.call("connection pool", () -> new ConnectionPool(config));
+        try {
+            initializer.accept(created);
+        } catch (RuntimeException e) {
+            created.close();
+            throw e;
+        }
+        ConnectionPoolMetrics.register(created);
+        pool = created;
+        return created;
     }
-}
 
+    /**
+     * Reads the pool settings from system properties, falling back to the local development database.
+     */
+    private static ConnectionPool.Config loadConfig() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return new ConnectionPool.Config(
+                System.getProperty("films.db.url", "jdbc:mysql://localhost:3306/mydb"
+                        + "?useCursorFetch=true&rewriteBatchedStatements=true&useServerPrepStmts=true"),
+                System.getProperty("films.db.user", "root"),
+                System.getProperty("films.db.password", "my-secret-pw"),
+                Integer.getInteger("films.pool.min", 2),
+                Integer.getInteger("films.pool.max", Math.max(4, cores * 2)),
+                Long.getLong("films.pool.borrowTimeoutMs", 5_000),
+                Long.getLong("films.pool.idleTimeoutMs", 600_000),
+                Integer.getInteger("films.pool.validationTimeoutSec", 2),
+                Integer.getInteger("films.pool.statementCacheSize", 64));
+    }
+}
@@ -1,33 +1,271 @@
 package util;
 
-import lombok.Data;
 import model.CopyFilm;
 import model.Film;
 import model.User;
 
-import java.util.List;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
 
 /**
- * SessionManager class to store information related to the current session
- * This class manages static attributes for user, copies, and movies.
+ * The {@code SessionManager} class keeps the sessions of the logged-in users, keyed by a random session ID,
+ * so any number of users can be served by the same process: the Swing client holds one session, the HTTP
+ * server one per client.
+ * <p>
+ * The state of a session is an immutable {@link Session} snapshot. A change, such as selecting a copy,
+ * replaces the snapshot atomically through {@link #update(String, UnaryOperator)}, so readers never see a
+ * half-updated session and sessions never block one another; the map is a {@link ConcurrentHashMap}, which
+ * only locks the bin of the session being replaced.
+ * </p>
+ * <p>
+ * A session that has not been used for the idle timeout is removed, lazily when it is looked up and by a
+ * background sweep, so abandoned sessions do not leak. The number of sessions is capped as well: creating a
+ * session when the cap is reached first sweeps the idle ones, then evicts the least recently used session.
+ * Both limits are read from the system properties {@code films.session.idleMinutes} (30 by default) and
+ * {@code films.session.maxSessions} (100,000 by default) by {@link Config#fromSystemProperties()}.
+ * </p>
  */
-public class SessionManager {
-    /** Static attribute for the logged-in user */
-    public static User currentUser = null;
-    /** Static attribute for a selected copy, later added to the user's copy list */
-    public static CopyFilm selectedCopy = null;
-    /** Static list to store all copies associated with the user */
-    public static List<CopyFilm> userCopies = null;
-    /** Static attribute to store the selected movie's data */
-    public static Film selectedFilm = null;
-
-    /**
-     * Resets all session-related attributes to null
-     */
-    public static void resetSession() {
-        currentUser = null;
-        selectedCopy = null;
-        userCopies = null;
-        selectedFilm = null;
+public class SessionManager implements AutoCloseable {
+
+    /**
+     * The state of a session. A snapshot never changes; {@link #update(String, UnaryOperator)} replaces it.
+     *
+     * @param id           the session ID, also the bearer token of the HTTP API
+     * @param user         the logged-in user
+     * @param selectedCopy the copy selected in the films list, or {@code null}
+     * @param selectedFilm the film whose details are shown, or {@code null}
+     */
+    public record Session(String id, User user, CopyFilm selectedCopy, Film selectedFilm) {
+
+        /**
+         * @param copy the selected copy, or {@code null}
+         * @return a snapshot with the given selected copy
+         */
+        public Session withSelectedCopy(CopyFilm copy) {
+            return new Session(id, user, copy, selectedFilm);
+        }
+
+        /**
+         * @param film the selected film, or {@code null}
+         * @return a snapshot with the given selected film
+         */
+        public Session withSelectedFilm(Film film) {
+            return new Session(id, user, selectedCopy, film);
+        }
+    }
+
+    /**
+     * The limits of a session manager.
+     *
+     * @param idleTimeout how long a session may stay unused before it is removed
+     * @param maxSessions the largest number of sessions kept at once
+     */
+    public record Config(Duration idleTimeout, int maxSessions) {
+
+        /**
+         * @return the limits given by the {@code films.session.*} system properties
+         */
+        public static Config fromSystemProperties() {
+            return new Config(Duration.ofMinutes(Long.getLong("films.session.idleMinutes", 30)),
+                    Integer.getInteger("films.session.maxSessions", 100_000));
+        }
+    }
+
+    /**
+     * A session in the map: its current snapshot and when it was last used.
+     */
+    private static final class Entry {
+        final Session session;
+        volatile long lastAccess;
+
+        Entry(Session session, long lastAccess) {
+            this.session = session;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    /**
+     * How stale the recorded last access of a session may get before a lookup records it again. Skipping the
+     * write on most lookups keeps threads reading the same session from fighting over its cache line.
+     */
+    private static final long TOUCH_RESOLUTION_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static volatile SessionManager defaultManager;
+
+    private final SecureRandom random = new SecureRandom();
+    private final ConcurrentHashMap<String, Entry> sessions = new ConcurrentHashMap<>();
+    private final LongAdder evictionCount = new LongAdder();
+    private final long idleTimeoutNanos;
+    private final int maxSessions;
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * Creates a session manager and starts sweeping its idle sessions in the background.
+     *
+     * @param config the limits of the manager
+     */
+    public SessionManager(Config config) {
+        this.idleTimeoutNanos = config.idleTimeout().toNanos();
+        this.maxSessions = config.maxSessions();
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            var t = new Thread(r, "session-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, config.idleTimeout().toMillis() / 2);
+        sweeper.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the session manager shared by the application, configured from the system properties.
+     *
+     * @return the shared session manager
+     */
+    public static SessionManager getDefault() {
+        if (defaultManager == null) {
+            synchronized (SessionManager.class) {
+                if (defaultManager == null) {
+                    defaultManager = new SessionManager(Config.fromSystemProperties());
+                }
+            }
+        }
+        return defaultManager;
+    }
+
+    /**
+     * Starts a session for a user who has just logged in.
+     *
+     * @param user the user
+     * @return the new session, with a random ID
+     */
+    public Session create(User user) {
+        if (sessions.size() >= maxSessions) {
+            makeRoom();
+        }
+        var bytes = new byte[32];
+        random.nextBytes(bytes);
+        var session = new Session(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes), user, null, null);
+        sessions.put(session.id(), new Entry(session, System.nanoTime()));
+        return session;
+    }
+
+    /**
+     * Looks a session up and records that it is in use.
+     *
+     * @param id the session ID
+     * @return the current snapshot of the session, or {@code null} if there is no such session or it expired
+     */
+    public Session get(String id) {
+        var entry = sessions.get(id);
+        if (entry == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (now - entry.lastAccess > idleTimeoutNanos) {
+            if (sessions.remove(id, entry)) {
+                evictionCount.increment();
+            }
+            return null;
+        }
+        if (now - entry.lastAccess > TOUCH_RESOLUTION_NANOS) {
+            entry.lastAccess = now;
+        }
+        return entry.session;
+    }
+
+    /**
+     * Replaces the snapshot of a session with a changed one. The change is applied atomically, so concurrent
+     * updates of the same session are applied one after the other.
+     *
+     * @param id     the session ID
+     * @param change computes the new snapshot from the current one; it must keep the session ID
+     * @return the new snapshot, or {@code null} if there is no such session or it expired
+     */
+    public Session update(String id, UnaryOperator<Session> change) {
+        if (get(id) == null) {
+            return null;
+        }
+        var entry = sessions.computeIfPresent(id, (key, current) -> {
+            var changed = change.apply(current.session);
+            if (!changed.id().equals(id)) {
+                throw new IllegalArgumentException("A session update cannot change the session ID");
+            }
+            return new Entry(changed, System.nanoTime());
+        });
+        return entry == null ? null : entry.session;
+    }
+
+    /**
+     * Ends a session. Does nothing if there is no such session.
+     *
+     * @param id the session ID
+     */
+    public void remove(String id) {
+        sessions.remove(id);
+    }
+
+    /**
+     * @return the number of sessions, including idle ones not swept yet
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * @return the number of sessions removed for being idle or to stay under the cap
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Removes the sessions that have been idle for longer than the idle timeout.
+     */
+    public void evictIdle() {
+        long now = System.nanoTime();
+        sessions.forEach((id, entry) -> {
+            if (now - entry.lastAccess > idleTimeoutNanos && sessions.remove(id, entry)) {
+                evictionCount.increment();
+            }
+        });
+    }
+
+    /**
+     * Stops the background sweep. The sessions are kept.
+     */
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Brings the number of sessions under the cap, evicting the least recently used sessions if sweeping the
+     * idle ones is not enough. Finding them scans every session, which only happens when the cap is reached.
+     */
+    private void makeRoom() {
+        evictIdle();
+        while (sessions.size() >= maxSessions) {
+            String oldestId = null;
+            Entry oldest = null;
+            for (var e : sessions.entrySet()) {
+                if (oldest == null || e.getValue().lastAccess - oldest.lastAccess < 0) {
+                    oldestId = e.getKey();
+                    oldest = e.getValue();
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            if (sessions.remove(oldestId, oldest)) {
+                evictionCount.increment();
+            }
+        }
     }
 }
@@ -0,0 +1,137 @@
+package util;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * The {@code StartupReport} class times the phases of startup, such as loading the JDBC driver, opening the
+ * connection pool or showing the login window, so the time to interactive can be compared from one release to
+ * the next.
+ * <p>
+ * Times are measured from the start of the JVM, so they include class loading and everything else that happens
+ * before {@code main}. Phases may run on several threads at once; {@link #format()} lists them in the order they
+ * started, with the thread that ran them. {@link #log()} writes the report to the {@code util.StartupReport}
+ * logger at {@code INFO}.
+ * </p>
+ */
+public final class StartupReport {
+
+    private static final Logger LOG = Logger.getLogger(StartupReport.class.getName());
+    private static final StartupReport DEFAULT = new StartupReport();
+
+    /**
+     * A timed phase, or a milestone if it took no time.
+     *
+     * @param name      the name of the phase
+     * @param startedAt when the phase started, in milliseconds since the JVM started
+     * @param duration  how long the phase took, in milliseconds
+     * @param thread    the name of the thread that ran the phase
+     * @param failed    whether the phase threw
+     */
+    public record Phase(String name, long startedAt, long duration, String thread, boolean failed) {
+        /**
+         * @return when the phase ended, in milliseconds since the JVM started
+         */
+        public long endedAt() {
+            return startedAt + duration;
+        }
+    }
+
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final List<Phase> phases = new CopyOnWriteArrayList<>();
+
+    /**
+     * @return the report shared by the whole application
+     */
+    public static StartupReport getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Runs a phase and records how long it took, even if it throws.
+     *
+     * @param name the name of the phase
+     * @param work the work of the phase
+     */
+    public void run(String name, Runnable work) {
+        call(name, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs a phase that produces a value and records how long it took, even if it throws.
+     *
+     * @param name the name of the phase
+     * @param work the work of the phase
+     * @return the value produced by the phase
+     */
+    public <T> T call(String name, Supplier<T> work) {
+        long start = now();
+        boolean failed = true;
+        try {
+            var result = work.get();
+            failed = false;
+            return result;
+        } finally {
+            phases.add(new Phase(name, start, now() - start, threadName(), failed));
+        }
+    }
+
+    /**
+     * Records a milestone, such as the first window becoming visible.
+     *
+     * @param name the name of the milestone
+     */
+    public void mark(String name) {
+        phases.add(new Phase(name, now(), 0, threadName(), false));
+    }
+
+    /**
+     * @return the phases recorded so far, in the order they started
+     */
+    public List<Phase> getPhases() {
+        var sorted = new ArrayList<>(phases);
+        sorted.sort(Comparator.comparingLong(Phase::startedAt));
+        return sorted;
+    }
+
+    /**
+     * @return the report as text, one phase per line
+     */
+    public String format() {
+        var text = new StringBuilder("Startup report (ms since JVM start)");
+        for (var phase : getPhases()) {
+            text.append(String.format(Locale.ROOT, "%n  %-28s %6d -> %6d  %6d ms  %s%s", phase.name(),
+                    phase.startedAt(), phase.endedAt(), phase.duration(), phase.thread(),
+                    phase.failed() ? "  FAILED" : ""));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Logs the report.
+     */
+    public void log() {
+        LOG.info(format());
+    }
+
+    /**
+     * Returns the name of the current thread, or its ID for the unnamed virtual threads of background tasks.
+     */
+    private static String threadName() {
+        var thread = Thread.currentThread();
+        return thread.getName().isEmpty() ? "virtual-" + thread.threadId() : thread.getName();
+    }
+
+    private long now() {
+        return System.currentTimeMillis() - jvmStartMillis;
+    }
+}
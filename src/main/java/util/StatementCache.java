@@ -0,0 +1,243 @@
+package util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The StatementCache class keeps the prepared statements of one physical connection open so that
+ * a DAO preparing the same SQL again on the same connection reuses the statement instead of having
+ * the driver and the server prepare it once more.
+ * <p>
+ * Statements are keyed by their SQL text and whether generated keys were requested, and the least recently
+ * used statement is closed when the cache is full. Callers get a proxy whose {@code close()} only returns the
+ * statement to the cache, so DAO code keeps using try-with-resources as usual. If the same SQL is prepared
+ * twice before the first statement is closed, the second caller gets an uncached statement.
+ * </p>
+ * A cache belongs to a single pooled connection and is only used by the thread that borrowed it.
+ * Hits, misses and evictions are recorded in a {@link Metrics} object shared by every cache of a pool.
+ */
+public class StatementCache {
+
+    /**
+     * Counters shared by the statement caches of all the connections of a pool.
+     */
+    public static final class Metrics {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        /**
+         * @return the number of prepares answered by a cached statement
+         */
+        public long getHits() {
+            return hits.sum();
+        }
+
+        /**
+         * @return the number of prepares that had to create a new statement
+         */
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        /**
+         * @return the number of statements closed because a cache was full
+         */
+        public long getEvictions() {
+            return evictions.sum();
+        }
+
+        /**
+         * @return the fraction of prepares answered by a cached statement, between 0 and 1
+         */
+        public double getHitRate() {
+            long h = hits.sum();
+            long total = h + misses.sum();
+            return total == 0 ? 0 : (double) h / total;
+        }
+    }
+
+    /**
+     * A cached statement and whether a caller is currently using it.
+     */
+    private static final class Entry {
+        final PreparedStatement statement;
+        boolean inUse;
+        boolean evicted;
+
+        Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+    }
+
+    private final Connection physical;
+    private final Metrics metrics;
+    private final Map<String, Entry> entries;
+
+    /**
+     * Creates an empty cache for a physical connection.
+     *
+     * @param physical the connection the statements are prepared on
+     * @param maxSize  the maximum number of statements kept open
+     * @param metrics  the counters to record hits, misses and evictions in
+     */
+    StatementCache(Connection physical, int maxSize, Metrics metrics) {
+        this.physical = physical;
+        this.metrics = metrics;
+        this.entries = new LinkedHashMap<>(maxSize + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= maxSize) {
+                    return false;
+                }
+                metrics.evictions.increment();
+                var entry = eldest.getValue();
+                entry.evicted = true;
+                if (!entry.inUse) {
+                    closeQuietly(entry.statement);
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a prepared statement for the given SQL, reusing a cached one when possible.
+     *
+     * @param owner             the pooled connection proxy, returned by {@code getConnection()} on the statement
+     * @param sql               the SQL text of the statement
+     * @param autoGeneratedKeys {@link java.sql.Statement#RETURN_GENERATED_KEYS} or
+     *                          {@link java.sql.Statement#NO_GENERATED_KEYS}
+     * @return a statement whose {@code close()} returns it to the cache
+     * @throws SQLException if a new statement cannot be prepared
+     */
+    PreparedStatement prepare(Connection owner, String sql, int autoGeneratedKeys) throws SQLException {
+        var key = autoGeneratedKeys + ":" + sql;
+        var entry = entries.get(key);
+        if (entry != null && !entry.inUse) {
+            metrics.hits.increment();
+        } else {
+            metrics.misses.increment();
+            var statement = physical.prepareStatement(sql, autoGeneratedKeys);
+            if (entry != null) {
+                // The cached statement is busy; hand out a private one that is really closed on close()
+                return statement;
+            }
+            entry = new Entry(statement);
+            entries.put(key, entry);
+        }
+        entry.inUse = true;
+        return wrap(owner, entry);
+    }
+
+    /**
+     * Marks every statement as free again. Called when the connection goes back to the pool, so a statement
+     * a caller forgot to close does not stay unusable.
+     */
+    void releaseAll() {
+        for (var entry : List.copyOf(entries.values())) {
+            if (entry.inUse) {
+                reset(entry);
+            }
+        }
+    }
+
+    /**
+     * Closes every cached statement. Called before the physical connection is closed.
+     */
+    void closeAll() {
+        for (var entry : entries.values()) {
+            closeQuietly(entry.statement);
+        }
+        entries.clear();
+    }
+
+    /**
+     * @return the number of statements currently cached
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Wraps a cached statement in a proxy whose {@code close()} gives it back to the cache.
+     */
+    private PreparedStatement wrap(Connection owner, Entry entry) {
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new InvocationHandler() {
+                    private boolean closed;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                            throws Throwable {
+                        switch (method.getName()) {
+                            case "close" -> {
+                                if (!closed) {
+                                    closed = true;
+                                    reset(entry);
+                                }
+                                return null;
+                            }
+                            case "isClosed" -> {
+                                return closed || entry.statement.isClosed();
+                            }
+                            case "getConnection" -> {
+                                return owner;
+                            }
+                            default -> {
+                                if (closed) {
+                                    throw new SQLException("Statement has already been closed");
+                                }
+                            }
+                        }
+                        try {
+                            return method.invoke(entry.statement, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Clears the state left by the last caller and makes the statement available again,
+     * or closes it if it was evicted while in use.
+     */
+    private void reset(Entry entry) {
+        entry.inUse = false;
+        if (entry.evicted) {
+            closeQuietly(entry.statement);
+            return;
+        }
+        try {
+            var rs = entry.statement.getResultSet();
+            if (rs != null) {
+                rs.close();
+            }
+            entry.statement.clearParameters();
+            entry.statement.clearBatch();
+        } catch (SQLException e) {
+            // A statement that cannot be reset is not reused
+            entry.evicted = true;
+            entries.values().remove(entry);
+            closeQuietly(entry.statement);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+            // The statement is being thrown away anyway
+        }
+    }
+}
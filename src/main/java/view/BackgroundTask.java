@@ -0,0 +1,100 @@
+package view;
+
+import util.BackgroundExecutor;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * The {@code BackgroundTask} class runs database work on the {@link BackgroundExecutor} and hands the result
+ * back to the Event Dispatch Thread, in the spirit of {@link SwingWorker}.
+ * <p>
+ * While the task runs, the owner window shows a wait cursor. When the work completes, the success callback
+ * runs on the EDT; if the work fails, the error is shown in a message dialog. A task that has been cancelled,
+ * for example because the user left the window that started it, never calls back.
+ * </p>
+ *
+ * @param <T> the type of result produced by the work
+ */
+public final class BackgroundTask<T> {
+
+    private final Component owner;
+    private volatile boolean cancelled;
+    private Future<?> future;
+
+    private BackgroundTask(Component owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Starts the given work in the background. Must be called on the EDT.
+     *
+     * @param owner     the window whose cursor shows the loading state and that parents error dialogs
+     * @param work      the work to run away from the EDT, typically DAO calls
+     * @param onSuccess receives the result on the EDT
+     * @return the running task, which can be cancelled
+     */
+    public static <T> BackgroundTask<T> start(Component owner, Callable<T> work, Consumer<T> onSuccess) {
+        return start(owner, work, onSuccess, () -> {
+        });
+    }
+
+    /**
+     * Starts the given work in the background. Must be called on the EDT.
+     *
+     * @param owner     the window whose cursor shows the loading state and that parents error dialogs
+     * @param work      the work to run away from the EDT, typically DAO calls
+     * @param onSuccess receives the result on the EDT
+     * @param onFailure runs on the EDT after the error has been shown, for example to re-enable a button
+     * @return the running task, which can be cancelled
+     */
+    public static <T> BackgroundTask<T> start(Component owner, Callable<T> work, Consumer<T> onSuccess,
+                                              Runnable onFailure) {
+        var task = new BackgroundTask<T>(owner);
+        owner.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        task.future = BackgroundExecutor.get().submit(() -> {
+            try {
+                var result = work.call();
+                SwingUtilities.invokeLater(() -> task.finish(() -> onSuccess.accept(result)));
+            } catch (Exception e) {
+                SwingUtilities.invokeLater(() -> task.finish(() -> {
+                    JOptionPane.showMessageDialog(owner, "The operation could not be completed: " + e.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                    onFailure.run();
+                }));
+            }
+            return null;
+        });
+        return task;
+    }
+
+    /**
+     * Restores the cursor and runs the callback, unless the task was cancelled meanwhile.
+     */
+    private void finish(Runnable callback) {
+        if (cancelled) {
+            return;
+        }
+        owner.setCursor(Cursor.getDefaultCursor());
+        callback.run();
+    }
+
+    /**
+     * Cancels the task. The work is interrupted if it is still running and no callback will run.
+     */
+    public void cancel() {
+        cancelled = true;
+        future.cancel(true);
+        owner.setCursor(Cursor.getDefaultCursor());
+    }
+
+    /**
+     * @return {@code true} if the work has finished, failed or been cancelled
+     */
+    public boolean isDone() {
+        return future.isDone();
+    }
+}
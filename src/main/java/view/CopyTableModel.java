@@ -0,0 +1,202 @@
+package view;
+
+import model.CopyFilm;
+import util.BackgroundExecutor;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * The {@code CopyTableModel} class is a table model for the films list that loads the user's copies
+ * page by page as the table asks for rows, instead of loading the whole library up front.
+ * <p>
+ * Pages are fetched with keyset pagination through a {@link PageLoader}. Only the most recently used
+ * pages are kept in memory, and the page after the one being displayed is fetched ahead of time
+ * once the user scrolls past its middle. The ID of the last copy of every page seen so far is remembered
+ * so a page can be fetched again after it has been dropped.
+ * </p>
+ * Pages are fetched on the {@link BackgroundExecutor}, never on the Event Dispatch Thread. Until a page
+ * arrives its rows show a loading placeholder, and the table is repainted once the page is published.
+ * All the state of this model is only touched on the EDT.
+ */
+public class CopyTableModel extends AbstractTableModel {
+
+    /**
+     * Loads a page of copies ordered by ID.
+     */
+    @FunctionalInterface
+    public interface PageLoader {
+        /**
+         * @param afterId the ID of the last copy of the previous page, or 0 for the first page
+         * @param limit   the maximum number of copies to return
+         * @return the next copies after {@code afterId}, ordered by ID
+         */
+        List<CopyFilm> load(int afterId, int limit);
+    }
+
+    private static final String[] COLUMNS = {"Title", "Condition", "Support"};
+
+    /** Text shown in rows whose page is still being fetched. */
+    private static final String LOADING = "Loading...";
+
+    private final PageLoader loader;
+    private final int rowCount;
+    private final int pageSize;
+    private final Map<Integer, List<CopyFilm>> pages;
+    /** {@code lastIds[p]} is the ID of the last copy of page {@code p}, for the first {@code knownPages} pages. */
+    private int[] lastIds = new int[16];
+    private int knownPages;
+    /** Fetches in progress, keyed by the page they were started for. */
+    private final Map<Integer, Future<?>> inFlight = new HashMap<>();
+    private boolean cancelled;
+
+    /**
+     * Creates a model over {@code rowCount} copies.
+     *
+     * @param loader         fetches a page of copies
+     * @param rowCount       the total number of copies, used to size the table scrollbar
+     * @param pageSize       the number of copies fetched per query
+     * @param maxCachedPages the number of pages kept in memory
+     */
+    public CopyTableModel(PageLoader loader, int rowCount, int pageSize, int maxCachedPages) {
+        this.loader = loader;
+        this.rowCount = rowCount;
+        this.pageSize = pageSize;
+        this.pages = new LinkedHashMap<>(maxCachedPages + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<CopyFilm>> eldest) {
+                return size() > maxCachedPages;
+            }
+        };
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        var copy = getCopyAt(rowIndex);
+        if (copy == null) {
+            return columnIndex == 0 && isLoading(rowIndex) ? LOADING : "";
+        }
+        return switch (columnIndex) {
+            case 0 -> copy.getFilm() == null ? "" : copy.getFilm().getTitle();
+            case 1 -> copy.getCondition();
+            default -> copy.getSupport();
+        };
+    }
+
+    /**
+     * Returns the copy displayed in the given row. If its page is not in memory yet, the page is
+     * fetched in the background and {@code null} is returned until it arrives.
+     *
+     * @param rowIndex the row in the table
+     * @return the copy in that row, or {@code null} if it is still loading or the library shrank
+     * since the row count was taken
+     */
+    public CopyFilm getCopyAt(int rowIndex) {
+        int page = rowIndex / pageSize;
+        int offset = rowIndex % pageSize;
+        var rows = pages.get(page);
+        if (rows == null) {
+            request(page);
+            return null;
+        }
+        if (offset >= pageSize / 2 && page + 1 < pageCount() && !pages.containsKey(page + 1)) {
+            request(page + 1);
+        }
+        return offset < rows.size() ? rows.get(offset) : null;
+    }
+
+    /**
+     * Cancels every fetch in progress. Used when the window showing the table is closed.
+     */
+    public void cancel() {
+        cancelled = true;
+        inFlight.values().forEach(f -> f.cancel(true));
+        inFlight.clear();
+    }
+
+    private boolean isLoading(int rowIndex) {
+        return !pages.containsKey(rowIndex / pageSize);
+    }
+
+    private int pageCount() {
+        return (rowCount + pageSize - 1) / pageSize;
+    }
+
+    /**
+     * Starts fetching a page in the background. A keyset query needs the last ID of the previous page,
+     * so pages that have never been seen are walked through in order, from the last known page,
+     * until that ID is known. Every page fetched on the way is published too.
+     */
+    private void request(int page) {
+        if (cancelled || inFlight.containsKey(page)) {
+            return;
+        }
+        int start = Math.min(page, knownPages);
+        int firstAfterId = start == 0 ? 0 : lastIds[start - 1];
+        inFlight.put(page, BackgroundExecutor.get().submit(() -> {
+            var fetched = new ArrayList<List<CopyFilm>>();
+            try {
+                int afterId = firstAfterId;
+                for (int p = start; p <= page; p++) {
+                    var rows = loader.load(afterId, pageSize);
+                    fetched.add(rows);
+                    if (rows.isEmpty()) {
+                        break;
+                    }
+                    afterId = rows.get(rows.size() - 1).getId();
+                }
+            } finally {
+                SwingUtilities.invokeLater(() -> publish(page, start, fetched));
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * Stores fetched pages and repaints their rows. Runs on the EDT.
+     */
+    private void publish(int requested, int start, List<List<CopyFilm>> fetched) {
+        inFlight.remove(requested);
+        if (cancelled) {
+            return;
+        }
+        for (int i = 0; i < fetched.size(); i++) {
+            int p = start + i;
+            var rows = fetched.get(i);
+            pages.put(p, rows);
+            if (p == knownPages && !rows.isEmpty()) {
+                if (knownPages == lastIds.length) {
+                    lastIds = Arrays.copyOf(lastIds, knownPages * 2);
+                }
+                lastIds[knownPages++] = rows.get(rows.size() - 1).getId();
+            }
+            int first = p * pageSize;
+            int last = Math.min(rowCount, first + pageSize) - 1;
+            if (first <= last) {
+                fireTableRowsUpdated(first, last);
+            }
+        }
+    }
+}
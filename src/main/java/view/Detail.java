@@ -1,8 +1,9 @@
 package view;
 
 import dao.CopyFilmDAO;
-import util.JdbcUtil;
+import dao.DAOFactory;
 import util.SessionManager;
+import util.SessionManager.Session;
 
 import javax.swing.*;
 
@@ -12,8 +13,8 @@ import javax.swing.*;
  * release year, and description. The dialog also provides buttons to return to the main view or delete
  * a copy of the film.
  * <p>
- * This dialog uses the {@link CopyFilmDAO} for interacting with the database and uses {@link SessionManager}
- * to manage session data such as the currently selected film or user.
+ * This dialog uses the {@link CopyFilmDAO} for interacting with the database and shows the film and copy
+ * selected in the session of the user, kept by the {@link SessionManager}.
  * </p>
  */
 public class Detail extends javax.swing.JDialog {
@@ -29,26 +30,35 @@ public class Detail extends javax.swing.JDialog {
     /**
      * The DAO object used to interact with the {@code copy} table in the database.
      */
-    CopyFilmDAO copyDao = new CopyFilmDAO(JdbcUtil.getConnection());
+    CopyFilmDAO copyDao = DAOFactory.getCopyFilmDAO();
+
+    /**
+     * The session snapshot holding the selected film and copy.
+     */
+    private final Session session;
 
     /**
      * Constructs a new {@code Detail} dialog, displaying information about the selected film.
      * Initializes the form fields with the details of the selected film and sets up action listeners
      * for the buttons to handle returning to the main view and deleting a copy of the film.
+     *
+     * @param session the session of the user, with the film and copy to show selected
      */
-    public Detail() {
+    public Detail(Session session) {
+        this.session = session;
+        var film = session.selectedFilm();
         setContentPane(detailPanel);
         setModal(true);
-        setTitle(SessionManager.selectedFilm.getTitle());
+        setTitle(film.getTitle());
         setLocationRelativeTo(null);
         setResizable(false);
 
         // Fill in the form fields with the details of the selected film
-        titleField.setText(SessionManager.selectedFilm.getTitle());
-        genreField.setText(SessionManager.selectedFilm.getGenre());
-        directorField.setText(SessionManager.selectedFilm.getDirector());
-        yearField.setText(String.valueOf(SessionManager.selectedFilm.getYear()));
-        descriptionField.setText(SessionManager.selectedFilm.getDescription());
+        titleField.setText(film.getTitle());
+        genreField.setText(film.getGenre());
+        directorField.setText(film.getDirector());
+        yearField.setText(String.valueOf(film.getYear()));
+        descriptionField.setText(film.getDescription());
         pack();
 
         // Set action listeners for the buttons
@@ -65,28 +75,41 @@ public class Detail extends javax.swing.JDialog {
      * Closes the current dialog and returns to the main view.
      */
     public void returnView() {
-        SessionManager.selectedFilm = null;  // Clear the selected film in the session
-        var mainView = new MainView();       // Create a new instance of the main view
-        mainView.setVisible(true);           // Show the main view
-        dispose();                           // Close the detail view
+        dispose();          // Close the detail view
+        returnToMainView(); // Clear the selection and show the main view
     }
 
     /**
      * Prompts the user to confirm if they want to delete the selected film copy.
-     * If the user confirms, the film copy is removed from the session and the database.
+     * If the user confirms, the film copy is removed from the database without blocking the dialog.
      */
     public void delete() {
         // Show a confirmation dialog
         var isDeletable = JOptionPane.showConfirmDialog(this, "Do you want to delete the copy?");
         if (isDeletable == JOptionPane.YES_OPTION) {
-            // Remove the selected copy from the session and database
-            SessionManager.userCopies.remove(SessionManager.selectedCopy);
-            copyDao.delete(SessionManager.selectedCopy);
-            SessionManager.selectedFilm = null;  // Clear the selected film after deletion
+            // Remove the selected copy from the database in the background, then return to the main view
+            var copy = session.selectedCopy();
+            deleteButton.setEnabled(false);
+            BackgroundTask.start(this, () -> {
+                copyDao.delete(copy);
+                // Show the main view without the deleted copy rather than wait for the next catalog poll
+                DAOFactory.getCatalog().refresh();
+                return null;
+            }, ignored -> {
+                dispose();
+                returnToMainView();
+            }, () -> deleteButton.setEnabled(true));
+        } else {
+            dispose();
+            returnToMainView();
         }
-        dispose();  // Close the current dialog
-        var mainView = new MainView();  // Return to the main view
-        mainView.setVisible(true);  // Show the main view
     }
-}
 
+    /**
+     * Clears the selected film and copy in the session and shows the main view.
+     */
+    private void returnToMainView() {
+        MainView.open(SessionManager.getDefault().update(session.id(),
+                s -> s.withSelectedCopy(null).withSelectedFilm(null)));
+    }
+}
@@ -1,13 +1,11 @@
 package view;
 
-import dao.CopyFilmDAO;
+import dao.DAOFactory;
 import dao.UserDAO;
-import model.CopyFilm;
+import model.User;
 import util.SessionManager;
-import util.JdbcUtil;
 
 import javax.swing.*;
-import java.util.List;
 
 /**
  * The {@code Loggin} class is a JFrame that represents the login screen of the application.
@@ -15,9 +13,9 @@ import java.util.List;
  * the database. If the credentials are correct, the user is logged in and redirected to the main view.
  * If the credentials are incorrect, an error message is displayed.
  * <p>
- * The login functionality uses the {@link UserDAO} to validate the user's credentials and
- * {@link CopyFilmDAO} to retrieve the films associated with the logged-in user. The current user
- * and their films are stored in the {@link SessionManager}.
+ * The login functionality uses the {@link UserDAO} to validate the user's credentials. A session is started
+ * for the user in the shared {@link SessionManager}, and the {@link MainView} then loads their copies page by page,
+ * so logging in costs the same number of queries regardless of the size of the user's library.
  * </p>
  */
 public class Loggin extends JFrame {
@@ -27,6 +25,11 @@ public class Loggin extends JFrame {
     private JButton logginButton;
     private JButton closeButton;
 
+    /**
+     * The credential check currently running, cancelled if the window is closed before it finishes.
+     */
+    private BackgroundTask<User> task;
+
     /**
      * Constructs a new {@code Loggin} frame that displays the login form.
      * Sets up the window properties, including size, title, and layout.
@@ -47,7 +50,6 @@ public class Loggin extends JFrame {
 
         // Add action listener to close the application
         closeButton.addActionListener((e) -> {
-            SessionManager.resetSession();
             dispose();
         });
     }
@@ -56,23 +58,42 @@ public class Loggin extends JFrame {
      * Authenticates the user by validating the username and password entered in the login form.
      * If the credentials are correct, the user's details and associated films are stored in the session.
      * The main view is then displayed. If the credentials are incorrect, an error message is shown.
+     * The credentials are checked in the background; the login button stays disabled meanwhile.
      */
     private void logginUser() {
-        var userDao = new UserDAO(JdbcUtil.getConnection());
-        var copyDao = new CopyFilmDAO(JdbcUtil.getConnection());
-        var user = userDao.validateUser(userTextField.getText(), passwordField1.getPassword());
+        var userName = userTextField.getText();
+        var password = passwordField1.getPassword();
+        logginButton.setEnabled(false);
+        // Getting the DAO waits for the database if startup has not finished, so it is done in the background too
+        task = BackgroundTask.start(this, () -> DAOFactory.getUserDAO().validateUser(userName, password), user -> {
+            logginButton.setEnabled(true);
+            showLogginResult(user);
+        }, () -> logginButton.setEnabled(true));
+    }
 
-        if (user != null) {
-            // Retrieve the user's films from the database
-            List<CopyFilm> userCopy = copyDao.getByUser(user);
-            user.setFilms(userCopy);
+    /**
+     * Closes the window, cancelling the credential check if it is still running.
+     */
+    @Override
+    public void dispose() {
+        if (task != null) {
+            task.cancel();
+        }
+        super.dispose();
+    }
 
-            // Store the user and their films in the session
-            SessionManager.currentUser = user;
-            SessionManager.userCopies = userCopy;
+    /**
+     * Opens the main view for a validated user, or reports incorrect credentials.
+     *
+     * @param user the result of the credential check; an empty User if the credentials were wrong
+     */
+    private void showLogginResult(User user) {
+        if (user.getId() > 0) {
+            // Start a session for the user; the main view loads their copies page by page
+            var session = SessionManager.getDefault().create(user);
 
             // Redirect to the main view
-            var mainView = new MainView();
+            var mainView = new MainView(session);
             mainView.setVisible(true);
             dispose();
         } else {
@@ -1,13 +1,16 @@
 package view;
 
-import dao.FilmDAO;
+import catalog.CatalogRefresher;
+import dao.CopyFilmDAO;
+import dao.DAOFactory;
 import model.CopyFilm;
-import util.JdbcUtil;
+import model.Film;
 import util.SessionManager;
+import util.SessionManager.Session;
 
 import javax.swing.*;
 import javax.swing.event.ListSelectionEvent;
-import javax.swing.table.DefaultTableModel;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -23,29 +26,46 @@ import java.util.List;
 public class MainView extends javax.swing.JFrame {
     private JPanel mainContent;
     private JTable filmsList;
-    private DefaultTableModel model;
+    private CopyTableModel model;
     private JButton outButton;
     private JButton returnButton;
 
+    /**
+     * Number of copies fetched per page when the films list is scrolled.
+     */
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * Number of pages of copies kept in memory by the films list.
+     */
+    private static final int CACHED_PAGES = 4;
+
+    /**
+     * The background task currently running for this window, cancelled when the window is closed.
+     */
+    private BackgroundTask<?> task;
+
+    /**
+     * The session of the logged-in user, replaced by a new snapshot whenever a copy or film is selected.
+     */
+    private Session session;
+
     /**
      * Constructs the {@code MainView} frame that displays the user's film collection.
      * It initializes the film list table, sets up the table model, and assigns action listeners
      * to the buttons for logging out or returning to the login screen.
+     *
+     * @param session the session of the logged-in user
      */
-    public MainView() {
-        // Set up the table model with column names
-        String[] fields = {"Title", "Condition", "Support"};
-        model = new DefaultTableModel(fields, 0);
-        filmsList = new JTable(model);
-        var fieldsTable = filmsList.getColumnModel().getColumn(0);
-        fieldsTable.setPreferredWidth(300);
-
-        // Show the films list for the current user
+    public MainView(Session session) {
+        this.session = session;
+        // Show the films list for the current user; rows appear once the library size is known
+        filmsList = new JTable();
         showFilmsList();
 
         // Set up window properties
         setContentPane(mainContent);
-        setTitle("Films List - " + SessionManager.currentUser.getUserName());
+        setTitle("Films List - " + session.user().getUserName());
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(500, 1000);
         setLocationRelativeTo(null);
@@ -56,7 +76,7 @@ public class MainView extends javax.swing.JFrame {
 
         // Action listener for logout button
         outButton.addActionListener(e -> {
-            SessionManager.resetSession();
+            SessionManager.getDefault().remove(session.id());
             dispose();
         });
 
@@ -67,17 +87,68 @@ public class MainView extends javax.swing.JFrame {
     }
 
     /**
-     * Populates the films list table with the user's film copies, including
-     * the title, condition, and support type for each film.
+     * Creates the table model for the user's film copies, showing the title, condition, and support type
+     * for each copy. The copies, with their films attached, come from the in-memory catalog, or from the catalog
+     * snapshot of the previous run while it loads, in the background. The table pages through the library
+     * as it scrolls.
      */
     public void showFilmsList() {
-        for (CopyFilm c : SessionManager.userCopies) {
-            var filmDao = new FilmDAO(JdbcUtil.getConnection());
-            var film = filmDao.getById(c.getFilmId());
-            c.setFilm(film);
-            Object[] row = {film.getTitle(), c.getCondition(), c.getSupport()};
-            model.addRow(row);
+        var catalog = DAOFactory.getCatalog();
+        var copyDao = DAOFactory.getCopyFilmDAO();
+        int userId = session.user().getId();
+        task = BackgroundTask.start(this, () -> catalog.read().countCopiesOfUser(userId), rowCount -> {
+            model = new CopyTableModel((afterId, limit) -> pageAfter(catalog, copyDao, userId, afterId, limit),
+                    rowCount, PAGE_SIZE, CACHED_PAGES);
+            filmsList.setModel(model);
+            var fieldsTable = filmsList.getColumnModel().getColumn(0);
+            fieldsTable.setPreferredWidth(300);
+        });
+    }
+
+    /**
+     * Returns the next {@code limit} copies of a user after the copy with ID {@code afterId}, read from the
+     * catalog. In write-behind mode a deleted copy stays in the catalog until the deletion is written, so the
+     * copies whose deletion is pending are left out, and the page filled with the copies after them.
+     *
+     * @param catalog the catalog to read from
+     * @param copyDao the DAO whose pending deletions are left out
+     * @param userId  the ID of the user
+     * @param afterId the ID of the last copy of the previous page, or 0 for the first page
+     * @param limit   the maximum number of copies to return
+     * @return at most {@code limit} copies of the user, ordered by ID
+     */
+    private static List<CopyFilm> pageAfter(CatalogRefresher catalog, CopyFilmDAO copyDao, int userId, int afterId,
+                                            int limit) {
+        var reader = catalog.read();
+        var page = new ArrayList<CopyFilm>(limit);
+        while (page.size() < limit) {
+            int wanted = limit - page.size();
+            var copies = reader.getCopiesOfUserAfter(userId, afterId, wanted);
+            for (var copy : copies) {
+                if (!copyDao.isDeletePending(copy.getId())) {
+                    page.add(copy);
+                }
+            }
+            if (copies.size() < wanted) {
+                break;
+            }
+            afterId = copies.get(copies.size() - 1).getId();
+        }
+        return page;
+    }
+
+    /**
+     * Closes the window, cancelling any query still running for it.
+     */
+    @Override
+    public void dispose() {
+        if (task != null) {
+            task.cancel();
+        }
+        if (model != null) {
+            model.cancel();
         }
+        super.dispose();
     }
 
     /**
@@ -85,7 +156,7 @@ public class MainView extends javax.swing.JFrame {
      * disposing of the current window, then displaying the login screen again.
      */
     public void returnLoggin() {
-        SessionManager.resetSession();
+        SessionManager.getDefault().remove(session.id());
         dispose();
         var returnLoggin = new Loggin();
         returnLoggin.setVisible(true);
@@ -99,18 +170,50 @@ public class MainView extends javax.swing.JFrame {
      * @param e the event triggered when a selection is made in the films list table
      */
     public void detailCopy(ListSelectionEvent e) {
-        var filmDao = new FilmDAO(JdbcUtil.getConnection());
-        if (e.getValueIsAdjusting()) return;
+        if (e.getValueIsAdjusting() || model == null) return;
 
-        // Get the selected row index and the corresponding film copy
+        // Get the selected row index and the corresponding film copy; rows still loading cannot be opened
         int select = filmsList.getSelectedRow();
-        SessionManager.selectedCopy = SessionManager.userCopies.get(select);
-        var idFilm = SessionManager.userCopies.get(select).getFilmId();
-        SessionManager.selectedFilm = filmDao.getById(idFilm);
+        if (select < 0 || model.getCopyAt(select) == null) return;
+        var copy = model.getCopyAt(select);
+        session = SessionManager.getDefault().update(session.id(), s -> s.withSelectedCopy(copy));
+        if (session == null) {
+            dispose();
+            open(null);
+            return;
+        }
+        // Copies come from the catalog with their film attached, so opening the details needs no query
+        var film = copy.getFilm();
+        openDetail(film != null ? film : new Film());
+    }
 
-        // Open the detail view for the selected film
-        var detailView = new Detail();
-        detailView.setVisible(true);
+    /**
+     * Stores the selected film in the session and opens the {@link Detail} view for it.
+     *
+     * @param film the film of the selected copy
+     */
+    private void openDetail(Film film) {
+        var updated = SessionManager.getDefault().update(session.id(), s -> s.withSelectedFilm(film));
         dispose();
+        if (updated == null) {
+            open(null);
+            return;
+        }
+        var detailView = new Detail(updated);
+        detailView.setVisible(true);
+    }
+
+    /**
+     * Shows the main view of a session, or the login screen if the session expired while the user was idle.
+     *
+     * @param session the current snapshot of the session, or {@code null} if it expired
+     */
+    static void open(Session session) {
+        if (session == null) {
+            JOptionPane.showMessageDialog(null, "Your session has expired, please log in again");
+            new Loggin().setVisible(true);
+        } else {
+            new MainView(session).setVisible(true);
+        }
     }
 }
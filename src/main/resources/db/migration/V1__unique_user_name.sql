@@ -0,0 +1,3 @@
+-- UserDAO.validateUser looks users up by name, and user names are meant to be unique.
+-- A unique index turns the login query into a single-row lookup instead of a full scan of user.
+create unique index ux_user_userName on user (userName);
@@ -0,0 +1,4 @@
+-- CopyFilmDAO.getByUser, countByUser and the library queries all filter copies by user_id and
+-- the library pages are ordered by id, so (user_id, id) serves the filter, the keyset range and
+-- the ordering from one index. It also backs the fp_id_usuario foreign key.
+create index ix_copy_user_id on copy (user_id, id);
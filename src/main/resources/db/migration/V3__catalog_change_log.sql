@@ -0,0 +1,8 @@
+-- Every row of film and copy written through the DAOs, so the in-memory catalog can pull only what changed
+-- since its last refresh instead of reloading both tables. The row is re-read by ID; a missing row was deleted.
+create table catalog_change (
+    seq bigint auto_increment primary key,
+    table_name varchar(16) not null,
+    row_id int not null,
+    changed_at timestamp not null default current_timestamp
+);
@@ -0,0 +1,11 @@
+-- The number of copies of each film in each condition and on each support, so inventory statistics read a few
+-- rows per film instead of scanning copy. CopyFilmDAO adds and subtracts from it in the transaction of every
+-- write; a missing condition or support is counted under ''. The rows of a film go when the film is deleted.
+create table inventory_summary (
+    film_id int not null,
+    `condition` varchar(16) not null,
+    support varchar(16) not null,
+    copies int not null,
+    primary key (film_id, `condition`, support),
+    constraint fk_inventory_summary_film foreign key (film_id) references film (id) on delete cascade
+);
@@ -0,0 +1,8 @@
+-- Counts the copies that existed before inventory_summary, in its own script so a failure leaves the table
+-- created and empty rather than half of V4 applied. The concat turns the enum columns into text, so '' is not
+-- checked against their values.
+insert into inventory_summary (film_id, `condition`, support, copies)
+select film_id, coalesce(concat(`condition`, ''), ''), coalesce(concat(support, ''), ''), count(*)
+from copy
+where film_id is not null
+group by film_id, coalesce(concat(`condition`, ''), ''), coalesce(concat(support, ''), '');
@@ -0,0 +1,8 @@
+-- Lending a copy to another user: borrower_id is who has it, null while it is on the owner's shelf. version is
+-- bumped by every update of the row, so LoanDAO can lend and return copies with compare-and-set updates
+-- (... where id=? and version=?) instead of locking rows. One statement, so the columns come together.
+alter table copy add column (
+    version int not null default 0,
+    borrower_id int null,
+    borrowed_at timestamp null
+);
@@ -0,0 +1,3 @@
+-- A deleted user gives back what they borrowed. The foreign key also indexes borrower_id for
+-- LoanDAO.getLoansOfUser.
+alter table copy add constraint fk_copy_borrower foreign key (borrower_id) references user (id) on delete set null;
@@ -0,0 +1,3 @@
+-- LoanDAO.borrow looks for the copies of a film that are not lent (film_id=? and borrower_id is null), which
+-- this index answers without reading the lent copies of popular films.
+create index ix_copy_film_borrower on copy (film_id, borrower_id, id);